@@ -0,0 +1,55 @@
+#!/usr/bin/env bash
+# Starts N instances against one MongoDB with partition leases on, waits until every partition has an owner,
+# then runs the same workload on all nodes at once and prints per-node and total throughput.
+# Run it with 1, 2, 4 ... nodes to see how throughput scales with node count.
+#
+#   ./mvnw -DskipTests package
+#   scripts/cluster-local.sh [nodes] [seconds]
+#
+# MONGO_URI (default mongodb://localhost:27017/banking), BASE_PORT (default 18100) and PARTITIONS (default 64) can be overridden.
+set -euo pipefail
+
+NODES=${1:-2}
+SECONDS_PER_RUN=${2:-30}
+BASE_PORT=${BASE_PORT:-18100}
+PARTITIONS=${PARTITIONS:-64}
+MONGO_URI=${MONGO_URI:-mongodb://localhost:27017/banking}
+cd "$(dirname "$0")/.."
+JAR=$(ls target/*.jar | grep -v original | head -1)
+PIDS=()
+trap 'kill "${PIDS[@]}" 2>/dev/null || true; wait 2>/dev/null || true' EXIT
+
+for ((i = 0; i < NODES; i++)); do
+  port=$((BASE_PORT + i))
+  java -jar "$JAR" --server.port="$port" --spring.data.mongodb.uri="$MONGO_URI" \
+    --banking.cluster.enabled=true --banking.cluster.partitions="$PARTITIONS" \
+    --banking.cluster.node-id="node-$i" --banking.cluster.advertised-url="http://localhost:$port" \
+    >"target/cluster-node-$i.log" 2>&1 &
+  PIDS+=($!)
+done
+
+echo "Waiting for $PARTITIONS partitions to be owned by $NODES nodes..."
+until
+  total=0
+  for ((i = 0; i < NODES; i++)); do
+    owned=$(curl -s "http://localhost:$((BASE_PORT + i))/api/admin/cluster" | sed -n 's/.*"owned":\[\([^]]*\)\].*/\1/p' | tr ',' '\n' | grep -c . || true)
+    total=$((total + owned))
+  done
+  [ "$total" -eq "$PARTITIONS" ]
+do sleep 1; done
+
+BODY="{\"accounts\":2000,\"mode\":\"CLOSED\",\"concurrency\":32,\"warmupSeconds\":5,\"durationSeconds\":$SECONDS_PER_RUN}"
+RUNS=()
+for ((i = 0; i < NODES; i++)); do
+  curl -s -H 'Content-Type: application/json' -d "$BODY" "http://localhost:$((BASE_PORT + i))/api/admin/workload" >"target/cluster-node-$i.report.json" &
+  RUNS+=($!)
+done
+wait "${RUNS[@]}"
+
+total=0
+for ((i = 0; i < NODES; i++)); do
+  tput=$(sed -n 's/.*"throughputPerSecond":\([0-9.]*\).*/\1/p' "target/cluster-node-$i.report.json")
+  printf 'node-%d  %10.0f ops/s\n' "$i" "$tput"
+  total=$(awk -v a="$total" -v b="$tput" 'BEGIN { print a + b }')
+done
+printf 'total   %10.0f ops/s on %d nodes\n' "$total" "$NODES"
@@ -0,0 +1,48 @@
+#!/usr/bin/env bash
+# Cold-start benchmark: time-to-first-request and resident memory of the plain jar vs the startup profile (AOT + CDS)
+# and, when present, the native image.
+#
+#   ./mvnw -Pstartup -DskipTests package          # builds target/*.jar and target/startup/
+#   ./mvnw -Pnative -DskipTests native:compile    # optional, needs GraalVM
+#   scripts/startup-benchmark.sh [runs]
+#
+# The probe URL defaults to a path that is answered by the DispatcherServlet without touching MongoDB,
+# so the numbers measure the application and not the database. Override with PROBE_URL=...
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+PROBE_URL=${PROBE_URL:-http://localhost:${PORT}/startup-probe}
+cd "$(dirname "$0")/.."
+NAME=$(ls target/*.jar | grep -v original | head -1 | xargs basename)
+
+now_ms() { date +%s%3N; }
+
+measure() { # label, command...
+  local label=$1; shift
+  local total_ttfr=0 total_rss=0
+  for ((i = 1; i <= RUNS; i++)); do
+    local start; start=$(now_ms)
+    "$@" --server.port="$PORT" >/dev/null 2>&1 &
+    local pid=$!
+    until curl -s -o /dev/null "$PROBE_URL"; do
+      kill -0 "$pid" 2>/dev/null || { echo "$label: process exited before serving" >&2; return 1; }
+      sleep 0.01
+    done
+    local ttfr=$(( $(now_ms) - start ))
+    local rss; rss=$(awk '/VmRSS/ {print $2}' /proc/"$pid"/status)
+    kill "$pid"; wait "$pid" 2>/dev/null || true
+    total_ttfr=$((total_ttfr + ttfr)); total_rss=$((total_rss + rss))
+  done
+  printf '%-14s time-to-first-request %6d ms   rss %7d KB   (mean of %d runs)\n' \
+    "$label" $((total_ttfr / RUNS)) $((total_rss / RUNS)) "$RUNS"
+}
+
+measure "plain-jar" java -jar "target/$NAME"
+if [[ -f target/startup/application.jsa ]]; then
+  measure "aot+cds" java -XX:SharedArchiveFile=target/startup/application.jsa -Dspring.aot.enabled=true -jar "target/startup/$NAME"
+fi
+NATIVE=$(ls target/HimanshuBankingSystemSimulatorSBMonoWithMongo 2>/dev/null || true)
+if [[ -n "$NATIVE" ]]; then
+  measure "native" "$NATIVE"
+fi
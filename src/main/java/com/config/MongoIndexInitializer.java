@@ -0,0 +1,128 @@
+package com.config;
+
+import com.model.Account; import com.model.ClusterMember; import com.model.CreditClaim; import com.model.EodCheckpoint; import com.model.ScheduledTransfer; import com.model.Transaction;
+import com.exception.IndexesNotReadyException;
+import com.service.HolderNames;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Creates the indexes declared on the documents (@Indexed / @CompoundIndex).
+ I am not using spring.data.mongodb.auto-index-creation because it runs while the repositories are created and
+ startup then fails whenever MongoDB is not reachable; here it runs in the background once the app is ready,
+ and ensureIndex is a no-op for indexes that already exist.
+ Several guarantees rest on unique indexes (a replayed outbox leg, a credit claim, an end-of-day journal id, the account
+ number), so until every index exists isReady() is false: the outbox dispatcher, the scheduled-transfer poller, end-of-day
+ runs, the ledger backfill and account creation wait for it, and the health endpoint reports DOWN. A failure (for example
+ duplicates that a unique index refuses) is logged as an error and retried every `retry-ms` until it is fixed.
+ Afterwards, accounts created before holderNameKey existed get theirs, so the holder prefix search also finds them.
+*/
+@Component
+@Profile("!simulation")
+public class MongoIndexInitializer implements HealthIndicator {
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexInitializer.class);
+    static final int BACKFILL_BATCH = 1000;
+    static final List<Class<?>> DOCUMENTS = List.of(Account.class, Transaction.class, EodCheckpoint.class, ClusterMember.class, ScheduledTransfer.class, CreditClaim.class);
+    private final MongoTemplate mongoTemplate; private final long retryMillis;
+    private volatile boolean ready; private volatile String lastFailure = "not attempted yet";
+
+    public MongoIndexInitializer(MongoTemplate mongoTemplate, @Value("${banking.indexes.retry-ms:10000}") long retryMillis) {
+        this.mongoTemplate = mongoTemplate; this.retryMillis = retryMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        Thread t = new Thread(this::initialise, "mongo-index-init");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public boolean isReady() { return ready; }
+
+    // for work that must not run before the unique indexes exist
+    public void requireReady(String what) {
+        if (!ready) throw new IndexesNotReadyException(what);
+    }
+
+    @Override
+    public Health health() {
+        return ready ? Health.up().build() : Health.down().withDetail("indexes", lastFailure).build();
+    }
+
+    private void initialise() {
+        while (!ensureIndexes()) {
+            try { Thread.sleep(retryMillis); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+        }
+        try {
+            long filled = backfillHolderNameKeys();
+            if (filled > 0) log.info("Backfilled holderNameKey on {} accounts", filled);
+        } catch (RuntimeException e) {
+            log.warn("Could not backfill holderNameKey: {}", e.getMessage());
+        }
+    }
+
+    // true once every declared index exists
+    boolean ensureIndexes() {
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        List<String> failed = new ArrayList<>();
+        for (Class<?> type : DOCUMENTS) {
+            try {
+                IndexOperations ops = mongoTemplate.indexOps(type);
+                resolver.resolveIndexFor(type).forEach(ops::ensureIndex);
+            } catch (RuntimeException e) {
+                failed.add(type.getSimpleName() + ": " + e.getMessage());
+            }
+        }
+        if (!failed.isEmpty()) {
+            lastFailure = String.join("; ", failed);
+            log.error("Could not create indexes, so the outbox, scheduled transfers, end-of-day runs and account creation are held; retrying in {} ms: {}",
+                    retryMillis, lastFailure);
+            return false;
+        }
+        ready = true;
+        log.info("Database indexes are in place");
+        return true;
+    }
+
+    // streams only the accounts without a key and sets it in unordered bulks; a re-run after a failure picks up the rest
+    long backfillHolderNameKeys() {
+        Query missing = Query.query(where("holderNameKey").exists(false).and("accountHolderName").ne(null)).cursorBatchSize(BACKFILL_BATCH);
+        missing.fields().include("accountHolderName");
+        long filled = 0;
+        try (Stream<Account> accounts = mongoTemplate.stream(missing, Account.class)) {
+            Iterator<Account> it = accounts.iterator();
+            List<Account> batch = new ArrayList<>(BACKFILL_BATCH);
+            while (it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() < BACKFILL_BATCH && it.hasNext()) continue;
+                BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Account.class);
+                // the exists(false) guard leaves alone an account whose key was set by a rename meanwhile
+                for (Account a : batch) ops.updateOne(Query.query(where("_id").is(a.getId()).and("holderNameKey").exists(false)),
+                        Update.update("holderNameKey", HolderNames.key(a.getAccountHolderName())));
+                ops.execute();
+                filled += batch.size();
+                batch.clear();
+            }
+        }
+        return filled;
+    }
+}
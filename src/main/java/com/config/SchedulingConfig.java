@@ -0,0 +1,9 @@
+package com.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Background jobs (@Scheduled) are switched on per job with their own banking.*.enabled property.
+@Configuration
+@EnableScheduling
+public class SchedulingConfig { }
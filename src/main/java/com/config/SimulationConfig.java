@@ -0,0 +1,42 @@
+package com.config;
+
+import com.service.InMemoryLedgerStore;
+import com.service.VelocityLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.nio.file.Path;
+import java.util.List;
+
+// I have kept the in-memory engine behind the "simulation" profile so that the default runs stay on MongoDB.
+@Configuration
+@Profile("simulation")
+public class SimulationConfig {
+
+    @Bean
+    public InMemoryLedgerStore inMemoryLedgerStore(@Value("${banking.simulation.expected-accounts:100000}") int expectedAccounts,
+                                                   @Value("${banking.simulation.expected-entries:1000000}") int expectedEntries,
+                                                   @Value("${banking.simulation.wal-path:}") String walPath,
+                                                   @Value("${banking.simulation.wal-chunk-bytes:67108864}") long walChunkBytes,
+                                                   @Value("${banking.simulation.wal-segment-bytes:1073741824}") long walSegmentBytes,
+                                                   @Value("${banking.simulation.wal-sync:false}") boolean walSync) {
+        return new InMemoryLedgerStore(expectedAccounts, expectedEntries, walPath.isBlank() ? null : Path.of(walPath), walChunkBytes, walSegmentBytes, walSync);
+    }
+
+    // the same banking.limits.* rules as the MongoDB engine, rebuilt from the in-memory ledger instead of the transactions collection
+    @Bean
+    public VelocityLimiter velocityLimiter(InMemoryLedgerStore store, MeterRegistry registry,
+                                           @Value("${banking.limits.withdraw-amount-per-day:0}") long withdrawAmountPerDay,
+                                           @Value("${banking.limits.transfer-amount-per-day:0}") long transferAmountPerDay,
+                                           @Value("${banking.limits.transfer-count-per-minute:0}") long transferCountPerMinute,
+                                           @Value("${banking.limits.buckets:60}") int buckets,
+                                           @Value("${banking.limits.max-accounts:100000}") int maxAccounts) {
+        return new VelocityLimiter((acc, types, since) -> {
+            int slot = store.slotOf(acc.getAccountNumber());
+            return slot < 0 ? List.of() : store.debitsSince(slot, since);
+        }, registry, withdrawAmountPerDay, transferAmountPerDay, transferCountPerMinute, buckets, maxAccounts);
+    }
+}
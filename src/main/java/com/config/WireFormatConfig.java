@@ -0,0 +1,97 @@
+package com.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.deser.InstantDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+/*
+ Lets callers pick a compact binary body instead of JSON, on requests (Content-Type) and responses (Accept):
+   application/cbor, application/x-jackson-smile, and application/json as before.
+ The binary mappers come from the same Boot-configured builder as the JSON one, so they share modules and features.
+ Only they get the compact-wire module on top: Instants go out as an [epochSecond, nanos] pair of integers, which keeps
+ the full precision of the Instant, and a plain number is still read as epoch milliseconds. The JSON mapper (REST, SSE
+ payloads, NDJSON export) is left as Boot builds it, so @JsonFormat and spring.jackson.* settings keep applying there.
+*/
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> builders;
+
+    public WireFormatConfig(ObjectProvider<Jackson2ObjectMapperBuilder> builders) { this.builders = builders; }
+
+    // not a bean on purpose: Boot would register a Module bean on every mapper it builds, the JSON one included
+    public static SimpleModule compactWireModule() {
+        SimpleModule m = new SimpleModule("compact-wire");
+        m.addSerializer(Instant.class, new InstantWireSerializer());
+        m.addDeserializer(Instant.class, new InstantWireDeserializer());
+        return m;
+    }
+
+    // I am replacing the CBOR/Smile converters Spring adds on its own, since those use a bare mapper without our modules.
+    // The builder is a fresh prototype per call, so the module registered here stays with these two mappers
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(c -> c instanceof MappingJackson2CborHttpMessageConverter || c instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(binaryMapper(new CBORFactory())));
+        converters.add(new MappingJackson2SmileHttpMessageConverter(binaryMapper(new SmileFactory())));
+    }
+
+    // registered after the builder's own modules, so it takes over Instant from JavaTimeModule
+    private ObjectMapper binaryMapper(JsonFactory factory) {
+        return builders.getObject().factory(factory).postConfigurer(m -> m.registerModule(compactWireModule())).build();
+    }
+
+    // two integers straight into the generator, nothing built in between; long fields need no serializer of their own,
+    // as Jackson already writes them as native CBOR/Smile integers without an intermediate String
+    static final class InstantWireSerializer extends StdScalarSerializer<Instant> {
+        InstantWireSerializer() { super(Instant.class); }
+
+        @Override
+        public void serialize(Instant value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartArray(value, 2); gen.writeNumber(value.getEpochSecond()); gen.writeNumber(value.getNano()); gen.writeEndArray();
+        }
+    }
+
+    static final class InstantWireDeserializer extends StdScalarDeserializer<Instant> {
+        InstantWireDeserializer() { super(Instant.class); }
+
+        @Override
+        public Instant deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (binary(p)) {
+                if (p.currentToken() == JsonToken.START_ARRAY) {
+                    long seconds = p.nextLongValue(0); long nanos = p.nextLongValue(0);
+                    if (p.nextToken() != JsonToken.END_ARRAY) return (Instant) ctxt.handleUnexpectedToken(Instant.class, p);
+                    return Instant.ofEpochSecond(seconds, nanos);
+                }
+                if (p.currentToken().isNumeric()) return Instant.ofEpochMilli(p.getLongValue());
+            }
+            return InstantDeserializer.INSTANT.deserialize(p, ctxt);
+        }
+
+        private static boolean binary(JsonParser p) {
+            ObjectCodec codec = p.getCodec();
+            return codec != null && codec.getFactory().canHandleBinaryNatively();
+        }
+    }
+}
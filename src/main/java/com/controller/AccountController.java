@@ -1,16 +1,18 @@
 package com.controller;
+import com.dto.AccountSearchPage;
 import com.dto.AmountRequest;
 import com.dto.CreateAccountRequest;
-import com.model.Account; import com.model.Transaction; import com.service.AccountService;
-import org.springframework.http.ResponseEntity; import org.springframework.web.bind.annotation.*;
+import com.model.Account; import com.model.Transaction; import com.service.AccountEventStreamService; import com.service.AccountService;
+import org.springframework.http.MediaType; import org.springframework.http.ResponseEntity; import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.net.URI; import java.util.List;
 import jakarta.validation.Valid; import jakarta.validation.constraints.NotBlank;
 
 @RestController
 @RequestMapping("/api/accounts")
 public class AccountController {
-    private final AccountService svc;
-    public AccountController(AccountService svc) { this.svc = svc; }
+    private final AccountService svc; private final AccountEventStreamService eventStream;
+    public AccountController(AccountService svc, AccountEventStreamService eventStream) { this.svc = svc; this.eventStream = eventStream; }
 
     // create using JSON body
     @PostMapping
@@ -26,6 +28,14 @@ public class AccountController {
         return ResponseEntity.created(URI.create("/api/accounts/" + created.getAccountNumber())).body(created);
 }
 
+// type-ahead search by holder name prefix, case-insensitive; pass nextAfter from the previous page as `after`
+@GetMapping(params = "holder")
+public ResponseEntity<AccountSearchPage> search(@RequestParam("holder") String holder,
+                                                @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                @RequestParam(value = "after", required = false) String after) {
+    return ResponseEntity.ok(svc.searchByHolderPrefix(holder, limit, after));
+}
+
 @GetMapping("/{accountNumber}")
 public ResponseEntity<Account> get(@PathVariable String accountNumber) {
     Account acc = svc.getByAccountNumber(accountNumber);
@@ -71,6 +81,12 @@ public ResponseEntity<List<Transaction>> transactions(@PathVariable String accou
     List<Transaction> list = svc.getTransactions(accountNumber);
     return ResponseEntity.ok(list);
 }
+// push stream of new transactions; reconnecting clients send Last-Event-ID to resume
+@GetMapping(path = "/{accountNumber}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+public SseEmitter events(@PathVariable String accountNumber,
+                         @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+    return eventStream.subscribe(accountNumber, lastEventId);
+}
 @PutMapping("/{accountNumber}/close")
 public ResponseEntity<Account> close(@PathVariable String accountNumber) {
         Account acc = svc.closeAccount(accountNumber);
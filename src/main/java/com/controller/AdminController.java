@@ -0,0 +1,19 @@
+package com.controller;
+import com.dto.WorkloadReport; import com.dto.WorkloadRequest;
+import com.service.WorkloadGenerator;
+import org.springframework.http.ResponseEntity; import org.springframework.web.bind.annotation.*;
+import jakarta.validation.Valid;
+
+// Operational endpoints that are not part of the customer facing API.
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+    private final WorkloadGenerator workloadGenerator;
+    public AdminController(WorkloadGenerator workloadGenerator) { this.workloadGenerator = workloadGenerator; }
+
+    // runs synchronously and answers with the report once warm-up + duration have passed
+    @PostMapping("/workload")
+    public ResponseEntity<WorkloadReport> workload(@Valid @RequestBody WorkloadRequest req) {
+        return ResponseEntity.ok(workloadGenerator.run(req));
+    }
+}
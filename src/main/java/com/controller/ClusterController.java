@@ -0,0 +1,18 @@
+package com.controller;
+import com.service.PartitionOwnership;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping; import org.springframework.web.bind.annotation.RequestMapping; import org.springframework.web.bind.annotation.RestController;
+import java.util.Map;
+
+// Which partitions this node currently owns; handy when checking a multi-node setup or a failover.
+@RestController
+@RequestMapping("/api/admin/cluster")
+@Profile("!simulation")
+public class ClusterController {
+    private final PartitionOwnership ownership;
+    public ClusterController(PartitionOwnership ownership) { this.ownership = ownership; }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> status() { return ResponseEntity.ok(ownership.status()); }
+}
@@ -0,0 +1,28 @@
+package com.controller;
+import com.dto.EodRunStatus;
+import com.service.EndOfDayService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus; import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.time.LocalDate;
+
+// Starts end-of-day runs and reports their progress; starting a date again resumes it from its checkpoints.
+@RestController
+@RequestMapping("/api/admin/eod")
+@Profile("!simulation")
+public class EndOfDayController {
+    private final EndOfDayService endOfDayService;
+    public EndOfDayController(EndOfDayService endOfDayService) { this.endOfDayService = endOfDayService; }
+
+    @PostMapping
+    public ResponseEntity<EodRunStatus> start(@RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(endOfDayService.start(date));
+    }
+
+    @GetMapping("/{date}")
+    public ResponseEntity<EodRunStatus> status(@PathVariable("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        EodRunStatus s = endOfDayService.status(date);
+        return s == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(s);
+    }
+}
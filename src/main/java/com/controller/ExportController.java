@@ -0,0 +1,43 @@
+package com.controller;
+import com.service.ExportService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders; import org.springframework.http.MediaType; import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// Bulk exports for reporting: /api/admin/export/{accounts|transactions}?format=csv|ndjson&gzip=&batchSize=&afterId=&untilId=
+@RestController
+@RequestMapping("/api/admin/export")
+@Profile("!simulation")
+public class ExportController {
+    private final ExportService exportService;
+    public ExportController(ExportService exportService) { this.exportService = exportService; }
+
+    @GetMapping("/accounts")
+    public ResponseEntity<StreamingResponseBody> accounts(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                          @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+                                                          @RequestParam(value = "batchSize", defaultValue = "1000") int batchSize,
+                                                          @RequestParam(value = "afterId", required = false) String afterId,
+                                                          @RequestParam(value = "untilId", required = false) String untilId) {
+        ExportService.validate(format, batchSize);
+        return stream("accounts", format, gzip, out -> exportService.exportAccounts(out, format, gzip, batchSize, afterId, untilId));
+    }
+
+    @GetMapping("/transactions")
+    public ResponseEntity<StreamingResponseBody> transactions(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                              @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+                                                              @RequestParam(value = "batchSize", defaultValue = "1000") int batchSize,
+                                                              @RequestParam(value = "afterId", required = false) String afterId,
+                                                              @RequestParam(value = "untilId", required = false) String untilId) {
+        ExportService.validate(format, batchSize);
+        return stream("transactions", format, gzip, out -> exportService.exportTransactions(out, format, gzip, batchSize, afterId, untilId));
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String name, String format, boolean gzip, StreamingResponseBody body) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        // gzip exports are served as .gz files rather than with Content-Encoding, so that clients keep them compressed on disk
+        MediaType type = gzip ? new MediaType("application", "gzip") : csv ? new MediaType("text", "csv") : new MediaType("application", "x-ndjson");
+        String file = name + (csv ? ".csv" : ".ndjson") + (gzip ? ".gz" : "");
+        return ResponseEntity.ok().contentType(type).header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file + "\"").body(body);
+    }
+}
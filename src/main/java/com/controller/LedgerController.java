@@ -0,0 +1,22 @@
+package com.controller;
+import com.dto.LedgerBalanceReport;
+import com.service.LedgerVerificationService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.Map;
+
+// Whole-ledger checks: do all legs sum to zero, and conversion of pre-journal entries.
+@RestController
+@RequestMapping("/api/admin/ledger")
+@Profile("!simulation")
+public class LedgerController {
+    private final LedgerVerificationService ledgerVerificationService;
+    public LedgerController(LedgerVerificationService ledgerVerificationService) { this.ledgerVerificationService = ledgerVerificationService; }
+
+    @GetMapping("/verify")
+    public ResponseEntity<LedgerBalanceReport> verify() { return ResponseEntity.ok(ledgerVerificationService.verify()); }
+
+    @PostMapping("/backfill")
+    public ResponseEntity<Map<String, Long>> backfill() { return ResponseEntity.ok(Map.of("converted", ledgerVerificationService.backfill())); }
+}
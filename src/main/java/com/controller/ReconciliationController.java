@@ -0,0 +1,33 @@
+package com.controller;
+import com.dto.ReconciliationRunStatus;
+import com.model.ReconciliationDiscrepancy;
+import com.service.ReconciliationService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus; import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.List;
+
+// Ledger-vs-balance reconciliation: trigger a pass, see how the last one went and list open discrepancies.
+@RestController
+@RequestMapping("/api/admin/reconciliation")
+@Profile("!simulation")
+public class ReconciliationController {
+    private final ReconciliationService reconciliationService;
+    public ReconciliationController(ReconciliationService reconciliationService) { this.reconciliationService = reconciliationService; }
+
+    @PostMapping
+    public ResponseEntity<ReconciliationRunStatus> run(@RequestParam(value = "full", defaultValue = "false") boolean full) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reconciliationService.trigger(full));
+    }
+
+    @GetMapping
+    public ResponseEntity<ReconciliationRunStatus> lastRun() {
+        ReconciliationRunStatus s = reconciliationService.lastRun();
+        return s == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(s);
+    }
+
+    @GetMapping("/discrepancies")
+    public ResponseEntity<List<ReconciliationDiscrepancy>> discrepancies(@RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return ResponseEntity.ok(reconciliationService.discrepancies(Math.max(1, Math.min(limit, 1000))));
+    }
+}
@@ -0,0 +1,33 @@
+package com.controller;
+import com.dto.ScheduledTransferRequest;
+import com.model.ScheduledTransfer;
+import com.service.ScheduledTransferService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity; import org.springframework.web.bind.annotation.*;
+import jakarta.validation.Valid;
+import java.net.URI; import java.util.List;
+
+// Future-dated and standing-order transfers out of one account.
+@RestController
+@RequestMapping("/api/accounts/{accountNumber}/scheduled-transfers")
+@Profile("!simulation")
+public class ScheduledTransferController {
+    private final ScheduledTransferService scheduledTransferService;
+    public ScheduledTransferController(ScheduledTransferService scheduledTransferService) { this.scheduledTransferService = scheduledTransferService; }
+
+    @PostMapping
+    public ResponseEntity<ScheduledTransfer> create(@PathVariable String accountNumber, @Valid @RequestBody ScheduledTransferRequest req) {
+        ScheduledTransfer st = scheduledTransferService.create(accountNumber, req);
+        return ResponseEntity.created(URI.create("/api/accounts/" + accountNumber + "/scheduled-transfers/" + st.getId())).body(st);
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ScheduledTransfer>> list(@PathVariable String accountNumber) {
+        return ResponseEntity.ok(scheduledTransferService.list(accountNumber));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<ScheduledTransfer> cancel(@PathVariable String accountNumber, @PathVariable String id) {
+        return ResponseEntity.ok(scheduledTransferService.cancel(accountNumber, id));
+    }
+}
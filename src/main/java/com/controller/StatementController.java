@@ -0,0 +1,29 @@
+package com.controller;
+import com.dto.Statement;
+import com.service.StatementService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.time.LocalDate; import java.util.Map;
+
+// Per-day and per-type totals for an account, read from the daily rollups, plus the admin rebuild of those rollups.
+@RestController
+@Profile("!simulation")
+public class StatementController {
+    private final StatementService statementService;
+    public StatementController(StatementService statementService) { this.statementService = statementService; }
+
+    @GetMapping("/api/accounts/{accountNumber}/statement")
+    public ResponseEntity<Statement> statement(@PathVariable String accountNumber,
+                                               @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                               @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(statementService.statement(accountNumber, from, to));
+    }
+
+    // without accountNumber every account's rollups are recomputed
+    @PostMapping("/api/admin/statements/rebuild")
+    public ResponseEntity<Map<String, Long>> rebuild(@RequestParam(value = "accountNumber", required = false) String accountNumber) {
+        return ResponseEntity.ok(Map.of("rollups", statementService.rebuild(accountNumber)));
+    }
+}
@@ -0,0 +1,9 @@
+package com.dto;
+import java.util.List;
+// One page of account search results; pass nextAfter back as `after` to get the next page (null when there is none).
+public class AccountSearchPage {
+    private List<AccountSummary> items; private String nextAfter;
+    public AccountSearchPage() {} public AccountSearchPage(List<AccountSummary> items, String nextAfter) { this.items = items; this.nextAfter = nextAfter; }
+    public List<AccountSummary> getItems() { return items; } public void setItems(List<AccountSummary> items) { this.items = items; }
+    public String getNextAfter() { return nextAfter; } public void setNextAfter(String nextAfter) { this.nextAfter = nextAfter; }
+}
@@ -0,0 +1,9 @@
+package com.dto;
+// Projection returned by account search: only what a type-ahead list needs, never balances or history.
+public class AccountSummary {
+    private String accountNumber; private String accountHolderName; private String status;
+    public AccountSummary() {} public AccountSummary(String accountNumber, String accountHolderName, String status) { this.accountNumber = accountNumber; this.accountHolderName = accountHolderName; this.status = status; }
+    public String getAccountNumber() { return accountNumber; } public void setAccountNumber(String accountNumber) { this.accountNumber = accountNumber; }
+    public String getAccountHolderName() { return accountHolderName; } public void setAccountHolderName(String accountHolderName) { this.accountHolderName = accountHolderName; }
+    public String getStatus() { return status; } public void setStatus(String status) { this.status = status; }
+}
@@ -0,0 +1,21 @@
+package com.dto;
+import java.time.Instant;
+// Progress of an end-of-day run as reported by GET /api/admin/eod/{date}; amounts are in the same minor units as balances.
+public class EodRunStatus {
+    private String businessDate; private String state; private int partitions; private int partitionsDone;
+    private long accountsProcessed; private long interestPosted; private long feesCharged; private long dormantFlagged;
+    private Instant startedAt; private Instant finishedAt; private double accountsPerSecond; private String error;
+    public EodRunStatus() {}
+    public String getBusinessDate() { return businessDate; } public void setBusinessDate(String businessDate) { this.businessDate = businessDate; }
+    public String getState() { return state; } public void setState(String state) { this.state = state; }
+    public int getPartitions() { return partitions; } public void setPartitions(int partitions) { this.partitions = partitions; }
+    public int getPartitionsDone() { return partitionsDone; } public void setPartitionsDone(int partitionsDone) { this.partitionsDone = partitionsDone; }
+    public long getAccountsProcessed() { return accountsProcessed; } public void setAccountsProcessed(long accountsProcessed) { this.accountsProcessed = accountsProcessed; }
+    public long getInterestPosted() { return interestPosted; } public void setInterestPosted(long interestPosted) { this.interestPosted = interestPosted; }
+    public long getFeesCharged() { return feesCharged; } public void setFeesCharged(long feesCharged) { this.feesCharged = feesCharged; }
+    public long getDormantFlagged() { return dormantFlagged; } public void setDormantFlagged(long dormantFlagged) { this.dormantFlagged = dormantFlagged; }
+    public Instant getStartedAt() { return startedAt; } public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+    public Instant getFinishedAt() { return finishedAt; } public void setFinishedAt(Instant finishedAt) { this.finishedAt = finishedAt; }
+    public double getAccountsPerSecond() { return accountsPerSecond; } public void setAccountsPerSecond(double accountsPerSecond) { this.accountsPerSecond = accountsPerSecond; }
+    public String getError() { return error; } public void setError(String error) { this.error = error; }
+}
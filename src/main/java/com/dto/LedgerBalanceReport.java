@@ -0,0 +1,17 @@
+package com.dto;
+import java.time.Instant;
+import java.util.List;
+
+// Result of checking that the ledger's legs sum to zero, overall and per journal.
+public class LedgerBalanceReport {
+    private long legs; private long totalDebits; private long totalCredits; private long legacyEntries;
+    private List<String> unbalancedJournals; private boolean balanced; private Instant checkedAt;
+    public LedgerBalanceReport() {}
+    public long getLegs() { return legs; } public void setLegs(long legs) { this.legs = legs; }
+    public long getTotalDebits() { return totalDebits; } public void setTotalDebits(long totalDebits) { this.totalDebits = totalDebits; }
+    public long getTotalCredits() { return totalCredits; } public void setTotalCredits(long totalCredits) { this.totalCredits = totalCredits; }
+    public long getLegacyEntries() { return legacyEntries; } public void setLegacyEntries(long legacyEntries) { this.legacyEntries = legacyEntries; }
+    public List<String> getUnbalancedJournals() { return unbalancedJournals; } public void setUnbalancedJournals(List<String> unbalancedJournals) { this.unbalancedJournals = unbalancedJournals; }
+    public boolean isBalanced() { return balanced; } public void setBalanced(boolean balanced) { this.balanced = balanced; }
+    public Instant getCheckedAt() { return checkedAt; } public void setCheckedAt(Instant checkedAt) { this.checkedAt = checkedAt; }
+}
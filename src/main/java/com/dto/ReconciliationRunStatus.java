@@ -0,0 +1,16 @@
+package com.dto;
+import java.time.Instant;
+// Outcome of the latest reconciliation pass (FULL or INCREMENTAL).
+public class ReconciliationRunStatus {
+    private String mode; private String state; private long accountsChecked; private long discrepancies; private Instant watermark;
+    private Instant startedAt; private Instant finishedAt; private String error;
+    public ReconciliationRunStatus() {}
+    public String getMode() { return mode; } public void setMode(String mode) { this.mode = mode; }
+    public String getState() { return state; } public void setState(String state) { this.state = state; }
+    public long getAccountsChecked() { return accountsChecked; } public void setAccountsChecked(long accountsChecked) { this.accountsChecked = accountsChecked; }
+    public long getDiscrepancies() { return discrepancies; } public void setDiscrepancies(long discrepancies) { this.discrepancies = discrepancies; }
+    public Instant getWatermark() { return watermark; } public void setWatermark(Instant watermark) { this.watermark = watermark; }
+    public Instant getStartedAt() { return startedAt; } public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+    public Instant getFinishedAt() { return finishedAt; } public void setFinishedAt(Instant finishedAt) { this.finishedAt = finishedAt; }
+    public String getError() { return error; } public void setError(String error) { this.error = error; }
+}
@@ -0,0 +1,21 @@
+package com.dto;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import java.time.Instant;
+
+// A future-dated (recurrence NONE) or standing-order transfer; endAt is optional and inclusive.
+public class ScheduledTransferRequest {
+    @NotBlank(message = "toAccountNumber is required") private String toAccountNumber;
+    @Min(value = 1, message = "amount must be positive") private long amount;
+    @NotNull(message = "firstRunAt is required") private Instant firstRunAt;
+    @Pattern(regexp = "(?i)NONE|DAILY|WEEKLY|MONTHLY", message = "recurrence must be NONE, DAILY, WEEKLY or MONTHLY") private String recurrence = "NONE";
+    private Instant endAt;
+    public ScheduledTransferRequest() {}
+    public String getToAccountNumber() { return toAccountNumber; } public void setToAccountNumber(String toAccountNumber) { this.toAccountNumber = toAccountNumber; }
+    public long getAmount() { return amount; } public void setAmount(long amount) { this.amount = amount; }
+    public Instant getFirstRunAt() { return firstRunAt; } public void setFirstRunAt(Instant firstRunAt) { this.firstRunAt = firstRunAt; }
+    public String getRecurrence() { return recurrence; } public void setRecurrence(String recurrence) { this.recurrence = recurrence; }
+    public Instant getEndAt() { return endAt; } public void setEndAt(Instant endAt) { this.endAt = endAt; }
+}
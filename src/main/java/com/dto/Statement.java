@@ -0,0 +1,31 @@
+package com.dto;
+
+import com.model.DailyRollup;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+// Totals for an account between two dates (inclusive, UTC days), overall, by type and day by day. Days without activity are left out.
+public class Statement {
+    private final String accountNumber;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final long credited;
+    private final long debited;
+    private final Map<String, DailyRollup.TypeTotals> byType;
+    private final List<DailyRollup> days;
+
+    public Statement(String accountNumber, LocalDate from, LocalDate to, long credited, long debited,
+                     Map<String, DailyRollup.TypeTotals> byType, List<DailyRollup> days) {
+        this.accountNumber = accountNumber; this.from = from; this.to = to; this.credited = credited; this.debited = debited;
+        this.byType = byType; this.days = days;
+    }
+    public String getAccountNumber() { return accountNumber; }
+    public LocalDate getFrom() { return from; }
+    public LocalDate getTo() { return to; }
+    public long getCredited() { return credited; }
+    public long getDebited() { return debited; }
+    public long getNet() { return credited - debited; }
+    public Map<String, DailyRollup.TypeTotals> getByType() { return byType; }
+    public List<DailyRollup> getDays() { return days; }
+}
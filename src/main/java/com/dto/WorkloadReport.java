@@ -0,0 +1,33 @@
+package com.dto;
+import java.util.Map;
+
+// Result of a workload run: latencies are in microseconds and only cover the measured phase (after warm-up).
+// operations, latency and throughput count successful operations only; errors are the failed ones. measuredMillis runs
+// from the end of warm-up until the last measured operation completed, and never less than the requested duration.
+public class WorkloadReport {
+    private String mode; private int accounts; private long measuredMillis; private long operations; private long errors; private double throughputPerSecond;
+    private Map<String, LatencySummary> latency; private Map<String, Long> errorBreakdown;
+    public WorkloadReport() {}
+    public String getMode() { return mode; } public void setMode(String mode) { this.mode = mode; }
+    public int getAccounts() { return accounts; } public void setAccounts(int accounts) { this.accounts = accounts; }
+    public long getMeasuredMillis() { return measuredMillis; } public void setMeasuredMillis(long measuredMillis) { this.measuredMillis = measuredMillis; }
+    public long getOperations() { return operations; } public void setOperations(long operations) { this.operations = operations; }
+    public long getErrors() { return errors; } public void setErrors(long errors) { this.errors = errors; }
+    public double getThroughputPerSecond() { return throughputPerSecond; } public void setThroughputPerSecond(double throughputPerSecond) { this.throughputPerSecond = throughputPerSecond; }
+    public Map<String, LatencySummary> getLatency() { return latency; } public void setLatency(Map<String, LatencySummary> latency) { this.latency = latency; }
+    public Map<String, Long> getErrorBreakdown() { return errorBreakdown; } public void setErrorBreakdown(Map<String, Long> errorBreakdown) { this.errorBreakdown = errorBreakdown; }
+
+    // histogram is the compressed, base64 encoded HdrHistogram so that it can be plotted or merged offline
+    public static class LatencySummary {
+        private long count; private double mean; private long p50; private long p90; private long p99; private long p999; private long max; private String histogram;
+        public LatencySummary() {}
+        public long getCount() { return count; } public void setCount(long count) { this.count = count; }
+        public double getMean() { return mean; } public void setMean(double mean) { this.mean = mean; }
+        public long getP50() { return p50; } public void setP50(long p50) { this.p50 = p50; }
+        public long getP90() { return p90; } public void setP90(long p90) { this.p90 = p90; }
+        public long getP99() { return p99; } public void setP99(long p99) { this.p99 = p99; }
+        public long getP999() { return p999; } public void setP999(long p999) { this.p999 = p999; }
+        public long getMax() { return max; } public void setMax(long max) { this.max = max; }
+        public String getHistogram() { return histogram; } public void setHistogram(String histogram) { this.histogram = histogram; }
+    }
+}
@@ -0,0 +1,44 @@
+package com.dto;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+
+// Settings of one synthetic workload run; bound from banking.workload.* for the CLI and from the JSON body for the admin endpoint.
+public class WorkloadRequest {
+    @Min(value = 2, message = "accounts must be at least 2") private int accounts = 1000;
+    @Min(value = 0, message = "initialBalance must not be negative") private long initialBalance = 100_000;
+    @Pattern(regexp = "(?i)OPEN|CLOSED", message = "mode must be OPEN or CLOSED") private String mode = "CLOSED";
+    @Min(value = 1, message = "targetRate must be positive") private int targetRate = 1000;
+    @Min(value = 1, message = "concurrency must be positive") private int concurrency = 8;
+    @Min(value = 0, message = "thinkTimeMs must not be negative") private long thinkTimeMs = 0;
+    @Min(value = 0, message = "warmupSeconds must not be negative") private int warmupSeconds = 5;
+    @Min(value = 1, message = "durationSeconds must be positive") private int durationSeconds = 30;
+    @Min(value = 0, message = "weights must not be negative") private int depositWeight = 40;
+    @Min(value = 0, message = "weights must not be negative") private int withdrawWeight = 30;
+    @Min(value = 0, message = "weights must not be negative") private int transferWeight = 30;
+    @Pattern(regexp = "(?i)UNIFORM|EXPONENTIAL", message = "amountDistribution must be UNIFORM or EXPONENTIAL") private String amountDistribution = "UNIFORM";
+    @Min(value = 1, message = "minAmount must be positive") private long minAmount = 1;
+    @Min(value = 1, message = "maxAmount must be positive") private long maxAmount = 1000;
+    @Min(value = 1, message = "meanAmount must be positive") private long meanAmount = 100;
+    @Pattern(regexp = "(?i)UNIFORM|ZIPF", message = "popularity must be UNIFORM or ZIPF") private String popularity = "UNIFORM";
+    private double zipfExponent = 1.0;
+    private long seed = 42;
+    public WorkloadRequest() {}
+    public int getAccounts() { return accounts; } public void setAccounts(int accounts) { this.accounts = accounts; }
+    public long getInitialBalance() { return initialBalance; } public void setInitialBalance(long initialBalance) { this.initialBalance = initialBalance; }
+    public String getMode() { return mode; } public void setMode(String mode) { this.mode = mode; }
+    public int getTargetRate() { return targetRate; } public void setTargetRate(int targetRate) { this.targetRate = targetRate; }
+    public int getConcurrency() { return concurrency; } public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+    public long getThinkTimeMs() { return thinkTimeMs; } public void setThinkTimeMs(long thinkTimeMs) { this.thinkTimeMs = thinkTimeMs; }
+    public int getWarmupSeconds() { return warmupSeconds; } public void setWarmupSeconds(int warmupSeconds) { this.warmupSeconds = warmupSeconds; }
+    public int getDurationSeconds() { return durationSeconds; } public void setDurationSeconds(int durationSeconds) { this.durationSeconds = durationSeconds; }
+    public int getDepositWeight() { return depositWeight; } public void setDepositWeight(int depositWeight) { this.depositWeight = depositWeight; }
+    public int getWithdrawWeight() { return withdrawWeight; } public void setWithdrawWeight(int withdrawWeight) { this.withdrawWeight = withdrawWeight; }
+    public int getTransferWeight() { return transferWeight; } public void setTransferWeight(int transferWeight) { this.transferWeight = transferWeight; }
+    public String getAmountDistribution() { return amountDistribution; } public void setAmountDistribution(String amountDistribution) { this.amountDistribution = amountDistribution; }
+    public long getMinAmount() { return minAmount; } public void setMinAmount(long minAmount) { this.minAmount = minAmount; }
+    public long getMaxAmount() { return maxAmount; } public void setMaxAmount(long maxAmount) { this.maxAmount = maxAmount; }
+    public long getMeanAmount() { return meanAmount; } public void setMeanAmount(long meanAmount) { this.meanAmount = meanAmount; }
+    public String getPopularity() { return popularity; } public void setPopularity(String popularity) { this.popularity = popularity; }
+    public double getZipfExponent() { return zipfExponent; } public void setZipfExponent(double zipfExponent) { this.zipfExponent = zipfExponent; }
+    public long getSeed() { return seed; } public void setSeed(long seed) { this.seed = seed; }
+}
@@ -1,10 +1,10 @@
 package com.exception;
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpStatus; import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders; import org.springframework.http.HttpStatus; import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError; import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler; import org.springframework.web.bind.annotation.RestControllerAdvice;
 import jakarta.servlet.http.HttpServletRequest; import jakarta.validation.ConstraintViolationException;
-import java.util.stream.Collectors;
+import java.net.URI; import java.util.stream.Collectors;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -22,6 +22,30 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
     }
 
+    @ExceptionHandler(LimitExceededException.class)
+    public ResponseEntity<ApiErrorResponse> handleLimit(LimitExceededException ex, HttpServletRequest req) {
+        ApiErrorResponse body = new ApiErrorResponse(429, "Too Many Requests", ex.getMessage(), req.getRequestURI());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds())).body(body);
+    }
+
+    // 307 keeps the method and body, so the client replays the same mutation against the node that owns the account
+    @ExceptionHandler(PartitionNotOwnedException.class)
+    public ResponseEntity<ApiErrorResponse> handleNotOwned(PartitionNotOwnedException ex, HttpServletRequest req) {
+        if (ex.getOwnerUrl() == null) {
+            ApiErrorResponse body = new ApiErrorResponse(503, "Service Unavailable", ex.getMessage(), req.getRequestURI());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(body);
+        }
+        String target = ex.getOwnerUrl() + req.getRequestURI() + (req.getQueryString() == null ? "" : "?" + req.getQueryString());
+        ApiErrorResponse body = new ApiErrorResponse(307, "Temporary Redirect", ex.getMessage(), req.getRequestURI());
+        return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(URI.create(target)).body(body);
+    }
+
+    @ExceptionHandler(IndexesNotReadyException.class)
+    public ResponseEntity<ApiErrorResponse> handleIndexesNotReady(IndexesNotReadyException ex, HttpServletRequest req) {
+        ApiErrorResponse body = new ApiErrorResponse(503, "Service Unavailable", ex.getMessage(), req.getRequestURI());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "10").body(body);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiErrorResponse> handleValidation(MethodArgumentNotValidException ex, HttpServletRequest req) {
         String msgs = ex.getBindingResult().getFieldErrors().stream().map(FieldError::getDefaultMessage).collect(Collectors.joining("; "));
@@ -0,0 +1,8 @@
+package com.exception;
+
+// The unique indexes that replays and claims depend on are not in place yet; see MongoIndexInitializer.
+public class IndexesNotReadyException extends RuntimeException {
+    public IndexesNotReadyException(String what) {
+        super(what + " is unavailable until the database indexes are in place");
+    }
+}
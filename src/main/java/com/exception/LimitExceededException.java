@@ -0,0 +1,12 @@
+package com.exception;
+
+// A velocity rule (e.g. withdraw-amount-per-day) would be broken by this request; retryAfterSeconds is when it would fit again.
+public class LimitExceededException extends RuntimeException {
+    private final String rule; private final long retryAfterSeconds;
+    public LimitExceededException(String rule, String message, long retryAfterSeconds) {
+        super(message);
+        this.rule = rule; this.retryAfterSeconds = retryAfterSeconds;
+    }
+    public String getRule() { return rule; }
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
@@ -0,0 +1,12 @@
+package com.exception;
+
+// The account's partition is leased to another node (ownerUrl) or to nobody right now (ownerUrl null).
+public class PartitionNotOwnedException extends RuntimeException {
+    private final int partition; private final String ownerUrl;
+    public PartitionNotOwnedException(int partition, String ownerUrl) {
+        super("Partition " + partition + (ownerUrl == null ? " has no owner at the moment" : " is owned by " + ownerUrl));
+        this.partition = partition; this.ownerUrl = ownerUrl;
+    }
+    public int getPartition() { return partition; }
+    public String getOwnerUrl() { return ownerUrl; }
+}
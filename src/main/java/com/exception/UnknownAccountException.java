@@ -0,0 +1,10 @@
+package com.exception;
+
+// Thrown when the in-memory account number index rules an account out without asking the database.
+// It is expected traffic (typos, enumeration), so it skips the stack trace that a regular exception would capture.
+public class UnknownAccountException extends AccountNotFoundException {
+    public UnknownAccountException(String accountNumber) { super("No account: " + accountNumber); }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() { return this; }
+}
@@ -1,24 +1,37 @@
 package com.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Document(collection = "account")
+// I have indexed the case-folded holder name together with the account number so that prefix search can paginate on the index alone
+@CompoundIndex(name = "holder_name_key_account_number", def = "{'holderNameKey': 1, 'accountNumber': 1}")
 public class Account {
     @Id
     private String id;
     private String status ="Active";
-    private String accountNumber;
+    @Indexed(unique = true) private String accountNumber;
     private String accountHolderName;
+    private String holderNameKey;
     private long balance;
     @DBRef(lazy = true)
     private List<Transaction> transactions;
     private LocalDateTime createdAt = LocalDateTime.now();
+    @Indexed(sparse = true) private Instant lastActivityAt;
+    @Indexed(sparse = true) private String lastEodDate;
+    private boolean dormant;
+    // committed movements whose ledger rows, rollups and events are still to be written; see OutboxDispatcher
+    @JsonIgnore private List<OutboxEntry> outbox;
+    @JsonIgnore @Indexed(sparse = true) private Instant outboxSince;
 
 
     public Account() { this.transactions = new ArrayList<>(); }
@@ -37,10 +50,18 @@ public class Account {
     public String getId() { return id; } public void setId(String id) { this.id = id; }
     public String getAccountNumber() { return accountNumber; } public void setAccountNumber(String accountNumber) { this.accountNumber = accountNumber; }
     public String getAccountHolderName() { return accountHolderName; } public void setAccountHolderName(String accountHolderName) { this.accountHolderName = accountHolderName; }
+    @JsonIgnore public String getHolderNameKey() { return holderNameKey; } public void setHolderNameKey(String holderNameKey) { this.holderNameKey = holderNameKey; }
     public long getBalance() { return balance; } public void setBalance(long balance) { this.balance = balance; }
     public List<Transaction> getTransactions() { return transactions; } public void setTransactions(List<Transaction> transactions) { this.transactions = transactions; }
     public void addTransaction(Transaction tx) { if (this.transactions == null) this.transactions = new ArrayList<>(); this.transactions.add(tx); }
 
+    public Instant getLastActivityAt() { return lastActivityAt; } public void setLastActivityAt(Instant lastActivityAt) { this.lastActivityAt = lastActivityAt; }
+    // business date (yyyy-MM-dd) of the last end-of-day run applied to this account
+    public String getLastEodDate() { return lastEodDate; } public void setLastEodDate(String lastEodDate) { this.lastEodDate = lastEodDate; }
+    public boolean isDormant() { return dormant; } public void setDormant(boolean dormant) { this.dormant = dormant; }
+    @JsonIgnore public List<OutboxEntry> getOutbox() { return outbox; } public void setOutbox(List<OutboxEntry> outbox) { this.outbox = outbox; }
+    @JsonIgnore public Instant getOutboxSince() { return outboxSince; } public void setOutboxSince(Instant outboxSince) { this.outboxSince = outboxSince; }
+
     public String getStatus() {
         return status;
     }
@@ -0,0 +1,15 @@
+package com.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// A counter shared by every node: the next account number nobody has taken yet, which nodes take in blocks (see
+// AccountNumberSequence), or the next ledger commit sequence (see LedgerSequence).
+@Document(collection = "account_sequence")
+public class AccountSequence {
+    @Id private String id;
+    private long next;
+    public AccountSequence() {}
+    public String getId() { return id; } public void setId(String id) { this.id = id; }
+    public long getNext() { return next; } public void setNext(long next) { this.next = next; }
+}
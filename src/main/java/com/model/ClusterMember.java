@@ -0,0 +1,18 @@
+package com.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
+
+// One running node, refreshed on every lease heartbeat; nodes count as live while lastSeen is within one lease period.
+@Document(collection = "cluster_member")
+public class ClusterMember {
+    @Id private String nodeId;
+    private String url;
+    @Indexed(expireAfter = "1d") private Instant lastSeen;
+    public ClusterMember() {}
+    public String getNodeId() { return nodeId; } public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+    public String getUrl() { return url; } public void setUrl(String url) { this.url = url; }
+    public Instant getLastSeen() { return lastSeen; } public void setLastSeen(Instant lastSeen) { this.lastSeen = lastSeen; }
+}
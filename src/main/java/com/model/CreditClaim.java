@@ -0,0 +1,21 @@
+package com.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
+
+/*
+ The right to recover the credit of one transfer journal, held by one outbox dispatcher at a time.
+ Whoever holds it may credit the receiver only until `until` (checked against the database clock); removed by TTL long after.
+*/
+@Document(collection = "credit_claim")
+public class CreditClaim {
+    @Id private String journalId;
+    private Instant until;
+    @Indexed(expireAfter = "0s") private Instant expiresAt;
+    public CreditClaim() {}
+    public String getJournalId() { return journalId; } public void setJournalId(String journalId) { this.journalId = journalId; }
+    public Instant getUntil() { return until; } public void setUntil(Instant until) { this.until = until; }
+    public Instant getExpiresAt() { return expiresAt; } public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,39 @@
+package com.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ Totals of one account's ledger legs for one UTC day, kept up to date with $inc as legs are written.
+ The id is accountId:yyyy-MM-dd, so the days of a statement are one range scan on _id and no other index is needed.
+*/
+@Document(collection = "daily_rollup")
+public class DailyRollup {
+    @Id private String id;
+    private String accountId;
+    private String day;
+    private long credited;
+    private long debited;
+    private Map<String, TypeTotals> types = new LinkedHashMap<>(); // keyed by transaction type
+    public DailyRollup() {}
+    public static String idOf(String accountId, String day) { return accountId + ":" + day; }
+    public String getId() { return id; } public void setId(String id) { this.id = id; }
+    public String getAccountId() { return accountId; } public void setAccountId(String accountId) { this.accountId = accountId; }
+    public String getDay() { return day; } public void setDay(String day) { this.day = day; }
+    public long getCredited() { return credited; } public void setCredited(long credited) { this.credited = credited; }
+    public long getDebited() { return debited; } public void setDebited(long debited) { this.debited = debited; }
+    public Map<String, TypeTotals> getTypes() { return types; } public void setTypes(Map<String, TypeTotals> types) { this.types = types; }
+
+    public static class TypeTotals {
+        private long count;
+        private long credited;
+        private long debited;
+        public TypeTotals() {}
+        public long getCount() { return count; } public void setCount(long count) { this.count = count; }
+        public long getCredited() { return credited; } public void setCredited(long credited) { this.credited = credited; }
+        public long getDebited() { return debited; } public void setDebited(long debited) { this.debited = debited; }
+        public void add(TypeTotals o) { count += o.count; credited += o.credited; debited += o.debited; }
+    }
+}
@@ -0,0 +1,34 @@
+package com.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
+
+// Progress of one _id-range partition of an end-of-day run; a restarted run continues each partition after lastId.
+@Document(collection = "eod_checkpoint")
+public class EodCheckpoint {
+    @Id private String id; // businessDate:partition
+    @Indexed private String businessDate;
+    private int partition;
+    private String lowerIdExclusive; // null = start of the collection
+    private String upperIdInclusive; // null = end of the collection
+    private String lastId;
+    private boolean done;
+    private long accountsProcessed;
+    private Instant updatedAt;
+    public EodCheckpoint() {}
+    public EodCheckpoint(String businessDate, int partition, String lowerIdExclusive, String upperIdInclusive) {
+        this.id = businessDate + ":" + partition; this.businessDate = businessDate; this.partition = partition;
+        this.lowerIdExclusive = lowerIdExclusive; this.upperIdInclusive = upperIdInclusive; this.updatedAt = Instant.now();
+    }
+    public String getId() { return id; } public void setId(String id) { this.id = id; }
+    public String getBusinessDate() { return businessDate; } public void setBusinessDate(String businessDate) { this.businessDate = businessDate; }
+    public int getPartition() { return partition; } public void setPartition(int partition) { this.partition = partition; }
+    public String getLowerIdExclusive() { return lowerIdExclusive; } public void setLowerIdExclusive(String lowerIdExclusive) { this.lowerIdExclusive = lowerIdExclusive; }
+    public String getUpperIdInclusive() { return upperIdInclusive; } public void setUpperIdInclusive(String upperIdInclusive) { this.upperIdInclusive = upperIdInclusive; }
+    public String getLastId() { return lastId; } public void setLastId(String lastId) { this.lastId = lastId; }
+    public boolean isDone() { return done; } public void setDone(boolean done) { this.done = done; }
+    public long getAccountsProcessed() { return accountsProcessed; } public void setAccountsProcessed(long accountsProcessed) { this.accountsProcessed = accountsProcessed; }
+    public Instant getUpdatedAt() { return updatedAt; } public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
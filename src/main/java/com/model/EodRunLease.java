@@ -0,0 +1,17 @@
+package com.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
+
+// Which run holds a business date, and until when; one end-of-day run per date across the cluster.
+@Document(collection = "eod_run_lease")
+public class EodRunLease {
+    @Id private String businessDate;
+    private String owner;
+    private Instant expiresAt;
+    public EodRunLease() {}
+    public String getBusinessDate() { return businessDate; } public void setBusinessDate(String businessDate) { this.businessDate = businessDate; }
+    public String getOwner() { return owner; } public void setOwner(String owner) { this.owner = owner; }
+    public Instant getExpiresAt() { return expiresAt; } public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,25 @@
+package com.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/*
+ One committed money movement waiting for its side effects, embedded in the document of the account whose balance it
+ changed so that the balance change and the entry are a single write. `legs` are the ledger rows this account is
+ responsible for, with their final ids. A transfer writes two entries under the same journalId: the payer's (its debit leg,
+ plus the receiver's leg in `counterCredit`, so the credit can be recovered) and the receiver's (its credit leg).
+*/
+public class OutboxEntry {
+    private String journalId;
+    private Instant createdAt;
+    private List<Transaction> legs;
+    private Transaction counterCredit;
+    public OutboxEntry() {}
+    public OutboxEntry(List<Transaction> legs, Transaction counterCredit, Instant createdAt) {
+        this.journalId = legs.get(0).getJournalId(); this.legs = legs; this.counterCredit = counterCredit; this.createdAt = createdAt;
+    }
+    public String getJournalId() { return journalId; } public void setJournalId(String journalId) { this.journalId = journalId; }
+    public Instant getCreatedAt() { return createdAt; } public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public List<Transaction> getLegs() { return legs; } public void setLegs(List<Transaction> legs) { this.legs = legs; }
+    public Transaction getCounterCredit() { return counterCredit; } public void setCounterCredit(Transaction counterCredit) { this.counterCredit = counterCredit; }
+}
@@ -0,0 +1,21 @@
+package com.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
+
+// Who owns one slice of the account keyspace, and until when. epoch goes up on every change of owner.
+@Document(collection = "partition_lease")
+public class PartitionLease {
+    @Id private int partition;
+    private String owner;
+    private String ownerUrl;
+    private Instant expiresAt;
+    private long epoch;
+    public PartitionLease() {}
+    public int getPartition() { return partition; } public void setPartition(int partition) { this.partition = partition; }
+    public String getOwner() { return owner; } public void setOwner(String owner) { this.owner = owner; }
+    public String getOwnerUrl() { return ownerUrl; } public void setOwnerUrl(String ownerUrl) { this.ownerUrl = ownerUrl; }
+    public Instant getExpiresAt() { return expiresAt; } public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+    public long getEpoch() { return epoch; } public void setEpoch(long epoch) { this.epoch = epoch; }
+}
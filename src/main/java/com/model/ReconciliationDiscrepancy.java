@@ -0,0 +1,27 @@
+package com.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
+
+// An account whose stored balance differs from the sum of its ledger entries; removed again once it reconciles.
+@Document(collection = "reconciliation_discrepancy")
+public class ReconciliationDiscrepancy {
+    @Id private String accountId;
+    private String accountNumber;
+    private long storedBalance;
+    private long ledgerBalance;
+    private long difference; // storedBalance - ledgerBalance
+    private Instant detectedAt;
+    public ReconciliationDiscrepancy() {}
+    public ReconciliationDiscrepancy(String accountId, String accountNumber, long storedBalance, long ledgerBalance) {
+        this.accountId = accountId; this.accountNumber = accountNumber; this.storedBalance = storedBalance; this.ledgerBalance = ledgerBalance;
+        this.difference = storedBalance - ledgerBalance; this.detectedAt = Instant.now();
+    }
+    public String getAccountId() { return accountId; } public void setAccountId(String accountId) { this.accountId = accountId; }
+    public String getAccountNumber() { return accountNumber; } public void setAccountNumber(String accountNumber) { this.accountNumber = accountNumber; }
+    public long getStoredBalance() { return storedBalance; } public void setStoredBalance(long storedBalance) { this.storedBalance = storedBalance; }
+    public long getLedgerBalance() { return ledgerBalance; } public void setLedgerBalance(long ledgerBalance) { this.ledgerBalance = ledgerBalance; }
+    public long getDifference() { return difference; } public void setDifference(long difference) { this.difference = difference; }
+    public Instant getDetectedAt() { return detectedAt; } public void setDetectedAt(Instant detectedAt) { this.detectedAt = detectedAt; }
+}
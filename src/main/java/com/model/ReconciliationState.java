@@ -0,0 +1,23 @@
+package com.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Single document holding the watermark of the last completed reconciliation pass, and the accounts that pass could not
+// judge yet (their outbox was still pending), which the next incremental pass checks whatever their activity.
+@Document(collection = "reconciliation_state")
+public class ReconciliationState {
+    public static final String ID = "ledger";
+    @Id private String id = ID;
+    private Instant watermark;
+    private Instant lastFullRunAt;
+    private List<String> deferredIds = new ArrayList<>();
+    public ReconciliationState() {}
+    public String getId() { return id; } public void setId(String id) { this.id = id; }
+    public Instant getWatermark() { return watermark; } public void setWatermark(Instant watermark) { this.watermark = watermark; }
+    public Instant getLastFullRunAt() { return lastFullRunAt; } public void setLastFullRunAt(Instant lastFullRunAt) { this.lastFullRunAt = lastFullRunAt; }
+    public List<String> getDeferredIds() { return deferredIds; } public void setDeferredIds(List<String> deferredIds) { this.deferredIds = deferredIds; }
+}
@@ -0,0 +1,57 @@
+package com.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
+
+/*
+ A future-dated or standing-order transfer.
+ PENDING -> CLAIMED (picked up by a node, waiting in its timing wheel) -> EXECUTING -> PENDING (next occurrence) or COMPLETED / FAILED.
+ CANCELLED by the customer. A CLAIMED entry whose claim ran out goes back into the pool; an EXECUTING one is left for an operator,
+ because the transfer may or may not have happened. Occurrences that were already past when the previous one finished are
+ skipped, not paid back to back, and counted in `skipped`.
+*/
+@Document(collection = "scheduled_transfer")
+// I have put status and partition in front of nextRunAt so that picking up due work is a range scan per owned partition
+@CompoundIndex(name = "status_partition_next_run", def = "{'status': 1, 'partition': 1, 'nextRunAt': 1}")
+public class ScheduledTransfer {
+    @Id private String id;
+    @Indexed private String fromAccountNumber;
+    private String toAccountNumber;
+    private long amount;
+    private String recurrence = "NONE"; // NONE, DAILY, WEEKLY, MONTHLY
+    private Instant firstRunAt;
+    private Instant nextRunAt;
+    private Instant endAt;
+    private int partition;
+    private String status = "PENDING";
+    private String claimToken;
+    private Instant claimedUntil;
+    private int runs;
+    private int failures;
+    private int skipped;
+    private String lastError;
+    private String lastTransactionId;
+    private Instant createdAt = Instant.now();
+    public ScheduledTransfer() {}
+    public String getId() { return id; } public void setId(String id) { this.id = id; }
+    public String getFromAccountNumber() { return fromAccountNumber; } public void setFromAccountNumber(String fromAccountNumber) { this.fromAccountNumber = fromAccountNumber; }
+    public String getToAccountNumber() { return toAccountNumber; } public void setToAccountNumber(String toAccountNumber) { this.toAccountNumber = toAccountNumber; }
+    public long getAmount() { return amount; } public void setAmount(long amount) { this.amount = amount; }
+    public String getRecurrence() { return recurrence; } public void setRecurrence(String recurrence) { this.recurrence = recurrence; }
+    public Instant getFirstRunAt() { return firstRunAt; } public void setFirstRunAt(Instant firstRunAt) { this.firstRunAt = firstRunAt; }
+    public Instant getNextRunAt() { return nextRunAt; } public void setNextRunAt(Instant nextRunAt) { this.nextRunAt = nextRunAt; }
+    public Instant getEndAt() { return endAt; } public void setEndAt(Instant endAt) { this.endAt = endAt; }
+    public int getPartition() { return partition; } public void setPartition(int partition) { this.partition = partition; }
+    public String getStatus() { return status; } public void setStatus(String status) { this.status = status; }
+    public String getClaimToken() { return claimToken; } public void setClaimToken(String claimToken) { this.claimToken = claimToken; }
+    public Instant getClaimedUntil() { return claimedUntil; } public void setClaimedUntil(Instant claimedUntil) { this.claimedUntil = claimedUntil; }
+    public int getRuns() { return runs; } public void setRuns(int runs) { this.runs = runs; }
+    public int getFailures() { return failures; } public void setFailures(int failures) { this.failures = failures; }
+    public int getSkipped() { return skipped; } public void setSkipped(int skipped) { this.skipped = skipped; }
+    public String getLastError() { return lastError; } public void setLastError(String lastError) { this.lastError = lastError; }
+    public String getLastTransactionId() { return lastTransactionId; } public void setLastTransactionId(String lastTransactionId) { this.lastTransactionId = lastTransactionId; }
+    public Instant getCreatedAt() { return createdAt; } public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
@@ -1,13 +1,41 @@
 package com.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.Instant;
 
+/*
+ One leg of a double-entry journal: every money movement is a DEBIT leg on the paying account and a CREDIT leg on the
+ receiving one, both carrying the same journalId. Deposits, withdrawals, interest and fees use the SYSTEM:* accounts as
+ the other side, so for any account the balance is credits minus debits and over the whole ledger the legs sum to zero.
+ Entries written before legs existed have no direction and are converted by the ledger backfill.
+ seq is the commit sequence, assigned when the leg is written to the ledger rather than when it is created: ids are
+ taken on the request thread but legs are written later and not always in that order, so only seq is safe to resume from.
+*/
 @Document(collection = "transaction")
+@CompoundIndexes({
+        // one account's history, in insertion order, is a single range of this index
+        @CompoundIndex(name = "account_id_id", def = "{'accountId': 1, '_id': 1}"),
+        // one account's history in commit order, which is what an event stream resumes from
+        @CompoundIndex(name = "account_id_seq", def = "{'accountId': 1, 'seq': 1}", partialFilter = "{ 'seq': { '$exists': true } }"),
+        @CompoundIndex(name = "journal_id_direction", def = "{'journalId': 1, 'direction': 1}", unique = true,
+                partialFilter = "{ 'journalId': { '$exists': true } }"),
+        // reconciliation's fallback for payer-side transfer rows not yet backfilled (no direction, so [null, null] on the second key);
+        // a partial filter can't say "direction missing", so only transfers are indexed and direction is part of the key
+        @CompoundIndex(name = "legacy_transfer_destination", def = "{'destinationAccountNumber': 1, 'direction': 1}",
+                partialFilter = "{ 'type': 'TRANSFER' }")
+})
 public class Transaction {
+    public static final String DEBIT = "DEBIT", CREDIT = "CREDIT";
     @Id private String id;
     private String accountId;
+    private String journalId;
+    private String direction;
+    private Long seq;
+    @JsonIgnore private boolean rolledUp;   // counted in its daily rollup; see StatementService
     private String type;
     private long amount;
     private Instant timestamp;
@@ -24,6 +52,10 @@ public class Transaction {
     public long getAmount() { return amount; } public void setAmount(long amount) { this.amount = amount; }
     public Instant getTimestamp() { return timestamp; } public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
     public String getNote() { return note; } public void setNote(String note) { this.note = note; }
+    public String getJournalId() { return journalId; } public void setJournalId(String journalId) { this.journalId = journalId; }
+    public String getDirection() { return direction; } public void setDirection(String direction) { this.direction = direction; }
+    public Long getSeq() { return seq; } public void setSeq(Long seq) { this.seq = seq; }
+    public boolean isRolledUp() { return rolledUp; } public void setRolledUp(boolean rolledUp) { this.rolledUp = rolledUp; }
 
     public String getSourceAccountNumber() {
         return sourceAccountNumber;
@@ -2,12 +2,16 @@ package com.repository;
 
 import com.model.Account;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 @Repository
-public interface AccountRepository extends MongoRepository<Account, String> {
+public interface AccountRepository extends MongoRepository<Account, String>, AccountRepositoryCustom {
     Optional<Account> findByAccountNumber(String accountNumber);
+    // what requests read before a movement; the pending outbox entries can be hundreds of legs and only the dispatcher reads them
+    @Query(value = "{ 'accountNumber': ?0 }", fields = "{ 'outbox': 0 }")
+    Optional<Account> findWithoutOutboxByAccountNumber(String accountNumber);
+    boolean existsByAccountNumber(String accountNumber);
     void deleteByAccountNumber(String accountNumber);
-    Optional<Account> findByAccountHolderName(String accountHolderName);
 }
@@ -0,0 +1,37 @@
+package com.repository;
+
+import com.dto.AccountSummary;
+import com.model.OutboxEntry;
+import com.model.Transaction;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+// Queries that derived repository methods can't express; implemented by AccountRepositoryImpl with MongoTemplate.
+public interface AccountRepositoryCustom {
+    // keyset page over (holderNameKey, accountNumber); afterKey/afterAccountNumber are null for the first page
+    List<AccountSummary> searchByHolderNameKeyPrefix(String keyPrefix, String afterKey, String afterAccountNumber, int limit);
+
+    // atomic $inc of the balance that also marks activity and appends the outbox entry in the same write;
+    // a debit (delta < 0) only applies while the balance covers it, and nothing applies to an INACTIVE account
+    boolean adjustBalance(String accountId, long delta, Instant at, OutboxEntry entry);
+
+    // adjustBalance for a transfer credit, which only applies while the database clock is before the deadline
+    boolean creditBefore(String accountId, long amount, Instant at, OutboxEntry entry, Instant deadline);
+
+    // the deadline for recovering this journal's credit, or null while another dispatcher holds it; see CreditClaim
+    Instant claimCredit(String journalId, Instant now, long windowMillis);
+
+    // the account exists and is not INACTIVE
+    boolean canTakeCredits(String accountId);
+
+    // appends the ledger references of customer legs in one bulk; $addToSet, so a replay adds nothing
+    void addTransactionRefs(List<Transaction> legs);
+
+    // drops dispatched entries per account id and clears outboxSince on accounts whose outbox is then empty
+    void removeOutboxEntries(Map<String, List<String>> journalIdsByAccount);
+
+    // INACTIVE only if the balance is still zero at the moment of the write
+    boolean closeIfEmpty(String accountId);
+}
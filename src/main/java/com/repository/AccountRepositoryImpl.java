@@ -0,0 +1,116 @@
+package com.repository;
+
+import com.dto.AccountSummary;
+import com.model.Account;
+import com.model.CreditClaim;
+import com.model.OutboxEntry;
+import com.model.Transaction;
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+public class AccountRepositoryImpl implements AccountRepositoryCustom {
+    // a claim only has to outlive its holder's window plus the margin before a takeover; a day leaves room for any clock
+    static final Duration CLAIM_RETENTION = Duration.ofDays(1);
+    private final MongoTemplate mongoTemplate;
+    public AccountRepositoryImpl(MongoTemplate mongoTemplate) { this.mongoTemplate = mongoTemplate; }
+
+    @Override
+    public List<AccountSummary> searchByHolderNameKeyPrefix(String keyPrefix, String afterKey, String afterAccountNumber, int limit) {
+        // I am using a range instead of a regex so that the prefix is a plain bounded scan of the compound index
+        Criteria c = Criteria.where("holderNameKey").gte(keyPrefix).lt(keyPrefix + Character.MAX_VALUE);
+        if (afterKey != null) {
+            c = new Criteria().andOperator(c, new Criteria().orOperator(
+                    Criteria.where("holderNameKey").gt(afterKey),
+                    Criteria.where("holderNameKey").is(afterKey).and("accountNumber").gt(afterAccountNumber)));
+        }
+        Query q = new Query(c).with(Sort.by("holderNameKey", "accountNumber")).limit(limit);
+        q.fields().include("accountNumber", "accountHolderName", "status").exclude("_id");
+        return mongoTemplate.find(q, AccountSummary.class, mongoTemplate.getCollectionName(Account.class));
+    }
+
+    @Override
+    public boolean adjustBalance(String accountId, long delta, Instant at, OutboxEntry entry) {
+        return mongoTemplate.updateFirst(new Query(adjustable(accountId, delta)), adjustment(delta, at, entry), Account.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public boolean creditBefore(String accountId, long amount, Instant at, OutboxEntry entry, Instant deadline) {
+        // $$NOW is the database's clock, the same one every writer and recoverer of this journal is measured against
+        Criteria c = adjustable(accountId, amount).and("$expr").is(new Document("$lt", List.of("$$NOW", Date.from(deadline))));
+        return mongoTemplate.updateFirst(new Query(c), adjustment(amount, at, entry), Account.class).getMatchedCount() > 0;
+    }
+
+    // a closed account takes nothing: a credit that races closeIfEmpty on another node fails here instead of landing after it
+    private static Criteria adjustable(String accountId, long delta) {
+        Criteria c = Criteria.where("_id").is(accountId).and("status").ne("INACTIVE");
+        return delta < 0 ? c.and("balance").gte(-delta) : c;
+    }
+
+    private static Update adjustment(long delta, Instant at, OutboxEntry entry) {
+        return new Update().inc("balance", delta).set("lastActivityAt", at).set("dormant", false)
+                .push("outbox", entry).min("outboxSince", entry.getCreatedAt());
+    }
+
+    @Override
+    public Instant claimCredit(String journalId, Instant now, long windowMillis) {
+        Instant until = now.plusMillis(windowMillis);
+        // an expired claim is taken over only a whole window after its deadline, which absorbs clock differences between nodes;
+        // a live one makes the upsert try to insert a second document with the same _id
+        Query free = Query.query(Criteria.where("_id").is(journalId).and("until").lt(now.minusMillis(windowMillis)));
+        try {
+            mongoTemplate.upsert(free, new Update().set("until", until).set("expiresAt", until.plus(CLAIM_RETENTION)), CreditClaim.class);
+            return until;
+        } catch (DuplicateKeyException held) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean canTakeCredits(String accountId) {
+        return mongoTemplate.exists(Query.query(Criteria.where("_id").is(accountId).and("status").ne("INACTIVE")), Account.class);
+    }
+
+    @Override
+    public void addTransactionRefs(List<Transaction> legs) {
+        if (legs.isEmpty()) return;
+        String collection = mongoTemplate.getCollectionName(Transaction.class);
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Account.class);
+        for (Transaction leg : legs) {
+            ops.updateOne(Query.query(Criteria.where("_id").is(leg.getAccountId())),
+                    new Update().addToSet("transactions", new DBRef(collection, new ObjectId(leg.getId()))));
+        }
+        ops.execute();
+    }
+
+    @Override
+    public void removeOutboxEntries(Map<String, List<String>> journalIdsByAccount) {
+        if (journalIdsByAccount.isEmpty()) return;
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Account.class);
+        journalIdsByAccount.forEach((accountId, journalIds) -> ops.updateOne(Query.query(Criteria.where("_id").is(accountId)),
+                new Update().pull("outbox", new Document("journalId", new Document("$in", journalIds)))));
+        ops.execute();
+        // an entry appended in between keeps the outbox non-empty, and with it the older outboxSince, until the next pass
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(journalIdsByAccount.keySet()).and("outbox").size(0)),
+                new Update().unset("outboxSince"), Account.class);
+    }
+
+    @Override
+    public boolean closeIfEmpty(String accountId) {
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(accountId).and("balance").is(0L)),
+                Update.update("status", "INACTIVE"), Account.class).getMatchedCount() > 0;
+    }
+}
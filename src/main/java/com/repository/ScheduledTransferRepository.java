@@ -0,0 +1,11 @@
+package com.repository;
+
+import com.model.ScheduledTransfer;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+@Repository
+public interface ScheduledTransferRepository extends MongoRepository<ScheduledTransfer, String> {
+    List<ScheduledTransfer> findByFromAccountNumberOrderByNextRunAtAsc(String fromAccountNumber);
+}
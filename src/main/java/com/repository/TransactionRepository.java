@@ -8,4 +8,8 @@ import java.util.List;
 @Repository
 public interface TransactionRepository extends MongoRepository<Transaction, String> {
     List<Transaction> findByAccountId(String accountId);
+    // incoming and outgoing legs alike, served by the (accountId, _id) index
+    List<Transaction> findByAccountIdOrderByIdAsc(String accountId);
+    // legs committed after the given sequence number, served by the (accountId, seq) index
+    List<Transaction> findByAccountIdAndSeqGreaterThanOrderBySeqAsc(String accountId, long seq);
 }
@@ -0,0 +1,56 @@
+package com.service;
+
+import com.model.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/*
+ In-process fan-out of committed ledger entries, keyed by account id.
+ With banking.events.source=local the TransactionCommittedEvent published by the outbox dispatcher feeds it directly;
+ with banking.events.source=change-stream only the Mongo change stream listener feeds it, so entries are not delivered twice,
+ unless the listener finds the server can't serve change streams and hands delivery back to the local events.
+*/
+@Component
+public class AccountEventBus {
+    private final Map<String, List<Consumer<Transaction>>> subscribers = new ConcurrentHashMap<>();
+    private volatile boolean localSource;
+
+    public AccountEventBus(@Value("${banking.events.source:local}") String source) {
+        this.localSource = !"change-stream".equalsIgnoreCase(source);
+    }
+
+    // called by the change stream listener when it gives up; from then on local events feed the bus
+    public void useLocalSource() { localSource = true; }
+
+    public boolean isLocalSource() { return localSource; }
+
+    public Runnable subscribe(String accountId, Consumer<Transaction> listener) {
+        // add inside compute too, so it can't land on a list an unsubscribe is removing from the map at the same time
+        subscribers.compute(accountId, (k, list) -> { if (list == null) list = new CopyOnWriteArrayList<>(); list.add(listener); return list; });
+        return () -> subscribers.computeIfPresent(accountId, (k, list) -> { list.remove(listener); return list.isEmpty() ? null : list; });
+    }
+
+    @EventListener
+    public void onCommitted(TransactionCommittedEvent event) {
+        if (localSource) { dispatch(event.getTransaction()); }
+    }
+
+    public void dispatch(Transaction tx) {
+        if (tx == null || tx.getAccountId() == null) return;
+        List<Consumer<Transaction>> list = subscribers.get(tx.getAccountId());
+        if (list == null) return;
+        for (Consumer<Transaction> l : list) { l.accept(tx); }
+    }
+
+    public int subscriberCount(String accountId) {
+        List<Consumer<Transaction>> list = subscribers.get(accountId);
+        return list == null ? 0 : list.size();
+    }
+}
@@ -0,0 +1,192 @@
+package com.service;
+
+import com.model.Account; import com.model.Transaction;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+ Server-Sent Events stream of committed transactions for one account.
+ - every SSE event carries the highest commit sequence (Transaction.seq) of its batch, so a client reconnecting with
+   Last-Event-ID gets the gap replayed from the ledger; an account's legs are numbered in the order they are written,
+   so nothing below that number can still be on its way
+ - every flush interval each subscriber's queue is drained and everything pending is sent as a single "transactions"
+   batch, so a slow consumer receives fewer, larger events instead of falling behind one entry at a time
+ - the sends run on a bounded sender pool, one task per subscriber at a time, because emitter.send blocks while the
+   client's socket buffer is full; a subscriber whose send is still running is skipped by later ticks, and one that
+   has been sending for longer than the send timeout is dropped and its sender interrupted, so one stalled client
+   cannot hold up delivery or keep-alives for the rest of the node
+ - if a consumer is so slow that its queue overflows I am closing its stream with an "overflow" event; it reconnects and resumes from the ledger
+ Delivery is at-least-once: clients should ignore a transaction id they have already seen.
+*/
+@Service
+public class AccountEventStreamService {
+    private static final Logger log = LoggerFactory.getLogger(AccountEventStreamService.class);
+    private final AccountService accountService; private final AccountEventBus bus;
+    private final long emitterTimeoutMs; private final int maxBatch; private final int queueCapacity; private final long keepAliveMs;
+    private final long sendTimeoutMs;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> { Thread t = new Thread(r, "sse-flusher"); t.setDaemon(true); return t; });
+    private final ExecutorService senders;
+
+    public AccountEventStreamService(AccountService accountService, AccountEventBus bus,
+                                     @Value("${banking.events.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+                                     @Value("${banking.events.flush-interval-ms:200}") long flushIntervalMs,
+                                     @Value("${banking.events.max-batch:500}") int maxBatch,
+                                     @Value("${banking.events.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${banking.events.keep-alive-ms:15000}") long keepAliveMs,
+                                     @Value("${banking.events.sender-threads:8}") int senderThreads,
+                                     @Value("${banking.events.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.accountService = accountService; this.bus = bus; this.emitterTimeoutMs = emitterTimeoutMs;
+        this.maxBatch = maxBatch; this.queueCapacity = queueCapacity; this.keepAliveMs = keepAliveMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.senders = Executors.newFixedThreadPool(senderThreads, r -> { Thread t = new Thread(r, "sse-sender"); t.setDaemon(true); return t; });
+        flusher.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public SseEmitter subscribe(String accountNumber, String lastEventId) {
+        Account acc = accountService.getByAccountNumber(accountNumber);
+        SseEmitter emitter = newEmitter();
+        Subscription sub = new Subscription(emitter, new ArrayBlockingQueue<>(queueCapacity));
+        // I am subscribing before the replay so that nothing committed in between is missed. Live entries are held back
+        // until the replay is queued, so that the stream stays in sequence order; duplicates are skipped by id.
+        sub.unsubscribe = bus.subscribe(acc.getId(), sub::live);
+        Long after = resumeFrom(lastEventId);
+        if (after != null) {
+            for (Transaction tx : accountService.getTransactionsSince(accountNumber, after)) { sub.replayed(tx); }
+        }
+        sub.replayDone();
+        emitter.onCompletion(() -> remove(sub));
+        emitter.onTimeout(() -> remove(sub));
+        emitter.onError(e -> remove(sub));
+        subscriptions.add(sub);
+        return emitter;
+    }
+
+    SseEmitter newEmitter() { return new SseEmitter(emitterTimeoutMs); }
+
+    // ids sent before sequences existed were transaction ids; those streams start afresh instead of failing
+    private static Long resumeFrom(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) return null;
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring Last-Event-ID {} that is not a sequence number", lastEventId);
+            return null;
+        }
+    }
+
+    // the batch is sent in arrival order, which is not always sequence order (a replay overlapping live delivery)
+    private static String lastSeq(List<Transaction> batch) {
+        long max = -1;
+        for (Transaction tx : batch) if (tx.getSeq() != null) max = Math.max(max, tx.getSeq());
+        return max < 0 ? null : Long.toString(max);
+    }
+
+    // hands each subscriber whose previous send has finished to the sender pool; drops the ones stuck in a send
+    void flushAll() {
+        long now = System.currentTimeMillis();
+        for (Subscription sub : subscriptions) {
+            Future<?> inFlight = sub.inFlight;
+            if (inFlight != null && !inFlight.isDone()) {
+                if (now - sub.sendingSince >= sendTimeoutMs) {
+                    log.debug("Dropping event stream subscriber stuck in a send for {} ms", now - sub.sendingSince);
+                    inFlight.cancel(true);
+                    sub.emitter.completeWithError(new TimeoutException("send timed out"));
+                    remove(sub);
+                }
+                continue;
+            }
+            sub.sendingSince = now;
+            sub.inFlight = senders.submit(() -> flush(sub, now));
+        }
+    }
+
+    private void flush(Subscription sub, long now) {
+        try {
+            if (sub.overflowed) {
+                sub.emitter.send(SseEmitter.event().name("overflow").data("consumer too slow, reconnect with Last-Event-ID"));
+                sub.emitter.complete(); remove(sub); return;
+            }
+            List<Transaction> batch = new ArrayList<>();
+            sub.queue.drainTo(batch, maxBatch);
+            if (!batch.isEmpty()) {
+                SseEmitter.SseEventBuilder event = SseEmitter.event().name("transactions").data(batch, MediaType.APPLICATION_JSON);
+                String id = lastSeq(batch);
+                if (id != null) event.id(id);
+                sub.emitter.send(event);
+                sub.lastSentAt = now;
+            } else if (now - sub.lastSentAt >= keepAliveMs) {
+                sub.emitter.send(SseEmitter.event().comment("keep-alive"));
+                sub.lastSentAt = now;
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping event stream subscriber: {}", e.getMessage());
+            remove(sub);
+        }
+    }
+
+    // waits for the sends handed out by the last flushAll(); for tests, which drive the flush by hand
+    void awaitSends(long timeoutMs) throws InterruptedException, ExecutionException, TimeoutException {
+        for (Subscription sub : subscriptions) {
+            Future<?> inFlight = sub.inFlight;
+            if (inFlight != null) inFlight.get(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    int subscriptionCount() { return subscriptions.size(); }
+
+    private void remove(Subscription sub) {
+        if (subscriptions.remove(sub) && sub.unsubscribe != null) { sub.unsubscribe.run(); }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        senders.shutdownNow();
+        for (Subscription sub : subscriptions) { sub.emitter.complete(); remove(sub); }
+    }
+
+    private static final class Subscription {
+        final SseEmitter emitter; final BlockingQueue<Transaction> queue;
+        // both are only kept while the replay runs, so they do not grow with the stream; guarded by this
+        private List<Transaction> held = new ArrayList<>(); private Set<String> replayedIds = new HashSet<>();
+        volatile Runnable unsubscribe; volatile boolean overflowed; volatile long lastSentAt = System.currentTimeMillis();
+        volatile Future<?> inFlight; volatile long sendingSince;
+        Subscription(SseEmitter emitter, BlockingQueue<Transaction> queue) { this.emitter = emitter; this.queue = queue; }
+        synchronized void replayed(Transaction tx) {
+            if (tx.getId() != null) replayedIds.add(tx.getId());
+            enqueue(tx);
+        }
+        synchronized void live(Transaction tx) {
+            if (held != null) held.add(tx); else enqueue(tx);
+        }
+        // anything held that the replay did not contain was written after the replay's read, so it follows in order
+        synchronized void replayDone() {
+            for (Transaction tx : held) if (tx.getId() == null || !replayedIds.contains(tx.getId())) enqueue(tx);
+            held = null; replayedIds = null;
+        }
+        private void enqueue(Transaction tx) {
+            if (!queue.offer(tx)) { overflowed = true; }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.service;
+
+import com.model.Account;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+ Which account numbers exist, kept in memory as a ScalableBloomFilter so that a lookup of a number that was never created
+ is answered "definitely absent" without a database call; "might exist" still goes to the database.
+ - built after startup on a background thread by streaming only the accountNumber field of every account; until it is
+   ready every number might exist, so behaviour is unchanged while it loads
+ - accounts created while it builds go into both the live and the new filter, so none is missed by the swap
+ - deleted numbers cannot be taken out of a Bloom filter; they only raise the false-positive rate, so after
+   `rebuild-after-deletes` deletions the filter is rebuilt from the collection
+ - with banking.cluster.enabled other nodes create accounts this node never sees, so the index stays off
+*/
+@Component
+@Profile("!simulation")
+public class AccountNumberIndex {
+    private static final Logger log = LoggerFactory.getLogger(AccountNumberIndex.class);
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled; private final long expectedAccounts; private final double fpp; private final long rebuildAfterDeletes;
+    private volatile ScalableBloomFilter filter;     // null until the first build finishes
+    private volatile ScalableBloomFilter building;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong deletes = new AtomicLong();
+    private final Counter rejected, positives, falsePositives;
+
+    public AccountNumberIndex(MongoTemplate mongoTemplate, MeterRegistry registry,
+                              @Value("${banking.account-index.enabled:true}") boolean enabled,
+                              @Value("${banking.cluster.enabled:false}") boolean clustered,
+                              @Value("${banking.account-index.expected-accounts:1000000}") long expectedAccounts,
+                              @Value("${banking.account-index.fpp:0.01}") double fpp,
+                              @Value("${banking.account-index.rebuild-after-deletes:100000}") long rebuildAfterDeletes) {
+        if (expectedAccounts <= 0 || fpp <= 0 || fpp >= 1) throw new IllegalArgumentException("banking.account-index.expected-accounts must be positive and fpp in (0, 1)");
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled && !clustered; this.expectedAccounts = expectedAccounts; this.fpp = fpp; this.rebuildAfterDeletes = rebuildAfterDeletes;
+        this.rejected = Counter.builder("banking.account-index.rejections").description("Lookups answered 'no such account' from memory").register(registry);
+        this.positives = Counter.builder("banking.account-index.positives").description("Lookups the index let through to the database").register(registry);
+        this.falsePositives = Counter.builder("banking.account-index.false-positives").description("Lookups let through for accounts that did not exist").register(registry);
+        Gauge.builder("banking.account-index.fpp", this, i -> i.filter == null ? 1.0 : i.filter.expectedFpp()).description("Expected false-positive rate at the current fill").register(registry);
+        Gauge.builder("banking.account-index.bytes", this, i -> i.filter == null ? 0 : i.filter.bits() / 8.0).baseUnit("bytes").register(registry);
+        Gauge.builder("banking.account-index.entries", this, i -> i.filter == null ? 0 : i.filter.count()).register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) rebuildInBackground();
+    }
+
+    // false means the account number was never created (or not since the last rebuild); true means ask the database
+    public boolean mightContain(String accountNumber) {
+        ScalableBloomFilter f = filter;
+        if (f == null) return true;
+        if (f.mightContain(accountNumber)) { positives.increment(); return true; }
+        rejected.increment();
+        return false;
+    }
+
+    // the same answer for a number about to be created rather than looked up, so it counts neither a rejection nor a positive
+    public boolean mightBeTaken(String accountNumber) {
+        ScalableBloomFilter f = filter;
+        return f == null || f.mightContain(accountNumber);
+    }
+
+    // the database had no such account after mightContain said it might
+    public void falsePositive() { falsePositives.increment(); }
+
+    public void added(String accountNumber) {
+        ScalableBloomFilter b = building, f = filter;
+        if (b != null) b.add(accountNumber);
+        if (f != null) f.add(accountNumber);
+    }
+
+    public void removed(String accountNumber) {
+        if (filter != null && deletes.incrementAndGet() >= rebuildAfterDeletes) rebuildInBackground();
+    }
+
+    public boolean isReady() { return filter != null; }
+
+    private void rebuildInBackground() {
+        if (!rebuilding.compareAndSet(false, true)) return;
+        Thread t = new Thread(() -> {
+            try { build(); }
+            catch (RuntimeException e) { log.warn("Account number index build failed, lookups keep going to the database", e); }
+            finally { rebuilding.set(false); }
+        }, "account-index");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // streams the numbers through a cursor, so memory stays at one batch of documents plus the filter itself
+    void build() {
+        long started = System.currentTimeMillis();
+        ScalableBloomFilter next = new ScalableBloomFilter(Math.max(expectedAccounts, filter == null ? 0 : filter.count()), fpp);
+        building = next;
+        long deletesBefore = deletes.get();
+        try {
+            Query q = new Query(); q.fields().include("accountNumber").exclude("_id"); q.cursorBatchSize(10_000);
+            try (Stream<Account> accounts = mongoTemplate.stream(q, Account.class)) {
+                accounts.forEach(a -> { if (a.getAccountNumber() != null) next.add(a.getAccountNumber()); });
+            }
+            filter = next;
+            deletes.addAndGet(-deletesBefore);
+            log.info("Account number index built with {} accounts in {} ms ({} KiB, {} layer(s))",
+                    next.count(), System.currentTimeMillis() - started, next.bits() / 8 / 1024, next.layerCount());
+        } finally {
+            building = null;
+        }
+    }
+}
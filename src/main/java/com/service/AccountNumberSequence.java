@@ -0,0 +1,80 @@
+package com.service;
+
+import com.model.Account;
+import com.model.AccountSequence;
+import org.bson.Document;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Numeric part of new account numbers, unique across every node and restart.
+ - one counter document holds the next number nobody has taken; a node takes `block-size` numbers at a time with a
+   findAndModify $inc and hands them out from memory, so the counter is written once per block, not once per account
+ - numbers of a block a node did not use before it stopped are skipped, never handed out twice
+ - the counter is created on first use above the highest number already stored, so a database that had accounts
+   before the counter existed does not hand their numbers out again
+*/
+@Component
+@Profile("!simulation")
+public class AccountNumberSequence {
+    private static final Logger log = LoggerFactory.getLogger(AccountNumberSequence.class);
+    static final String ID = "accountNumber";
+    private final MongoTemplate mongoTemplate; private final long first; private final int blockSize;
+    private long next, end;   // the block in hand is [next, end)
+    private boolean seeded;
+
+    public AccountNumberSequence(MongoTemplate mongoTemplate,
+                                 @Value("${banking.account-number.first:1000}") long first,
+                                 @Value("${banking.account-number.block-size:100}") int blockSize) {
+        if (blockSize <= 0) throw new IllegalArgumentException("banking.account-number.block-size must be positive");
+        this.mongoTemplate = mongoTemplate; this.first = first; this.blockSize = blockSize;
+    }
+
+    public synchronized long next() {
+        if (next == end) take();
+        return next++;
+    }
+
+    private void take() {
+        if (!seeded) { seed(); seeded = true; }
+        AccountSequence s = mongoTemplate.findAndModify(Query.query(where("_id").is(ID)), new Update().inc("next", blockSize),
+                FindAndModifyOptions.options().returnNew(true), AccountSequence.class);
+        if (s == null) throw new IllegalStateException("Account number sequence is missing");
+        end = s.getNext(); next = end - blockSize;
+        log.debug("Took account numbers {} to {}", next, end - 1);
+    }
+
+    // creates the counter on first use; a node racing to do the same makes the upsert fail, which leaves the counter as it is
+    private void seed() {
+        Query counter = Query.query(where("_id").is(ID));
+        if (mongoTemplate.exists(counter, AccountSequence.class)) return;
+        long start = Math.max(first, highestStored() + 1);
+        try {
+            mongoTemplate.upsert(counter, new Update().setOnInsert("next", start), AccountSequence.class);
+            log.info("Account number sequence starts at {}", start);
+        } catch (DuplicateKeyException raced) {
+            // created by the other node
+        }
+    }
+
+    // the largest numeric suffix of any stored account number, or -1; a full scan, run once when the counter is created
+    long highestStored() {
+        Document number = new Document("$regexFind", new Document("input", "$accountNumber").append("regex", "[0-9]+$"));
+        Document asLong = new Document("$convert", new Document("input", "$n.match").append("to", "long").append("onError", null).append("onNull", null));
+        Document max = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Account.class)).aggregate(List.of(
+                new Document("$project", new Document("n", number)),
+                new Document("$group", new Document("_id", null).append("max", new Document("$max", asLong))))).first();
+        return max != null && max.get("max") instanceof Number n ? n.longValue() : -1;
+    }
+}
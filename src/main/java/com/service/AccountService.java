@@ -1,4 +1,5 @@
 package com.service;
+import com.dto.AccountSearchPage;
 import com.model.Account; import com.model.Transaction;
 import jakarta.validation.constraints.NotBlank;
 
@@ -12,4 +13,7 @@ public interface AccountService {
     Transaction withdraw(String accountNumber, long amount);
     Transaction transfer(String fromAccountNumber, String toAccountNumber, long amount);
     List<Transaction> getTransactions(String accountNumber);
+    // legs committed after the given commit sequence number (Transaction.seq), in commit order
+    List<Transaction> getTransactionsSince(String accountNumber, long afterSeq);
+    AccountSearchPage searchByHolderPrefix(String holderPrefix, int limit, String after);
 }
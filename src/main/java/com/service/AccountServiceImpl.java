@@ -1,18 +1,25 @@
 package com.service;
-import com.exception.AccountNotFoundException; import com.exception.InsufficientBalanceException;
-import com.model.Account; import com.model.Transaction; import com.repository.AccountRepository; import com.repository.TransactionRepository;
+import com.config.MongoIndexInitializer;
+import com.dto.AccountSearchPage; import com.dto.AccountSummary;
+import com.exception.AccountNotFoundException; import com.exception.InsufficientBalanceException; import com.exception.UnknownAccountException;
+import com.model.Account; import com.model.OutboxEntry; import com.model.Transaction; import com.repository.AccountRepository; import com.repository.TransactionRepository;
 import jakarta.validation.Valid;
-import org.slf4j.Logger; import org.slf4j.LoggerFactory; import org.springframework.stereotype.Service; import org.springframework.validation.annotation.Validated;
-import jakarta.validation.constraints.NotBlank; import java.time.Instant; import java.util.List;import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory; import org.springframework.context.annotation.Profile; import org.springframework.dao.DuplicateKeyException; import org.springframework.stereotype.Service; import org.springframework.validation.annotation.Validated;
+import jakarta.validation.constraints.NotBlank; import java.time.Instant; import java.util.ArrayList; import java.util.List;
 
 
 @Service
+@Profile("!simulation")
 @Validated
 public class AccountServiceImpl implements AccountService {
     private static final Logger log = LoggerFactory.getLogger(AccountServiceImpl.class);
-    private final AccountRepository accountRepository; private final TransactionRepository transactionRepository; private static final AtomicLong sequence = new AtomicLong(1000);
-    public AccountServiceImpl(AccountRepository accountRepository, TransactionRepository transactionRepository) {
-        this.accountRepository = accountRepository; this.transactionRepository = transactionRepository;
+    private final AccountRepository accountRepository; private final TransactionRepository transactionRepository;
+    static final int MAX_SEARCH_LIMIT = 100, MAX_CREATE_ATTEMPTS = 5;
+    private final OutboxDispatcher outbox; private final PartitionOwnership ownership; private final VelocityLimiter limits; private final AccountNumberIndex index;
+    private final AccountNumberSequence numbers; private final MongoIndexInitializer indexes;
+    public AccountServiceImpl(AccountRepository accountRepository, TransactionRepository transactionRepository, OutboxDispatcher outbox, PartitionOwnership ownership, VelocityLimiter limits, AccountNumberIndex index, AccountNumberSequence numbers, MongoIndexInitializer indexes) {
+        this.accountRepository = accountRepository; this.transactionRepository = transactionRepository; this.outbox = outbox; this.ownership = ownership; this.limits = limits; this.index = index;
+        this.numbers = numbers; this.indexes = indexes;
     }
 
     @Override
@@ -21,7 +28,7 @@ public class AccountServiceImpl implements AccountService {
         if (holderName == null) {
             throw new IllegalArgumentException("Account holder name must not be null");
         }
-        String normalizedForPrefix = holderName.trim().replaceAll("\\s+", " ");
+        String normalizedForPrefix = HolderNames.normalize(holderName);
         if (normalizedForPrefix.isEmpty()) {
             throw new IllegalArgumentException("Account holder name must not be blank");
         }
@@ -29,32 +36,71 @@ public class AccountServiceImpl implements AccountService {
         // compute uppercase 3-letter prefix from the holder name
         String prefix = normalizedForPrefix.toUpperCase().substring(0, Math.min(3, normalizedForPrefix.length()));
 
-        // generate a unique account number using an atomic sequence.
-        // also guard against (very unlikely) collision by checking repository.
-        String accountNumber;
-        do {
-            long seq = sequence.getAndIncrement();        // thread-safe increment
-            accountNumber = prefix + seq;                // e.g., RA1000, RA1001, ...
-            // if repository already has this accountNumber loop and try next.
-        } while (accountRepository.findByAccountNumber(accountNumber).isPresent());
-
-        Account acc = new Account(accountNumber, holderName.trim(), 0L);
-        Account saved = accountRepository.save(acc);
-        log.info("Created account {}", saved.getAccountNumber());
-        return saved;
+        // the unique accountNumber index is what catches a number taken twice, so nothing is created before it exists
+        indexes.requireReady("Account creation");
+
+        // generate a unique account number from the shared sequence; no other node or restart hands out the same one.
+        // also guard against numbers created before the sequence existed by checking repository.
+        for (int attempt = 1; ; attempt++) {
+            String accountNumber;
+            do {
+                accountNumber = prefix + numbers.next();   // e.g., RA1000, RA1001, ...
+                // if repository already has this accountNumber loop and try next.
+                // I am asking the index first: a number it has never seen is free, so the usual case costs no query.
+            } while (index.mightBeTaken(accountNumber) && accountRepository.existsByAccountNumber(accountNumber));
+
+            Account acc = new Account(accountNumber, holderName.trim(), 0L);
+            acc.setHolderNameKey(HolderNames.key(normalizedForPrefix));
+            try {
+                Account saved = accountRepository.save(acc);
+                index.added(saved.getAccountNumber());
+                log.info("Created account {}", saved.getAccountNumber());
+                return saved;
+            } catch (DuplicateKeyException raced) {
+                // an older number was created between the check and the insert; the unique index caught it
+                if (attempt == MAX_CREATE_ATTEMPTS) throw new IllegalStateException("Could not find a free account number for prefix " + prefix, raced);
+            }
+        }
 }
 
 @Override
 public Account getByAccountNumber(String accountNumber) {
-    return accountRepository.findByAccountNumber(accountNumber).orElseThrow(() -> new AccountNotFoundException("No account: " + accountNumber));
+    return accountRepository.findWithoutOutboxByAccountNumber(known(accountNumber)).orElseThrow(() -> notFound(accountNumber));
 }
 
+    // numbers the index has never seen are rejected here, before any query
+    private String known(String accountNumber) {
+        if (!index.mightContain(accountNumber)) throw new UnknownAccountException(accountNumber);
+        return accountNumber;
+    }
+
+    private AccountNotFoundException notFound(String accountNumber) {
+        if (index.isReady()) index.falsePositive();
+        return new AccountNotFoundException("No account: " + accountNumber);
+    }
+
 @Override
 public void deleteByAccountNumber(String accountNumber) {
-    Account acc = accountRepository.findByAccountNumber(accountNumber).orElseThrow(() -> new AccountNotFoundException("No account: " + accountNumber));
-            List<Transaction> txs = transactionRepository.findByAccountId(acc.getId());
-    if (!txs.isEmpty()) { transactionRepository.deleteAll(txs); }
-    accountRepository.deleteByAccountNumber(accountNumber);
+    // I am deleting under the owner's lock, like every other mutation, so that no deposit or transfer is half-way through it
+    ownership.execute(accountNumber, () -> {
+        Account acc = accountRepository.findWithoutOutboxByAccountNumber(known(accountNumber)).orElseThrow(() -> notFound(accountNumber));
+        // I am refusing while legs are still in the outbox, because they would be deleted with the document and never written
+        if (acc.getOutboxSince() != null) throw new IllegalStateException("Account " + accountNumber + " has movements still being recorded; try again shortly");
+        List<Transaction> txs = transactionRepository.findByAccountId(acc.getId());
+        // legs of a journal are moved to SYSTEM:SUSPENSE instead of deleted, so that the counterparty's legs stay balanced
+        // and whatever the account still held shows up there; rows from before journals have no counterparty and go
+        List<Transaction> legacy = new ArrayList<>(), legs = new ArrayList<>();
+        for (Transaction t : txs) (t.getJournalId() == null ? legacy : legs).add(t);
+        if (!legacy.isEmpty()) { transactionRepository.deleteAll(legacy); }
+        if (!legs.isEmpty()) {
+            for (Transaction t : legs) { t.setAccountId(Journal.SUSPENSE); t.setNote(t.getNote() + " (account " + accountNumber + " deleted)"); }
+            transactionRepository.saveAll(legs);
+        }
+        accountRepository.deleteByAccountNumber(accountNumber);
+        return acc;
+    });
+    limits.forget(accountNumber);
+    index.removed(accountNumber);
     log.info("Deleted account {}", accountNumber);
 }
     private void ensureActive(Account acc) {
@@ -66,57 +112,125 @@ public void deleteByAccountNumber(String accountNumber) {
 @Override
 public Transaction deposit(String accountNumber, long amount) {
     if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
-    Account acc = getByAccountNumber(accountNumber);
-    ensureActive(acc);
-    synchronized (acc) { acc.setBalance(acc.getBalance() + amount); accountRepository.save(acc); }
-    Transaction tx = new Transaction(acc.getId(), "DEPOSIT", amount, Instant.now(), "deposit");
-            Transaction saved = transactionRepository.save(tx);
-    acc.addTransaction(saved); accountRepository.save(acc);
-    log.info("Deposited {} to account {}", amount, accountNumber);
-    return saved;
+    return ownership.execute(accountNumber, () -> {
+        Account acc = getByAccountNumber(accountNumber);
+        ensureActive(acc);
+        Instant now = Instant.now();
+        List<Transaction> legs = Journal.legs("DEPOSIT", amount, now, Journal.CASH, "deposit to " + accountNumber, acc.getId(), "deposit");
+        credit(acc, amount, new OutboxEntry(legs, null, now));
+        outbox.hint(acc.getId(), acc.getAccountNumber());
+        return legs.get(1);
+    });
 }
 
 @Override
 public Transaction withdraw( String accountNumber, long amount) {
     if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
-    Account acc = getByAccountNumber(accountNumber);
-    ensureActive(acc);
-    synchronized (acc) {
-        if (acc.getBalance() < amount) { throw new InsufficientBalanceException("Insufficient balance for " + accountNumber); }
-                acc.setBalance(acc.getBalance() - amount); accountRepository.save(acc);
-        }
-        Transaction tx = new Transaction(acc.getId(), "WITHDRAW", amount, Instant.now(), "withdraw");
-                Transaction saved = transactionRepository.save(tx); acc.addTransaction(saved); accountRepository.save(acc);
-        log.info("Withdrew {} from account {}", amount, accountNumber);
-        return saved;
+    return ownership.execute(accountNumber, () -> {
+        Account acc = getByAccountNumber(accountNumber);
+        ensureActive(acc);
+        Instant now = Instant.now();
+        limits.check(acc, "WITHDRAW", amount, now.toEpochMilli());
+        List<Transaction> legs = Journal.legs("WITHDRAW", amount, now, acc.getId(), "withdraw", Journal.CASH, "withdrawal from " + accountNumber);
+        debit(acc, amount, new OutboxEntry(legs, null, now));
+        limits.record(acc, "WITHDRAW", amount, now.toEpochMilli());
+        outbox.hint(acc.getId(), acc.getAccountNumber());
+        return legs.get(0);
+    });
     }
 
+    // I am serialising on the source account only: the credit is a plain $inc, which is safe from any node in any order.
+    // Each side commits its balance change together with its own outbox entry; the payer's entry also carries the credit leg,
+    // so that the dispatcher can finish the credit if this thread dies between the two writes.
     @Override
     public Transaction transfer(String fromAccountNumber, String toAccountNumber, long amount) {
         if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
         if (fromAccountNumber.equals(toAccountNumber)) throw new IllegalArgumentException("Same account");
-        Account from = getByAccountNumber(fromAccountNumber); ensureActive(from);
-        Account to = getByAccountNumber(toAccountNumber);ensureActive(to);
-        Object firstLock = from.getAccountNumber().compareTo(to.getAccountNumber()) < 0 ? from : to;
-        Object secondLock = firstLock == from ? to : from;
-        synchronized (firstLock) {
-            synchronized (secondLock) {
-                if (from.getBalance() < amount) { throw new InsufficientBalanceException("Insufficient from " + fromAccountNumber); }
-                        from.setBalance(from.getBalance() - amount); to.setBalance(to.getBalance() + amount);
-                    accountRepository.save(from); accountRepository.save(to);
-                }
+        return ownership.execute(fromAccountNumber, () -> {
+            Account from = getByAccountNumber(fromAccountNumber); ensureActive(from);
+            Account to = getByAccountNumber(toAccountNumber);ensureActive(to);
+            Instant now = Instant.now();
+            // velocity limits are answered from memory before anything is written
+            limits.check(from, "TRANSFER", amount, now.toEpochMilli());
+            List<Transaction> legs = Journal.legs("TRANSFER", amount, now, from.getId(), "transfer to " + toAccountNumber, to.getId(), "transfer from " + fromAccountNumber);
+            for (Transaction leg : legs) { leg.setSourceAccountNumber(fromAccountNumber); leg.setDestinationAccountNumber(toAccountNumber); }
+            debit(from, amount, new OutboxEntry(List.of(legs.get(0)), legs.get(1), now));
+            // the receiver belongs to another partition and may have been closed or deleted since it was read
+            if (!tryCredit(to, amount, new OutboxEntry(List.of(legs.get(1)), null, now))) {
+                reverse(from, legs, now);
+                outbox.hint(from.getId(), from.getAccountNumber());
+                throw new IllegalStateException("Account " + toAccountNumber + " was closed during the transfer; it has been reversed");
             }
-        Transaction tx = new Transaction(from.getId(), "TRANSFER", amount, Instant.now(), "transfer to " + toAccountNumber, fromAccountNumber, toAccountNumber);
-                    Transaction saved = transactionRepository.save(tx); from.addTransaction(saved); accountRepository.save(from);
-            log.info("Transferred {} from {} to {}", amount, fromAccountNumber, toAccountNumber);
-            return saved;
+            limits.record(from, "TRANSFER", amount, now.toEpochMilli());
+            outbox.hint(to.getId(), to.getAccountNumber()); outbox.hint(from.getId(), from.getAccountNumber());
+            return legs.get(0);
+        });
+        }
+
+    // false only when the receiver can't take the credit. A writer slower than the credit deadline leaves the credit
+    // to the outbox recovery instead, which is what keeps the two from both paying
+    private boolean tryCredit(Account acc, long amount, OutboxEntry entry) {
+        if (accountRepository.creditBefore(acc.getId(), amount, entry.getCreatedAt(), entry, outbox.creditDeadline(entry.getCreatedAt()))) {
+            acc.setBalance(acc.getBalance() + amount); acc.setLastActivityAt(entry.getCreatedAt()); acc.setDormant(false);
+            return true;
+        }
+        if (!accountRepository.canTakeCredits(acc.getId())) return false;
+        log.warn("Credit of journal {} to {} missed its deadline; the outbox recovery will apply it", entry.getJournalId(), acc.getAccountNumber());
+        return true;
+    }
+
+    // the transfer's credit goes to SYSTEM:SUSPENSE and a second journal pays it back from there, so both journals balance
+    // and the payer's history shows the reversal; one write, so the payer is never left debited
+    private void reverse(Account from, List<Transaction> transfer, Instant at) {
+        Transaction credit = transfer.get(1);
+        List<Transaction> back = Journal.legs(Journal.TRANSFER_REVERSAL, credit.getAmount(), at, Journal.SUSPENSE,
+                Journal.REVERSAL_OF + credit.getJournalId(), from.getId(), "reversed: " + transfer.get(0).getNote());
+        List<Transaction> legs = new ArrayList<>(back); legs.add(Journal.suspended(credit));
+        credit(from, credit.getAmount(), new OutboxEntry(legs, null, at));
+        log.warn("Reversed transfer {} of {} from {}: receiver {} is closed or deleted", credit.getJournalId(), credit.getAmount(),
+                from.getAccountNumber(), credit.getDestinationAccountNumber());
+    }
+
+    // the ledger rows, account references, rollups, events and audit log follow from the outbox entry; see OutboxDispatcher
+    private void credit(Account acc, long amount, OutboxEntry entry) {
+        if (!accountRepository.adjustBalance(acc.getId(), amount, entry.getCreatedAt(), entry)) {
+            throw new IllegalStateException("Account " + acc.getAccountNumber() + " is not active");
         }
+        acc.setBalance(acc.getBalance() + amount); acc.setLastActivityAt(entry.getCreatedAt()); acc.setDormant(false);
+    }
+
+    // the in-memory check fails fast; the conditional update is what actually keeps the stored balance from going negative
+    private void debit(Account acc, long amount, OutboxEntry entry) {
+        if (acc.getBalance() < amount || !accountRepository.adjustBalance(acc.getId(), -amount, entry.getCreatedAt(), entry)) {
+            throw new InsufficientBalanceException("Insufficient balance for " + acc.getAccountNumber());
+        }
+        acc.setBalance(acc.getBalance() - amount); acc.setLastActivityAt(entry.getCreatedAt()); acc.setDormant(false);
+    }
 
         @Override
         public List<Transaction> getTransactions(String accountNumber) {
             Account acc = getByAccountNumber(accountNumber);
-            return transactionRepository.findByAccountId(acc.getId());
+            return transactionRepository.findByAccountIdOrderByIdAsc(acc.getId());
+        }
+
+        @Override
+        public List<Transaction> getTransactionsSince(String accountNumber, long afterSeq) {
+            Account acc = getByAccountNumber(accountNumber);
+            return transactionRepository.findByAccountIdAndSeqGreaterThanOrderBySeqAsc(acc.getId(), afterSeq);
         }
+    @Override
+    public AccountSearchPage searchByHolderPrefix(String holderPrefix, int limit, String after) {
+        if (holderPrefix == null || holderPrefix.isBlank()) throw new IllegalArgumentException("Holder prefix must not be blank");
+        if (limit <= 0 || limit > MAX_SEARCH_LIMIT) throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SEARCH_LIMIT);
+        String[] cursor = after == null || after.isBlank() ? new String[]{null, null} : HolderNames.parseCursor(after);
+        // I am fetching one extra row so that I know whether there is a next page without a count query
+        List<AccountSummary> rows = accountRepository.searchByHolderNameKeyPrefix(HolderNames.key(holderPrefix), cursor[0], cursor[1], limit + 1);
+        if (rows.size() <= limit) return new AccountSearchPage(rows, null);
+        List<AccountSummary> page = rows.subList(0, limit);
+        AccountSummary last = page.get(limit - 1);
+        return new AccountSearchPage(List.copyOf(page), HolderNames.cursor(HolderNames.key(last.getAccountHolderName()), last.getAccountNumber()));
+    }
+
     @Override
     public Account closeAccount(String accountNumber) {
         // I am reusing existing method so that AccountNotFoundException logic stays in one place.
@@ -128,8 +242,14 @@ public Transaction withdraw( String accountNumber, long amount) {
         }
 
         // I am marking the status as INACTIVE instead of deleting it so that history is preserved.
-        acc.setStatus("INACTIVE");
-        Account saved = accountRepository.save(acc);
+        // The update only matches while the balance is still zero, so a credit arriving from another node is not lost.
+        Account saved = ownership.execute(accountNumber, () -> {
+            if (!accountRepository.closeIfEmpty(acc.getId())) {
+                throw new IllegalStateException("Cannot close account with non-zero balance: " + accountNumber);
+            }
+            acc.setStatus("INACTIVE");
+            return acc;
+        });
         log.info("Closed account {} by setting status INACTIVE", accountNumber);
         return saved;
     }
@@ -0,0 +1,341 @@
+package com.service;
+
+import com.config.MongoIndexInitializer;
+import com.dto.EodRunStatus;
+import com.model.Account; import com.model.EodCheckpoint; import com.model.EodRunLease; import com.model.OutboxEntry; import com.model.Transaction;
+import io.micrometer.core.instrument.Counter; import io.micrometer.core.instrument.MeterRegistry; import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ End-of-day processing over every ACTIVE account: interest accrual, maintenance fee and dormant flagging.
+ - the account keyspace is cut into _id ranges (IdRangePartitioner) and the ranges are processed in parallel
+ - each page of accounts becomes one unordered bulk of conditional $inc updates, each carrying that account's legs in its
+   outbox (see OutboxDispatcher), so interest and fees reach the ledger, rollups and event stream the same way as any
+   other balance change
+ - every partition checkpoints the last _id it finished, so re-running the same business date resumes a crashed run
+ - a business date is run by one node at a time: the run holds an EodRunLease for the date, renewed while it works, so a
+   second start on any node is refused instead of overwriting the first run's checkpoints; a run that cannot renew stops,
+   and a crashed node's lease runs out after `lease-ms` so that the date can be resumed elsewhere
+ Re-running is idempotent: journals get ids derived from (date, account, type), so the unique (journalId, direction) index
+ rejects a second copy, and the balance update only matches accounts whose lastEodDate is not yet this date. The legs
+ themselves get fresh ObjectIds, so _id order stays creation order for history, event resume and export.
+ The run does not own the accounts, so a fee is only taken while the balance still covers it: accounts with a fee are
+ updated one by one with the same conditional update, and re-planned from a fresh read when their owner debited them
+ since the page was read.
+*/
+@Service
+@Profile("!simulation")
+public class EndOfDayService {
+    private static final Logger log = LoggerFactory.getLogger(EndOfDayService.class);
+    static final int FEE_ATTEMPTS = 10;
+    private static final String[] PLAN_FIELDS = {"accountNumber", "balance", "status", "createdAt", "lastActivityAt", "lastEodDate", "dormant"};
+    private final MongoTemplate mongoTemplate; private final MongoIndexInitializer indexes;
+    private final int workers; private final int partitions; private final int pageSize; private final long leaseMillis;
+    private final long interestRateBps; private final long maintenanceFee; private final long minimumBalance; private final int dormantDays;
+    private final Counter accountsCounter, interestCounter, feesCounter, dormantCounter; private final Timer partitionTimer;
+    private final AtomicInteger partitionsRemaining = new AtomicInteger();
+    private final Map<String, Progress> runs = new ConcurrentHashMap<>();
+    private final AtomicReference<String> running = new AtomicReference<>();
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(r -> new Thread(r, "eod-coordinator"));
+
+    public EndOfDayService(MongoTemplate mongoTemplate, MongoIndexInitializer indexes, MeterRegistry registry,
+                           @Value("${banking.eod.workers:4}") int workers,
+                           @Value("${banking.eod.partitions:16}") int partitions,
+                           @Value("${banking.eod.page-size:500}") int pageSize,
+                           @Value("${banking.eod.interest-rate-bps:350}") long interestRateBps,
+                           @Value("${banking.eod.maintenance-fee:0}") long maintenanceFee,
+                           @Value("${banking.eod.minimum-balance:0}") long minimumBalance,
+                           @Value("${banking.eod.dormant-days:365}") int dormantDays,
+                           @Value("${banking.eod.lease-ms:60000}") long leaseMillis) {
+        this.mongoTemplate = mongoTemplate; this.indexes = indexes; this.workers = workers; this.partitions = partitions; this.pageSize = pageSize;
+        this.leaseMillis = leaseMillis;
+        this.interestRateBps = interestRateBps; this.maintenanceFee = maintenanceFee; this.minimumBalance = minimumBalance; this.dormantDays = dormantDays;
+        this.accountsCounter = registry.counter("banking.eod.accounts.processed");
+        this.interestCounter = registry.counter("banking.eod.interest.posted");
+        this.feesCounter = registry.counter("banking.eod.fees.charged");
+        this.dormantCounter = registry.counter("banking.eod.dormant.flagged");
+        this.partitionTimer = registry.timer("banking.eod.partition.duration");
+        registry.gauge("banking.eod.partitions.remaining", partitionsRemaining);
+    }
+
+    public EodRunStatus start(LocalDate businessDate) {
+        String date = businessDate.toString();
+        // a re-run relies on the unique (journalId, direction) index to refuse a second copy of each day's journals
+        indexes.requireReady("End-of-day");
+        if (!running.compareAndSet(null, date)) { throw new IllegalStateException("End-of-day run for " + running.get() + " is still in progress"); }
+        Progress p = new Progress(date);
+        p.lease = UUID.randomUUID().toString();
+        try {
+            if (!acquire(date, p.lease)) throw new IllegalStateException("End-of-day run for " + date + " is in progress on another node");
+        } catch (RuntimeException e) { running.set(null); throw e; }
+        runs.put(date, p);
+        coordinator.execute(() -> {
+            try { run(date, p); }
+            catch (RuntimeException e) { p.state = "FAILED"; p.error = e.getMessage(); log.error("End-of-day run {} failed", date, e); }
+            finally { p.finishedAt = Instant.now(); release(date, p.lease); running.set(null); }
+        });
+        return p.toStatus();
+    }
+
+    // in-memory progress for runs started by this instance, otherwise rebuilt from the checkpoints
+    public EodRunStatus status(LocalDate businessDate) {
+        String date = businessDate.toString();
+        Progress p = runs.get(date);
+        if (p != null) return p.toStatus();
+        List<EodCheckpoint> cps = mongoTemplate.find(Query.query(where("businessDate").is(date)), EodCheckpoint.class);
+        if (cps.isEmpty()) return null;
+        EodRunStatus s = new EodRunStatus();
+        s.setBusinessDate(date); s.setPartitions(cps.size());
+        s.setPartitionsDone((int) cps.stream().filter(EodCheckpoint::isDone).count());
+        s.setAccountsProcessed(cps.stream().mapToLong(EodCheckpoint::getAccountsProcessed).sum());
+        s.setState(s.getPartitionsDone() == s.getPartitions() ? "COMPLETED" : "INCOMPLETE");
+        return s;
+    }
+
+    void run(String date, Progress p) {
+        List<EodCheckpoint> cps = loadOrCreatePartitions(date);
+        p.partitions = cps.size();
+        List<EodCheckpoint> pending = cps.stream().filter(cp -> !cp.isDone()).toList();
+        p.partitionsDone.set(cps.size() - pending.size());
+        partitionsRemaining.set(pending.size());
+        log.info("End-of-day {}: {} partitions, {} to process with {} workers", date, cps.size(), pending.size(), workers);
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> new Thread(r, "eod-worker"));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (EodCheckpoint cp : pending) {
+                futures.add(pool.submit(() -> partitionTimer.record(() -> {
+                    processPartition(date, cp, p);
+                    p.partitionsDone.incrementAndGet(); partitionsRemaining.decrementAndGet();
+                })));
+            }
+            // the coordinator renews the lease while it waits; without it another node could resume the date alongside
+            for (Future<?> f : futures) {
+                while (true) {
+                    try { f.get(leaseMillis / 3, TimeUnit.MILLISECONDS); break; }
+                    catch (TimeoutException stillRunning) {
+                        if (renew(date, p.lease)) continue;
+                        futures.forEach(x -> x.cancel(true));
+                        throw new IllegalStateException("End-of-day run for " + date + " lost its lease");
+                    }
+                }
+            }
+            p.state = "COMPLETED";
+            log.info("End-of-day {} completed: {} accounts", date, p.accounts.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("End-of-day run interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } finally { pool.shutdownNow(); }
+    }
+
+    // an expired lease or none at all; a lease that is still held makes the upsert collide on _id
+    boolean acquire(String date, String lease) {
+        Instant now = Instant.now();
+        Query q = Query.query(where("_id").is(date).orOperator(where("expiresAt").lte(now), where("owner").isNull()));
+        try {
+            EodRunLease l = mongoTemplate.findAndModify(q, new Update().set("owner", lease).set("expiresAt", now.plusMillis(leaseMillis)),
+                    FindAndModifyOptions.options().returnNew(true).upsert(true), EodRunLease.class);
+            return l != null && lease.equals(l.getOwner());
+        } catch (DuplicateKeyException held) {
+            return false;
+        }
+    }
+
+    private boolean renew(String date, String lease) {
+        return mongoTemplate.updateFirst(Query.query(where("_id").is(date).and("owner").is(lease)),
+                new Update().set("expiresAt", Instant.now().plusMillis(leaseMillis)), EodRunLease.class).getMatchedCount() > 0;
+    }
+
+    private void release(String date, String lease) {
+        try {
+            mongoTemplate.updateFirst(Query.query(where("_id").is(date).and("owner").is(lease)), new Update().set("expiresAt", Instant.EPOCH), EodRunLease.class);
+        } catch (RuntimeException e) {
+            log.warn("Could not release the end-of-day lease for {}, it expires on its own: {}", date, e.getMessage());
+        }
+    }
+
+    List<EodCheckpoint> loadOrCreatePartitions(String date) {
+        List<EodCheckpoint> existing = mongoTemplate.find(Query.query(where("businessDate").is(date)).with(Sort.by("partition")), EodCheckpoint.class);
+        if (!existing.isEmpty()) return existing;
+        List<EodCheckpoint> cps = new ArrayList<>();
+        for (String[] r : IdRangePartitioner.ranges(mongoTemplate, Account.class, partitions)) { cps.add(new EodCheckpoint(date, cps.size(), r[0], r[1])); }
+        mongoTemplate.insertAll(cps);
+        return cps;
+    }
+
+    void processPartition(String date, EodCheckpoint cp, Progress p) {
+        LocalDate businessDate = LocalDate.parse(date);
+        while (true) {
+            String after = cp.getLastId() != null ? cp.getLastId() : cp.getLowerIdExclusive();
+            Query q = IdRangePartitioner.page(after, cp.getUpperIdInclusive(), pageSize);
+            q.fields().include(PLAN_FIELDS);
+            List<Account> page = mongoTemplate.find(q, Account.class);
+            if (page.isEmpty()) break;
+            applyPage(date, businessDate, page, p);
+            cp.setLastId(page.get(page.size() - 1).getId());
+            cp.setAccountsProcessed(cp.getAccountsProcessed() + page.size());
+            cp.setUpdatedAt(Instant.now());
+            mongoTemplate.save(cp);
+            p.accounts.addAndGet(page.size()); accountsCounter.increment(page.size());
+            if (page.size() < pageSize) break;
+        }
+        cp.setDone(true); cp.setUpdatedAt(Instant.now());
+        mongoTemplate.save(cp);
+    }
+
+    private void applyPage(String date, LocalDate businessDate, List<Account> page, Progress p) {
+        Map<String, Plan> plans = new LinkedHashMap<>();
+        Instant now = Instant.now();
+        for (Account acc : page) {
+            if (!"ACTIVE".equalsIgnoreCase(acc.getStatus()) || date.equals(acc.getLastEodDate())) continue;
+            Plan plan = plan(acc, businessDate);
+            if (plan.fee > 0) { chargeFee(date, businessDate, acc, plan, now, p); continue; }
+            plans.put(acc.getId(), plan);
+        }
+        if (plans.isEmpty()) return;
+        // without a fee the balance condition always holds, so a miss is an account closed or already done for this date
+        // and there is nothing to re-plan
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Account.class);
+        for (Map.Entry<String, Plan> e : plans.entrySet()) {
+            ops.updateOne(dayFilter(date, e.getKey(), e.getValue()), dayUpdate(date, e.getKey(), e.getValue(), now));
+            count(e.getValue(), p);
+        }
+        ops.execute();
+    }
+
+    // interest only ever adds, but a fee planned from the page's balance can overdraw an account its owner debited since.
+    // The day's change is one update that only matches while the balance covers it and carries the legs in the outbox,
+    // so the ledger can't lose them or disagree with the balance; a miss reads the account again and re-plans.
+    private void chargeFee(String date, LocalDate businessDate, Account acc, Plan plan, Instant now, Progress p) {
+        for (int attempt = 1; ; attempt++) {
+            if (mongoTemplate.updateFirst(dayFilter(date, acc.getId(), plan), dayUpdate(date, acc.getId(), plan, now), Account.class).getMatchedCount() > 0) {
+                count(plan, p); return;
+            }
+            // the checkpoint has not passed this page yet, so a failed run resumes with this account
+            if (attempt == FEE_ATTEMPTS) throw new IllegalStateException("Account " + acc.getAccountNumber() + " kept changing during end-of-day " + date);
+            Query fresh = Query.query(where("_id").is(acc.getId()));
+            fresh.fields().include(PLAN_FIELDS);
+            acc = mongoTemplate.findOne(fresh, Account.class);
+            if (acc == null || !"ACTIVE".equalsIgnoreCase(acc.getStatus()) || date.equals(acc.getLastEodDate())) return;
+            plan = plan(acc, businessDate);
+        }
+    }
+
+    private static Query dayFilter(String date, String accountId, Plan plan) {
+        return Query.query(where("_id").is(accountId).and("lastEodDate").ne(date).and("status").ne("INACTIVE")
+                .and("balance").gte(plan.fee - plan.interest));
+    }
+
+    private static Update dayUpdate(String date, String accountId, Plan plan, Instant now) {
+        List<Transaction> legs = new ArrayList<>();
+        if (plan.interest > 0) legs.addAll(legs(date, accountId, "INTEREST", plan.interest, now, "interest for " + date));
+        if (plan.fee > 0) legs.addAll(legs(date, accountId, "FEE", plan.fee, now, "maintenance fee for " + date));
+        Update u = new Update().inc("balance", plan.interest - plan.fee).set("lastEodDate", date).set("dormant", plan.dormant);
+        if (!legs.isEmpty()) u.push("outbox", new OutboxEntry(legs, null, now)).min("outboxSince", now);
+        return u;
+    }
+
+    private void count(Plan plan, Progress p) {
+        p.interest.addAndGet(plan.interest); p.fees.addAndGet(plan.fee);
+        interestCounter.increment(plan.interest); feesCounter.increment(plan.fee);
+        if (plan.dormant) { p.dormant.incrementAndGet(); dormantCounter.increment(); }
+    }
+
+    Plan plan(Account acc, LocalDate businessDate) {
+        Plan plan = new Plan();
+        long balance = acc.getBalance();
+        plan.interest = dailyInterest(balance, interestRateBps);
+        if (maintenanceFee > 0 && balance < minimumBalance) { plan.fee = Math.max(0, Math.min(maintenanceFee, balance + plan.interest)); }
+        Instant lastActivity = acc.getLastActivityAt() != null ? acc.getLastActivityAt()
+                : acc.getCreatedAt() != null ? acc.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant() : null;
+        plan.dormant = lastActivity != null && lastActivity.isBefore(businessDate.minusDays(dormantDays).atStartOfDay(ZoneOffset.UTC).toInstant());
+        return plan;
+    }
+
+    // balance * bps / (10000 * 365), floored, without overflowing for large balances
+    static long dailyInterest(long balance, long annualRateBps) {
+        if (balance <= 0 || annualRateBps <= 0) return 0;
+        long d = 10_000L * 365;
+        return (balance / d) * annualRateBps + (balance % d) * annualRateBps / d;
+    }
+
+    // deterministic ObjectId: seconds of the business date + 8 bytes of SHA-256(accountId:type). Only journals use it;
+    // as a leg id its midnight timestamp would put the leg out of _id order
+    static String journalId(String date, String accountId, String type) {
+        try {
+            byte[] h = MessageDigest.getInstance("SHA-256").digest((accountId + ":" + type).getBytes(StandardCharsets.UTF_8));
+            ByteBuffer b = ByteBuffer.allocate(12);
+            b.putInt((int) LocalDate.parse(date).atStartOfDay(ZoneOffset.UTC).toEpochSecond()).put(h, 0, 8);
+            return new ObjectId(b.array()).toHexString();
+        } catch (NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+    }
+
+    // interest is paid from SYSTEM:INTEREST, fees go to SYSTEM:FEES; the journal id is deterministic so a re-run hits duplicates
+    static List<Transaction> legs(String date, String accountId, String type, long amount, Instant ts, String note) {
+        String journal = journalId(date, accountId, type);
+        return "INTEREST".equals(type)
+                ? Journal.legs(journal, type, amount, ts, Journal.INTEREST, note, accountId, note)
+                : Journal.legs(journal, type, amount, ts, accountId, note, Journal.FEES, note);
+    }
+
+    @PreDestroy
+    public void shutdown() { coordinator.shutdownNow(); }
+
+    static final class Plan { long interest; long fee; boolean dormant; }
+
+    static final class Progress {
+        final String date; final Instant startedAt = Instant.now(); volatile Instant finishedAt;
+        volatile String state = "RUNNING"; volatile String error; volatile int partitions; volatile String lease;
+        final AtomicInteger partitionsDone = new AtomicInteger();
+        final AtomicLong accounts = new AtomicLong(), interest = new AtomicLong(), fees = new AtomicLong(), dormant = new AtomicLong();
+        Progress(String date) { this.date = date; }
+        EodRunStatus toStatus() {
+            EodRunStatus s = new EodRunStatus();
+            s.setBusinessDate(date); s.setState(state); s.setError(error); s.setPartitions(partitions); s.setPartitionsDone(partitionsDone.get());
+            s.setAccountsProcessed(accounts.get()); s.setInterestPosted(interest.get()); s.setFeesCharged(fees.get()); s.setDormantFlagged(dormant.get());
+            s.setStartedAt(startedAt); s.setFinishedAt(finishedAt);
+            long millis = ((finishedAt != null ? finishedAt : Instant.now()).toEpochMilli() - startedAt.toEpochMilli());
+            s.setAccountsPerSecond(millis <= 0 ? 0 : accounts.get() * 1000.0 / millis);
+            return s;
+        }
+    }
+}
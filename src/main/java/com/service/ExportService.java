@@ -0,0 +1,113 @@
+package com.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.model.Account; import com.model.Transaction;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ Streams accounts / ledger entries from a Mongo cursor straight into the response, in _id order, as CSV or NDJSON.
+ Only one cursor batch is in memory at a time, so memory stays flat however big the collection is.
+ Every row starts with its _id; a broken export is resumed by passing the last id received as afterId.
+*/
+@Service
+@Profile("!simulation")
+public class ExportService {
+    public static final int MAX_BATCH_SIZE = 10_000;
+    private static final Map<String, Function<Account, Object>> ACCOUNT_COLUMNS = new LinkedHashMap<>();
+    private static final Map<String, Function<Transaction, Object>> TRANSACTION_COLUMNS = new LinkedHashMap<>();
+    static {
+        ACCOUNT_COLUMNS.put("id", Account::getId); ACCOUNT_COLUMNS.put("accountNumber", Account::getAccountNumber);
+        ACCOUNT_COLUMNS.put("accountHolderName", Account::getAccountHolderName); ACCOUNT_COLUMNS.put("status", Account::getStatus);
+        ACCOUNT_COLUMNS.put("balance", Account::getBalance); ACCOUNT_COLUMNS.put("createdAt", Account::getCreatedAt);
+        TRANSACTION_COLUMNS.put("id", Transaction::getId); TRANSACTION_COLUMNS.put("accountId", Transaction::getAccountId);
+        TRANSACTION_COLUMNS.put("type", Transaction::getType); TRANSACTION_COLUMNS.put("amount", Transaction::getAmount);
+        TRANSACTION_COLUMNS.put("timestamp", Transaction::getTimestamp); TRANSACTION_COLUMNS.put("note", Transaction::getNote);
+        TRANSACTION_COLUMNS.put("sourceAccountNumber", Transaction::getSourceAccountNumber);
+        TRANSACTION_COLUMNS.put("destinationAccountNumber", Transaction::getDestinationAccountNumber);
+        TRANSACTION_COLUMNS.put("journalId", Transaction::getJournalId); TRANSACTION_COLUMNS.put("direction", Transaction::getDirection);
+    }
+
+    private final MongoTemplate mongoTemplate; private final ObjectMapper mapper;
+    public ExportService(MongoTemplate mongoTemplate, ObjectMapper mapper) { this.mongoTemplate = mongoTemplate; this.mapper = mapper; }
+
+    public void exportAccounts(OutputStream out, String format, boolean gzip, int batchSize, String afterId, String untilId) throws IOException {
+        // the lazy @DBRef transaction list is left out; ledger entries have their own export
+        Query q = rangeQuery(batchSize, afterId, untilId);
+        q.fields().exclude("transactions", "holderNameKey");
+        try (Stream<Account> rows = mongoTemplate.stream(q, Account.class)) { write(out, format, gzip, ACCOUNT_COLUMNS, rows); }
+    }
+
+    public void exportTransactions(OutputStream out, String format, boolean gzip, int batchSize, String afterId, String untilId) throws IOException {
+        try (Stream<Transaction> rows = mongoTemplate.stream(rangeQuery(batchSize, afterId, untilId), Transaction.class)) { write(out, format, gzip, TRANSACTION_COLUMNS, rows); }
+    }
+
+    // checked by the controller before the response is committed, so that bad parameters still get a normal error response
+    public static void validate(String format, int batchSize) {
+        if (!"csv".equalsIgnoreCase(format) && !"ndjson".equalsIgnoreCase(format)) throw new IllegalArgumentException("format must be csv or ndjson");
+        if (batchSize <= 0 || batchSize > MAX_BATCH_SIZE) throw new IllegalArgumentException("batchSize must be between 1 and " + MAX_BATCH_SIZE);
+    }
+
+    private Query rangeQuery(int batchSize, String afterId, String untilId) {
+        Criteria c = Criteria.where("_id");
+        boolean bounded = false;
+        if (afterId != null && !afterId.isBlank()) { c = c.gt(afterId); bounded = true; }
+        if (untilId != null && !untilId.isBlank()) { c = c.lte(untilId); bounded = true; }
+        Query q = bounded ? new Query(c) : new Query();
+        return q.with(Sort.by("_id")).cursorBatchSize(batchSize);
+    }
+
+    private <T> void write(OutputStream raw, String format, boolean gzip, Map<String, Function<T, Object>> columns, Stream<T> rows) throws IOException {
+        OutputStream os = gzip ? new GZIPOutputStream(raw, 64 * 1024) : raw;
+        Writer w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 64 * 1024);
+        if ("csv".equalsIgnoreCase(format)) {
+            w.write(String.join(",", columns.keySet())); w.write('\n');
+            for (T row : (Iterable<T>) rows::iterator) {
+                boolean first = true;
+                for (Function<T, Object> col : columns.values()) {
+                    if (!first) w.write(',');
+                    first = false;
+                    Object v = col.apply(row);
+                    if (v != null) w.write(csv(v.toString()));
+                }
+                w.write('\n');
+            }
+        } else {
+            JsonGenerator gen = mapper.getFactory().createGenerator(w);
+            // I am disabling auto-close so that the generator doesn't close the response stream under the gzip trailer
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setRootValueSeparator(null);
+            for (T row : (Iterable<T>) rows::iterator) {
+                gen.writeStartObject();
+                for (Map.Entry<String, Function<T, Object>> col : columns.entrySet()) { gen.writeObjectField(col.getKey(), col.getValue().apply(row)); }
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+            }
+            gen.flush();
+        }
+        w.flush();
+        if (os instanceof GZIPOutputStream g) g.finish();
+    }
+
+    static String csv(String v) {
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0 && v.indexOf('\n') < 0 && v.indexOf('\r') < 0) return v;
+        return '"' + v.replace("\"", "\"\"") + '"';
+    }
+}
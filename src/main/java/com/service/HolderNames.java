@@ -0,0 +1,30 @@
+package com.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+// Holder name normalisation shared by both AccountService implementations, plus the opaque search cursor.
+public final class HolderNames {
+    private HolderNames() {}
+
+    // trimmed, with inner whitespace collapsed; this is what createAccount derives the prefix from
+    static String normalize(String name) { return name.trim().replaceAll("\\s+", " "); }
+
+    // case-folded search key of a holder name
+    public static String key(String name) { return normalize(name).toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT); }
+
+    static String cursor(String key, String accountNumber) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((key + '\0' + accountNumber).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // returns {key, accountNumber}
+    static String[] parseCursor(String cursor) {
+        String raw;
+        try { raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8); }
+        catch (IllegalArgumentException e) { throw new IllegalArgumentException("Invalid search cursor"); }
+        int sep = raw.indexOf('\0');
+        if (sep < 0) throw new IllegalArgumentException("Invalid search cursor");
+        return new String[]{raw.substring(0, sep), raw.substring(sep + 1)};
+    }
+}
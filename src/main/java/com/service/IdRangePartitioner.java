@@ -0,0 +1,51 @@
+package com.service;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Splits a collection into _id ranges for the batch jobs (end-of-day, reconciliation).
+ I am taking the boundaries from a sorted random sample of ids, so the ranges come out about equally full
+ without scanning the collection.
+*/
+final class IdRangePartitioner {
+    private static final int SAMPLES_PER_PARTITION = 32;
+    private IdRangePartitioner() {}
+
+    // {lowerIdExclusive, upperIdInclusive}; null means open-ended. Always at least one range.
+    static List<String[]> ranges(MongoTemplate mongoTemplate, Class<?> document, int partitions) {
+        List<String> sample = new ArrayList<>();
+        for (Document d : mongoTemplate.aggregate(Aggregation.newAggregation(Aggregation.sample((long) partitions * SAMPLES_PER_PARTITION),
+                Aggregation.project("_id"), Aggregation.sort(Sort.Direction.ASC, "_id")), document, Document.class)) {
+            sample.add(d.getObjectId("_id").toHexString());
+        }
+        List<String[]> ranges = new ArrayList<>();
+        String lower = null;
+        for (int i = 1; i < partitions && sample.size() >= partitions; i++) {
+            String upper = sample.get(i * sample.size() / partitions);
+            if (upper.equals(lower)) continue;
+            ranges.add(new String[]{lower, upper});
+            lower = upper;
+        }
+        ranges.add(new String[]{lower, null});
+        return ranges;
+    }
+
+    // next page of a range, in _id order
+    static Query page(String afterId, String upperIdInclusive, int pageSize) {
+        Criteria c = where("_id");
+        boolean bounded = false;
+        if (afterId != null) { c = c.gt(afterId); bounded = true; }
+        if (upperIdInclusive != null) { c = c.lte(upperIdInclusive); bounded = true; }
+        return (bounded ? Query.query(c) : new Query()).with(Sort.by("_id")).limit(pageSize);
+    }
+}
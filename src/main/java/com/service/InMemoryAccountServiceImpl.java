@@ -0,0 +1,170 @@
+package com.service;
+import com.dto.AccountSearchPage; import com.dto.AccountSummary;
+import com.exception.AccountNotFoundException; import com.exception.InsufficientBalanceException;
+import com.model.Account; import com.model.Transaction;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory; import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile; import org.springframework.stereotype.Service;
+
+import java.util.ArrayList; import java.util.List; import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ AccountService for the "simulation" profile: same rules, error messages, ledger legs, velocity limits and events as AccountServiceImpl,
+ but backed by InMemoryLedgerStore so that large simulations and tests don't need a MongoDB.
+ I am logging per operation at debug level here because info logging alone would cap the throughput.
+ Throughput: mvn -q test-compile exec:java -Dexec.mainClass=com.service.LedgerEngineBenchmark -Dexec.classpathScope=test
+*/
+@Service
+@Profile("simulation")
+public class InMemoryAccountServiceImpl implements AccountService {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryAccountServiceImpl.class);
+    private final InMemoryLedgerStore store; private final ApplicationEventPublisher events; private final VelocityLimiter limits; private final AtomicLong sequence;
+    // with limits on, the check, the write and the count of one payer must not interleave with another debit of the same payer
+    private final Object[] payerLocks = new Object[256];
+
+    public InMemoryAccountServiceImpl(InMemoryLedgerStore store, ApplicationEventPublisher events, VelocityLimiter limits) {
+        this.store = store; this.events = events; this.limits = limits;
+        for (int i = 0; i < payerLocks.length; i++) payerLocks[i] = new Object();
+        // continue numbering after whatever the write-ahead log replayed
+        this.sequence = new AtomicLong(Math.max(1000, store.maxSequence() + 1));
+    }
+
+    @Override
+    public Account createAccount(String holderName) {
+        if (holderName == null) { throw new IllegalArgumentException("Account holder name must not be null"); }
+        String normalizedForPrefix = HolderNames.normalize(holderName);
+        if (normalizedForPrefix.isEmpty()) { throw new IllegalArgumentException("Account holder name must not be blank"); }
+        String prefix = normalizedForPrefix.toUpperCase().substring(0, Math.min(3, normalizedForPrefix.length()));
+        // the sequence alone is unique in this store, so there is no collision probe
+        String accountNumber = prefix + sequence.getAndIncrement();
+        int slot = store.createAccount(accountNumber, holderName.trim(), System.currentTimeMillis());
+        log.debug("Created account {}", accountNumber);
+        return store.account(slot);
+    }
+
+    @Override
+    public Account getByAccountNumber(String accountNumber) { return store.account(slotOf(accountNumber)); }
+
+    @Override
+    public Account closeAccount(String accountNumber) {
+        int slot = slotOf(accountNumber);
+        if (!store.close(slot)) { throw new IllegalStateException("Cannot close account with non-zero balance: " + accountNumber); }
+        log.debug("Closed account {} by setting status INACTIVE", accountNumber);
+        return store.account(slot);
+    }
+
+    @Override
+    public void deleteByAccountNumber(String accountNumber) {
+        store.delete(slotOf(accountNumber));
+        limits.forget(accountNumber);
+        log.debug("Deleted account {}", accountNumber);
+    }
+
+    @Override
+    public Transaction deposit(String accountNumber, long amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
+        int slot = slotOf(accountNumber);
+        Transaction tx = committed(store.deposit(slot, amount, System.currentTimeMillis()), accountNumber, "Insufficient balance for " + accountNumber);
+        events.publishEvent(new TransactionCommittedEvent(tx));
+        return tx;
+    }
+
+    @Override
+    public Transaction withdraw(String accountNumber, long amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
+        int slot = slotOf(accountNumber);
+        Transaction tx;
+        if (!limits.isEnabled()) {
+            tx = committed(store.withdraw(slot, amount, System.currentTimeMillis()), accountNumber, "Insufficient balance for " + accountNumber);
+        } else {
+            synchronized (payerLocks[slot & (payerLocks.length - 1)]) {
+                Account acc = store.account(slot);
+                long now = System.currentTimeMillis();
+                limits.check(acc, "WITHDRAW", amount, now);
+                tx = committed(store.withdraw(slot, amount, now), accountNumber, "Insufficient balance for " + accountNumber);
+                limits.record(acc, "WITHDRAW", amount, now);
+            }
+        }
+        events.publishEvent(new TransactionCommittedEvent(tx));
+        return tx;
+    }
+
+    @Override
+    public Transaction transfer(String fromAccountNumber, String toAccountNumber, long amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
+        if (fromAccountNumber.equals(toAccountNumber)) throw new IllegalArgumentException("Same account");
+        int from = slotOf(fromAccountNumber); int to = slotOf(toAccountNumber);
+        Transaction debit;
+        if (!limits.isEnabled()) {
+            debit = transfer(from, to, fromAccountNumber, toAccountNumber, amount, System.currentTimeMillis());
+        } else {
+            synchronized (payerLocks[from & (payerLocks.length - 1)]) {
+                Account acc = store.account(from);
+                long now = System.currentTimeMillis();
+                ensureActive(acc); ensureActive(store.account(to));
+                limits.check(acc, "TRANSFER", amount, now);
+                debit = transfer(from, to, fromAccountNumber, toAccountNumber, amount, now);
+                limits.record(acc, "TRANSFER", amount, now);
+            }
+        }
+        // one event per customer leg, the receiver's credit row follows the payer's debit row
+        events.publishEvent(new TransactionCommittedEvent(debit));
+        events.publishEvent(new TransactionCommittedEvent(store.transaction(InMemoryLedgerStore.entryOf(debit.getId()) + 1)));
+        return debit;
+    }
+
+    private Transaction transfer(int from, int to, String fromAccountNumber, String toAccountNumber, long amount, long now) {
+        int entry = store.transfer(from, to, amount, now);
+        if (entry == InMemoryLedgerStore.NOT_ACTIVE) {
+            // report whichever side is inactive, same as ensureActive() does
+            String inactive = "Active".equals(store.account(from).getStatus()) ? toAccountNumber : fromAccountNumber;
+            throw new IllegalStateException("Account " + inactive + " is not active");
+        }
+        return committed(entry, fromAccountNumber, "Insufficient from " + fromAccountNumber);
+    }
+
+    private void ensureActive(Account acc) {
+        if (!"Active".equals(acc.getStatus())) throw new IllegalStateException("Account " + acc.getAccountNumber() + " is not active");
+    }
+
+    @Override
+    public List<Transaction> getTransactions(String accountNumber) { return store.history(slotOf(accountNumber), -1); }
+
+    @Override
+    public List<Transaction> getTransactionsSince(String accountNumber, long afterSeq) {
+        // entries are numbered in commit order, so the entry number is the sequence
+        return store.history(slotOf(accountNumber), (int) Math.max(-1, Math.min(afterSeq, Integer.MAX_VALUE)));
+    }
+
+    @Override
+    public AccountSearchPage searchByHolderPrefix(String holderPrefix, int limit, String after) {
+        if (holderPrefix == null || holderPrefix.isBlank()) throw new IllegalArgumentException("Holder prefix must not be blank");
+        if (limit <= 0 || limit > AccountServiceImpl.MAX_SEARCH_LIMIT) throw new IllegalArgumentException("Limit must be between 1 and " + AccountServiceImpl.MAX_SEARCH_LIMIT);
+        String[] cursor = after == null || after.isBlank() ? new String[]{null, null} : HolderNames.parseCursor(after);
+        List<String> numbers = store.searchHolderKeys(HolderNames.key(holderPrefix), cursor[0], cursor[1], limit + 1);
+        List<AccountSummary> items = new ArrayList<>(Math.min(limit, numbers.size()));
+        for (String n : numbers.subList(0, Math.min(limit, numbers.size()))) {
+            int slot = store.slotOf(n);
+            if (slot < 0) continue; // deleted after the index was read
+            Account acc = store.account(slot);
+            items.add(new AccountSummary(acc.getAccountNumber(), acc.getAccountHolderName(), acc.getStatus()));
+        }
+        String next = null;
+        if (numbers.size() > limit && !items.isEmpty()) {
+            AccountSummary last = items.get(items.size() - 1);
+            next = HolderNames.cursor(HolderNames.key(last.getAccountHolderName()), last.getAccountNumber());
+        }
+        return new AccountSearchPage(items, next);
+    }
+
+    private int slotOf(String accountNumber) {
+        int slot = store.slotOf(accountNumber);
+        if (slot < 0) throw new AccountNotFoundException("No account: " + accountNumber);
+        return slot;
+    }
+
+    private Transaction committed(int entry, String accountNumber, String insufficientMessage) {
+        if (entry == InMemoryLedgerStore.NOT_ACTIVE) throw new IllegalStateException("Account " + accountNumber + " is not active");
+        if (entry == InMemoryLedgerStore.INSUFFICIENT) throw new InsufficientBalanceException(insufficientMessage);
+        return store.transaction(entry);
+    }
+}
@@ -0,0 +1,323 @@
+package com.service;
+
+import com.model.Account; import com.model.Transaction;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ Storage engine behind InMemoryAccountServiceImpl.
+ - accounts live in slot-indexed primitive columns; the account number's numeric sequence is the key of a long -> slot map
+ - the ledger is columnar as well (amount / timestamp / type / account / counterparty), and every entry points to the
+   previous entry of the same account, so one account's history is a walk down its chain
+ - like Journal, every movement is a debit row followed by its credit row; deposits and withdrawals have a SYSTEM:CASH
+   row on the other side, which belongs to no account chain, and the journal id is the debit row's id
+ - there is a single writer at a time (the write lock); balance and lookup reads are optimistic and only fall back to the read lock on contention
+ Account and Transaction objects are only materialised at the API boundary.
+*/
+public class InMemoryLedgerStore implements AutoCloseable {
+    public static final int INSUFFICIENT = -1, NOT_ACTIVE = -2;
+    static final byte DEPOSIT = 0, WITHDRAW = 1, TRANSFER = 2;
+    static final byte ACTIVE = 0, INACTIVE = 1, DELETED = 2;
+    private static final String[] TYPE_NAMES = {"DEPOSIT", "WITHDRAW", "TRANSFER"};
+    private static final int NONE = -1, CASH = -2;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StampedLock lock = new StampedLock();
+    private final LedgerWriteAheadLog wal;
+
+    // account columns
+    private final LongIntHashMap slotBySequence;
+    private String[] numbers; private String[] holders; private long[] balances; private byte[] statuses; private long[] createdAt; private int[] lastEntry;
+    private int accountCount; private long maxSequence = -1;
+    // "holderNameKey \0 accountNumber", sorted the same way as the Mongo compound index
+    private final NavigableSet<String> holderIndex = new ConcurrentSkipListSet<>();
+
+    // ledger columns
+    private long[] amounts; private long[] timestamps; private byte[] types; private int[] entryAccount; private int[] counterparty; private int[] prevEntry;
+    private boolean[] creditLeg;
+    private int entryCount;
+
+    public InMemoryLedgerStore(int expectedAccounts, int expectedEntries, Path walPath, long walChunkBytes, long walSegmentBytes, boolean walSync) {
+        int a = Math.max(16, expectedAccounts); int e = Math.max(16, expectedEntries);
+        slotBySequence = new LongIntHashMap(a);
+        numbers = new String[a]; holders = new String[a]; balances = new long[a]; statuses = new byte[a]; createdAt = new long[a]; lastEntry = new int[a];
+        amounts = new long[e]; timestamps = new long[e]; types = new byte[e]; entryAccount = new int[e]; counterparty = new int[e]; prevEntry = new int[e];
+        creditLeg = new boolean[e];
+        if (walPath != null) {
+            wal = new LedgerWriteAheadLog(walPath, walChunkBytes, walSegmentBytes, walSync);
+            wal.replay(new LedgerWriteAheadLog.Replayer() {
+                public void create(int slot, long ts, String number, String holder) { applyCreate(number, holder, ts); }
+                public void status(int slot, byte status) { statuses[slot] = status; }
+                public void entry(byte type, int account, int cp, long amount, long ts) { applyEntry(type, account, cp, amount, ts); }
+                public void delete(int slot) { applyDelete(slot); }
+            });
+        } else {
+            wal = null;
+        }
+    }
+
+    public InMemoryLedgerStore(int expectedAccounts, int expectedEntries) { this(expectedAccounts, expectedEntries, null, 0, 0, false); }
+
+    // ---------- writes (single writer) ----------
+    // every change is appended to the write-ahead log first and applied only once its record is committed,
+    // so a log that cannot be written leaves the store as it was
+
+    public int createAccount(String accountNumber, String holderName, long createdAtMillis) {
+        long stamp = lock.writeLock();
+        try {
+            if (slotOfLocked(accountNumber) != NONE) throw new IllegalStateException("Duplicate account number " + accountNumber);
+            if (wal != null) wal.appendCreate(accountCount, createdAtMillis, accountNumber, holderName);
+            return applyCreate(accountNumber, holderName, createdAtMillis);
+        } finally { lock.unlockWrite(stamp); }
+    }
+
+    public int deposit(int slot, long amount, long ts) {
+        long stamp = lock.writeLock();
+        try {
+            if (statuses[slot] != ACTIVE) return NOT_ACTIVE;
+            return log(DEPOSIT, slot, NONE, amount, ts);
+        } finally { lock.unlockWrite(stamp); }
+    }
+
+    public int withdraw(int slot, long amount, long ts) {
+        long stamp = lock.writeLock();
+        try {
+            if (statuses[slot] != ACTIVE) return NOT_ACTIVE;
+            if (balances[slot] < amount) return INSUFFICIENT;
+            return log(WITHDRAW, slot, NONE, amount, ts);
+        } finally { lock.unlockWrite(stamp); }
+    }
+
+    public int transfer(int from, int to, long amount, long ts) {
+        long stamp = lock.writeLock();
+        try {
+            if (statuses[from] != ACTIVE || statuses[to] != ACTIVE) return NOT_ACTIVE;
+            if (balances[from] < amount) return INSUFFICIENT;
+            return log(TRANSFER, from, to, amount, ts);
+        } finally { lock.unlockWrite(stamp); }
+    }
+
+    // closes the account only if its balance is zero; returns false otherwise
+    public boolean close(int slot) {
+        long stamp = lock.writeLock();
+        try {
+            if (balances[slot] != 0) return false;
+            if (wal != null) wal.appendStatus(slot, INACTIVE);
+            statuses[slot] = INACTIVE;
+            return true;
+        } finally { lock.unlockWrite(stamp); }
+    }
+
+    public void delete(int slot) {
+        long stamp = lock.writeLock();
+        try {
+            if (wal != null) wal.appendDelete(slot);
+            applyDelete(slot);
+        } finally { lock.unlockWrite(stamp); }
+    }
+
+    // ---------- reads ----------
+
+    // the account's debit rows with a timestamp after sinceMillis, oldest first (the newest rows sit at the head of its chain)
+    public List<Transaction> debitsSince(int slot, long sinceMillis) {
+        long stamp = lock.readLock();
+        try {
+            List<Transaction> out = new ArrayList<>();
+            for (int e = lastEntry[slot]; e != NONE && timestamps[e] > sinceMillis; e = prevEntry[e]) { if (!creditLeg[e]) out.add(materialise(e)); }
+            Collections.reverse(out);
+            return out;
+        } finally { lock.unlockRead(stamp); }
+    }
+
+    public int slotOf(String accountNumber) {
+        long stamp = lock.tryOptimisticRead();
+        int slot;
+        try { slot = slotOfLocked(accountNumber); } catch (RuntimeException torn) { slot = NONE; stamp = 0; }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try { slot = slotOfLocked(accountNumber); } finally { lock.unlockRead(stamp); }
+        }
+        return slot;
+    }
+
+    public long balance(int slot) {
+        long stamp = lock.tryOptimisticRead();
+        long b = balances[slot];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try { b = balances[slot]; } finally { lock.unlockRead(stamp); }
+        }
+        return b;
+    }
+
+    public long maxSequence() {
+        long stamp = lock.readLock();
+        try { return maxSequence; } finally { lock.unlockRead(stamp); }
+    }
+
+    public int accountCount() {
+        long stamp = lock.readLock();
+        try { return accountCount; } finally { lock.unlockRead(stamp); }
+    }
+
+    public Account account(int slot) {
+        long stamp = lock.readLock();
+        try {
+            Account acc = new Account(numbers[slot], holders[slot], balances[slot]);
+            acc.setId(accountId(slot));
+            acc.setStatus(statuses[slot] == ACTIVE ? "Active" : "INACTIVE");
+            acc.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAt[slot]), ZoneId.systemDefault()));
+            return acc;
+        } finally { lock.unlockRead(stamp); }
+    }
+
+    public Transaction transaction(int entry) {
+        long stamp = lock.readLock();
+        try { return materialise(entry); } finally { lock.unlockRead(stamp); }
+    }
+
+    // oldest first; afterEntry is exclusive, NONE for the full history
+    public List<Transaction> history(int slot, int afterEntry) {
+        long stamp = lock.readLock();
+        try {
+            List<Transaction> out = new ArrayList<>();
+            for (int e = lastEntry[slot]; e != NONE && e > afterEntry; e = prevEntry[e]) { out.add(materialise(e)); }
+            Collections.reverse(out);
+            return out;
+        } finally { lock.unlockRead(stamp); }
+    }
+
+    // account numbers of the next page of holder keys starting with keyPrefix, strictly after the given position
+    public List<String> searchHolderKeys(String keyPrefix, String afterKey, String afterAccountNumber, int limit) {
+        String from = afterKey == null ? keyPrefix : afterKey + '\0' + afterAccountNumber;
+        List<String> out = new ArrayList<>(limit);
+        for (String e : holderIndex.tailSet(from, afterKey == null)) {
+            if (!e.startsWith(keyPrefix) || out.size() == limit) break;
+            out.add(e.substring(e.indexOf('\0') + 1));
+        }
+        return out;
+    }
+
+    static String accountId(int slot) { return "mem-" + slot; }
+    // the same 24 hex digits as an ObjectId, zero-padded
+    static String transactionId(int entry) {
+        char[] c = new char[24];
+        for (int i = 23, v = entry; i >= 0; i--, v >>>= 4) c[i] = HEX[v & 15];
+        return new String(c);
+    }
+    static int entryOf(String transactionId) {
+        try { return Integer.parseInt(transactionId, 16); } catch (NumberFormatException e) { return NONE; }
+    }
+
+    @Override
+    public void close() { if (wal != null) wal.close(); }
+
+    // ---------- internals, called with the write lock held (or during replay) ----------
+
+    private int log(byte type, int account, int cp, long amount, long ts) {
+        if (wal != null) wal.appendEntry(type, account, cp, amount, ts);
+        return applyEntry(type, account, cp, amount, ts);
+    }
+
+    private int applyCreate(String number, String holder, long ts) {
+        int slot = accountCount;
+        if (slot == numbers.length) growAccounts();
+        numbers[slot] = number; holders[slot] = holder; balances[slot] = 0; statuses[slot] = ACTIVE; createdAt[slot] = ts; lastEntry[slot] = NONE;
+        long seq = sequenceOf(number);
+        slotBySequence.put(seq, slot);
+        holderIndex.add(HolderNames.key(holder) + '\0' + number);
+        maxSequence = Math.max(maxSequence, seq);
+        accountCount++;
+        return slot;
+    }
+
+    // returns the row of the account's own leg (the debit leg for a transfer)
+    private int applyEntry(byte type, int account, int cp, long amount, long ts) {
+        switch (type) {
+            case DEPOSIT -> { balances[account] += amount; appendRow(type, CASH, account, amount, ts, false); return appendRow(type, account, CASH, amount, ts, true); }
+            case WITHDRAW -> { balances[account] -= amount; int own = appendRow(type, account, CASH, amount, ts, false); appendRow(type, CASH, account, amount, ts, true); return own; }
+            case TRANSFER -> { balances[account] -= amount; balances[cp] += amount; int own = appendRow(type, account, cp, amount, ts, false); appendRow(type, cp, account, amount, ts, true); return own; }
+            default -> throw new IllegalStateException("Unknown ledger entry type " + type);
+        }
+    }
+
+    private int appendRow(byte type, int account, int cp, long amount, long ts, boolean credit) {
+        int entry = entryCount;
+        if (entry == amounts.length) growEntries();
+        amounts[entry] = amount; timestamps[entry] = ts; types[entry] = type; entryAccount[entry] = account; counterparty[entry] = cp; creditLeg[entry] = credit;
+        if (account == CASH) { prevEntry[entry] = NONE; } else { prevEntry[entry] = lastEntry[account]; lastEntry[account] = entry; }
+        entryCount++;
+        return entry;
+    }
+
+    private void applyDelete(int slot) {
+        slotBySequence.remove(sequenceOf(numbers[slot]));
+        holderIndex.remove(HolderNames.key(holders[slot]) + '\0' + numbers[slot]);
+        statuses[slot] = DELETED; lastEntry[slot] = NONE;
+    }
+
+    private int slotOfLocked(String accountNumber) {
+        long seq = sequenceOf(accountNumber);
+        if (seq < 0) return NONE;
+        int slot = slotBySequence.get(seq, NONE);
+        return slot != NONE && accountNumber.equals(numbers[slot]) ? slot : NONE;
+    }
+
+    private Transaction materialise(int e) {
+        int account = entryAccount[e];
+        Transaction tx = new Transaction(ownerOf(account), TYPE_NAMES[types[e]], amounts[e], Instant.ofEpochMilli(timestamps[e]), noteOf(e));
+        tx.setId(transactionId(e)); tx.setSeq((long) e);
+        tx.setDirection(creditLeg[e] ? Transaction.CREDIT : Transaction.DEBIT);
+        tx.setJournalId(transactionId(creditLeg[e] ? e - 1 : e));
+        if (types[e] == TRANSFER) {
+            String from = creditLeg[e] ? numbers[counterparty[e]] : numbers[account], to = creditLeg[e] ? numbers[account] : numbers[counterparty[e]];
+            tx.setNote(creditLeg[e] ? "transfer from " + from : "transfer to " + to);
+            tx.setSourceAccountNumber(from); tx.setDestinationAccountNumber(to);
+        }
+        return tx;
+    }
+
+    // same account ids and notes as the Mongo engine: a deleted account's rows stay on SYSTEM:SUSPENSE so that journals still balance
+    private String ownerOf(int account) {
+        if (account == CASH) return Journal.CASH;
+        return statuses[account] == DELETED ? Journal.SUSPENSE : accountId(account);
+    }
+
+    private String noteOf(int e) {
+        if (entryAccount[e] != CASH) return TYPE_NAMES[types[e]].toLowerCase();
+        return types[e] == DEPOSIT ? "deposit to " + numbers[counterparty[e]] : "withdrawal from " + numbers[counterparty[e]];
+    }
+
+    // account numbers are PREFIX + global sequence, so the trailing digits are unique on their own
+    static long sequenceOf(String accountNumber) {
+        if (accountNumber == null) return -1;
+        int i = accountNumber.length();
+        while (i > 0 && Character.isDigit(accountNumber.charAt(i - 1))) i--;
+        int digits = accountNumber.length() - i;
+        if (digits == 0 || digits > 18) return -1;
+        return Long.parseLong(accountNumber, i, accountNumber.length(), 10);
+    }
+
+    private void growAccounts() {
+        int n = numbers.length << 1;
+        numbers = Arrays.copyOf(numbers, n); holders = Arrays.copyOf(holders, n); balances = Arrays.copyOf(balances, n);
+        statuses = Arrays.copyOf(statuses, n); createdAt = Arrays.copyOf(createdAt, n); lastEntry = Arrays.copyOf(lastEntry, n);
+    }
+
+    private void growEntries() {
+        int n = amounts.length << 1;
+        amounts = Arrays.copyOf(amounts, n); timestamps = Arrays.copyOf(timestamps, n); types = Arrays.copyOf(types, n);
+        entryAccount = Arrays.copyOf(entryAccount, n); counterparty = Arrays.copyOf(counterparty, n); prevEntry = Arrays.copyOf(prevEntry, n);
+        creditLeg = Arrays.copyOf(creditLeg, n);
+    }
+}
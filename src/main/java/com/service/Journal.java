@@ -0,0 +1,65 @@
+package com.service;
+
+import com.model.Transaction;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.List;
+
+// Builds the balanced pair of legs for one money movement. The debit leg's id doubles as the journal id, except for
+// end-of-day journals, whose id is derived from the business date so that a re-run produces the same one.
+final class Journal {
+    static final String CASH = "SYSTEM:CASH", INTEREST = "SYSTEM:INTEREST", FEES = "SYSTEM:FEES", SUSPENSE = "SYSTEM:SUSPENSE";
+    // a TRANSFER_REVERSAL's suspense leg names the transfer journal it undoes in its note
+    static final String TRANSFER_REVERSAL = "TRANSFER_REVERSAL", REVERSAL_OF = "reversal of ";
+
+    private Journal() {}
+
+    // [debit, credit]; ids are assigned here so both legs can be inserted in one insertMany
+    static List<Transaction> legs(String type, long amount, Instant at, String debitAccountId, String debitNote, String creditAccountId, String creditNote) {
+        String debitId = new ObjectId().toHexString();
+        return pair(debitId, debitId, type, amount, at, debitAccountId, debitNote, creditAccountId, creditNote);
+    }
+
+    // legs always get fresh ObjectIds, so that _id order stays creation order; the unique (journalId, direction) index
+    // is what rejects a second copy of the journal
+    static List<Transaction> legs(String journalId, String type, long amount, Instant at,
+                                  String debitAccountId, String debitNote, String creditAccountId, String creditNote) {
+        return pair(journalId, new ObjectId().toHexString(), type, amount, at, debitAccountId, debitNote, creditAccountId, creditNote);
+    }
+
+    private static List<Transaction> pair(String journalId, String debitId, String type, long amount, Instant at,
+                                          String debitAccountId, String debitNote, String creditAccountId, String creditNote) {
+        Transaction debit = leg(debitId, journalId, Transaction.DEBIT, debitAccountId, type, amount, at, debitNote);
+        Transaction credit = leg(new ObjectId().toHexString(), journalId, Transaction.CREDIT, creditAccountId, type, amount, at, creditNote);
+        return List.of(debit, credit);
+    }
+
+    // the credit of a transfer whose receiver was closed or deleted before it was paid, parked on SYSTEM:SUSPENSE.
+    // It keeps the credit leg's id, so whoever posts it first (the writer's reversal or the outbox recovery) the journal gets one credit.
+    static Transaction suspended(Transaction credit) {
+        Transaction t = leg(credit.getId(), credit.getJournalId(), Transaction.CREDIT, SUSPENSE, credit.getType(), credit.getAmount(),
+                credit.getTimestamp(), "held in suspense: " + credit.getNote());
+        t.setSourceAccountNumber(credit.getSourceAccountNumber()); t.setDestinationAccountNumber(credit.getDestinationAccountNumber());
+        return t;
+    }
+
+    private static Transaction leg(String id, String journalId, String direction, String accountId, String type, long amount, Instant at, String note) {
+        Transaction t = new Transaction(accountId, type, amount, at, note);
+        t.setId(id); t.setJournalId(journalId); t.setDirection(direction);
+        return t;
+    }
+
+    // aggregation expression for a leg's effect on its account: +amount for CREDIT, -amount for DEBIT;
+    // entries from before legs existed fall back to the sign their type implied (the receiver side of those is missing until backfilled)
+    static Document signedAmount() {
+        Document negative = new Document("$multiply", List.of("$amount", -1));
+        return new Document("$switch", new Document("branches", List.of(
+                new Document("case", new Document("$eq", List.of("$direction", Transaction.CREDIT))).append("then", "$amount"),
+                new Document("case", new Document("$eq", List.of("$direction", Transaction.DEBIT))).append("then", negative),
+                new Document("case", new Document("$in", List.of("$type", List.of("DEPOSIT", "INTEREST")))).append("then", "$amount"),
+                new Document("case", new Document("$in", List.of("$type", List.of("WITHDRAW", "TRANSFER", "FEE")))).append("then", negative)))
+                .append("default", 0));
+    }
+}
@@ -0,0 +1,35 @@
+package com.service;
+
+import com.model.AccountSequence;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Commit sequence of ledger legs, from one counter document shared by every node.
+ The dispatcher takes a range for a whole batch with one findAndModify $inc right before it writes the batch, and an
+ account is dispatched by one thread at a time, so an account's legs reach the ledger in the order of their numbers:
+ a client that has seen number n of an account has every leg of that account numbered below n in the ledger already.
+ Numbers of a batch that failed are skipped, never handed out twice.
+*/
+@Component
+@Profile("!simulation")
+public class LedgerSequence {
+    static final String ID = "ledger";
+    private final MongoTemplate mongoTemplate;
+
+    public LedgerSequence(MongoTemplate mongoTemplate) { this.mongoTemplate = mongoTemplate; }
+
+    // the first of `count` consecutive numbers; numbers start at 1. The upsert creates the counter on first use.
+    public long take(int count) {
+        AccountSequence s = mongoTemplate.findAndModify(Query.query(where("_id").is(ID)), new Update().inc("next", count),
+                FindAndModifyOptions.options().returnNew(true).upsert(true), AccountSequence.class);
+        if (s == null) throw new IllegalStateException("Ledger sequence is missing");
+        return s.getNext() - count + 1;
+    }
+}
@@ -0,0 +1,134 @@
+package com.service;
+
+import com.config.MongoIndexInitializer;
+import com.dto.LedgerBalanceReport;
+import com.model.Account;
+import com.model.Transaction;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Whole-ledger checks for the double-entry legs:
+ - verify(): total debits must equal total credits, and every journal must be exactly one debit and one credit of the same amount
+ - backfill(): turns single-entry rows written before legs existed into proper pairs; each row gets its counter leg upserted
+   first (keyed by journalId + direction, so a re-run finds it) and is only then marked with its own direction
+*/
+@Service
+@Profile("!simulation")
+public class LedgerVerificationService {
+    private static final Logger log = LoggerFactory.getLogger(LedgerVerificationService.class);
+    static final int MAX_REPORTED_JOURNALS = 100;
+    private static final int BATCH = 500;
+    private final MongoTemplate mongoTemplate; private final MongoIndexInitializer indexes;
+
+    public LedgerVerificationService(MongoTemplate mongoTemplate, MongoIndexInitializer indexes) { this.mongoTemplate = mongoTemplate; this.indexes = indexes; }
+
+    public LedgerBalanceReport verify() {
+        String collection = mongoTemplate.getCollectionName(Transaction.class);
+        Document totals = new Document("_id", null).append("legs", new Document("$sum", 1))
+                .append("debits", new Document("$sum", new Document("$cond", List.of(new Document("$eq", List.of("$direction", Transaction.DEBIT)), "$amount", 0))))
+                .append("credits", new Document("$sum", new Document("$cond", List.of(new Document("$eq", List.of("$direction", Transaction.CREDIT)), "$amount", 0))))
+                .append("legacy", new Document("$sum", new Document("$cond", List.of(new Document("$eq", List.of(new Document("$type", "$direction"), "missing")), 1, 0))));
+        LedgerBalanceReport r = new LedgerBalanceReport();
+        Document t = mongoTemplate.getCollection(collection).aggregate(List.of(new Document("$group", totals))).allowDiskUse(true).first();
+        if (t != null) {
+            r.setLegs(((Number) t.get("legs")).longValue()); r.setTotalDebits(((Number) t.get("debits")).longValue());
+            r.setTotalCredits(((Number) t.get("credits")).longValue()); r.setLegacyEntries(((Number) t.get("legacy")).longValue());
+        }
+        List<String> unbalanced = new ArrayList<>();
+        for (Document d : mongoTemplate.getCollection(collection).aggregate(List.of(
+                new Document("$match", new Document("journalId", new Document("$exists", true))),
+                new Document("$group", new Document("_id", "$journalId").append("net", new Document("$sum", Journal.signedAmount())).append("legs", new Document("$sum", 1))),
+                new Document("$match", new Document("$or", List.of(new Document("net", new Document("$ne", 0)), new Document("legs", new Document("$ne", 2))))),
+                new Document("$limit", MAX_REPORTED_JOURNALS))).allowDiskUse(true)) {
+            unbalanced.add(String.valueOf(d.get("_id")));
+        }
+        r.setUnbalancedJournals(unbalanced);
+        r.setBalanced(r.getTotalDebits() == r.getTotalCredits() && unbalanced.isEmpty());
+        r.setCheckedAt(Instant.now());
+        return r;
+    }
+
+    public long backfill() {
+        // the (journalId, direction) upsert only stays single with the unique index behind it
+        indexes.requireReady("Ledger backfill");
+        Query legacy = Query.query(where("direction").exists(false)).cursorBatchSize(BATCH);
+        long converted = 0;
+        try (Stream<Transaction> rows = mongoTemplate.stream(legacy, Transaction.class)) {
+            Iterator<Transaction> it = rows.iterator();
+            List<Transaction> batch = new ArrayList<>(BATCH);
+            while (it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() == BATCH || !it.hasNext()) { converted += convert(batch); batch.clear(); }
+            }
+        }
+        log.info("Ledger backfill converted {} single-entry rows into journals", converted);
+        return converted;
+    }
+
+    private int convert(List<Transaction> batch) {
+        Set<String> receivers = new HashSet<>();
+        for (Transaction t : batch) if ("TRANSFER".equals(t.getType()) && t.getDestinationAccountNumber() != null) receivers.add(t.getDestinationAccountNumber());
+        Map<String, String> idByNumber = new HashMap<>();
+        if (!receivers.isEmpty()) {
+            Query q = Query.query(where("accountNumber").in(receivers));
+            q.fields().include("accountNumber");
+            for (Account a : mongoTemplate.find(q, Account.class)) idByNumber.put(a.getAccountNumber(), a.getId());
+        }
+        BulkOperations counters = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class);
+        BulkOperations owners = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class);
+        for (Transaction t : batch) {
+            Transaction counter = counterLeg(t, idByNumber.get(t.getDestinationAccountNumber()));
+            Update insert = new Update().setOnInsert("_id", new ObjectId(Date.from(t.getTimestamp() != null ? t.getTimestamp() : Instant.now())))
+                    .setOnInsert("accountId", counter.getAccountId()).setOnInsert("type", counter.getType()).setOnInsert("amount", counter.getAmount())
+                    .setOnInsert("timestamp", counter.getTimestamp()).setOnInsert("note", counter.getNote())
+                    .setOnInsert("sourceAccountNumber", counter.getSourceAccountNumber()).setOnInsert("destinationAccountNumber", counter.getDestinationAccountNumber());
+            counters.upsert(Query.query(where("journalId").is(t.getId()).and("direction").is(counter.getDirection())), insert);
+            owners.updateOne(Query.query(where("_id").is(t.getId()).and("direction").exists(false)),
+                    new Update().set("journalId", t.getId()).set("direction", ownDirection(t.getType())));
+        }
+        counters.execute();
+        return owners.execute().getModifiedCount();
+    }
+
+    static String ownDirection(String type) {
+        return "DEPOSIT".equals(type) || "INTEREST".equals(type) ? Transaction.CREDIT : Transaction.DEBIT;
+    }
+
+    // the missing side of a single-entry row; receiverId is the destination account's id for transfers (null if it is gone)
+    static Transaction counterLeg(Transaction legacy, String receiverId) {
+        String counterAccount = switch (legacy.getType()) {
+            case "DEPOSIT", "WITHDRAW" -> Journal.CASH;
+            case "INTEREST" -> Journal.INTEREST;
+            case "FEE" -> Journal.FEES;
+            case "TRANSFER" -> receiverId != null ? receiverId : Journal.SUSPENSE;
+            default -> Journal.SUSPENSE;
+        };
+        String note = "TRANSFER".equals(legacy.getType()) ? "transfer from " + legacy.getSourceAccountNumber() : legacy.getNote();
+        Transaction c = new Transaction(counterAccount, legacy.getType(), legacy.getAmount(), legacy.getTimestamp(), note,
+                legacy.getSourceAccountNumber(), legacy.getDestinationAccountNumber());
+        c.setJournalId(legacy.getId());
+        c.setDirection(Transaction.CREDIT.equals(ownDirection(legacy.getType())) ? Transaction.DEBIT : Transaction.CREDIT);
+        return c;
+    }
+}
@@ -0,0 +1,148 @@
+package com.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ Append-only redo log for InMemoryLedgerStore on memory-mapped files.
+ Each record is written body first and its type byte last, so a record torn by a crash reads back as type 0
+ and replay stops right before it. The byte after each record is zeroed before the record is written, so a shorter
+ record appended over a torn one leaves none of the torn bytes where replay looks for the next type.
+ The mapping grows in fixed chunks as the log fills up.
+ The log is a series of segments (the configured path, then path.1, path.2, ...); when a record would not fit in the
+ current segment the next one is started, so the log never runs into the 2GB limit of a single mapping.
+ Writes land in the page cache (they survive a process crash); set sync=true to also force them to disk.
+*/
+final class LedgerWriteAheadLog implements Closeable {
+    static final byte CREATE = 1, STATUS = 2, ENTRY = 3, DELETE = 4;
+
+    interface Replayer {
+        void create(int slot, long createdAt, String accountNumber, String holderName);
+        void status(int slot, byte status);
+        void entry(byte type, int account, int counterparty, long amount, long timestamp);
+        void delete(int slot);
+    }
+
+    private final Path path; private final long chunkBytes; private final long segmentBytes; private final boolean sync;
+    private FileChannel channel; private int segment;
+    private MappedByteBuffer buf; private long mappedSize;
+
+    LedgerWriteAheadLog(Path path, long chunkBytes, long segmentBytes, boolean sync) {
+        if (segmentBytes > Integer.MAX_VALUE || segmentBytes < chunkBytes) throw new IllegalArgumentException("Ledger log segments must be between the chunk size and 2GB");
+        this.path = path; this.chunkBytes = chunkBytes; this.segmentBytes = segmentBytes; this.sync = sync;
+        while (Files.exists(segmentPath(segment + 1))) segment++;
+        open(0);
+    }
+
+    // replays every segment in order and leaves the log positioned after the last intact record
+    void replay(Replayer r) {
+        int last = segment;
+        for (int s = 0; s <= last; s++) {
+            if (s > 0) { close(); open(s); }
+            replaySegment(r);
+        }
+    }
+
+    void appendCreate(int slot, long createdAt, String accountNumber, String holderName) {
+        byte[] number = accountNumber.getBytes(StandardCharsets.UTF_8); byte[] holder = holderName.getBytes(StandardCharsets.UTF_8);
+        int start = reserve(1 + 4 + 8 + 2 + number.length + 2 + holder.length);
+        buf.putInt(slot).putLong(createdAt).putShort((short) number.length).put(number).putShort((short) holder.length).put(holder);
+        commit(start, CREATE);
+    }
+
+    void appendStatus(int slot, byte status) {
+        int start = reserve(1 + 4 + 1);
+        buf.putInt(slot).put(status);
+        commit(start, STATUS);
+    }
+
+    void appendEntry(byte type, int account, int counterparty, long amount, long timestamp) {
+        int start = reserve(1 + 1 + 4 + 4 + 8 + 8);
+        buf.put(type).putInt(account).putInt(counterparty).putLong(amount).putLong(timestamp);
+        commit(start, ENTRY);
+    }
+
+    void appendDelete(int slot) {
+        int start = reserve(1 + 4);
+        buf.putInt(slot);
+        commit(start, DELETE);
+    }
+
+    int segments() { return segment + 1; }
+
+    @Override
+    public void close() {
+        try { buf.force(); channel.close(); } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    private void replaySegment(Replayer r) {
+        buf.position(0);
+        while (buf.remaining() > 0) {
+            int start = buf.position();
+            byte type = buf.get();
+            switch (type) {
+                case CREATE -> r.create(buf.getInt(), buf.getLong(), readString(), readString());
+                case STATUS -> r.status(buf.getInt(), buf.get());
+                case ENTRY -> r.entry(buf.get(), buf.getInt(), buf.getInt(), buf.getLong(), buf.getLong());
+                case DELETE -> r.delete(buf.getInt());
+                default -> { buf.position(start); return; }
+            }
+        }
+    }
+
+    // nothing is written until the whole record fits, so a failure here leaves the log (and the caller's state) untouched
+    private int reserve(int bytes) {
+        // one spare byte keeps a zero type marker after the last record
+        if (buf.remaining() < bytes + 1) {
+            int pos = buf.position();
+            try {
+                if (pos + bytes + 1 > segmentBytes) {
+                    close();
+                    open(segment + 1);
+                } else {
+                    map(Math.min(segmentBytes, mappedSize + Math.max(chunkBytes, bytes + 1)));
+                    buf.position(pos);
+                }
+            } catch (IOException e) { throw new UncheckedIOException("Cannot grow ledger log", e); }
+        }
+        int start = buf.position();
+        // the spare byte may still hold the body of a record torn by a crash, which replay would take for a type byte
+        buf.put(start + bytes, (byte) 0);
+        buf.position(start + 1);
+        return start;
+    }
+
+    private void commit(int start, byte type) {
+        buf.put(start, type);
+        if (sync) buf.force();
+    }
+
+    private String readString() {
+        byte[] b = new byte[buf.getShort()];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private void open(int s) {
+        Path p = segmentPath(s);
+        try {
+            channel = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = Math.max(segment, s);
+            map(Math.min(segmentBytes, Math.max(channel.size(), chunkBytes)));
+        } catch (IOException e) { throw new UncheckedIOException("Cannot open ledger log " + p, e); }
+    }
+
+    private Path segmentPath(int s) { return s == 0 ? path : path.resolveSibling(path.getFileName() + "." + s); }
+
+    private void map(long size) throws IOException {
+        buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        mappedSize = size;
+    }
+}
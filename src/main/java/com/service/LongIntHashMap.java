@@ -0,0 +1,67 @@
+package com.service;
+
+import java.util.Arrays;
+
+/*
+ Open-addressing long -> int map so that the in-memory ledger can look up account slots without boxing.
+ Not thread-safe on its own; InMemoryLedgerStore only mutates it under its write lock.
+*/
+final class LongIntHashMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private long[] keys; private int[] values; private int size; private int mask;
+
+    LongIntHashMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[cap]; values = new int[cap]; mask = cap - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    int get(long key, int missing) {
+        long[] k = keys; int m = k.length - 1;
+        for (int i = mix(key) & m; ; i = (i + 1) & m) {
+            if (k[i] == key) return values[i];
+            if (k[i] == EMPTY) return missing;
+        }
+    }
+
+    void put(long key, int value) {
+        if (key == EMPTY) throw new IllegalArgumentException("Reserved key");
+        if ((size + 1) * 2 > keys.length) rehash(keys.length << 1);
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) { values[i] = value; return; }
+            if (keys[i] == EMPTY) { keys[i] = key; values[i] = value; size++; return; }
+        }
+    }
+
+    // backward-shift deletion keeps probe chains intact without tombstones
+    void remove(long key) {
+        int i = mix(key) & mask;
+        while (keys[i] != key) { if (keys[i] == EMPTY) return; i = (i + 1) & mask; }
+        size--;
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) { keys[i] = keys[j]; values[i] = values[j]; i = j; }
+        }
+        keys[i] = EMPTY;
+    }
+
+    int size() { return size; }
+
+    private void rehash(int cap) {
+        long[] oldK = keys; int[] oldV = values;
+        long[] newK = new long[cap]; int[] newV = new int[cap]; Arrays.fill(newK, EMPTY);
+        int newMask = cap - 1;
+        for (int j = 0; j < oldK.length; j++) {
+            if (oldK[j] == EMPTY) continue;
+            int i = mix(oldK[j]) & newMask;
+            while (newK[i] != EMPTY) i = (i + 1) & newMask;
+            newK[i] = oldK[j]; newV[i] = oldV[j];
+        }
+        keys = newK; values = newV; mask = newMask;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,309 @@
+package com.service;
+
+import com.config.MongoIndexInitializer;
+import com.model.Account;
+import com.model.OutboxEntry;
+import com.model.Transaction;
+import com.mongodb.bulk.BulkWriteError;
+import com.repository.AccountRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Drains the outbox entries that AccountServiceImpl commits together with each balance change, doing the work that used
+ to sit on the request path: ledger rows, account references, daily rollups, TransactionCommittedEvent and the audit log.
+ - the write path hints the account id into a bounded queue; `workers` threads take up to `batch-size` accounts at a time,
+   so a batch costs a handful of bulk writes however many entries it holds
+ - every step can be replayed: legs carry their ids (a duplicate insert is ignored), references use $addToSet and rollups
+   skip legs they already counted; the entries are pulled last, so a crash at any point repeats work but loses none.
+   Events are therefore at-least-once.
+ - legs are numbered from LedgerSequence as they are written, since their ids are taken on the request thread and say
+   nothing about the order in which they reach the ledger; a replayed leg keeps the number it was first written with
+ - a sweep every `poll-ms` queues accounts whose entries are older than `grace-ms` (a hint dropped on a full queue, a failed
+   batch, a restart) and reports the age of the oldest entry as banking.outbox.lag
+ - a payer's transfer entry is only pulled once the receiver has taken the journal (its pending entry, or the credit leg in
+   the ledger); if neither shows up within `recovery-ms` the writer died between the two writes, and the credit is applied
+   here instead. The two never overlap, by time on the database clock: the writer's credit only applies before
+   creditDeadline (half of recovery-ms after the journal), and a recovery holds a CreditClaim whose credit only applies
+   before the claim's end, which another dispatcher can only take over half a recovery-ms later. So a late writer or a
+   second dispatcher pays nothing however many other credits the receiver took meanwhile; this assumes node clocks within
+   half of recovery-ms of the database's. A receiver that was closed or deleted meanwhile cannot be paid, and the credit
+   is posted to SYSTEM:SUSPENSE.
+ Nothing is dispatched until MongoIndexInitializer reports the indexes in place; entries wait in the outbox meanwhile.
+ An account is dispatched only by the node that owns its partition (hints and sweeps both check PartitionOwnership, and a
+ batch skips accounts whose partition was handed over after they were queued), and there by one thread at a time, so its
+ entries are handled in the order they were written.
+*/
+@Component
+@Profile("!simulation")
+public class OutboxDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+    private final MongoTemplate mongoTemplate; private final AccountRepository accountRepository;
+    private final StatementService statements; private final ApplicationEventPublisher events; private final PartitionOwnership ownership;
+    private final LedgerSequence sequence; private final MongoIndexInitializer indexes;
+    private final int workers; private final int batchSize; private final long graceMillis; private final long recoveryMillis;
+    private final BlockingQueue<String> ready;
+    private final Set<String> busy = ConcurrentHashMap.newKeySet(), again = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final Counter dispatched, dropped, recovered, suspense; private final Timer batchTimer;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    public OutboxDispatcher(MongoTemplate mongoTemplate, AccountRepository accountRepository, StatementService statements,
+                            ApplicationEventPublisher events, PartitionOwnership ownership, LedgerSequence sequence, MongoIndexInitializer indexes, MeterRegistry registry,
+                            @Value("${banking.outbox.workers:4}") int workers,
+                            @Value("${banking.outbox.batch-size:200}") int batchSize,
+                            @Value("${banking.outbox.queue-capacity:10000}") int queueCapacity,
+                            @Value("${banking.outbox.grace-ms:2000}") long graceMillis,
+                            @Value("${banking.outbox.recovery-ms:60000}") long recoveryMillis) {
+        if (workers <= 0 || batchSize <= 0) throw new IllegalArgumentException("banking.outbox.workers and batch-size must be positive");
+        this.mongoTemplate = mongoTemplate; this.accountRepository = accountRepository; this.statements = statements;
+        this.events = events; this.ownership = ownership; this.sequence = sequence; this.indexes = indexes;
+        this.workers = workers; this.batchSize = batchSize; this.graceMillis = graceMillis; this.recoveryMillis = recoveryMillis;
+        this.ready = new ArrayBlockingQueue<>(queueCapacity);
+        this.dispatched = registry.counter("banking.outbox.dispatched");
+        this.dropped = registry.counter("banking.outbox.hints.dropped");
+        this.recovered = registry.counter("banking.outbox.credits.recovered");
+        this.suspense = registry.counter("banking.outbox.credits.suspended");
+        this.batchTimer = registry.timer("banking.outbox.batch");
+        Gauge.builder("banking.outbox.lag", lagMillis, l -> l.get() / 1000.0).baseUnit("seconds").register(registry);
+        Gauge.builder("banking.outbox.queued", ready, BlockingQueue::size).register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            Thread t = new Thread(this::drain, "outbox-" + i);
+            t.setDaemon(true);
+            t.start();
+            threads.add(t);
+        }
+    }
+
+    // a transfer's writer may credit the receiver until then; after that only a recovery can
+    public Instant creditDeadline(Instant journalCreatedAt) { return journalCreatedAt.plusMillis(recoveryMillis / 2); }
+
+    // called after an entry is committed; when the queue is full the sweep picks the account up instead. An account of a
+    // partition this node does not own (a transfer's receiver), or one whose number is unknown, is left to its owner's sweep.
+    public void hint(String accountId, String accountNumber) {
+        if (accountNumber != null && ownership.ownsAccount(accountNumber)) queue(accountId);
+    }
+
+    private void queue(String accountId) {
+        if (!ready.offer(accountId)) dropped.increment();
+    }
+
+    private void drain() {
+        List<String> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                String first = ready.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                ready.drainTo(batch, batchSize - 1);
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${banking.outbox.poll-ms:1000}")
+    public void sweep() {
+        try {
+            Instant now = Instant.now();
+            Query oldest = Query.query(where("outboxSince").exists(true)).with(Sort.by("outboxSince")).limit(1);
+            oldest.fields().include("outboxSince");
+            Account head = mongoTemplate.findOne(oldest, Account.class);
+            lagMillis.set(head == null ? 0 : Math.max(0, now.toEpochMilli() - head.getOutboxSince().toEpochMilli()));
+            if (head == null) return;
+            Query stale = Query.query(where("outboxSince").lte(now.minusMillis(graceMillis))).with(Sort.by("outboxSince")).limit(batchSize * workers);
+            stale.fields().include("accountNumber");
+            for (Account a : mongoTemplate.find(stale, Account.class)) {
+                if (ownership.ownsAccount(a.getAccountNumber()) && !busy.contains(a.getId()) && !ready.offer(a.getId())) break;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Outbox sweep failed: {}", e.getMessage());
+        }
+    }
+
+    // dispatches every pending entry of these accounts; returns how many entries were completed
+    int dispatch(Collection<String> accountIds) {
+        // a replay is only harmless once the unique indexes reject its duplicates; the sweep queues the accounts again later
+        if (!indexes.isReady()) return 0;
+        List<String> mine = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(accountIds)) {
+            // another thread has the account; it is queued again once that thread is done, as it may miss this entry
+            if (busy.add(id)) mine.add(id); else again.add(id);
+        }
+        if (mine.isEmpty()) return 0;
+        Timer.Sample sample = Timer.start();
+        try {
+            Query q = Query.query(where("_id").in(mine).and("outbox.0").exists(true));
+            q.fields().include("outbox").include("accountNumber");
+            List<OutboxEntry> entries = new ArrayList<>(); Map<String, List<String>> done = new HashMap<>();
+            Map<OutboxEntry, String> owner = new HashMap<>();
+            for (Account a : mongoTemplate.find(q, Account.class)) {
+                // queued before its partition was handed over; the new owner dispatches it
+                if (!ownership.ownsAccount(a.getAccountNumber())) continue;
+                for (OutboxEntry e : a.getOutbox()) { entries.add(e); owner.put(e, a.getId()); }
+            }
+            if (entries.isEmpty()) return 0;
+            Map<String, Transaction> suspended = new HashMap<>();
+            Set<String> deferred = settleCredits(entries, suspended);
+            List<Transaction> legs = new ArrayList<>(), customer = new ArrayList<>();
+            List<OutboxEntry> completed = new ArrayList<>();
+            for (OutboxEntry e : entries) {
+                if (deferred.contains(e.getJournalId()) && e.getCounterCredit() != null) continue;
+                completed.add(e);
+                done.computeIfAbsent(owner.get(e), k -> new ArrayList<>()).add(e.getJournalId());
+                for (Transaction leg : e.getLegs()) {
+                    legs.add(leg);
+                    if (!leg.getAccountId().startsWith("SYSTEM:")) customer.add(leg);
+                }
+                if (e.getCounterCredit() != null && suspended.containsKey(e.getJournalId())) legs.add(suspended.get(e.getJournalId()));
+            }
+            insertLegs(legs);
+            accountRepository.addTransactionRefs(customer);
+            statements.apply(customer);
+            for (Transaction leg : customer) {
+                log.info("{} {} {} account {} (journal {})", leg.getType(), leg.getDirection(), leg.getAmount(), leg.getAccountId(), leg.getJournalId());
+                events.publishEvent(new TransactionCommittedEvent(leg));
+            }
+            accountRepository.removeOutboxEntries(done);
+            dispatched.increment(completed.size());
+            return completed.size();
+        } catch (RuntimeException e) {
+            log.warn("Outbox batch of {} accounts failed, entries stay for the next pass: {}", mine.size(), e.getMessage());
+            return 0;
+        } finally {
+            sample.stop(batchTimer);
+            for (String id : mine) {
+                busy.remove(id);
+                if (again.remove(id)) queue(id);
+            }
+        }
+    }
+
+    // journal ids of payer entries whose receiver side is not visible yet. One whose entry is older than recovery-ms is
+    // claimed and credited here and no longer deferred; if the receiver can't take it at all, its suspense leg is put into
+    // `suspended` to be written with the payer's entry.
+    Set<String> settleCredits(List<OutboxEntry> entries, Map<String, Transaction> suspended) {
+        Map<String, Transaction> credits = new HashMap<>(); Map<String, Instant> createdAt = new HashMap<>();
+        for (OutboxEntry e : entries) {
+            if (e.getCounterCredit() != null) { credits.put(e.getJournalId(), e.getCounterCredit()); createdAt.put(e.getJournalId(), e.getCreatedAt()); }
+        }
+        if (credits.isEmpty()) return Set.of();
+        Set<String> missing = new HashSet<>(credits.keySet());
+        // the receiver's pending entry first: its leg reaches the ledger before the entry is pulled, so checking the other way
+        // round could miss a credit that is dispatched between the two reads
+        Query pending = Query.query(where("_id").in(credits.values().stream().map(Transaction::getAccountId).distinct().toList())
+                .and("outbox.journalId").in(credits.keySet()));
+        pending.fields().include("outbox.journalId");
+        for (Account a : mongoTemplate.find(pending, Account.class)) {
+            if (a.getOutbox() != null) a.getOutbox().forEach(e -> missing.remove(e.getJournalId()));
+        }
+        if (!missing.isEmpty()) {
+            Query written = Query.query(where("_id").in(missing.stream().map(j -> credits.get(j).getId()).toList()));
+            written.fields().include("journalId");
+            for (Transaction t : mongoTemplate.find(written, Transaction.class)) missing.remove(t.getJournalId());
+        }
+        Instant now = Instant.now();
+        Set<String> deferred = new HashSet<>();
+        for (String journal : missing) {
+            Transaction leg = credits.get(journal); Instant at = createdAt.get(journal) != null ? createdAt.get(journal) : now;
+            if (now.toEpochMilli() - at.toEpochMilli() < recoveryMillis) { deferred.add(journal); continue; }
+            Instant until = accountRepository.claimCredit(journal, now, recoveryMillis / 2);
+            if (until == null) { deferred.add(journal); continue; }
+            // with the claim held no earlier credit of this journal can still land, so a credit visible now is final
+            if (creditVisible(leg)) continue;
+            if (accountRepository.creditBefore(leg.getAccountId(), leg.getAmount(), at, new OutboxEntry(List.of(leg), null, at), until)) {
+                log.warn("Recovered transfer credit of {} to account {} (journal {})", leg.getAmount(), leg.getAccountId(), journal);
+                recovered.increment();
+            } else if (accountRepository.canTakeCredits(leg.getAccountId())) {
+                // the claim ran out before the update reached the database; a later pass claims it again
+                deferred.add(journal);
+            } else {
+                log.warn("Transfer credit of {} to closed or deleted account {} posted to {} (journal {})", leg.getAmount(), leg.getAccountId(), Journal.SUSPENSE, journal);
+                suspended.put(journal, Journal.suspended(leg));
+                suspense.increment();
+            }
+            hint(leg.getAccountId(), leg.getDestinationAccountNumber());
+        }
+        return deferred;
+    }
+
+    private boolean creditVisible(Transaction leg) {
+        return mongoTemplate.exists(Query.query(where("_id").is(leg.getAccountId()).and("outbox.journalId").is(leg.getJournalId())), Account.class)
+                || mongoTemplate.exists(Query.query(where("_id").is(leg.getId())), Transaction.class);
+    }
+
+    // legs carry their final ids, so a replayed insert only produces duplicate-key errors, which mean "already written";
+    // those legs get back the number they were written with, so that their events resume from where they really are
+    private void insertLegs(List<Transaction> legs) {
+        if (legs.isEmpty()) return;
+        long next = sequence.take(legs.size());
+        for (Transaction leg : legs) leg.setSeq(next++);
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class).insert(legs).execute();
+        } catch (BulkOperationException e) {
+            Map<String, Transaction> written = new HashMap<>();
+            for (BulkWriteError err : e.getErrors()) {
+                if (err.getCode() != 11000) throw e;
+                Transaction leg = legs.get(err.getIndex());
+                written.put(leg.getId(), leg);
+            }
+            Query stored = Query.query(where("_id").in(written.keySet()));
+            stored.fields().include("seq");
+            for (Transaction t : mongoTemplate.find(stored, Transaction.class)) written.get(t.getId()).setSeq(t.getSeq());
+        }
+    }
+
+    long lagMillis() { return lagMillis.get(); }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread t : threads) {
+            try { t.join(1_000); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.service;
+
+import com.exception.PartitionNotOwnedException;
+import com.model.ClusterMember;
+import com.model.PartitionLease;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Splits the account keyspace into `partitions` slices (hash of the account number) and decides which node may mutate which slice.
+ - with banking.cluster.enabled=false (single node) this node owns everything and no lease documents are touched
+ - otherwise ownership is a lease in partition_lease: every heartbeat marks this node live in cluster_member, renews our
+   leases, reads the table, and takes over expired or unowned slices until this node holds its fair share
+   (partitions / live nodes); a node above its share hands the surplus back, so a node that joins picks up work
+   and a node that dies loses its slices after one lease period
+ - mutations run under the partition's read lock plus a per-account stripe lock, so one account is changed by one
+   thread at a time while different accounts proceed in parallel; handing a slice back takes the write lock, which
+   waits for in-flight mutations to finish
+ The heartbeat runs on a thread of its own rather than on the shared @Scheduled one, so that a long job there (a
+ reconciliation pass, an outbox sweep) can't hold it past the lease and cost this node its slices in mid-request.
+ A lease is treated as lost `safety-margin-ms` before it expires in the database, to allow for clock differences between nodes.
+ The margin does not cover a pause in the middle of a mutation: the lease epoch is not a fencing token and writes don't check
+ it, so a thread that passed owns(p) and then stalls (GC, slow I/O) past the lease can still write after another node took
+ the slice. The writes are conditional on their own ($inc with a balance floor, credit deadlines, status), so what such a
+ thread can get wrong is limited to the in-memory decisions made under the lock, i.e. velocity limits; it is logged.
+*/
+@Component
+@Profile("!simulation")
+public class PartitionOwnership {
+    private static final Logger log = LoggerFactory.getLogger(PartitionOwnership.class);
+    private static final int STRIPES = 1024;
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled; private final int partitions; private final String nodeId; private final String advertisedUrl;
+    private final long leaseMillis; private final long heartbeatMillis; private final long safetyMillis;
+    private final ReentrantReadWriteLock[] partitionLocks; private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final AtomicLongArray validUntil;       // local deadline per owned partition, 0 when not ours
+    private volatile String[] ownerUrls;            // last view of the lease table, used for redirects
+    private ScheduledExecutorService heartbeats;
+
+    public PartitionOwnership(MongoTemplate mongoTemplate, MeterRegistry registry,
+                              @Value("${banking.cluster.enabled:false}") boolean enabled,
+                              @Value("${banking.cluster.partitions:64}") int partitions,
+                              @Value("${banking.cluster.node-id:}") String nodeId,
+                              @Value("${banking.cluster.advertised-url:}") String advertisedUrl,
+                              @Value("${server.port:8080}") int port,
+                              @Value("${banking.cluster.lease-ms:10000}") long leaseMillis,
+                              @Value("${banking.cluster.heartbeat-ms:3000}") long heartbeatMillis,
+                              @Value("${banking.cluster.safety-margin-ms:2000}") long safetyMillis) {
+        if (partitions <= 0) throw new IllegalArgumentException("banking.cluster.partitions must be positive");
+        this.mongoTemplate = mongoTemplate; this.enabled = enabled; this.partitions = partitions;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.advertisedUrl = advertisedUrl.isBlank() ? "http://localhost:" + port : advertisedUrl;
+        this.leaseMillis = leaseMillis; this.heartbeatMillis = heartbeatMillis; this.safetyMillis = safetyMillis;
+        this.partitionLocks = new ReentrantReadWriteLock[partitions];
+        for (int i = 0; i < partitions; i++) partitionLocks[i] = new ReentrantReadWriteLock();
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+        this.validUntil = new AtomicLongArray(partitions);
+        this.ownerUrls = new String[partitions];
+        Gauge.builder("banking.cluster.partitions.owned", this, PartitionOwnership::ownedCount).register(registry);
+    }
+
+    public int partitionOf(String accountNumber) { return Math.floorMod(accountNumber.hashCode(), partitions); }
+
+    public boolean ownsAccount(String accountNumber) { return owns(partitionOf(accountNumber)); }
+
+    boolean owns(int partition) { return !enabled || System.currentTimeMillis() < validUntil.get(partition); }
+
+    // runs `work` as the only mutation of this account on this node; throws PartitionNotOwnedException when another node owns it
+    public <T> T execute(String accountNumber, Supplier<T> work) {
+        int p = partitionOf(accountNumber);
+        if (!owns(p)) throw new PartitionNotOwnedException(p, ownerUrls[p]);
+        Lock shared = partitionLocks[p].readLock();
+        shared.lock();
+        try {
+            // I am checking again because the lease may have been handed over while this thread waited
+            if (!owns(p)) throw new PartitionNotOwnedException(p, ownerUrls[p]);
+            ReentrantLock stripe = stripes[Math.floorMod(accountNumber.hashCode() * 31 + p, STRIPES)];
+            stripe.lock();
+            try { return work.get(); } finally {
+                stripe.unlock();
+                if (!owns(p)) log.warn("Mutation of {} finished after partition {} was lost; it was not fenced", accountNumber, p);
+            }
+        } finally { shared.unlock(); }
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || heartbeats != null) return;
+        heartbeats = Executors.newSingleThreadScheduledExecutor(r -> { Thread t = new Thread(r, "partition-heartbeat"); t.setDaemon(true); return t; });
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void heartbeat() {
+        if (!enabled) return;
+        try {
+            long started = System.currentTimeMillis();
+            Instant now = Instant.ofEpochMilli(started), until = now.plusMillis(leaseMillis);
+            mongoTemplate.upsert(Query.query(where("_id").is(nodeId)), new Update().set("url", advertisedUrl).set("lastSeen", now), ClusterMember.class);
+            mongoTemplate.updateMulti(Query.query(where("owner").is(nodeId).and("expiresAt").gt(now)),
+                    new Update().set("expiresAt", until).set("ownerUrl", advertisedUrl), PartitionLease.class);
+            long live = Math.max(1, mongoTemplate.count(Query.query(where("lastSeen").gt(now.minusMillis(leaseMillis))), ClusterMember.class));
+            List<PartitionLease> table = mongoTemplate.findAll(PartitionLease.class);
+            String[] urls = new String[partitions]; boolean[] taken = new boolean[partitions], ours = new boolean[partitions];
+            int mine = 0;
+            for (PartitionLease l : table) {
+                int p = l.getPartition();
+                if (p < 0 || p >= partitions || l.getExpiresAt() == null || !l.getExpiresAt().isAfter(now)) continue;
+                taken[p] = true; urls[p] = l.getOwnerUrl();
+                if (nodeId.equals(l.getOwner())) { validUntil.set(p, started + leaseMillis - safetyMillis); ours[p] = true; mine++; }
+            }
+            for (int p = 0; p < partitions; p++) if (!ours[p]) validUntil.set(p, 0);
+            int fairShare = (int) ((partitions + live - 1) / live);
+            // I am starting the scan at a node-specific offset so that nodes joining together don't race for the same slices
+            int offset = Math.floorMod(nodeId.hashCode(), partitions);
+            for (int i = 0; i < partitions && mine < fairShare; i++) {
+                int p = (offset + i) % partitions;
+                if (!taken[p] && tryAcquire(p, now, until)) { validUntil.set(p, started + leaseMillis - safetyMillis); urls[p] = advertisedUrl; mine++; }
+            }
+            for (int p = partitions - 1; p >= 0 && mine > fairShare; p--) {
+                if (validUntil.get(p) != 0) { release(p); urls[p] = null; mine--; }
+            }
+            ownerUrls = urls;
+        } catch (RuntimeException e) {
+            // our local deadlines still run out on their own, so a node that can't reach the database stops writing in time
+            log.warn("Partition lease heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    private boolean tryAcquire(int p, Instant now, Instant until) {
+        Query q = Query.query(where("_id").is(p).orOperator(where("expiresAt").lte(now), where("owner").isNull()));
+        Update u = new Update().set("owner", nodeId).set("ownerUrl", advertisedUrl).set("expiresAt", until).inc("epoch", 1);
+        try {
+            PartitionLease l = mongoTemplate.findAndModify(q, u, FindAndModifyOptions.options().returnNew(true).upsert(true), PartitionLease.class);
+            if (l != null && nodeId.equals(l.getOwner())) { log.info("Acquired partition {} (epoch {})", p, l.getEpoch()); return true; }
+        } catch (DuplicateKeyException raced) {
+            // the lease document exists and is still held; the upsert lost to the filter, not to another writer
+        }
+        return false;
+    }
+
+    // waits for in-flight mutations on the slice, then lets the lease expire right away so another node can take it
+    private void release(int p) {
+        Lock exclusive = partitionLocks[p].writeLock();
+        exclusive.lock();
+        try { validUntil.set(p, 0); } finally { exclusive.unlock(); }
+        mongoTemplate.updateFirst(Query.query(where("_id").is(p).and("owner").is(nodeId)), new Update().set("expiresAt", Instant.EPOCH), PartitionLease.class);
+        log.info("Released partition {}", p);
+    }
+
+    int ownedCount() {
+        if (!enabled) return partitions;
+        int n = 0;
+        for (int p = 0; p < partitions; p++) if (owns(p)) n++;
+        return n;
+    }
+
+    public List<Integer> ownedPartitions() {
+        List<Integer> owned = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) if (owns(p)) owned.add(p);
+        return owned;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("nodeId", nodeId); s.put("url", advertisedUrl); s.put("clusterEnabled", enabled);
+        s.put("partitions", partitions); s.put("owned", ownedPartitions());
+        return s;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) return;
+        synchronized (this) { if (heartbeats != null) heartbeats.shutdownNow(); }
+        try {
+            for (int p = 0; p < partitions; p++) if (validUntil.get(p) != 0) release(p);
+            mongoTemplate.remove(Query.query(where("_id").is(nodeId)), ClusterMember.class);
+        } catch (RuntimeException e) { log.warn("Could not hand back partition leases on shutdown: {}", e.getMessage()); }
+    }
+}
@@ -0,0 +1,264 @@
+package com.service;
+
+import com.dto.ReconciliationRunStatus;
+import com.model.Account; import com.model.ReconciliationDiscrepancy; import com.model.ReconciliationState; import com.model.Transaction;
+import com.mongodb.ReadPreference;
+import io.micrometer.core.instrument.Counter; import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Compares every account's stored balance with the signed sum of its ledger entries.
+ - ledger sums come from $group aggregations per page of accounts, pages and _id partitions run in parallel
+ - the first pass is FULL; after that an INCREMENTAL pass only re-checks accounts touched since the watermark
+   (customer activity via lastActivityAt, end-of-day postings via lastEodDate), plus the accounts the previous pass
+   deferred because their outbox was still pending; dispatch touches neither field, so nothing else would bring them back
+ - reads go to secondaries when there are any and nothing is locked, so live traffic is not blocked;
+   a mismatch is re-read from the primary and only recorded if it is still there with the same difference,
+   which filters out operations that were in flight during the first read
+*/
+@Service
+@Profile("!simulation")
+public class ReconciliationService {
+    private static final Logger log = LoggerFactory.getLogger(ReconciliationService.class);
+    private final MongoTemplate primary; private final MongoTemplate reader;
+    private final boolean enabled; private final int workers; private final int partitions; private final int pageSize; private final Duration skew;
+    private final Counter checkedCounter; private final AtomicLong openDiscrepancies = new AtomicLong();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicReference<ReconciliationRunStatus> lastRun = new AtomicReference<>();
+    private final ExecutorService trigger = Executors.newSingleThreadExecutor(r -> new Thread(r, "reconciliation-trigger"));
+
+    @Autowired
+    public ReconciliationService(MongoTemplate mongoTemplate, MeterRegistry registry,
+                                 @Value("${banking.reconciliation.enabled:false}") boolean enabled,
+                                 @Value("${banking.reconciliation.workers:4}") int workers,
+                                 @Value("${banking.reconciliation.partitions:16}") int partitions,
+                                 @Value("${banking.reconciliation.page-size:500}") int pageSize,
+                                 @Value("${banking.reconciliation.watermark-skew-seconds:300}") long skewSeconds) {
+        this(mongoTemplate, secondaryPreferred(mongoTemplate), registry, enabled, workers, partitions, pageSize, skewSeconds);
+    }
+
+    ReconciliationService(MongoTemplate primary, MongoTemplate reader, MeterRegistry registry, boolean enabled, int workers, int partitions, int pageSize, long skewSeconds) {
+        this.primary = primary; this.reader = reader; this.enabled = enabled; this.workers = workers; this.partitions = partitions;
+        this.pageSize = pageSize; this.skew = Duration.ofSeconds(skewSeconds);
+        this.checkedCounter = registry.counter("banking.reconciliation.accounts.checked");
+        registry.gauge("banking.reconciliation.discrepancies", openDiscrepancies);
+    }
+
+    private static MongoTemplate secondaryPreferred(MongoTemplate t) {
+        MongoTemplate r = new MongoTemplate(t.getMongoDatabaseFactory(), t.getConverter());
+        r.setReadPreference(ReadPreference.secondaryPreferred());
+        return r;
+    }
+
+    @Scheduled(fixedDelayString = "${banking.reconciliation.interval-ms:300000}", initialDelayString = "${banking.reconciliation.interval-ms:300000}")
+    // hands the pass to the trigger thread, like trigger() does, so that the shared scheduling thread is free again at once
+    public void scheduled() {
+        if (!enabled || running.get()) return;
+        trigger.execute(() -> {
+            try { run(false); }
+            catch (IllegalStateException busy) { log.debug(busy.getMessage()); }
+            catch (RuntimeException e) { log.error("Reconciliation failed", e); }
+        });
+    }
+
+    public ReconciliationRunStatus trigger(boolean full) {
+        if (running.get()) throw new IllegalStateException("Reconciliation is already running");
+        trigger.execute(() -> { try { run(full); } catch (RuntimeException e) { log.error("Reconciliation failed", e); } });
+        ReconciliationRunStatus s = new ReconciliationRunStatus();
+        s.setMode(full ? "FULL" : "REQUESTED"); s.setState("SUBMITTED"); s.setStartedAt(Instant.now());
+        return s;
+    }
+
+    public ReconciliationRunStatus lastRun() { return lastRun.get(); }
+
+    public List<ReconciliationDiscrepancy> discrepancies(int limit) {
+        return primary.find(new Query().with(Sort.by(Sort.Direction.DESC, "detectedAt")).limit(limit), ReconciliationDiscrepancy.class);
+    }
+
+    // FULL when asked for or when no pass has completed yet, otherwise INCREMENTAL from the stored watermark
+    ReconciliationRunStatus run(boolean full) {
+        if (!running.compareAndSet(false, true)) throw new IllegalStateException("Reconciliation is already running");
+        ReconciliationRunStatus s = new ReconciliationRunStatus();
+        Instant started = Instant.now();
+        s.setStartedAt(started); s.setState("RUNNING");
+        lastRun.set(s);
+        try {
+            ReconciliationState state = primary.findById(ReconciliationState.ID, ReconciliationState.class);
+            if (state == null) state = new ReconciliationState();
+            boolean doFull = full || state.getWatermark() == null;
+            s.setMode(doFull ? "FULL" : "INCREMENTAL");
+            AtomicLong checked = new AtomicLong(); AtomicLong found = new AtomicLong();
+            Set<String> deferred = ConcurrentHashMap.newKeySet();
+            ExecutorService pool = Executors.newFixedThreadPool(workers, r -> new Thread(r, "reconciliation-worker"));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                if (doFull) {
+                    for (String[] range : IdRangePartitioner.ranges(reader, Account.class, partitions)) {
+                        futures.add(pool.submit(() -> scanRange(range[0], range[1], null, checked, found, deferred)));
+                    }
+                } else {
+                    Instant since = state.getWatermark().minus(skew);
+                    String sinceDate = LocalDate.ofInstant(since, ZoneOffset.UTC).toString();
+                    List<Criteria> reasons = new ArrayList<>(List.of(where("lastActivityAt").gte(since), where("lastEodDate").gte(sinceDate)));
+                    if (state.getDeferredIds() != null && !state.getDeferredIds().isEmpty()) reasons.add(where("_id").in(state.getDeferredIds()));
+                    scanTouched(new Criteria().orOperator(reasons), pool, futures, checked, found, deferred);
+                }
+                for (Future<?> f : futures) { f.get(); }
+            } finally { pool.shutdownNow(); }
+            // I am moving the watermark to the start of this pass, so anything written while it ran is re-checked next time
+            state.setWatermark(started);
+            state.setDeferredIds(new ArrayList<>(deferred));
+            if (doFull) state.setLastFullRunAt(started);
+            primary.save(state);
+            openDiscrepancies.set(primary.count(new Query(), ReconciliationDiscrepancy.class));
+            s.setAccountsChecked(checked.get()); s.setDiscrepancies(found.get()); s.setWatermark(started); s.setState("COMPLETED");
+            log.info("Reconciliation {} checked {} accounts, {} discrepancies", s.getMode(), checked.get(), found.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            s.setState("FAILED"); s.setError("interrupted");
+        } catch (ExecutionException | RuntimeException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            s.setState("FAILED"); s.setError(cause.getMessage());
+            log.error("Reconciliation failed", cause);
+        } finally {
+            s.setFinishedAt(Instant.now());
+            running.set(false);
+        }
+        return s;
+    }
+
+    private void scanRange(String lowerExclusive, String upperInclusive, Criteria filter, AtomicLong checked, AtomicLong found, Set<String> deferred) {
+        String after = lowerExclusive;
+        while (true) {
+            List<Account> page = nextPage(after, upperInclusive, filter);
+            if (page.isEmpty()) return;
+            check(page, checked, found, deferred);
+            if (page.size() < pageSize) return;
+            after = page.get(page.size() - 1).getId();
+        }
+    }
+
+    // the touched set is spread thinly over the whole keyspace, so sampled _id ranges would mostly come back empty.
+    // Instead this thread pages through it on the (lastActivityAt / lastEodDate) filter and hands every page to the pool,
+    // where the ledger aggregation, the expensive part, runs in parallel; at most two pages per worker wait in line.
+    private void scanTouched(Criteria touched, ExecutorService pool, List<Future<?>> futures, AtomicLong checked, AtomicLong found, Set<String> deferred) throws InterruptedException {
+        Semaphore queued = new Semaphore(workers * 2);
+        String after = null;
+        while (true) {
+            List<Account> page = nextPage(after, null, touched);
+            if (page.isEmpty()) return;
+            queued.acquire();
+            try {
+                futures.add(pool.submit(() -> { try { check(page, checked, found, deferred); } finally { queued.release(); } }));
+            } catch (RuntimeException e) { queued.release(); throw e; }
+            if (page.size() < pageSize) return;
+            after = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private List<Account> nextPage(String after, String upperInclusive, Criteria filter) {
+        Query q = IdRangePartitioner.page(after, upperInclusive, pageSize);
+        if (filter != null) q.addCriteria(filter);
+        q.fields().include("accountNumber", "balance");
+        return reader.find(q, Account.class);
+    }
+
+    private void check(List<Account> page, AtomicLong checked, AtomicLong found, Set<String> deferred) {
+        found.addAndGet(checkPage(page, deferred));
+        checked.addAndGet(page.size()); checkedCounter.increment(page.size());
+    }
+
+    // returns the number of confirmed discrepancies in the page; accounts that can't be judged yet are added to `deferred`
+    int checkPage(List<Account> page, Set<String> deferred) {
+        Map<String, Long> ledger = ledgerBalances(reader, page);
+        List<Account> suspects = new ArrayList<>(); List<String> clean = new ArrayList<>();
+        for (Account a : page) {
+            if (a.getBalance() == ledger.getOrDefault(a.getId(), 0L)) clean.add(a.getId()); else suspects.add(a);
+        }
+        int confirmed = 0;
+        if (!suspects.isEmpty()) {
+            Query q = Query.query(where("_id").in(suspects.stream().map(Account::getId).toList()));
+            q.fields().include("accountNumber", "balance", "outboxSince");
+            List<Account> fresh = primary.find(q, Account.class);
+            Map<String, Long> freshLedger = ledgerBalances(primary, fresh);
+            Map<String, Long> firstDiff = new HashMap<>();
+            for (Account a : suspects) firstDiff.put(a.getId(), a.getBalance() - ledger.getOrDefault(a.getId(), 0L));
+            for (Account a : fresh) {
+                // the balance already includes movements whose legs the outbox dispatcher hasn't written yet; judged on a later pass
+                if (a.getOutboxSince() != null) { deferred.add(a.getId()); continue; }
+                long lb = freshLedger.getOrDefault(a.getId(), 0L);
+                if (a.getBalance() != lb && firstDiff.get(a.getId()) == a.getBalance() - lb) {
+                    primary.save(new ReconciliationDiscrepancy(a.getId(), a.getAccountNumber(), a.getBalance(), lb));
+                    confirmed++;
+                } else {
+                    clean.add(a.getId());
+                }
+            }
+        }
+        if (!clean.isEmpty()) primary.remove(Query.query(where("_id").in(clean)), ReconciliationDiscrepancy.class);
+        return confirmed;
+    }
+
+    // signed ledger sum per account id: credits minus debits over the account's own legs, one indexed $match per page,
+    // plus incoming transfers still stored as a single payer-side row (no direction) until the ledger backfill converts them
+    Map<String, Long> ledgerBalances(MongoTemplate t, List<Account> accounts) {
+        Map<String, Long> sums = new HashMap<>();
+        if (accounts.isEmpty()) return sums;
+        List<String> ids = new ArrayList<>(); Map<String, String> idByNumber = new HashMap<>();
+        for (Account a : accounts) { ids.add(a.getId()); idByNumber.put(a.getAccountNumber(), a.getId()); }
+        String collection = t.getCollectionName(Transaction.class);
+        for (Document d : t.getCollection(collection).aggregate(List.of(
+                new Document("$match", new Document("accountId", new Document("$in", ids))),
+                new Document("$group", new Document("_id", "$accountId").append("net", new Document("$sum", Journal.signedAmount()))))).allowDiskUse(true)) {
+            sums.merge(d.getString("_id"), ((Number) d.get("net")).longValue(), Long::sum);
+        }
+        for (Document d : t.getCollection(collection).aggregate(legacyIncomingTransfers(new ArrayList<>(idByNumber.keySet()))).allowDiskUse(true)) {
+            sums.merge(idByNumber.get(d.getString("_id")), ((Number) d.get("net")).longValue(), Long::sum);
+        }
+        return sums;
+    }
+
+    // once backfilled, the row has a direction and the receiver has its own CREDIT leg, which the first query counts instead.
+    // Served by the legacy_transfer_destination index on Transaction, so a page never scans the collection
+    static List<Document> legacyIncomingTransfers(List<String> accountNumbers) {
+        return List.of(
+                new Document("$match", new Document("type", "TRANSFER").append("direction", new Document("$exists", false))
+                        .append("destinationAccountNumber", new Document("$in", accountNumbers))),
+                new Document("$group", new Document("_id", "$destinationAccountNumber").append("net", new Document("$sum", "$amount"))));
+    }
+
+    @PreDestroy
+    public void shutdown() { trigger.shutdownNow(); }
+}
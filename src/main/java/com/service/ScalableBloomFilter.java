@@ -0,0 +1,117 @@
+package com.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ A Bloom filter that grows: once a layer holds its capacity, a new layer twice as large and with half the false-positive
+ target is added, so the overall false-positive rate stays under the configured one however many keys arrive.
+ Bits are set with CAS on an AtomicLongArray, so adds and lookups need no lock; only adding a layer is synchronised.
+ Keys cannot be removed.
+*/
+final class ScalableBloomFilter {
+    private final double targetFpp;
+    private volatile Layer[] layers;
+
+    ScalableBloomFilter(long initialCapacity, double targetFpp) {
+        if (initialCapacity <= 0 || targetFpp <= 0 || targetFpp >= 1) throw new IllegalArgumentException("capacity must be positive and fpp in (0, 1)");
+        this.targetFpp = targetFpp;
+        this.layers = new Layer[]{new Layer(initialCapacity, targetFpp / 2)};
+    }
+
+    void add(String key) {
+        long h1 = hash(key), h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        Layer[] ls = layers;
+        for (Layer l : ls) if (l.contains(h1, h2)) return;
+        Layer last = ls[ls.length - 1];
+        if (last.count.get() >= last.capacity) last = grow(last);
+        last.add(h1, h2);
+    }
+
+    boolean mightContain(String key) {
+        long h1 = hash(key), h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (Layer l : layers) if (l.contains(h1, h2)) return true;
+        return false;
+    }
+
+    private synchronized Layer grow(Layer full) {
+        Layer[] ls = layers;
+        Layer last = ls[ls.length - 1];
+        if (last != full) return last;   // another thread grew it first
+        Layer[] next = Arrays.copyOf(ls, ls.length + 1);
+        next[ls.length] = new Layer(full.capacity * 2, full.fpp / 2);
+        layers = next;
+        return next[ls.length];
+    }
+
+    // probability that a key never added is reported present, from each layer's actual fill
+    double expectedFpp() {
+        double none = 1;
+        for (Layer l : layers) none *= 1 - Math.pow(1 - Math.exp(-(double) l.hashes * l.count.get() / l.bits), l.hashes);
+        return 1 - none;
+    }
+
+    long bits() {
+        long total = 0;
+        for (Layer l : layers) total += l.bits;
+        return total;
+    }
+
+    // keys that were already reported present when added are not counted, so this is a slight undercount
+    long count() {
+        long total = 0;
+        for (Layer l : layers) total += l.count.get();
+        return total;
+    }
+
+    int layerCount() { return layers.length; }
+
+    double targetFpp() { return targetFpp; }
+
+    // FNV-1a over the UTF-8 bytes, finished with a 64-bit mixer so that similar account numbers spread out
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) { h ^= b; h *= 0x100000001b3L; }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private static final class Layer {
+        final long capacity; final double fpp; final long bits; final int hashes;
+        final AtomicLongArray words; final AtomicLong count = new AtomicLong();
+
+        Layer(long capacity, double fpp) {
+            this.capacity = capacity; this.fpp = fpp;
+            long m = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            this.bits = Math.max(64, (m + 63) & ~63L);
+            this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+            this.words = new AtomicLongArray((int) (bits >>> 6));
+        }
+
+        // double hashing: the i-th probe is h1 + i * h2
+        void add(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int w = (int) (bit >>> 6); long mask = 1L << (bit & 63);
+                long v;
+                do { v = words.get(w); } while ((v & mask) == 0 && !words.compareAndSet(w, v, v | mask));
+            }
+            count.incrementAndGet();
+        }
+
+        boolean contains(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.service;
+
+import com.config.MongoIndexInitializer;
+import com.dto.ScheduledTransferRequest;
+import com.exception.AccountNotFoundException;
+import com.exception.InsufficientBalanceException;
+import com.exception.LimitExceededException;
+import com.exception.PartitionNotOwnedException;
+import com.model.ScheduledTransfer;
+import com.model.Transaction;
+import com.repository.ScheduledTransferRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Future-dated and standing-order transfers.
+ - instructions live in scheduled_transfer, indexed on (status, partition, nextRunAt), so finding due work is a range scan
+   per owned partition however large the backlog is; nothing else reads the collection in bulk
+ - every poll claims up to `batch-size` due-soon instructions at a time (one updateMulti per batch, tagged with a claim token)
+   and parks them in a hierarchical timing wheel until their minute comes; at most `max-pending` are held per node
+ - each tick hands the expired ones to a fixed pool of `workers`, which runs them through AccountService.transfer
+   and then writes the next occurrence (or the final status) back
+ - a node that dies with claimed work loses the claim after `claim-ms` and another node picks it up
+*/
+@Service
+@Profile("!simulation")
+public class ScheduledTransferService {
+    private static final Logger log = LoggerFactory.getLogger(ScheduledTransferService.class);
+    private final ScheduledTransferRepository repository; private final MongoTemplate mongoTemplate;
+    private final AccountService accountService; private final PartitionOwnership ownership; private final MongoIndexInitializer indexes;
+    private final boolean enabled; private final int batchSize; private final int maxPending;
+    private final Duration lookahead; private final Duration claimFor;
+    private final TimingWheel<ScheduledTransfer> wheel;
+    private final ExecutorService workers;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter executed; private final Counter failed;
+
+    public ScheduledTransferService(ScheduledTransferRepository repository, MongoTemplate mongoTemplate, AccountService accountService,
+                                    PartitionOwnership ownership, MongoIndexInitializer indexes, MeterRegistry registry,
+                                    @Value("${banking.scheduler.enabled:true}") boolean enabled,
+                                    @Value("${banking.scheduler.workers:8}") int workers,
+                                    @Value("${banking.scheduler.batch-size:500}") int batchSize,
+                                    @Value("${banking.scheduler.max-pending:20000}") int maxPending,
+                                    @Value("${banking.scheduler.lookahead-ms:60000}") long lookaheadMs,
+                                    @Value("${banking.scheduler.claim-ms:300000}") long claimMs,
+                                    @Value("${banking.scheduler.tick-ms:200}") long tickMs) {
+        this.repository = repository; this.mongoTemplate = mongoTemplate; this.accountService = accountService; this.ownership = ownership;
+        this.indexes = indexes;
+        this.enabled = enabled; this.batchSize = batchSize; this.maxPending = maxPending;
+        this.lookahead = Duration.ofMillis(lookaheadMs); this.claimFor = Duration.ofMillis(claimMs);
+        this.wheel = new TimingWheel<>(tickMs, 64, 3, System.currentTimeMillis());
+        if (lookaheadMs >= wheel.horizonMillis()) throw new IllegalArgumentException("banking.scheduler.lookahead-ms must be below " + wheel.horizonMillis());
+        this.workers = Executors.newFixedThreadPool(workers, r -> { Thread t = new Thread(r, "scheduled-transfer"); t.setDaemon(true); return t; });
+        this.executed = registry.counter("banking.scheduler.transfers", "outcome", "executed");
+        this.failed = registry.counter("banking.scheduler.transfers", "outcome", "failed");
+        Gauge.builder("banking.scheduler.in.flight", inFlight, AtomicInteger::get).register(registry);
+    }
+
+    public ScheduledTransfer create(String fromAccountNumber, ScheduledTransferRequest req) {
+        if (req.getAmount() <= 0) throw new IllegalArgumentException("Amount must be positive");
+        if (fromAccountNumber.equals(req.getToAccountNumber())) throw new IllegalArgumentException("Same account");
+        if (req.getFirstRunAt() == null) throw new IllegalArgumentException("firstRunAt is required");
+        String recurrence = req.getRecurrence() == null ? "NONE" : req.getRecurrence().toUpperCase(Locale.ROOT);
+        if (!List.of("NONE", "DAILY", "WEEKLY", "MONTHLY").contains(recurrence)) throw new IllegalArgumentException("Unknown recurrence: " + req.getRecurrence());
+        if (req.getEndAt() != null && req.getEndAt().isBefore(req.getFirstRunAt())) throw new IllegalArgumentException("endAt must not be before firstRunAt");
+        // I am resolving both accounts now so that a typo is reported to the customer, not discovered at run time
+        accountService.getByAccountNumber(fromAccountNumber);
+        accountService.getByAccountNumber(req.getToAccountNumber());
+        ScheduledTransfer st = new ScheduledTransfer();
+        st.setFromAccountNumber(fromAccountNumber); st.setToAccountNumber(req.getToAccountNumber()); st.setAmount(req.getAmount());
+        st.setRecurrence(recurrence); st.setFirstRunAt(req.getFirstRunAt()); st.setNextRunAt(req.getFirstRunAt()); st.setEndAt(req.getEndAt());
+        st.setPartition(ownership.partitionOf(fromAccountNumber));
+        ScheduledTransfer saved = repository.save(st);
+        log.info("Scheduled {} transfer {} of {} from {} to {} at {}", recurrence, saved.getId(), req.getAmount(), fromAccountNumber, req.getToAccountNumber(), req.getFirstRunAt());
+        return saved;
+    }
+
+    public List<ScheduledTransfer> list(String fromAccountNumber) { return repository.findByFromAccountNumberOrderByNextRunAtAsc(fromAccountNumber); }
+
+    public ScheduledTransfer cancel(String fromAccountNumber, String id) {
+        ScheduledTransfer st = mongoTemplate.findAndModify(
+                Query.query(where("_id").is(id).and("fromAccountNumber").is(fromAccountNumber).and("status").in("PENDING", "CLAIMED")),
+                Update.update("status", "CANCELLED").unset("claimToken"), FindAndModifyOptions.options().returnNew(true), ScheduledTransfer.class);
+        if (st != null) return st;
+        ScheduledTransfer existing = repository.findById(id).filter(s -> s.getFromAccountNumber().equals(fromAccountNumber))
+                .orElseThrow(() -> new AccountNotFoundException("No scheduled transfer " + id + " for " + fromAccountNumber));
+        throw new IllegalStateException("Scheduled transfer " + id + " is " + existing.getStatus() + " and can no longer be cancelled");
+    }
+
+    @Scheduled(fixedDelayString = "${banking.scheduler.poll-ms:1000}")
+    public void poll() {
+        if (!enabled || !indexes.isReady()) return;
+        try { claimDue(Instant.now()); } catch (RuntimeException e) { log.warn("Scheduled transfer poll failed: {}", e.getMessage()); }
+    }
+
+    @Scheduled(fixedRateString = "${banking.scheduler.tick-ms:200}")
+    public void tick() {
+        if (!enabled) return;
+        for (ScheduledTransfer st : wheel.advance(System.currentTimeMillis())) workers.execute(() -> execute(st));
+    }
+
+    // claims due-soon work batch by batch until nothing is left within the lookahead or this node holds max-pending
+    int claimDue(Instant now) {
+        List<Integer> owned = ownership.ownedPartitions();
+        if (owned.isEmpty()) return 0;
+        // claims of a node that went away go back into the pool
+        mongoTemplate.updateMulti(Query.query(where("status").is("CLAIMED").and("claimedUntil").lt(now)),
+                new Update().set("status", "PENDING").unset("claimToken"), ScheduledTransfer.class);
+        Instant horizon = now.plus(lookahead);
+        String collection = mongoTemplate.getCollectionName(ScheduledTransfer.class);
+        int claimed = 0;
+        while (inFlight.get() < maxPending) {
+            int limit = Math.min(batchSize, maxPending - inFlight.get());
+            Query due = Query.query(where("status").is("PENDING").and("partition").in(owned).and("nextRunAt").lte(horizon))
+                    .with(Sort.by("nextRunAt")).limit(limit);
+            due.fields().include("_id");
+            List<Object> ids = mongoTemplate.find(due, Document.class, collection).stream().map(d -> d.get("_id")).toList();
+            if (ids.isEmpty()) break;
+            String token = UUID.randomUUID().toString();
+            mongoTemplate.updateMulti(Query.query(where("_id").in(ids).and("status").is("PENDING")),
+                    new Update().set("status", "CLAIMED").set("claimToken", token).set("claimedUntil", horizon.plus(claimFor)), ScheduledTransfer.class);
+            // another node may have claimed some of the same ids in between; only the ones carrying our token are ours
+            List<ScheduledTransfer> mine = mongoTemplate.find(Query.query(where("_id").in(ids).and("claimToken").is(token)), ScheduledTransfer.class);
+            boolean gaveBack = false;
+            for (ScheduledTransfer st : mine) {
+                if (wheel.schedule(st, st.getNextRunAt().toEpochMilli())) { inFlight.incrementAndGet(); claimed++; continue; }
+                // past the wheel's horizon (its clock lags this one); the claim goes back so a later poll picks it up
+                mongoTemplate.updateFirst(Query.query(where("_id").is(st.getId()).and("claimToken").is(token)),
+                        new Update().set("status", "PENDING").unset("claimToken").unset("claimedUntil"), ScheduledTransfer.class);
+                gaveBack = true;
+            }
+            // what was given back is PENDING again and would come straight back in the next batch
+            if (ids.size() < limit || gaveBack) break;
+        }
+        if (claimed > 0) log.debug("Claimed {} scheduled transfers, {} in flight", claimed, inFlight.get());
+        return claimed;
+    }
+
+    void execute(ScheduledTransfer st) {
+        try {
+            Query ours = Query.query(where("_id").is(st.getId()).and("claimToken").is(st.getClaimToken()));
+            // a cancel between claim and now removed our token, so this does nothing
+            if (mongoTemplate.updateFirst(Query.query(where("_id").is(st.getId()).and("claimToken").is(st.getClaimToken()).and("status").is("CLAIMED")),
+                    Update.update("status", "EXECUTING"), ScheduledTransfer.class).getMatchedCount() == 0) return;
+            Transaction tx = null; String error = null;
+            try {
+                tx = accountService.transfer(st.getFromAccountNumber(), st.getToAccountNumber(), st.getAmount());
+            } catch (PartitionNotOwnedException moved) {
+                // the partition changed hands after the claim; the new owner runs it
+                mongoTemplate.updateFirst(ours, new Update().set("status", "PENDING").unset("claimToken"), ScheduledTransfer.class);
+                return;
+            } catch (InsufficientBalanceException | LimitExceededException | AccountNotFoundException | IllegalArgumentException | IllegalStateException e) {
+                error = e.getMessage();
+            }
+            mongoTemplate.updateFirst(ours, afterRun(st, tx, error, Instant.now()), ScheduledTransfer.class);
+            if (error == null) executed.increment(); else failed.increment();
+        } catch (RuntimeException e) {
+            // the outcome is unknown, so the entry stays EXECUTING for an operator rather than being retried into a double payment
+            log.error("Scheduled transfer {} ended in an unknown state", st.getId(), e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // the state to write back after one occurrence ran (tx set) or was declined (error set).
+    // Catch-up policy: an order that fell behind (an outage, a node that held the claim) pays once for the occurrence it just
+    // ran; every later occurrence that is already due by `now` is skipped, so a daily order ten days late is not paid ten times.
+    static Update afterRun(ScheduledTransfer st, Transaction tx, String error, Instant now) {
+        int occurrences = st.getRuns() + st.getFailures() + st.getSkipped() + 1, skipped = 0;
+        Instant next = nextOccurrence(st.getRecurrence(), st.getFirstRunAt(), occurrences);
+        while (next != null && !next.isAfter(now) && (st.getEndAt() == null || !next.isAfter(st.getEndAt()))) {
+            next = nextOccurrence(st.getRecurrence(), st.getFirstRunAt(), occurrences + ++skipped);
+        }
+        boolean finished = next == null || (st.getEndAt() != null && next.isAfter(st.getEndAt()));
+        Update u = new Update().unset("claimToken").unset("claimedUntil");
+        if (error == null) { u.inc("runs", 1).set("lastTransactionId", tx.getId()); } else { u.inc("failures", 1).set("lastError", error); }
+        if (skipped > 0) u.inc("skipped", skipped);
+        if (finished) u.set("status", error != null && "NONE".equals(st.getRecurrence()) ? "FAILED" : "COMPLETED");
+        else u.set("status", "PENDING").set("nextRunAt", next);
+        return u;
+    }
+
+    // n-th occurrence counted from the first run, so monthly orders keep their day of month instead of drifting after a short month
+    static Instant nextOccurrence(String recurrence, Instant firstRunAt, int n) {
+        return switch (recurrence) {
+            case "DAILY" -> firstRunAt.atOffset(ZoneOffset.UTC).plusDays(n).toInstant();
+            case "WEEKLY" -> firstRunAt.atOffset(ZoneOffset.UTC).plusWeeks(n).toInstant();
+            case "MONTHLY" -> firstRunAt.atOffset(ZoneOffset.UTC).plusMonths(n).toInstant();
+            default -> null;
+        };
+    }
+
+    int inFlight() { return inFlight.get(); }
+
+    @PreDestroy
+    public void shutdown() { workers.shutdown(); }
+}
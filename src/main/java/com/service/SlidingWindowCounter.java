@@ -0,0 +1,60 @@
+package com.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ A sliding-window sum split into `buckets` slices of `bucketMillis` each, one long per slice.
+ Each slot packs the slice number (low TAG_BITS bits of now / bucketMillis) in its top bits and the running sum below it,
+ so adding is a single CAS and a slot left over from an older lap is recognised by its tag and reset in the same CAS.
+ Sums saturate at MAX_VALUE (about 1.7e13) rather than wrapping.
+*/
+final class SlidingWindowCounter {
+    private static final int TAG_BITS = 20;
+    static final long MAX_VALUE = (1L << (64 - TAG_BITS)) - 1;
+    private static final long TAG_MASK = (1L << TAG_BITS) - 1;
+    private final AtomicLongArray slots;
+    private final long bucketMillis;
+
+    SlidingWindowCounter(long windowMillis, int buckets) {
+        if (buckets <= 0 || buckets > TAG_MASK) throw new IllegalArgumentException("buckets must be between 1 and " + TAG_MASK);
+        if (windowMillis < buckets) throw new IllegalArgumentException("window must be at least one millisecond per bucket");
+        this.slots = new AtomicLongArray(buckets);
+        this.bucketMillis = windowMillis / buckets;
+    }
+
+    long windowMillis() { return bucketMillis * slots.length(); }
+
+    void add(long nowMillis, long delta) {
+        long bucket = nowMillis / bucketMillis;
+        int i = (int) (bucket % slots.length());
+        long tag = bucket & TAG_MASK;
+        while (true) {
+            long v = slots.get(i);
+            long base = (v >>> (64 - TAG_BITS)) == tag ? v & MAX_VALUE : 0;
+            long next = (tag << (64 - TAG_BITS)) | Math.min(MAX_VALUE, Math.max(0, base + delta));
+            if (slots.compareAndSet(i, v, next)) return;
+        }
+    }
+
+    long sum(long nowMillis) {
+        long current = nowMillis / bucketMillis, total = 0;
+        for (long b = current - slots.length() + 1; b <= current; b++) total += valueOf(b);
+        return total;
+    }
+
+    // how long until the window's sum drops to `target` or below, as its oldest slices age out; 0 when it already has
+    long millisUntilAtMost(long nowMillis, long target) {
+        long current = nowMillis / bucketMillis, total = sum(nowMillis);
+        for (long b = current - slots.length() + 1; b <= current && total > target; b++) {
+            total -= valueOf(b);
+            if (total <= target) return (b + slots.length()) * bucketMillis - nowMillis;
+        }
+        return 0;
+    }
+
+    private long valueOf(long bucket) {
+        if (bucket < 0) return 0;
+        long v = slots.get((int) (bucket % slots.length()));
+        return (v >>> (64 - TAG_BITS)) == (bucket & TAG_MASK) ? v & MAX_VALUE : 0;
+    }
+}
@@ -0,0 +1,221 @@
+package com.service;
+
+import com.dto.Statement;
+import com.exception.AccountNotFoundException;
+import com.model.Account;
+import com.model.DailyRollup;
+import com.model.Transaction;
+import com.mongodb.bulk.BulkWriteError;
+import com.repository.AccountRepository;
+import org.bson.Document;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Statements served from per-account daily rollups instead of the ledger.
+ - every customer leg that is written bumps its account's rollup for that UTC day with one $inc upsert
+   (every leg, end-of-day ones included, is handed over by OutboxDispatcher)
+ - a leg is counted exactly once, however late it is replayed: its ledger row gets rolledUp=true once its increment is in,
+   and a replay skips rows that have it. Between the increment and that mark the leg id sits in the rollup's appliedLegIds,
+   which the upsert is conditional on, so a crash in between doesn't count it twice either; the id is pulled again
+   with the mark, so appliedLegIds only ever holds the legs in flight
+ - a statement reads one rollup per day that had activity, so its cost follows the number of days, not of transactions
+ - rebuild() recomputes rollups from the ledger with one aggregation ending in $merge; it is for backfilling and repair.
+   It refuses while any account in scope has outbox entries, whose legs may be in the ledger without their increment yet.
+   The merge replaces the totals but keeps appliedLegIds, so a leg replayed afterwards is still counted once; an increment
+   landing while it runs for the same day can still be overwritten, so run it when the accounts are quiet
+ - transfers from before legs existed have no row on the receiver's side until backfilled (LedgerVerificationService),
+   so rebuild() credits the receiver from the payer's row, looked up by destinationAccountNumber
+*/
+@Service
+@Profile("!simulation")
+public class StatementService {
+    private static final Logger log = LoggerFactory.getLogger(StatementService.class);
+    private final MongoTemplate mongoTemplate; private final AccountRepository accountRepository;
+    private final int maxDays;
+
+    public StatementService(MongoTemplate mongoTemplate, AccountRepository accountRepository,
+                            @Value("${banking.statement.max-days:366}") int maxDays) {
+        this.mongoTemplate = mongoTemplate; this.accountRepository = accountRepository; this.maxDays = maxDays;
+    }
+
+    // `from` defaults to the first of to's month and `to` to today (UTC)
+    public Statement statement(String accountNumber, LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+        LocalDate start = from != null ? from : end.withDayOfMonth(1);
+        if (start.isAfter(end)) throw new IllegalArgumentException("from must not be after to");
+        if (ChronoUnit.DAYS.between(start, end) >= maxDays) throw new IllegalArgumentException("A statement covers at most " + maxDays + " days");
+        Account acc = account(accountNumber);
+        Query q = Query.query(where("_id").gte(DailyRollup.idOf(acc.getId(), start.toString())).lte(DailyRollup.idOf(acc.getId(), end.toString())))
+                .with(Sort.by("_id"));
+        q.fields().exclude("appliedLegIds");
+        List<DailyRollup> days = mongoTemplate.find(q, DailyRollup.class);
+        long credited = 0, debited = 0;
+        Map<String, DailyRollup.TypeTotals> byType = new LinkedHashMap<>();
+        for (DailyRollup d : days) {
+            credited += d.getCredited(); debited += d.getDebited();
+            d.getTypes().forEach((type, t) -> byType.computeIfAbsent(type, k -> new DailyRollup.TypeTotals()).add(t));
+        }
+        return new Statement(accountNumber, start, end, credited, debited, byType, days);
+    }
+
+    private Account account(String accountNumber) {
+        return accountRepository.findWithoutOutboxByAccountNumber(accountNumber).orElseThrow(() -> new AccountNotFoundException("No account: " + accountNumber));
+    }
+
+    // one unordered bulk of $inc upserts; legs of SYSTEM:* accounts are not rolled up. The legs must be in the ledger already.
+    // A duplicate key on an upsert means either that another writer created the day's document first, which the retry
+    // then updates, or that the leg was already counted, which fails the same way again and is left alone.
+    public void apply(List<Transaction> legs) {
+        List<Transaction> customer = legs.stream()
+                .filter(l -> l.getAccountId() != null && !l.getAccountId().startsWith("SYSTEM:") && l.getTimestamp() != null).toList();
+        if (customer.isEmpty()) return;
+        List<Transaction> pending = notRolledUp(customer);
+        increment(pending);
+        markRolledUp(pending);
+    }
+
+    private List<Transaction> notRolledUp(List<Transaction> legs) {
+        Query counted = Query.query(where("_id").in(legs.stream().map(Transaction::getId).toList()).and("rolledUp").is(true));
+        counted.fields().include("_id");
+        Set<String> done = new HashSet<>();
+        for (Transaction t : mongoTemplate.find(counted, Transaction.class)) done.add(t.getId());
+        return done.isEmpty() ? legs : legs.stream().filter(l -> !done.contains(l.getId())).toList();
+    }
+
+    private void increment(List<Transaction> legs) {
+        List<Transaction> pending = legs;
+        for (int attempt = 0; attempt < 2 && !pending.isEmpty(); attempt++) {
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyRollup.class);
+            for (Transaction leg : pending) {
+                String day = dayOf(leg);
+                ops.upsert(Query.query(where("_id").is(DailyRollup.idOf(leg.getAccountId(), day)).and("appliedLegIds").ne(leg.getId())), increment(leg, day));
+            }
+            try {
+                ops.execute();
+                return;
+            } catch (BulkOperationException e) {
+                List<Transaction> retry = new ArrayList<>();
+                for (BulkWriteError err : e.getErrors()) {
+                    if (err.getCode() != 11000) throw e;
+                    retry.add(pending.get(err.getIndex()));
+                }
+                pending = retry;
+            }
+        }
+    }
+
+    // the mark comes first: if the pull is lost, a leftover id only keeps its already-marked leg out of the rollup
+    private void markRolledUp(List<Transaction> legs) {
+        if (legs.isEmpty()) return;
+        mongoTemplate.updateMulti(Query.query(where("_id").in(legs.stream().map(Transaction::getId).toList())),
+                Update.update("rolledUp", true), Transaction.class);
+        Map<String, List<String>> byRollup = new LinkedHashMap<>();
+        for (Transaction leg : legs) byRollup.computeIfAbsent(DailyRollup.idOf(leg.getAccountId(), dayOf(leg)), k -> new ArrayList<>()).add(leg.getId());
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyRollup.class);
+        byRollup.forEach((id, legIds) -> ops.updateOne(Query.query(where("_id").is(id)), new Update().pullAll("appliedLegIds", legIds.toArray())));
+        ops.execute();
+    }
+
+    private static String dayOf(Transaction leg) { return leg.getTimestamp().atOffset(ZoneOffset.UTC).toLocalDate().toString(); }
+
+    static Update increment(Transaction leg, String day) {
+        String side = Transaction.CREDIT.equals(leg.getDirection()) ? "credited" : "debited";
+        return new Update().setOnInsert("accountId", leg.getAccountId()).setOnInsert("day", day)
+                .inc(side, leg.getAmount())
+                .inc("types." + leg.getType() + ".count", 1)
+                .inc("types." + leg.getType() + "." + side, leg.getAmount())
+                .push("appliedLegIds", leg.getId());
+    }
+
+    // recomputes the rollups of one account, or of every account when accountNumber is null; returns how many rollups were written
+    public long rebuild(String accountNumber) {
+        Account acc = accountNumber == null ? null : account(accountNumber);
+        Query pending = Query.query(where("outboxSince").exists(true));
+        if (acc != null) pending.addCriteria(where("_id").is(acc.getId()));
+        if (mongoTemplate.exists(pending, Account.class)) {
+            throw new IllegalStateException("Movements are still being recorded" + (acc == null ? "" : " for " + accountNumber) + "; try again shortly");
+        }
+        Document match = acc == null
+                ? new Document("accountId", new Document("$not", new Document("$regex", "^SYSTEM:")))
+                : new Document("accountId", acc.getId());
+        String ledger = mongoTemplate.getCollectionName(Transaction.class), target = mongoTemplate.getCollectionName(DailyRollup.class);
+        List<Document> legacy = acc == null ? legacyIncoming(null, null, mongoTemplate.getCollectionName(Account.class)) : legacyIncoming(accountNumber, acc.getId(), null);
+        long started = System.currentTimeMillis();
+        mongoTemplate.getCollection(ledger).aggregate(pipeline(match, ledger, legacy, target)).allowDiskUse(true).toCollection();
+        long written = mongoTemplate.count(Query.query(where("_id").regex(accountNumber == null ? "^" : "^" + match.getString("accountId") + ":")), DailyRollup.class);
+        log.info("Rebuilt {} daily rollups in {} ms", written, System.currentTimeMillis() - started);
+        return written;
+    }
+
+    // payer rows of legacy transfers into one account (accountNumber and its id) or into every account (looked up by number
+    // in the accounts collection), as receiver-side rows with a positive amount. The type filter lets them use the
+    // legacy_transfer_destination partial index
+    static List<Document> legacyIncoming(String accountNumber, String accountId, String accounts) {
+        Document match = new Document("type", "TRANSFER").append("direction", new Document("$exists", false))
+                .append("destinationAccountNumber", accountNumber != null ? accountNumber : new Document("$exists", true));
+        List<Document> stages = new ArrayList<>();
+        stages.add(new Document("$match", match));
+        if (accountId != null) {
+            stages.add(new Document("$set", new Document("accountId", accountId)));
+        } else {
+            stages.add(new Document("$lookup", new Document("from", accounts).append("localField", "destinationAccountNumber")
+                    .append("foreignField", "accountNumber").append("as", "receiver")));
+            stages.add(new Document("$unwind", "$receiver"));
+            stages.add(new Document("$set", new Document("accountId", new Document("$toString", "$receiver._id"))));
+        }
+        stages.add(new Document("$project", new Document("accountId", 1).append("type", 1).append("day", day()).append("signed", "$amount")));
+        return stages;
+    }
+
+    private static Document day() {
+        return new Document("$dateToString", new Document("format", "%Y-%m-%d").append("date", "$timestamp").append("timezone", "UTC"));
+    }
+
+    static List<Document> pipeline(Document match, String ledger, List<Document> legacy, String target) {
+        Document signed = Journal.signedAmount();
+        Document credit = new Document("$cond", List.of(new Document("$gt", List.of("$signed", 0)), "$signed", 0));
+        Document debit = new Document("$cond", List.of(new Document("$lt", List.of("$signed", 0)), new Document("$multiply", List.of("$signed", -1)), 0));
+        return List.of(
+                new Document("$match", match),
+                new Document("$project", new Document("accountId", 1).append("type", 1).append("day", day()).append("signed", signed)),
+                new Document("$unionWith", new Document("coll", ledger).append("pipeline", legacy)),
+                new Document("$group", new Document("_id", new Document("a", "$accountId").append("d", "$day").append("t", "$type"))
+                        .append("count", new Document("$sum", 1))
+                        .append("credited", new Document("$sum", credit))
+                        .append("debited", new Document("$sum", debit))),
+                new Document("$group", new Document("_id", new Document("a", "$_id.a").append("d", "$_id.d"))
+                        .append("types", new Document("$push", new Document("k", "$_id.t")
+                                .append("v", new Document("count", "$count").append("credited", "$credited").append("debited", "$debited"))))
+                        .append("credited", new Document("$sum", "$credited"))
+                        .append("debited", new Document("$sum", "$debited"))),
+                new Document("$project", new Document("_id", new Document("$concat", List.of("$_id.a", ":", "$_id.d")))
+                        .append("accountId", "$_id.a").append("day", "$_id.d")
+                        .append("credited", 1).append("debited", 1)
+                        .append("types", new Document("$arrayToObject", "$types"))),
+                new Document("$merge", new Document("into", target).append("on", "_id")
+                        .append("whenMatched", List.of(new Document("$set", new Document("accountId", "$$new.accountId").append("day", "$$new.day")
+                                .append("credited", "$$new.credited").append("debited", "$$new.debited").append("types", "$$new.types"))))
+                        .append("whenNotMatched", "insert")));
+    }
+}
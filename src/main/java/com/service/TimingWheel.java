@@ -0,0 +1,88 @@
+package com.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ Hierarchical timing wheel: O(1) to schedule, and O(1) amortised per tick to find what is due, however many items are waiting.
+ Level 0 has `wheelSize` slots of `tickMillis`; each level above has slots `wheelSize` times wider. An item goes into the
+ lowest level whose window reaches its deadline, and moves down a level when the clock enters its slot (cascading).
+ Items never fire early: the deadline is rounded up to the next tick.
+ Deadlines beyond the top level are refused; callers keep those in durable storage and offer them again later.
+*/
+final class TimingWheel<T> {
+    private final long tickMillis; private final int wheelSize; private final int levels;
+    private final long[] slotMillis;                 // width of one slot per level
+    private final List<List<ArrayDeque<Entry<T>>>> wheels = new ArrayList<>();
+    private final List<T> ready = new ArrayList<>(); // already due when scheduled
+    private long currentTime;                        // start of the current level-0 tick
+    private int size;
+
+    private record Entry<T>(T item, long deadline) {}
+
+    TimingWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2 || levels < 1) throw new IllegalArgumentException("tick, size and levels must be positive");
+        this.tickMillis = tickMillis; this.wheelSize = wheelSize; this.levels = levels;
+        this.slotMillis = new long[levels];
+        long w = tickMillis;
+        for (int i = 0; i < levels; i++) {
+            slotMillis[i] = w; w = Math.multiplyExact(w, wheelSize);
+            List<ArrayDeque<Entry<T>>> wheel = new ArrayList<>(wheelSize);
+            for (int s = 0; s < wheelSize; s++) wheel.add(new ArrayDeque<>());
+            wheels.add(wheel);
+        }
+        this.currentTime = startMillis - Math.floorMod(startMillis, tickMillis);
+    }
+
+    // furthest deadline (relative to the wheel's clock) that schedule() accepts
+    long horizonMillis() { return slotMillis[levels - 1] * wheelSize; }
+
+    synchronized int size() { return size; }
+
+    // false when the deadline is beyond the horizon
+    synchronized boolean schedule(T item, long deadlineMillis) {
+        if (!place(new Entry<>(item, deadlineMillis))) return false;
+        size++;
+        return true;
+    }
+
+    // moves the clock to `nowMillis` and returns everything whose deadline has passed, in deadline-slot order
+    synchronized List<T> advance(long nowMillis) {
+        List<T> due = new ArrayList<>(ready);
+        ready.clear();
+        while (currentTime + tickMillis <= nowMillis) {
+            currentTime += tickMillis;
+            ArrayDeque<Entry<T>> slot = bucket(0, currentTime / tickMillis);
+            for (Entry<T> e : slot) due.add(e.item());
+            slot.clear();
+            // cascading after the drain, so an entry moved down exactly one rotation ahead waits in the emptied slot
+            for (int level = levels - 1; level >= 1; level--) {
+                if (currentTime % slotMillis[level] != 0) continue;
+                ArrayDeque<Entry<T>> bucket = bucket(level, currentTime / slotMillis[level]);
+                List<Entry<T>> moving = new ArrayList<>(bucket);
+                bucket.clear();
+                for (Entry<T> e : moving) place(e);
+            }
+            due.addAll(ready);
+            ready.clear();
+        }
+        size -= due.size();
+        return due;
+    }
+
+    private boolean place(Entry<T> e) {
+        long slot0 = Math.floorDiv(e.deadline() + tickMillis - 1, tickMillis);
+        long current0 = currentTime / tickMillis;
+        if (slot0 <= current0) { ready.add(e.item()); return true; }
+        // a distance of exactly wheelSize lands in the slot that was just emptied, which comes round again right on time
+        if (slot0 - current0 <= wheelSize) { bucket(0, slot0).add(e); return true; }
+        for (int level = 1; level < levels; level++) {
+            long q = Math.floorDiv(e.deadline(), slotMillis[level]), cur = currentTime / slotMillis[level];
+            if (q > cur && q - cur <= wheelSize) { bucket(level, q).add(e); return true; }
+        }
+        return false;
+    }
+
+    private ArrayDeque<Entry<T>> bucket(int level, long slot) { return wheels.get(level).get((int) Math.floorMod(slot, (long) wheelSize)); }
+}
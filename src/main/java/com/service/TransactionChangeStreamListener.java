@@ -0,0 +1,85 @@
+package com.service;
+
+import com.model.Transaction;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+
+/*
+ Feeds AccountEventBus from a Mongo change stream on the transaction collection (needs a replica set).
+ I am keeping the last resume token in memory so that a dropped cursor resumes exactly where it stopped.
+ If the server refuses to open the very first stream (a standalone mongod answers with a command error), I am switching the
+ bus back to the in-process events and stopping, instead of retrying forever while subscribers receive nothing.
+ Network errors are still retried, since the server may simply not be up yet.
+*/
+@Component
+@ConditionalOnProperty(name = "banking.events.source", havingValue = "change-stream")
+public class TransactionChangeStreamListener {
+    private static final Logger log = LoggerFactory.getLogger(TransactionChangeStreamListener.class);
+    private final MongoTemplate mongoTemplate; private final AccountEventBus bus;
+    private volatile BsonDocument resumeToken; private volatile boolean running = true; private Thread worker;
+
+    public TransactionChangeStreamListener(MongoTemplate mongoTemplate, AccountEventBus bus) {
+        this.mongoTemplate = mongoTemplate; this.bus = bus;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        worker = new Thread(this::run, "transaction-change-stream");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    void run() {
+        String collection = mongoTemplate.getCollectionName(Transaction.class);
+        boolean opened = false;
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = open(collection)) {
+                opened = true;
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) continue;
+                    resumeToken = change.getResumeToken();
+                    if (change.getFullDocument() != null) {
+                        bus.dispatch(mongoTemplate.getConverter().read(Transaction.class, change.getFullDocument()));
+                    }
+                }
+            } catch (MongoCommandException e) {
+                if (!running) return;
+                if (!opened) {
+                    log.warn("Change streams are not available ({}); delivering account events from in-process events instead", e.getErrorMessage());
+                    bus.useLocalSource();
+                    return;
+                }
+                log.warn("Transaction change stream interrupted, resuming in 1s: {}", e.getMessage());
+                try { Thread.sleep(1000); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); return; }
+            } catch (RuntimeException e) {
+                if (!running) return;
+                log.warn("Transaction change stream interrupted, resuming in 1s: {}", e.getMessage());
+                try { Thread.sleep(1000); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); return; }
+            }
+        }
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> open(String collection) {
+        var watch = mongoTemplate.getCollection(collection).watch(List.of(Aggregates.match(Filters.eq("operationType", "insert"))));
+        if (resumeToken != null) { watch = watch.resumeAfter(resumeToken); }
+        return watch.cursor();
+    }
+
+    @PreDestroy
+    public void stop() { running = false; if (worker != null) worker.interrupt(); }
+}
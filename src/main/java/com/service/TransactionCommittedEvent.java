@@ -0,0 +1,10 @@
+package com.service;
+
+import com.model.Transaction;
+
+// I am publishing this after a ledger entry is saved so that listeners (event stream etc.) don't need to poll the repository.
+public class TransactionCommittedEvent {
+    private final Transaction transaction;
+    public TransactionCommittedEvent(Transaction transaction) { this.transaction = transaction; }
+    public Transaction getTransaction() { return transaction; }
+}
@@ -0,0 +1,224 @@
+package com.service;
+
+import com.exception.LimitExceededException;
+import com.model.Account;
+import com.model.OutboxEntry;
+import com.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+ Per-account velocity limits (amount or count of withdrawals / transfers inside a sliding window), answered from memory.
+ - each cached account holds one SlidingWindowCounter per rule; a miss rebuilds them from the account's debit legs
+   inside the longest window, read through the (accountId, _id) index since ObjectIds start with their creation time,
+   plus the debit legs still pending in the account's outbox
+ - check and record are called inside PartitionOwnership.execute, so one account is checked and counted by one thread
+   at a time, and only the node that owns an account counts it; entries for partitions this node gave up are dropped
+   by the sweep so they are rebuilt if the partition comes back
+ - a rule with a limit of 0 is off, and with every rule off nothing is cached or read
+ - the simulation profile builds its own instance over the in-memory ledger (see SimulationConfig)
+*/
+@Component
+@Profile("!simulation")
+public class VelocityLimiter {
+    enum Measure { AMOUNT, COUNT }
+    record Rule(String name, String type, Measure measure, long windowMillis, long limit) {}
+
+    // an account's debit legs of the given types with a timestamp after sinceMillis, read when its windows are rebuilt
+    public interface DebitHistory { List<Transaction> debitsSince(Account acc, List<String> types, long sinceMillis); }
+
+    private static final long MINUTE = 60_000L, DAY = 86_400_000L;
+    private final DebitHistory history; private final Predicate<String> owned;
+    private final List<Rule> rules; private final int buckets; private final int maxAccounts; private final long longestWindow;
+    private final Map<String, Windows> cache = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejected = new ConcurrentHashMap<>();
+    private final Counter rebuilds; private final MeterRegistry registry;
+
+    @Autowired
+    public VelocityLimiter(MongoTemplate mongoTemplate, PartitionOwnership ownership, MeterRegistry registry,
+                           @Value("${banking.limits.withdraw-amount-per-day:0}") long withdrawAmountPerDay,
+                           @Value("${banking.limits.transfer-amount-per-day:0}") long transferAmountPerDay,
+                           @Value("${banking.limits.transfer-count-per-minute:0}") long transferCountPerMinute,
+                           @Value("${banking.limits.buckets:60}") int buckets,
+                           @Value("${banking.limits.max-accounts:100000}") int maxAccounts) {
+        this(mongoTemplate, ownership, registry, rules(withdrawAmountPerDay, transferAmountPerDay, transferCountPerMinute), buckets, maxAccounts);
+    }
+
+    // a single node that owns every account, reading its history from wherever that engine keeps the ledger
+    public VelocityLimiter(DebitHistory history, MeterRegistry registry, long withdrawAmountPerDay, long transferAmountPerDay,
+                           long transferCountPerMinute, int buckets, int maxAccounts) {
+        this(history, accountNumber -> true, registry, rules(withdrawAmountPerDay, transferAmountPerDay, transferCountPerMinute), buckets, maxAccounts);
+    }
+
+    VelocityLimiter(MongoTemplate mongoTemplate, PartitionOwnership ownership, MeterRegistry registry, List<Rule> rules, int buckets, int maxAccounts) {
+        this((acc, types, since) -> ledgerDebits(mongoTemplate, acc, types, since), ownership::ownsAccount, registry, rules, buckets, maxAccounts);
+    }
+
+    private VelocityLimiter(DebitHistory history, Predicate<String> owned, MeterRegistry registry, List<Rule> rules, int buckets, int maxAccounts) {
+        if (maxAccounts <= 0) throw new IllegalArgumentException("banking.limits.max-accounts must be positive");
+        this.history = history; this.owned = owned; this.registry = registry;
+        this.rules = List.copyOf(rules); this.buckets = buckets; this.maxAccounts = maxAccounts;
+        this.longestWindow = this.rules.stream().mapToLong(Rule::windowMillis).max().orElse(0);
+        this.rebuilds = Counter.builder("banking.limits.rebuilds").description("Accounts whose windows were rebuilt from the ledger").register(registry);
+        // bound to this instance (held weakly by the registry) rather than to the map, as PartitionOwnership does
+        Gauge.builder("banking.limits.cached.accounts", this, VelocityLimiter::cachedAccounts).register(registry);
+    }
+
+    private static List<Rule> rules(long withdrawAmountPerDay, long transferAmountPerDay, long transferCountPerMinute) {
+        return List.of(new Rule("withdraw-amount-per-day", "WITHDRAW", Measure.AMOUNT, DAY, withdrawAmountPerDay),
+                new Rule("transfer-amount-per-day", "TRANSFER", Measure.AMOUNT, DAY, transferAmountPerDay),
+                new Rule("transfer-count-per-minute", "TRANSFER", Measure.COUNT, MINUTE, transferCountPerMinute))
+                .stream().filter(r -> r.limit() > 0).toList();
+    }
+
+    public boolean isEnabled() { return !rules.isEmpty(); }
+
+    // throws LimitExceededException when debiting `amount` from this account now would break a rule
+    public void check(Account acc, String type, long amount, long nowMillis) {
+        if (rules.isEmpty()) return;
+        Windows w = windowsFor(acc, nowMillis);
+        for (int r = 0; r < rules.size(); r++) {
+            Rule rule = rules.get(r);
+            if (!rule.type().equals(type)) continue;
+            long add = rule.measure() == Measure.AMOUNT ? amount : 1;
+            SlidingWindowCounter c = w.counters[r];
+            if (c.sum(nowMillis) + add <= rule.limit()) continue;
+            rejected.computeIfAbsent(rule.name(), n -> Counter.builder("banking.limits.rejected").tag("rule", n).register(registry)).increment();
+            // a single request above the limit never fits, so the client is told to wait out a whole window
+            long waitMillis = add > rule.limit() ? c.windowMillis() : c.millisUntilAtMost(nowMillis, rule.limit() - add);
+            throw new LimitExceededException(rule.name(), "Limit " + rule.name() + " (" + rule.limit() + ") reached for " + acc.getAccountNumber(),
+                    Math.max(1, (waitMillis + 999) / 1000));
+        }
+    }
+
+    // counts a debit that has been written; called after the balance update succeeded
+    public void record(Account acc, String type, long amount, long nowMillis) {
+        if (rules.isEmpty()) return;
+        Windows w = windowsFor(acc, nowMillis);
+        for (int r = 0; r < rules.size(); r++) {
+            Rule rule = rules.get(r);
+            if (rule.type().equals(type)) w.counters[r].add(nowMillis, rule.measure() == Measure.AMOUNT ? amount : 1);
+        }
+        w.lastUsed = nowMillis;
+    }
+
+    public void forget(String accountNumber) { cache.remove(accountNumber); }
+
+    private Windows windowsFor(Account acc, long nowMillis) {
+        Windows w = cache.get(acc.getAccountNumber());
+        if (w != null) { w.lastUsed = nowMillis; return w; }
+        if (cache.size() >= maxAccounts) evict(nowMillis);
+        w = rebuild(acc, nowMillis);
+        Windows raced = cache.putIfAbsent(acc.getAccountNumber(), w);
+        return raced != null ? raced : w;
+    }
+
+    private Windows rebuild(Account acc, long nowMillis) {
+        Windows w = new Windows(nowMillis);
+        long since = nowMillis - longestWindow;
+        List<String> types = rules.stream().map(Rule::type).distinct().toList();
+        for (Transaction leg : history.debitsSince(acc, types, since)) {
+            long at = leg.getTimestamp().toEpochMilli();
+            for (int r = 0; r < rules.size(); r++) {
+                Rule rule = rules.get(r);
+                if (rule.type().equals(leg.getType()) && nowMillis - at < rule.windowMillis()) w.counters[r].add(at, rule.measure() == Measure.AMOUNT ? leg.getAmount() : 1);
+            }
+        }
+        rebuilds.increment();
+        return w;
+    }
+
+    // drops accounts idle for longer than every window (their counters are empty anyway) and accounts this node no longer owns
+    @Scheduled(fixedDelayString = "${banking.limits.sweep-ms:3000}")
+    public void sweep() {
+        if (!cache.isEmpty()) evict(System.currentTimeMillis());
+    }
+
+    private void evict(long nowMillis) {
+        for (Iterator<Map.Entry<String, Windows>> it = cache.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Windows> e = it.next();
+            if (nowMillis - e.getValue().lastUsed > longestWindow || !owned.test(e.getKey())) it.remove();
+        }
+        // still full of recently active accounts: drop an arbitrary tenth, they are rebuilt on their next debit
+        if (cache.size() >= maxAccounts) {
+            List<String> victims = new ArrayList<>();
+            for (String n : cache.keySet()) { if (victims.size() >= Math.max(1, maxAccounts / 10)) break; victims.add(n); }
+            victims.forEach(cache::remove);
+        }
+    }
+
+    // the ledger plus the legs still waiting in the account's outbox, which the dispatcher has not written yet. The outbox is
+    // read first: a leg dispatched between the two reads is then found in the ledger, and one found in both counts once.
+    // Transfers that were reversed (the receiver was closed meanwhile) are left out, as the live path never counted them.
+    private static List<Transaction> ledgerDebits(MongoTemplate mongoTemplate, Account acc, List<String> types, long since) {
+        Map<String, Transaction> debits = new LinkedHashMap<>(); Set<String> reversed = new HashSet<>();
+        Query pending = Query.query(where("_id").is(acc.getId()).and("outboxSince").exists(true));
+        pending.fields().include("outbox.legs");
+        Account withOutbox = mongoTemplate.findOne(pending, Account.class);
+        if (withOutbox != null && withOutbox.getOutbox() != null) {
+            for (OutboxEntry e : withOutbox.getOutbox()) {
+                for (Transaction leg : e.getLegs()) {
+                    if (acc.getId().equals(leg.getAccountId()) && Transaction.DEBIT.equals(leg.getDirection()) && types.contains(leg.getType())
+                            && leg.getTimestamp().toEpochMilli() > since) debits.put(leg.getId(), leg);
+                    if (Journal.TRANSFER_REVERSAL.equals(leg.getType()) && leg.getNote() != null && leg.getNote().startsWith(Journal.REVERSAL_OF)) {
+                        reversed.add(leg.getNote().substring(Journal.REVERSAL_OF.length()));
+                    }
+                }
+            }
+        }
+        // a minute of slack on the _id bound covers clock differences between the nodes that wrote the legs
+        ObjectId from = new ObjectId(new Date(Math.max(0, since - MINUTE)));
+        Query q = Query.query(where("accountId").is(acc.getId()).and("_id").gte(from)
+                .and("type").in(types).and("direction").ne(Transaction.CREDIT).and("timestamp").gt(Instant.ofEpochMilli(since)))
+                .with(Sort.by("_id"));
+        q.fields().include("type").include("amount").include("timestamp").include("journalId");
+        for (Transaction t : mongoTemplate.find(q, Transaction.class)) debits.put(t.getId(), t);
+        // a reversal is written right after its transfer, so its suspense leg sits inside the same _id bound
+        List<String> notes = debits.values().stream().filter(t -> "TRANSFER".equals(t.getType()) && t.getJournalId() != null)
+                .map(t -> Journal.REVERSAL_OF + t.getJournalId()).toList();
+        if (!notes.isEmpty()) {
+            Query r = Query.query(where("accountId").is(Journal.SUSPENSE).and("_id").gte(from)
+                    .and("type").is(Journal.TRANSFER_REVERSAL).and("note").in(notes));
+            r.fields().include("note");
+            for (Transaction t : mongoTemplate.find(r, Transaction.class)) reversed.add(t.getNote().substring(Journal.REVERSAL_OF.length()));
+        }
+        List<Transaction> counted = new ArrayList<>();
+        for (Transaction t : debits.values()) if (t.getJournalId() == null || !reversed.contains(t.getJournalId())) counted.add(t);
+        return counted;
+    }
+
+    int cachedAccounts() { return cache.size(); }
+
+    private final class Windows {
+        final SlidingWindowCounter[] counters = new SlidingWindowCounter[rules.size()];
+        volatile long lastUsed;
+        Windows(long nowMillis) {
+            for (int r = 0; r < counters.length; r++) counters[r] = new SlidingWindowCounter(rules.get(r).windowMillis(), buckets);
+            lastUsed = nowMillis;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.service;
+
+import com.dto.WorkloadReport; import com.dto.WorkloadRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/*
+ CLI entry point of the workload generator, e.g.
+ java -jar app.jar --spring.profiles.active=simulation --spring.main.web-application-type=none \
+      --banking.workload.run=true --banking.workload.accounts=10000 --banking.workload.mode=OPEN --banking.workload.target-rate=50000
+ Prints the report as JSON and exits.
+*/
+@Component
+@ConditionalOnProperty(name = "banking.workload.run", havingValue = "true")
+public class WorkloadCommandLineRunner implements CommandLineRunner {
+    private final WorkloadGenerator generator; private final Environment env; private final ObjectMapper mapper; private final ConfigurableApplicationContext context;
+
+    public WorkloadCommandLineRunner(WorkloadGenerator generator, Environment env, ObjectMapper mapper, ConfigurableApplicationContext context) {
+        this.generator = generator; this.env = env; this.mapper = mapper; this.context = context;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        WorkloadRequest req = Binder.get(env).bind("banking.workload", WorkloadRequest.class).orElseGet(WorkloadRequest::new);
+        WorkloadReport report = generator.run(req);
+        System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+        System.exit(SpringApplication.exit(context, () -> report.getErrors() == 0 ? 0 : 2));
+    }
+}
@@ -0,0 +1,271 @@
+package com.service;
+
+import com.dto.WorkloadReport; import com.dto.WorkloadRequest;
+import org.HdrHistogram.ConcurrentHistogram; import org.HdrHistogram.Histogram;
+import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/*
+ Synthetic deposit / withdraw / transfer traffic through AccountService, used for capacity sizing.
+ - CLOSED loop: `concurrency` workers issue the next operation as soon as the previous one returns (plus think time)
+ - OPEN loop: operations are released at `targetRate` regardless of completions; latency is measured from the
+   intended start time, so a stalled service shows up as queueing delay instead of being hidden (coordinated omission)
+ Operations started during warm-up run but are not recorded. Only successful operations go into the latency histograms
+ and the throughput; failures are counted apart, since a fast rejection would otherwise look like fast service. Throughput
+ is divided by the time until the last measured operation completed, so an open loop that fell behind and drained its
+ backlog after the window is not credited with the backlog as if it had kept up. A backlog still queued `duration +
+ warm-up + 60s` after the window is abandoned, and its operations are reported as errors (`<op>:NotStarted`) rather than
+ dropped from the report.
+*/
+@Service
+public class WorkloadGenerator {
+    private static final Logger log = LoggerFactory.getLogger(WorkloadGenerator.class);
+    private static final String[] OPS = {"DEPOSIT", "WITHDRAW", "TRANSFER"};
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private final AccountService accountService;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final Predicate<String> local; private final long drainGraceSeconds;
+
+    public WorkloadGenerator(AccountService accountService) { this(accountService, accountNumber -> true); }
+
+    // on a cluster node only accounts in partitions this node owns are driven; the others would just be redirected
+    @Autowired
+    public WorkloadGenerator(AccountService accountService, ObjectProvider<PartitionOwnership> ownership) {
+        this(accountService, ownership.getIfAvailable() == null ? accountNumber -> true : ownership.getIfAvailable()::ownsAccount);
+    }
+
+    WorkloadGenerator(AccountService accountService, Predicate<String> local) { this(accountService, local, 60); }
+
+    WorkloadGenerator(AccountService accountService, Predicate<String> local, long drainGraceSeconds) {
+        this.accountService = accountService; this.local = local; this.drainGraceSeconds = drainGraceSeconds;
+    }
+
+    public WorkloadReport run(WorkloadRequest req) {
+        validate(req);
+        if (!running.compareAndSet(false, true)) { throw new IllegalStateException("A workload is already running"); }
+        try {
+            String[] population = createPopulation(req);
+            Run run = new Run(req, population);
+            log.info("Starting {} loop workload on {} accounts for {}s (+{}s warm-up)", req.getMode(), population.length, req.getDurationSeconds(), req.getWarmupSeconds());
+            if ("OPEN".equalsIgnoreCase(req.getMode())) { run.openLoop(); } else { run.closedLoop(); }
+            WorkloadReport report = run.report();
+            log.info("Workload finished: {} ops, {} errors, {} ops/s", report.getOperations(), report.getErrors(), Math.round(report.getThroughputPerSecond()));
+            return report;
+        } finally { running.set(false); }
+    }
+
+    private void validate(WorkloadRequest req) {
+        if (req.getAccounts() < 2) throw new IllegalArgumentException("accounts must be at least 2");
+        if (req.getDurationSeconds() <= 0 || req.getWarmupSeconds() < 0) throw new IllegalArgumentException("durationSeconds must be positive and warmupSeconds not negative");
+        if (req.getConcurrency() <= 0 || req.getTargetRate() <= 0) throw new IllegalArgumentException("concurrency and targetRate must be positive");
+        if (req.getDepositWeight() < 0 || req.getWithdrawWeight() < 0 || req.getTransferWeight() < 0
+                || req.getDepositWeight() + req.getWithdrawWeight() + req.getTransferWeight() == 0) throw new IllegalArgumentException("operation weights must be non-negative with a positive total");
+        if (req.getMinAmount() <= 0 || req.getMaxAmount() < req.getMinAmount()) throw new IllegalArgumentException("amounts must satisfy 0 < minAmount <= maxAmount");
+    }
+
+    private String[] createPopulation(WorkloadRequest req) {
+        String[] numbers = new String[req.getAccounts()];
+        for (int i = 0, created = 0; i < numbers.length; created++) {
+            if (created > 1000L * numbers.length) throw new IllegalStateException("This node owns too few partitions to build the population");
+            String n = accountService.createAccount("Sim " + created).getAccountNumber();
+            if (!local.test(n)) continue;
+            numbers[i] = n;
+            if (req.getInitialBalance() > 0) { accountService.deposit(numbers[i], req.getInitialBalance()); }
+            i++;
+        }
+        return numbers;
+    }
+
+    private final class Run {
+        final WorkloadRequest req; final String[] accounts; final AccountPicker picker;
+        final Histogram[] latency = new Histogram[OPS.length];
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        final long startNanos, measureFromNanos, endNanos;
+        final AtomicLong lastCompletedNanos;
+
+        Run(WorkloadRequest req, String[] accounts) {
+            this.req = req; this.accounts = accounts;
+            this.picker = "ZIPF".equalsIgnoreCase(req.getPopularity()) ? new ZipfPicker(accounts.length, req.getZipfExponent()) : (rnd) -> rnd.nextInt(accounts.length);
+            for (int i = 0; i < OPS.length; i++) { latency[i] = new ConcurrentHistogram(HIGHEST_MICROS, 3); }
+            startNanos = System.nanoTime();
+            measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(req.getWarmupSeconds());
+            endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(req.getDurationSeconds());
+            lastCompletedNanos = new AtomicLong(endNanos);
+        }
+
+        void closedLoop() {
+            ExecutorService pool = Executors.newFixedThreadPool(req.getConcurrency());
+            for (int w = 0; w < req.getConcurrency(); w++) {
+                SplittableRandom rnd = new SplittableRandom(req.getSeed() + w);
+                pool.execute(() -> {
+                    while (System.nanoTime() < endNanos) {
+                        execute(rnd, System.nanoTime());
+                        if (req.getThinkTimeMs() > 0) { LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(req.getThinkTimeMs())); }
+                    }
+                });
+            }
+            awaitTermination(pool);
+        }
+
+        void openLoop() {
+            ExecutorService pool = Executors.newFixedThreadPool(req.getConcurrency());
+            SplittableRandom seeds = new SplittableRandom(req.getSeed());
+            double intervalNanos = 1_000_000_000.0 / req.getTargetRate();
+            for (long i = 0; ; i++) {
+                long intended = startNanos + (long) (i * intervalNanos);
+                if (intended >= endNanos) break;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                pool.execute(new Planned(seeds.split(), intended));
+            }
+            awaitTermination(pool);
+        }
+
+        // an open-loop operation waiting in the pool's queue; kept as a class so an abandoned one can still be accounted for
+        final class Planned implements Runnable {
+            final SplittableRandom rnd; final long intended;
+            Planned(SplittableRandom rnd, long intended) { this.rnd = rnd; this.intended = intended; }
+            @Override public void run() { execute(rnd, intended); }
+            // picks the operation it would have run, from the same random stream, so it is charged to the right type
+            void abandoned() {
+                if (intended >= measureFromNanos) errors.computeIfAbsent(OPS[pickOp(rnd)] + ":NotStarted", k -> new LongAdder()).increment();
+            }
+        }
+
+        void execute(SplittableRandom rnd, long intendedStart) {
+            int op = pickOp(rnd);
+            int from = picker.next(rnd);
+            long amount = amount(rnd);
+            try {
+                switch (op) {
+                    case 0 -> accountService.deposit(accounts[from], amount);
+                    case 1 -> accountService.withdraw(accounts[from], amount);
+                    default -> {
+                        int to = picker.next(rnd);
+                        while (to == from) to = rnd.nextInt(accounts.length);
+                        accountService.transfer(accounts[from], accounts[to], amount);
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (intendedStart >= measureFromNanos) {
+                    errors.computeIfAbsent(OPS[op] + ":" + e.getClass().getSimpleName(), k -> new LongAdder()).increment();
+                    completed(System.nanoTime());
+                }
+                return;
+            }
+            if (intendedStart >= measureFromNanos) {
+                long done = System.nanoTime();
+                latency[op].recordValue(Math.min(HIGHEST_MICROS, (done - intendedStart) / 1000));
+                completed(done);
+            }
+        }
+
+        // nanoTime values are only comparable by their difference
+        void completed(long nanos) { lastCompletedNanos.accumulateAndGet(nanos, (last, now) -> now - last > 0 ? now : last); }
+
+        int pickOp(SplittableRandom rnd) {
+            int r = rnd.nextInt(req.getDepositWeight() + req.getWithdrawWeight() + req.getTransferWeight());
+            if (r < req.getDepositWeight()) return 0;
+            return r < req.getDepositWeight() + req.getWithdrawWeight() ? 1 : 2;
+        }
+
+        long amount(SplittableRandom rnd) {
+            long min = req.getMinAmount(), max = req.getMaxAmount();
+            if ("EXPONENTIAL".equalsIgnoreCase(req.getAmountDistribution())) {
+                long v = Math.round(-req.getMeanAmount() * Math.log(1 - rnd.nextDouble()));
+                return Math.max(min, Math.min(max, v));
+            }
+            return min == max ? min : rnd.nextLong(min, max + 1);
+        }
+
+        WorkloadReport report() {
+            // the window itself when the run kept up (or nothing was measured), longer when operations finished after it
+            long measuredMillis = TimeUnit.NANOSECONDS.toMillis(lastCompletedNanos.get() - measureFromNanos);
+            Map<String, WorkloadReport.LatencySummary> summaries = new LinkedHashMap<>();
+            long ops = 0;
+            for (int i = 0; i < OPS.length; i++) {
+                Histogram h = latency[i];
+                if (h.getTotalCount() == 0) continue;
+                ops += h.getTotalCount();
+                summaries.put(OPS[i], summarise(h));
+            }
+            Map<String, Long> breakdown = new TreeMap<>();
+            errors.forEach((k, v) -> breakdown.put(k, v.sum()));
+            WorkloadReport r = new WorkloadReport();
+            r.setMode(req.getMode().toUpperCase()); r.setAccounts(accounts.length); r.setMeasuredMillis(measuredMillis);
+            r.setOperations(ops); r.setErrors(breakdown.values().stream().mapToLong(Long::longValue).sum());
+            r.setThroughputPerSecond(measuredMillis == 0 ? 0 : ops * 1000.0 / measuredMillis);
+            r.setLatency(summaries); r.setErrorBreakdown(breakdown);
+            return r;
+        }
+
+        private void awaitTermination(ExecutorService pool) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(req.getDurationSeconds() + req.getWarmupSeconds() + drainGraceSeconds, TimeUnit.SECONDS)) { abandon(pool); }
+            } catch (InterruptedException e) { abandon(pool); Thread.currentThread().interrupt(); }
+        }
+
+        // the run ends now, with the operations that never started counted as failures
+        private void abandon(ExecutorService pool) {
+            List<Runnable> queued = pool.shutdownNow();
+            for (Runnable r : queued) if (r instanceof Planned p) p.abandoned();
+            if (!queued.isEmpty()) {
+                log.warn("Workload abandoned {} operations that had not started", queued.size());
+                completed(System.nanoTime());
+            }
+        }
+    }
+
+    static WorkloadReport.LatencySummary summarise(Histogram h) {
+        WorkloadReport.LatencySummary s = new WorkloadReport.LatencySummary();
+        s.setCount(h.getTotalCount()); s.setMean(h.getMean());
+        s.setP50(h.getValueAtPercentile(50)); s.setP90(h.getValueAtPercentile(90)); s.setP99(h.getValueAtPercentile(99));
+        s.setP999(h.getValueAtPercentile(99.9)); s.setMax(h.getMaxValue());
+        ByteBuffer buf = ByteBuffer.allocate(h.getNeededByteBufferCapacity());
+        int len = h.encodeIntoCompressedByteBuffer(buf);
+        s.setHistogram(Base64.getEncoder().encodeToString(Arrays.copyOf(buf.array(), len)));
+        return s;
+    }
+
+    interface AccountPicker { int next(SplittableRandom rnd); }
+
+    // Zipf over account indexes (index 0 is the hottest) by binary search over the precomputed CDF
+    static final class ZipfPicker implements AccountPicker {
+        private final double[] cdf;
+        ZipfPicker(int n, double exponent) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) { sum += 1.0 / Math.pow(i + 1, exponent); cdf[i] = sum; }
+            for (int i = 0; i < n; i++) { cdf[i] /= sum; }
+        }
+        @Override
+        public int next(SplittableRandom rnd) {
+            double u = rnd.nextDouble();
+            int lo = 0, hi = cdf.length - 1;
+            while (lo < hi) { int mid = (lo + hi) >>> 1; if (cdf[mid] < u) lo = mid + 1; else hi = mid; }
+            return lo;
+        }
+    }
+}
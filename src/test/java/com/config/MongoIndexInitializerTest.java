@@ -0,0 +1,85 @@
+package com.config;
+
+import com.exception.IndexesNotReadyException;
+import com.model.Account;
+import com.model.Transaction;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MongoIndexInitializerTest {
+
+    @Test
+    void backfillHolderNameKeys_setsTheSearchKeyInBatches() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        BulkOperations ops = mock(BulkOperations.class);
+        when(mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, Account.class)).thenReturn(ops);
+        int count = MongoIndexInitializer.BACKFILL_BATCH + 1;
+        when(mongo.stream(any(Query.class), eq(Account.class))).thenAnswer(inv -> IntStream.range(0, count).mapToObj(i -> {
+            Account a = new Account("RAJ" + i, "  Raj   Kumar ", 0);
+            a.setId("id-" + i);
+            return a;
+        }));
+
+        assertEquals(count, new MongoIndexInitializer(mongo, 10_000).backfillHolderNameKeys());
+
+        // one full batch and the remainder
+        verify(ops, times(2)).execute();
+        verify(ops, times(count)).updateOne(any(Query.class), eq(Update.update("holderNameKey", "raj kumar")));
+    }
+
+    @Test
+    void ensureIndexes_staysNotReadyUntilEveryIndexIsCreated() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        when(mongo.getConverter()).thenReturn(converter);
+        IndexOperations ops = mock(IndexOperations.class);
+        when(mongo.indexOps(any(Class.class))).thenReturn(ops);
+        // what a unique index answers when the collection already holds duplicates
+        when(ops.ensureIndex(any(IndexDefinition.class))).thenThrow(new DuplicateKeyException("E11000 duplicate key error")).thenReturn("ok");
+        MongoIndexInitializer indexes = new MongoIndexInitializer(mongo, 10_000);
+
+        assertFalse(indexes.ensureIndexes());
+        assertFalse(indexes.isReady());
+        assertEquals(Status.DOWN, indexes.health().getStatus());
+        assertThrows(IndexesNotReadyException.class, () -> indexes.requireReady("End-of-day"));
+
+        assertTrue(indexes.ensureIndexes());
+        assertTrue(indexes.isReady());
+        assertEquals(Status.UP, indexes.health().getStatus());
+    }
+
+    @Test
+    void transactionIndexes_coverTheLegacyIncomingTransferLookup() {
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(context);
+
+        Document legacy = StreamSupport.stream(resolver.resolveIndexFor(Transaction.class).spliterator(), false)
+                .map(IndexDefinition::getIndexOptions).filter(o -> "legacy_transfer_destination".equals(o.get("name"))).findFirst().orElseThrow();
+
+        assertEquals(new Document("type", "TRANSFER"), legacy.get("partialFilterExpression"));
+    }
+}
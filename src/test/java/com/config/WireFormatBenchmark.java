@@ -0,0 +1,69 @@
+package com.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.model.Account;
+import com.model.Transaction;
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ Bytes on the wire and CPU per request for JSON vs CBOR vs Smile, using the same mappers the app builds.
+ Two payloads: a single Account (GET /api/accounts/{n}) and a 200-entry history (GET .../transactions).
+ Each request is one encode plus one decode, as a caller would see it end to end.
+
+   mvn -q test-compile exec:java -Dexec.mainClass=com.config.WireFormatBenchmark -Dexec.classpathScope=test [-Dexec.args=200000]
+*/
+public final class WireFormatBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Account account = new Account("RAJ4821", "Rajesh Kumar", 1_254_300);
+        account.setId("665f1c2e9b1e8a3d4c2b1a00");
+        account.setLastActivityAt(Instant.now());
+        List<Transaction> history = new ArrayList<>();
+        Instant t = Instant.parse("2024-01-01T09:00:00Z");
+        for (int i = 0; i < 200; i++) {
+            Transaction tx = i % 3 == 2
+                    ? new Transaction(account.getId(), "TRANSFER", 10_000 + i * 37L, t.plusSeconds(i * 3_613L), "Transfer", "RAJ4821", "SAM" + (1000 + i))
+                    : new Transaction(account.getId(), i % 3 == 0 ? "DEPOSIT" : "WITHDRAW", 5_000 + i * 11L, t.plusSeconds(i * 3_613L), i % 3 == 0 ? "Deposit" : "Withdraw");
+            tx.setId(String.format("%024x", 0x665f1c2e9b1eL * 4096 + i));
+            history.add(tx);
+        }
+
+        Map<String, JsonFactory> formats = new LinkedHashMap<>();
+        formats.put("json", null);
+        formats.put("cbor", new CBORFactory());
+        formats.put("smile", new SmileFactory());
+        System.out.printf("%-6s %-8s %10s %14s %14s%n", "format", "payload", "bytes", "cpu ns/req", "alloc B/req");
+        for (Map.Entry<String, JsonFactory> f : formats.entrySet()) {
+            ObjectMapper m = WireFormatConfigTest.mapper(f.getValue());
+            run(f.getKey(), "account", m, account, m.constructType(Account.class), iterations);
+            run(f.getKey(), "history", m, history, m.getTypeFactory().constructCollectionType(List.class, Transaction.class), Math.max(1, iterations / 50));
+        }
+    }
+
+    private static void run(String format, String payload, ObjectMapper m, Object value, JavaType type, int iterations) throws Exception {
+        ThreadMXBean mx = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        int size = 0;
+        for (int i = 0; i < iterations / 2; i++) m.readValue(m.writeValueAsBytes(value), type); // warm-up
+        long cpu0 = mx.getCurrentThreadCpuTime(), alloc0 = mx.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < iterations; i++) {
+            byte[] bytes = m.writeValueAsBytes(value);
+            size = bytes.length;
+            m.readValue(bytes, type);
+        }
+        long cpu = mx.getCurrentThreadCpuTime() - cpu0, alloc = mx.getThreadAllocatedBytes(tid) - alloc0;
+        System.out.printf("%-6s %-8s %10d %14d %14d%n", format, payload, size, cpu / iterations, alloc / iterations);
+    }
+}
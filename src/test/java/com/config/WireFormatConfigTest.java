@@ -0,0 +1,111 @@
+package com.config;
+
+import com.controller.AccountController;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.model.Transaction;
+import com.service.AccountEventStreamService;
+import com.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class WireFormatConfigTest {
+
+    // as in the app: only the binary mappers get the compact-wire module
+    static ObjectMapper mapper(JsonFactory factory) {
+        Jackson2ObjectMapperBuilder b = new Jackson2ObjectMapperBuilder().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        if (factory != null) b.factory(factory).postConfigurer(m -> m.registerModule(WireFormatConfig.compactWireModule()));
+        return b.build();
+    }
+
+    @Test
+    void json_keepsIsoTimestamps() throws Exception {
+        ObjectMapper json = mapper(null);
+        Transaction tx = new Transaction("a1", "DEPOSIT", 500, Instant.parse("2024-05-01T10:15:30.250Z"), "Deposit");
+        String s = json.writeValueAsString(tx);
+        assertTrue(s.contains("\"timestamp\":\"2024-05-01T10:15:30.250Z\""), s);
+        assertEquals(tx.getTimestamp(), json.readValue(s, Transaction.class).getTimestamp());
+    }
+
+    @Test
+    void extendMessageConverters_leavesTheJsonMapperToBoot() throws Exception {
+        @SuppressWarnings("unchecked") ObjectProvider<Jackson2ObjectMapperBuilder> builders = mock(ObjectProvider.class);
+        // spring.jackson.serialization.write-dates-as-timestamps=true, which JSON must keep honouring
+        when(builders.getObject()).thenAnswer(inv -> new Jackson2ObjectMapperBuilder().featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+        ObjectMapper json = builders.getObject().build();
+        List<HttpMessageConverter<?>> converters = new ArrayList<>(List.of(new MappingJackson2HttpMessageConverter(json)));
+
+        new WireFormatConfig(builders).extendMessageConverters(converters);
+
+        Instant t = Instant.parse("2024-05-01T10:15:30.250123456Z");
+        assertEquals("1714558530.250123456", json.writeValueAsString(t));
+        ObjectMapper cbor = converters.stream().filter(c -> c instanceof MappingJackson2CborHttpMessageConverter)
+                .map(c -> ((MappingJackson2CborHttpMessageConverter) c).getObjectMapper()).findFirst().orElseThrow();
+        assertEquals(List.of(1_714_558_530, 250_123_456), cbor.readValue(cbor.writeValueAsBytes(t), List.class));
+        assertEquals(3, converters.size());
+    }
+
+    @Test
+    void cborAndSmile_roundTripWithFullPrecisionAndAreSmaller() throws Exception {
+        Transaction tx = new Transaction("665f1c2e9b1e8a3d4c2b1a00", "TRANSFER", 1_250_000, Instant.parse("2024-05-01T10:15:30.250123456Z"), "Transfer", "RAJ1234", "SAM5678");
+        byte[] json = mapper(null).writeValueAsBytes(tx);
+        for (JsonFactory f : List.of(new CBORFactory(), new SmileFactory())) {
+            ObjectMapper m = mapper(f);
+            byte[] bin = m.writeValueAsBytes(tx);
+            assertTrue(bin.length < json.length, f.getFormatName());
+            Transaction back = m.readValue(bin, Transaction.class);
+            assertEquals(tx.getTimestamp(), back.getTimestamp());
+            assertEquals(tx.getAmount(), back.getAmount());
+            assertEquals(List.of(1_714_558_530L, 250_123_456L), ((List<?>) m.readValue(bin, Map.class).get("timestamp")).stream().map(n -> ((Number) n).longValue()).toList());
+            // clients that send epoch milliseconds are still understood
+            assertEquals(Instant.ofEpochMilli(1_714_558_530_250L), m.readValue(m.writeValueAsBytes(Map.of("timestamp", 1_714_558_530_250L)), Transaction.class).getTimestamp());
+        }
+    }
+
+    @Test
+    void accountController_negotiatesCborOnRequestAndResponse() throws Exception {
+        AccountService svc = mock(AccountService.class);
+        Transaction tx = new Transaction("a1", "DEPOSIT", 500, Instant.parse("2024-05-01T10:15:30Z"), "Deposit");
+        when(svc.deposit("RAJ1234", 500)).thenReturn(tx);
+        when(svc.getTransactions("RAJ1234")).thenReturn(List.of(tx));
+        ObjectMapper cbor = mapper(new CBORFactory());
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new AccountController(svc, mock(AccountEventStreamService.class)))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(mapper(null)), new MappingJackson2CborHttpMessageConverter(cbor))
+                .build();
+
+        MvcResult res = mvc.perform(post("/api/accounts/RAJ1234/deposit")
+                        .contentType(MediaType.APPLICATION_CBOR).accept(MediaType.APPLICATION_CBOR)
+                        .content(cbor.writeValueAsBytes(Map.of("amount", 500))))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+                .andReturn();
+        assertEquals(500, cbor.readValue(res.getResponse().getContentAsByteArray(), Transaction.class).getAmount());
+
+        mvc.perform(get("/api/accounts/RAJ1234/transactions"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].timestamp").value("2024-05-01T10:15:30Z"));
+    }
+}
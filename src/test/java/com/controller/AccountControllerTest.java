@@ -1,9 +1,12 @@
 package com.controller;
 
+import com.dto.AccountSearchPage;
+import com.dto.AccountSummary;
 import com.dto.AmountRequest;
 import com.dto.CreateAccountRequest;
 import com.model.Account;
 import com.model.Transaction;
+import com.service.AccountEventStreamService;
 import com.service.AccountService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -14,6 +17,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 
 import java.time.Instant;
@@ -33,6 +37,9 @@ class AccountControllerTest {
     @Mock
     private AccountService accountService;
 
+    @Mock
+    private AccountEventStreamService eventStream;
+
     @InjectMocks
     private AccountController accountController;
 
@@ -81,6 +88,21 @@ class AccountControllerTest {
         verify(accountService, times(1)).createAccount("Ravi");
     }
 
+    // -------- search (GET /api/accounts?holder=) --------
+
+    @Test
+    @DisplayName("search should pass prefix, limit and cursor to the service")
+    void search_shouldReturnPage() {
+        AccountSearchPage page = new AccountSearchPage(List.of(new AccountSummary("RA1000", "Raj", "Active")), "next");
+        when(accountService.searchByHolderPrefix("ra", 10, "cur")).thenReturn(page);
+
+        ResponseEntity<AccountSearchPage> response = accountController.search("ra", 10, "cur");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(page, response.getBody());
+        verify(accountService, times(1)).searchByHolderPrefix("ra", 10, "cur");
+    }
+
     // -------- get (GET /api/accounts/{accountNumber}) --------
 
     @Test
@@ -224,4 +246,16 @@ class AccountControllerTest {
         assertEquals(acc, response.getBody());
         verify(accountService, times(1)).closeAccount("RA1000");
     }
+
+    // -------- events (GET /api/accounts/{accountNumber}/events) --------
+
+    @Test
+    @DisplayName("events should hand the Last-Event-ID over to the stream service")
+    void events_shouldSubscribeWithLastEventId() {
+        SseEmitter emitter = new SseEmitter();
+        when(eventStream.subscribe("RA1000", "tx-9")).thenReturn(emitter);
+
+        assertSame(emitter, accountController.events("RA1000", "tx-9"));
+        verify(eventStream, times(1)).subscribe("RA1000", "tx-9");
+    }
 }
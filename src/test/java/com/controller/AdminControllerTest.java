@@ -0,0 +1,43 @@
+package com.controller;
+
+import com.dto.WorkloadReport;
+import com.dto.WorkloadRequest;
+import com.service.WorkloadGenerator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/*
+ I am testing AdminController as a plain class, same as AccountControllerTest.
+*/
+@ExtendWith(MockitoExtension.class)
+class AdminControllerTest {
+
+    @Mock
+    private WorkloadGenerator workloadGenerator;
+
+    @InjectMocks
+    private AdminController adminController;
+
+    @Test
+    @DisplayName("workload should run the generator and return its report")
+    void workload_shouldReturnReport() {
+        WorkloadRequest req = new WorkloadRequest();
+        WorkloadReport report = new WorkloadReport();
+        when(workloadGenerator.run(req)).thenReturn(report);
+
+        ResponseEntity<WorkloadReport> response = adminController.workload(req);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(report, response.getBody());
+        verify(workloadGenerator, times(1)).run(req);
+    }
+}
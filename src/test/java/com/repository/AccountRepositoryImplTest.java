@@ -0,0 +1,64 @@
+package com.repository;
+
+import com.model.Account;
+import com.model.CreditClaim;
+import com.model.OutboxEntry;
+import com.model.Transaction;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AccountRepositoryImplTest {
+
+    @Test
+    void creditBefore_appliesOnlyBeforeTheDeadlineOnTheDatabaseClock() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        when(mongo.updateFirst(any(Query.class), any(Update.class), eq(Account.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        Transaction leg = new Transaction("acc-b", "TRANSFER", 300, Instant.EPOCH, "transfer from A1");
+        leg.setId("leg-2"); leg.setJournalId("j-1");
+        Instant deadline = Instant.EPOCH.plusSeconds(30);
+
+        assertTrue(new AccountRepositoryImpl(mongo).creditBefore("acc-b", 300, Instant.EPOCH, new OutboxEntry(List.of(leg), null, Instant.EPOCH), deadline));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongo).updateFirst(query.capture(), any(Update.class), eq(Account.class));
+        Document filter = query.getValue().getQueryObject();
+        assertEquals(new Document("$lt", List.of("$$NOW", Date.from(deadline))), filter.get("$expr"));
+        assertEquals(new Document("$ne", "INACTIVE"), filter.get("status"));
+    }
+
+    @Test
+    void claimCredit_takesOverOnlyAClaimThatEndedAWindowAgo() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        assertEquals(now.plusSeconds(30), new AccountRepositoryImpl(mongo).claimCredit("j-1", now, 30_000));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class); ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongo).upsert(query.capture(), update.capture(), eq(CreditClaim.class));
+        assertEquals(new Document("_id", "j-1").append("until", new Document("$lt", now.minusSeconds(30))), query.getValue().getQueryObject());
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(now.plusSeconds(30).plus(AccountRepositoryImpl.CLAIM_RETENTION), set.get("expiresAt"));
+    }
+
+    @Test
+    void claimCredit_heldClaimIsRefused() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        when(mongo.upsert(any(Query.class), any(Update.class), eq(CreditClaim.class))).thenThrow(new DuplicateKeyException("E11000"));
+
+        assertNull(new AccountRepositoryImpl(mongo).claimCredit("j-1", Instant.now(), 30_000));
+    }
+}
@@ -0,0 +1,250 @@
+package com.service;
+
+import com.model.Account;
+import com.model.Transaction;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/*
+ I am driving flushAll() by hand (long flush interval) and waiting for its sends, so that the batching and resume paths
+ are deterministic.
+*/
+class AccountEventStreamServiceTest {
+
+    private AccountService accountService;
+    private AccountEventBus bus;
+    private AccountEventStreamService streams;
+
+    @BeforeEach
+    void setUp() {
+        accountService = mock(AccountService.class);
+        bus = new AccountEventBus("local");
+        streams = new AccountEventStreamService(accountService, bus, 60_000, 3_600_000, 500, 2, 3_600_000, 2, 60_000);
+        Account acc = new Account("RAJ1000", "Raj", 0);
+        acc.setId("acc-id");
+        when(accountService.getByAccountNumber("RAJ1000")).thenReturn(acc);
+    }
+
+    @AfterEach
+    void tearDown() { streams.shutdown(); }
+
+    private Transaction tx(String id) {
+        Transaction t = new Transaction("acc-id", "DEPOSIT", 10, Instant.now(), "deposit");
+        t.setId(id);
+        return t;
+    }
+
+    private Transaction tx(String id, long seq) {
+        Transaction t = tx(id);
+        t.setSeq(seq);
+        return t;
+    }
+
+    // I am capturing what the emitter is asked to send so that the entries themselves are checked
+    private AccountEventStreamService capturing(List<Object> sent) {
+        return new AccountEventStreamService(accountService, bus, 60_000, 3_600_000, 500, 10, 3_600_000, 2, 60_000) {
+            @Override SseEmitter newEmitter() {
+                return new SseEmitter() {
+                    @Override public void send(SseEventBuilder event) { event.build().forEach(d -> sent.add(d.getData())); }
+                };
+            }
+        };
+    }
+
+    @Test
+    void subscribe_registersOnBusForAccountId() {
+        streams.subscribe("RAJ1000", null);
+        assertEquals(1, bus.subscriberCount("acc-id"));
+        verify(accountService, never()).getTransactionsSince(anyString(), anyLong());
+    }
+
+    @Test
+    void subscribe_afterTheLastUnsubscribeStillReceivesEvents() {
+        int[] seen = {0};
+        bus.subscribe("acc-x", t -> { }).run();
+        bus.subscribe("acc-x", t -> seen[0]++);
+
+        bus.dispatch(new Transaction("acc-x", "DEPOSIT", 10, Instant.now(), "d"));
+
+        assertEquals(1, bus.subscriberCount("acc-x"));
+        assertEquals(1, seen[0]);
+    }
+
+    @Test
+    void subscribe_withLastEventId_replaysFromLedger() throws Exception {
+        List<Object> sent = new ArrayList<>();
+        AccountEventStreamService capturing = capturing(sent);
+        Transaction t2 = tx("t2", 2), t3 = tx("t3", 3);
+        when(accountService.getTransactionsSince("RAJ1000", 1L)).thenReturn(List.of(t2, t3));
+
+        try {
+            assertNotNull(capturing.subscribe("RAJ1000", "1"));
+            capturing.flushAll();
+            capturing.awaitSends(5_000);
+        } finally {
+            capturing.shutdown();
+        }
+
+        verify(accountService, times(1)).getTransactionsSince("RAJ1000", 1L);
+        assertTrue(sent.contains(List.of(t2, t3)), "sent: " + sent);
+        assertTrue(sent.stream().anyMatch(d -> String.valueOf(d).contains("id:3")), "the batch carries its last sequence: " + sent);
+    }
+
+    @Test
+    void subscribe_withLastEventIdThatIsNoSequence_startsWithoutReplay() {
+        streams.subscribe("RAJ1000", "65f0c0ffee00000000000001");
+        verify(accountService, never()).getTransactionsSince(anyString(), anyLong());
+        assertEquals(1, bus.subscriberCount("acc-id"));
+    }
+
+    @Test
+    void flush_batchIdIsTheHighestSequenceNotTheLastEntry() throws Exception {
+        List<Object> sent = new ArrayList<>();
+        AccountEventStreamService capturing = capturing(sent);
+        try {
+            capturing.subscribe("RAJ1000", null);
+            bus.onCommitted(new TransactionCommittedEvent(tx("t9", 9)));
+            bus.onCommitted(new TransactionCommittedEvent(tx("t7", 7)));
+            capturing.flushAll();
+            capturing.awaitSends(5_000);
+        } finally {
+            capturing.shutdown();
+        }
+
+        assertTrue(sent.stream().anyMatch(d -> String.valueOf(d).contains("id:9")), "sent: " + sent);
+        assertFalse(sent.stream().anyMatch(d -> String.valueOf(d).contains("id:7")), "sent: " + sent);
+    }
+
+    @Test
+    void subscribe_liveEntriesDuringTheReplayFollowIt() throws Exception {
+        List<Object> sent = new ArrayList<>();
+        AccountEventStreamService capturing = capturing(sent);
+        Transaction t2 = tx("t2", 2), t3 = tx("t3", 3), t4 = tx("t4", 4);
+        // t3 and t4 are committed while the ledger is being read; the read sees t3 but not t4
+        when(accountService.getTransactionsSince("RAJ1000", 1L)).thenAnswer(inv -> {
+            bus.onCommitted(new TransactionCommittedEvent(t4));
+            bus.onCommitted(new TransactionCommittedEvent(t3));
+            return List.of(t2, t3);
+        });
+
+        try {
+            capturing.subscribe("RAJ1000", "1");
+            capturing.flushAll();
+            capturing.awaitSends(5_000);
+        } finally {
+            capturing.shutdown();
+        }
+
+        assertTrue(sent.contains(List.of(t2, t3, t4)), "sent: " + sent);
+    }
+
+    @Test
+    void changeStreamUnavailable_fallsBackToLocalEvents() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        AccountEventBus csBus = new AccountEventBus("change-stream");
+        @SuppressWarnings("unchecked") MongoCollection<Document> collection = mock(MongoCollection.class);
+        when(mongo.getCollectionName(Transaction.class)).thenReturn("transaction");
+        when(mongo.getCollection("transaction")).thenReturn(collection);
+        // what a standalone mongod answers to $changeStream
+        when(collection.watch(anyList())).thenThrow(new MongoCommandException(
+                new BsonDocument("code", new BsonInt32(40573)).append("errmsg", new BsonString("The $changeStream stage is only supported on replica sets")),
+                new ServerAddress()));
+        int[] seen = {0};
+        csBus.subscribe("acc-id", t -> seen[0]++);
+
+        new TransactionChangeStreamListener(mongo, csBus).run();
+        csBus.onCommitted(new TransactionCommittedEvent(tx("t1")));
+
+        assertTrue(csBus.isLocalSource());
+        assertEquals(1, seen[0]);
+    }
+
+    @Test
+    void overflow_closesSubscriptionAndUnsubscribes() throws Exception {
+        streams.subscribe("RAJ1000", null);
+        // queue capacity is 2, so the third entry overflows
+        bus.onCommitted(new TransactionCommittedEvent(tx("t1")));
+        bus.onCommitted(new TransactionCommittedEvent(tx("t2")));
+        bus.onCommitted(new TransactionCommittedEvent(tx("t3")));
+
+        streams.flushAll();
+        streams.awaitSends(5_000);
+
+        assertEquals(0, streams.subscriptionCount());
+        assertEquals(0, bus.subscriberCount("acc-id"));
+    }
+
+    @Test
+    void flush_aStalledSubscriberDoesNotHoldUpTheOthersAndIsDropped() throws Exception {
+        CountDownLatch stalled = new CountDownLatch(1), released = new CountDownLatch(1);
+        List<Object> sent = new CopyOnWriteArrayList<>();
+        int[] emitters = {0};
+        // the first subscriber's socket is full: its send blocks until it is interrupted
+        AccountEventStreamService slow = new AccountEventStreamService(accountService, bus, 60_000, 3_600_000, 500, 10, 3_600_000, 2, 100) {
+            @Override SseEmitter newEmitter() {
+                boolean first = emitters[0]++ == 0;
+                return new SseEmitter() {
+                    @Override public void send(SseEventBuilder event) throws IOException {
+                        if (!first) { event.build().forEach(d -> sent.add(d.getData())); return; }
+                        stalled.countDown();
+                        try { Thread.sleep(60_000); } catch (InterruptedException e) { released.countDown(); throw new IOException("interrupted"); }
+                    }
+                };
+            }
+        };
+        try {
+            slow.subscribe("RAJ1000", null);
+            slow.subscribe("RAJ1000", null);
+            Transaction t1 = tx("t1", 1), t2 = tx("t2", 2);
+            bus.onCommitted(new TransactionCommittedEvent(t1));
+            slow.flushAll();
+            assertTrue(stalled.await(5, TimeUnit.SECONDS));
+
+            bus.onCommitted(new TransactionCommittedEvent(t2));
+            Thread.sleep(150);
+            slow.flushAll();
+            slow.awaitSends(5_000);
+
+            assertTrue(sent.contains(List.of(t1)) && sent.contains(List.of(t2)), "sent: " + sent);
+            assertTrue(released.await(5, TimeUnit.SECONDS), "the stalled send is interrupted");
+            assertEquals(1, slow.subscriptionCount());
+            assertEquals(1, bus.subscriberCount("acc-id"));
+        } finally {
+            slow.shutdown();
+        }
+    }
+
+    @Test
+    void changeStreamSource_ignoresLocalEvents() {
+        AccountEventBus csBus = new AccountEventBus("change-stream");
+        int[] seen = {0};
+        csBus.subscribe("acc-id", t -> seen[0]++);
+
+        csBus.onCommitted(new TransactionCommittedEvent(tx("t1")));
+        csBus.dispatch(tx("t2"));
+
+        assertEquals(1, seen[0]);
+    }
+}
@@ -0,0 +1,56 @@
+package com.service;
+
+import com.model.Account;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AccountNumberIndexTest {
+
+    @Test
+    void beforeTheFirstBuild_everyNumberMightExist() {
+        AccountNumberIndex index = new AccountNumberIndex(mock(MongoTemplate.class), new SimpleMeterRegistry(), true, false, 100, 0.01, 100);
+
+        assertFalse(index.isReady());
+        assertTrue(index.mightContain("ANY1"));
+    }
+
+    @Test
+    void accountsCreatedDuringTheBuildSurviveTheSwap() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        AccountNumberIndex[] self = new AccountNumberIndex[1];
+        // the create lands while the cursor is still open
+        when(mongo.stream(any(), eq(Account.class))).thenAnswer(inv -> {
+            self[0].added("NEW1");
+            return Stream.of(new Account("OLD1", "Old", 0L));
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        self[0] = new AccountNumberIndex(mongo, registry, true, false, 100, 0.01, 100);
+
+        self[0].build();
+
+        assertTrue(self[0].mightContain("OLD1"));
+        assertTrue(self[0].mightContain("NEW1"));
+        assertFalse(self[0].mightContain("GONE1"));
+        assertEquals(1.0, registry.get("banking.account-index.rejections").counter().count());
+        assertEquals(2.0, registry.get("banking.account-index.entries").gauge().value());
+    }
+
+    @Test
+    void clusteredNodesNeverBuildTheIndex() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        AccountNumberIndex index = new AccountNumberIndex(mongo, new SimpleMeterRegistry(), true, true, 100, 0.01, 100);
+
+        index.start();
+
+        assertTrue(index.mightContain("ANY1"));
+        verifyNoInteractions(mongo);
+    }
+}
@@ -0,0 +1,97 @@
+package com.service;
+
+import com.model.Account;
+import com.model.AccountSequence;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AccountNumberSequenceTest {
+
+    // a counter document that starts at `first`, advanced the way findAndModify $inc with returnNew would
+    private static MongoTemplate counter(long first) {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        when(mongo.exists(any(Query.class), eq(AccountSequence.class))).thenReturn(true);
+        AtomicLong next = new AtomicLong(first);
+        when(mongo.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(AccountSequence.class))).thenAnswer(inv -> {
+            long by = ((Number) ((Document) inv.<Update>getArgument(1).getUpdateObject().get("$inc")).get("next")).longValue();
+            AccountSequence s = new AccountSequence();
+            s.setNext(next.addAndGet(by));
+            return s;
+        });
+        return mongo;
+    }
+
+    @Test
+    void next_handsOutABlockPerCounterWrite() {
+        MongoTemplate mongo = counter(1000);
+        AccountNumberSequence numbers = new AccountNumberSequence(mongo, 1000, 3);
+
+        for (long expected = 1000; expected < 1007; expected++) assertEquals(expected, numbers.next());
+
+        verify(mongo, times(3)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(AccountSequence.class));
+    }
+
+    @Test
+    void next_twoNodesNeverShareANumber() {
+        MongoTemplate mongo = counter(1000);
+        AccountNumberSequence a = new AccountNumberSequence(mongo, 1000, 2), b = new AccountNumberSequence(mongo, 1000, 2);
+
+        assertEquals(1000, a.next());
+        assertEquals(1002, b.next());
+        assertEquals(1001, a.next());
+        assertEquals(1004, a.next());
+        assertEquals(1003, b.next());
+    }
+
+    @Test
+    void next_seedsTheCounterOnceWithoutOverwritingIt() {
+        MongoTemplate mongo = counter(5000);
+        when(mongo.exists(any(Query.class), eq(AccountSequence.class))).thenReturn(false);
+        stored(mongo, null);
+        when(mongo.upsert(any(Query.class), any(Update.class), eq(AccountSequence.class))).thenThrow(new DuplicateKeyException("E11000"));
+        AccountNumberSequence numbers = new AccountNumberSequence(mongo, 1000, 1);
+
+        assertEquals(5000, numbers.next());
+        assertEquals(5001, numbers.next());
+
+        ArgumentCaptor<Update> seed = ArgumentCaptor.forClass(Update.class);
+        verify(mongo, times(1)).upsert(any(Query.class), seed.capture(), eq(AccountSequence.class));
+        assertEquals(new Document("next", 1000L), seed.getValue().getUpdateObject().get("$setOnInsert"));
+    }
+
+    @Test
+    void next_startsAboveTheHighestNumberAlreadyStored() {
+        MongoTemplate mongo = counter(0);
+        when(mongo.exists(any(Query.class), eq(AccountSequence.class))).thenReturn(false);
+        stored(mongo, 41_999L);
+        new AccountNumberSequence(mongo, 1000, 10).next();
+
+        ArgumentCaptor<Update> seed = ArgumentCaptor.forClass(Update.class);
+        verify(mongo).upsert(any(Query.class), seed.capture(), eq(AccountSequence.class));
+        assertEquals(new Document("next", 42_000L), seed.getValue().getUpdateObject().get("$setOnInsert"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void stored(MongoTemplate mongo, Long highest) {
+        MongoCollection<Document> accounts = mock(MongoCollection.class);
+        AggregateIterable<Document> result = mock(AggregateIterable.class);
+        when(mongo.getCollectionName(Account.class)).thenReturn("account");
+        when(mongo.getCollection("account")).thenReturn(accounts);
+        when(accounts.aggregate(anyList())).thenReturn(result);
+        when(result.first()).thenReturn(new Document("_id", null).append("max", highest));
+    }
+}
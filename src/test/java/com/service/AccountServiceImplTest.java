@@ -1,18 +1,32 @@
 package com.service;
 
+import com.config.MongoIndexInitializer;
+import com.dto.AccountSearchPage;
+import com.dto.AccountSummary;
 import com.exception.AccountNotFoundException;
+import com.exception.IndexesNotReadyException;
 import com.exception.InsufficientBalanceException;
+import com.exception.LimitExceededException;
+import com.exception.PartitionNotOwnedException;
+import com.exception.UnknownAccountException;
 import com.model.Account;
+import com.model.OutboxEntry;
 import com.model.Transaction;
 import com.repository.AccountRepository;
 import com.repository.TransactionRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -26,14 +40,39 @@ class AccountServiceImplTest {
 
     private AccountRepository accountRepository;
     private TransactionRepository transactionRepository;
+    private OutboxDispatcher outbox;
+    private PartitionOwnership ownership;
     private AccountServiceImpl service;
+    private AccountNumberSequence numbers;
+    private MongoIndexInitializer indexes;
 
     @BeforeEach
     void setUp() {
         // I have chosen to create fresh mocks before each test so that tests do not interfere with each other.
         accountRepository = mock(AccountRepository.class);
         transactionRepository = mock(TransactionRepository.class);
-        service = new AccountServiceImpl(accountRepository, transactionRepository);
+        outbox = mock(OutboxDispatcher.class);
+        // numbers come from the shared sequence; here from a local one starting where a fresh database would
+        numbers = mock(AccountNumberSequence.class);
+        AtomicLong next = new AtomicLong(1000);
+        when(numbers.next()).thenAnswer(inv -> next.getAndIncrement());
+        indexes = mock(MongoIndexInitializer.class);
+        // I am running with clustering off so that this node owns every partition, as a single instance does.
+        ownership = new PartitionOwnership(mock(MongoTemplate.class), new SimpleMeterRegistry(), false, 16, "node-a", "", 8080, 10_000, 3_000, 2_000);
+        // no velocity rules configured, as in the default properties
+        service = new AccountServiceImpl(accountRepository, transactionRepository, outbox, ownership, noLimits(), noIndex(), numbers, indexes);
+        when(accountRepository.adjustBalance(anyString(), anyLong(), any(Instant.class), any(OutboxEntry.class))).thenReturn(true);
+        when(accountRepository.creditBefore(anyString(), anyLong(), any(Instant.class), any(OutboxEntry.class), any(Instant.class))).thenReturn(true);
+        when(outbox.creditDeadline(any(Instant.class))).thenAnswer(inv -> inv.<Instant>getArgument(0).plusSeconds(30));
+    }
+
+    private VelocityLimiter noLimits() {
+        return new VelocityLimiter(mock(MongoTemplate.class), ownership, new SimpleMeterRegistry(), List.of(), 60, 1000);
+    }
+
+    // an index that has not been built yet lets every lookup through to the repository
+    private AccountNumberIndex noIndex() {
+        return new AccountNumberIndex(mock(MongoTemplate.class), new SimpleMeterRegistry(), true, false, 1000, 0.01, 1000);
     }
 
     // ---------- createAccount tests ----------
@@ -41,8 +80,8 @@ class AccountServiceImplTest {
     @Test
     void createAccount_success_firstTime_noCollision() {
         // I have chosen a normal name so that prefix calculation and sequence both run.
-        when(accountRepository.findByAccountNumber(anyString()))
-                .thenReturn(Optional.empty());
+        when(accountRepository.existsByAccountNumber(anyString()))
+                .thenReturn(false);
         when(accountRepository.save(any(Account.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -50,20 +89,19 @@ class AccountServiceImplTest {
 
         assertNotNull(created.getAccountNumber());
         assertEquals("Raj Kumar", created.getAccountHolderName());
+        assertEquals("raj kumar", created.getHolderNameKey());
         // I am verifying that repository.save was actually called so that I know the account is persisted.
         verify(accountRepository, times(1)).save(any(Account.class));
     }
 
     @Test
     void createAccount_handlesCollisionAndRetries() {
-        // I have created an existing account so that the first generated accountNumber collides.
-        Account existing = new Account("RAJ1000", "Existing", 0);
-
-        // First call: number exists -> Optional.of(existing)
-        // Second call: next number free -> Optional.empty()
-        when(accountRepository.findByAccountNumber(anyString()))
-                .thenReturn(Optional.of(existing))   // first iteration
-                .thenReturn(Optional.empty());      // second iteration
+        // I have made the first generated accountNumber exist already so that it collides.
+        // First call: number exists -> true
+        // Second call: next number free -> false
+        when(accountRepository.existsByAccountNumber(anyString()))
+                .thenReturn(true)    // first iteration
+                .thenReturn(false);  // second iteration
 
         when(accountRepository.save(any(Account.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
@@ -71,8 +109,17 @@ class AccountServiceImplTest {
         Account created = service.createAccount("Raj");
 
         assertTrue(created.getAccountNumber().startsWith("RAJ"));
-        // I have chosen to verify that findByAccountNumber was called at least twice due to collision.
-        verify(accountRepository, atLeast(2)).findByAccountNumber(anyString());
+        // I have chosen to verify that existsByAccountNumber was called at least twice due to collision.
+        verify(accountRepository, atLeast(2)).existsByAccountNumber(anyString());
+    }
+
+    @Test
+    void createAccount_givesUpAfterRepeatedDuplicateNumbers() {
+        // I have made every insert hit the unique index so that the retries have to stop somewhere.
+        when(accountRepository.save(any(Account.class))).thenThrow(new DuplicateKeyException("E11000"));
+
+        assertThrows(IllegalStateException.class, () -> service.createAccount("Raj"));
+        verify(accountRepository, times(AccountServiceImpl.MAX_CREATE_ATTEMPTS)).save(any(Account.class));
     }
 
     @Test
@@ -96,7 +143,7 @@ class AccountServiceImplTest {
     @Test
     void getByAccountNumber_success() {
         Account acc = new Account("RAJ1000", "Raj", 1000);
-        when(accountRepository.findByAccountNumber("RAJ1000"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000"))
                 .thenReturn(Optional.of(acc));
 
         Account found = service.getByAccountNumber("RAJ1000");
@@ -106,7 +153,7 @@ class AccountServiceImplTest {
 
     @Test
     void getByAccountNumber_notFound_throws() {
-        when(accountRepository.findByAccountNumber("UNKNOWN"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("UNKNOWN"))
                 .thenReturn(Optional.empty());
 
         assertThrows(AccountNotFoundException.class,
@@ -122,7 +169,7 @@ class AccountServiceImplTest {
         List<Transaction> txs = new ArrayList<>();
         txs.add(new Transaction("acc-id", "DEPOSIT", 100, Instant.now(), "deposit"));
 
-        when(accountRepository.findByAccountNumber("RAJ1000"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000"))
                 .thenReturn(Optional.of(acc));
         when(transactionRepository.findByAccountId("acc-id"))
                 .thenReturn(txs);
@@ -134,9 +181,36 @@ class AccountServiceImplTest {
         verify(accountRepository, times(1)).deleteByAccountNumber("RAJ1000");
     }
 
+    @Test
+    void deleteByAccountNumber_movesJournalLegsToSuspenseInsteadOfOrphaningTheCounterparty() {
+        Account acc = new Account("RAJ1000", "Raj", 100);
+        acc.setId("acc-id");
+        List<Transaction> legs = Journal.legs("DEPOSIT", 100, Instant.now(), Journal.CASH, "deposit to RAJ1000", "acc-id", "deposit");
+        Transaction own = legs.get(1);
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(acc));
+        when(transactionRepository.findByAccountId("acc-id")).thenReturn(new ArrayList<>(List.of(own)));
+
+        service.deleteByAccountNumber("RAJ1000");
+
+        verify(transactionRepository).saveAll(List.of(own));
+        verify(transactionRepository, never()).deleteAll(anyList());
+        assertEquals(Journal.SUSPENSE, own.getAccountId());
+        assertEquals(legs.get(0).getJournalId(), own.getJournalId());
+    }
+
+    @Test
+    void deleteByAccountNumber_withPendingOutbox_isRefused() {
+        Account acc = new Account("RAJ1000", "Raj", 100);
+        acc.setId("acc-id"); acc.setOutboxSince(Instant.now());
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(acc));
+
+        assertThrows(IllegalStateException.class, () -> service.deleteByAccountNumber("RAJ1000"));
+        verify(accountRepository, never()).deleteByAccountNumber(anyString());
+    }
+
     @Test
     void deleteByAccountNumber_notFound_throws() {
-        when(accountRepository.findByAccountNumber("UNKNOWN"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("UNKNOWN"))
                 .thenReturn(Optional.empty());
 
         assertThrows(AccountNotFoundException.class,
@@ -150,18 +224,25 @@ class AccountServiceImplTest {
         Account acc = new Account("RAJ1000", "Raj", 1000);
         acc.setId("acc-id");
 
-        when(accountRepository.findByAccountNumber("RAJ1000"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000"))
                 .thenReturn(Optional.of(acc));
         when(accountRepository.save(any(Account.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
-        when(transactionRepository.save(any(Transaction.class)))
+        when(transactionRepository.insert(anyList()))
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
         Transaction tx = service.deposit("RAJ1000", 500);
 
         assertEquals(1500, acc.getBalance());
         assertEquals("DEPOSIT", tx.getType());
-        verify(transactionRepository, times(1)).save(any(Transaction.class));
+        // I am checking the ledger rows ride along with the balance change so that both are committed by one write.
+        ArgumentCaptor<OutboxEntry> entry = ArgumentCaptor.forClass(OutboxEntry.class);
+        verify(accountRepository).adjustBalance(eq("acc-id"), eq(500L), any(Instant.class), entry.capture());
+        assertEquals(2, entry.getValue().getLegs().size());
+        assertSame(tx, entry.getValue().getLegs().get(1));
+        // the ledger insert and the event happen later, in the outbox dispatcher
+        verifyNoInteractions(transactionRepository);
+        verify(outbox).hint(eq("acc-id"), any());
     }
 
     @Test
@@ -179,18 +260,19 @@ class AccountServiceImplTest {
         Account acc = new Account("RAJ1000", "Raj", 1000);
         acc.setId("acc-id");
 
-        when(accountRepository.findByAccountNumber("RAJ1000"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000"))
                 .thenReturn(Optional.of(acc));
         when(accountRepository.save(any(Account.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
-        when(transactionRepository.save(any(Transaction.class)))
+        when(transactionRepository.insert(anyList()))
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
         Transaction tx = service.withdraw("RAJ1000", 400);
 
         assertEquals(600, acc.getBalance());
         assertEquals("WITHDRAW", tx.getType());
-        verify(transactionRepository, times(1)).save(any(Transaction.class));
+        verify(accountRepository).adjustBalance(eq("acc-id"), eq(-400L), any(Instant.class), any(OutboxEntry.class));
+        verify(transactionRepository, never()).insert(anyList());
     }
 
     @Test
@@ -198,7 +280,7 @@ class AccountServiceImplTest {
         Account acc = new Account("RAJ1000", "Raj", 100);
         acc.setId("acc-id");
 
-        when(accountRepository.findByAccountNumber("RAJ1000"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000"))
                 .thenReturn(Optional.of(acc));
 
         assertThrows(InsufficientBalanceException.class,
@@ -213,6 +295,24 @@ class AccountServiceImplTest {
                 () -> service.withdraw("RAJ1000", -1));
     }
 
+    @Test
+    void withdraw_overDailyLimit_rejectedBeforeAnyWrite() {
+        Account acc = new Account("RAJ1000", "Raj", 1000);
+        acc.setId("acc-id");
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(acc));
+        when(transactionRepository.insert(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        VelocityLimiter limits = new VelocityLimiter(mock(MongoTemplate.class), ownership, new SimpleMeterRegistry(),
+                List.of(new VelocityLimiter.Rule("withdraw-amount-per-day", "WITHDRAW", VelocityLimiter.Measure.AMOUNT, 86_400_000L, 500)), 60, 1000);
+        AccountServiceImpl limited = new AccountServiceImpl(accountRepository, transactionRepository, outbox, ownership, limits, noIndex(), numbers, indexes);
+
+        limited.withdraw("RAJ1000", 300);
+        assertThrows(LimitExceededException.class, () -> limited.withdraw("RAJ1000", 300));
+
+        assertEquals(700, acc.getBalance());
+        verify(accountRepository, times(1)).adjustBalance(eq("acc-id"), eq(-300L), any(Instant.class), any(OutboxEntry.class));
+        verify(outbox, times(1)).hint(eq("acc-id"), any());
+    }
+
     // ---------- transfer tests ----------
 
     @Test
@@ -222,13 +322,13 @@ class AccountServiceImplTest {
         Account to = new Account("RAV1001", "Ravi", 500);
         to.setId("to-id");
 
-        when(accountRepository.findByAccountNumber("RAJ1000"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000"))
                 .thenReturn(Optional.of(from));
-        when(accountRepository.findByAccountNumber("RAV1001"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAV1001"))
                 .thenReturn(Optional.of(to));
         when(accountRepository.save(any(Account.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
-        when(transactionRepository.save(any(Transaction.class)))
+        when(transactionRepository.insert(anyList()))
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
         Transaction tx = service.transfer("RAJ1000", "RAV1001", 300);
@@ -236,7 +336,8 @@ class AccountServiceImplTest {
         assertEquals(700, from.getBalance());
         assertEquals(800, to.getBalance());
         assertEquals("TRANSFER", tx.getType());
-        verify(transactionRepository, times(1)).save(any(Transaction.class));
+        verify(outbox).hint(eq("from-id"), any());
+        verify(outbox).hint(eq("to-id"), any());
     }
 
     @Test
@@ -252,9 +353,9 @@ class AccountServiceImplTest {
         Account to = new Account("RAV1001", "Ravi", 500);
         to.setId("to-id");
 
-        when(accountRepository.findByAccountNumber("RAJ1000"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000"))
                 .thenReturn(Optional.of(from));
-        when(accountRepository.findByAccountNumber("RAV1001"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAV1001"))
                 .thenReturn(Optional.of(to));
 
         assertThrows(InsufficientBalanceException.class,
@@ -269,6 +370,164 @@ class AccountServiceImplTest {
                 () -> service.transfer("RAJ1000", "RAV1001", -5));
     }
 
+    @Test
+    void transfer_creditsDestinationWithAtomicIncrement() {
+        Account from = new Account("RAJ1000", "Raj", 1000);
+        from.setId("from-id");
+        Account to = new Account("RAV1001", "Ravi", 500);
+        to.setId("to-id");
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(from));
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAV1001")).thenReturn(Optional.of(to));
+        when(transactionRepository.insert(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.transfer("RAJ1000", "RAV1001", 300);
+
+        // I am checking that balances are only ever changed with $inc so that no node overwrites another node's update.
+        verify(accountRepository).adjustBalance(eq("from-id"), eq(-300L), any(Instant.class), any(OutboxEntry.class));
+        verify(accountRepository).creditBefore(eq("to-id"), eq(300L), any(Instant.class), any(OutboxEntry.class), any(Instant.class));
+        verify(accountRepository, never()).save(any(Account.class));
+    }
+
+    @Test
+    void transfer_commitsEachLegWithItsOwnAccountsBalanceChange() {
+        Account from = new Account("RAJ1000", "Raj", 1000);
+        from.setId("from-id");
+        Account to = new Account("RAV1001", "Ravi", 500);
+        to.setId("to-id");
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(from));
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAV1001")).thenReturn(Optional.of(to));
+        when(transactionRepository.insert(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction tx = service.transfer("RAJ1000", "RAV1001", 300);
+
+        ArgumentCaptor<OutboxEntry> payer = ArgumentCaptor.forClass(OutboxEntry.class), receiver = ArgumentCaptor.forClass(OutboxEntry.class);
+        verify(accountRepository).adjustBalance(eq("from-id"), eq(-300L), any(Instant.class), payer.capture());
+        verify(accountRepository).creditBefore(eq("to-id"), eq(300L), any(Instant.class), receiver.capture(), any(Instant.class));
+        Transaction debit = payer.getValue().getLegs().get(0), credit = receiver.getValue().getLegs().get(0);
+        // I am checking the payer's entry also carries the credit so that a credit lost to a crash can be finished later
+        assertSame(credit, payer.getValue().getCounterCredit());
+        assertEquals(payer.getValue().getJournalId(), receiver.getValue().getJournalId());
+        assertEquals("from-id", debit.getAccountId());
+        assertEquals(Transaction.DEBIT, debit.getDirection());
+        // I am checking the receiver gets its own leg so that incoming transfers show up in its history
+        assertEquals("to-id", credit.getAccountId());
+        assertEquals(Transaction.CREDIT, credit.getDirection());
+        assertEquals(debit.getJournalId(), credit.getJournalId());
+        assertEquals(debit.getAmount(), credit.getAmount());
+        assertSame(debit, tx);
+    }
+
+    @Test
+    void deposit_counterLegGoesToCashAccountInTheSameEntry() {
+        Account acc = new Account("RAJ1000", "Raj", 0);
+        acc.setId("acc-id");
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(acc));
+        when(transactionRepository.insert(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction tx = service.deposit("RAJ1000", 100);
+
+        assertEquals(Transaction.CREDIT, tx.getDirection());
+        assertEquals("acc-id", tx.getAccountId());
+        ArgumentCaptor<OutboxEntry> entry = ArgumentCaptor.forClass(OutboxEntry.class);
+        verify(accountRepository).adjustBalance(eq("acc-id"), eq(100L), any(Instant.class), entry.capture());
+        Transaction cash = entry.getValue().getLegs().get(0);
+        assertEquals(Journal.CASH, cash.getAccountId());
+        assertEquals(Transaction.DEBIT, cash.getDirection());
+        assertEquals(tx.getJournalId(), cash.getJournalId());
+    }
+
+    @Test
+    void withdraw_conditionalUpdateRejected_throwsInsufficient() {
+        Account acc = new Account("RAJ1000", "Raj", 1000);
+        acc.setId("acc-id");
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(acc));
+        // the stored balance was lowered elsewhere after this copy was read
+        when(accountRepository.adjustBalance(eq("acc-id"), eq(-400L), any(Instant.class), any(OutboxEntry.class))).thenReturn(false);
+
+        assertThrows(InsufficientBalanceException.class, () -> service.withdraw("RAJ1000", 400));
+        assertEquals(1000, acc.getBalance());
+        verify(outbox, never()).hint(anyString(), any());
+    }
+
+    @Test
+    void deposit_partitionOwnedElsewhere_throwsBeforeTouchingData() {
+        PartitionOwnership clustered = new PartitionOwnership(mock(MongoTemplate.class), new SimpleMeterRegistry(), true, 16, "node-a", "", 8080, 10_000, 3_000, 2_000);
+        AccountServiceImpl clusteredService = new AccountServiceImpl(accountRepository, transactionRepository, outbox, clustered, noLimits(), noIndex(), numbers, indexes);
+
+        assertThrows(PartitionNotOwnedException.class, () -> clusteredService.deposit("RAJ1000", 100));
+        verifyNoInteractions(transactionRepository);
+        verify(accountRepository, never()).findWithoutOutboxByAccountNumber(anyString());
+    }
+
+    @Test
+    void deleteByAccountNumber_partitionOwnedElsewhere_throwsBeforeTouchingData() {
+        PartitionOwnership clustered = new PartitionOwnership(mock(MongoTemplate.class), new SimpleMeterRegistry(), true, 16, "node-a", "", 8080, 10_000, 3_000, 2_000);
+        AccountServiceImpl clusteredService = new AccountServiceImpl(accountRepository, transactionRepository, outbox, clustered, noLimits(), noIndex(), numbers, indexes);
+
+        assertThrows(PartitionNotOwnedException.class, () -> clusteredService.deleteByAccountNumber("RAJ1000"));
+        verify(accountRepository, never()).deleteByAccountNumber(anyString());
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void transfer_receiverClosedMeanwhile_reversesThePayerDebit() {
+        Account from = new Account("RAJ1000", "Raj", 1000);
+        from.setId("from-id");
+        Account to = new Account("RAV1001", "Ravi", 0);
+        to.setId("to-id");
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(from));
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAV1001")).thenReturn(Optional.of(to));
+        // the receiver's owner closed it after this node read it as ACTIVE
+        when(accountRepository.creditBefore(eq("to-id"), eq(300L), any(Instant.class), any(OutboxEntry.class), any(Instant.class))).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> service.transfer("RAJ1000", "RAV1001", 300));
+
+        ArgumentCaptor<OutboxEntry> payer = ArgumentCaptor.forClass(OutboxEntry.class), reversal = ArgumentCaptor.forClass(OutboxEntry.class);
+        verify(accountRepository).adjustBalance(eq("from-id"), eq(-300L), any(Instant.class), payer.capture());
+        verify(accountRepository).adjustBalance(eq("from-id"), eq(300L), any(Instant.class), reversal.capture());
+        assertEquals(1000, from.getBalance());
+        List<Transaction> legs = reversal.getValue().getLegs();
+        // I am checking the lost credit is parked under its own id so that the transfer's journal still balances
+        Transaction parked = legs.get(2);
+        assertEquals(Journal.SUSPENSE, parked.getAccountId());
+        assertEquals(payer.getValue().getCounterCredit().getId(), parked.getId());
+        assertEquals(payer.getValue().getJournalId(), parked.getJournalId());
+        assertEquals(Journal.SUSPENSE, legs.get(0).getAccountId());
+        assertEquals("from-id", legs.get(1).getAccountId());
+        assertEquals(Transaction.CREDIT, legs.get(1).getDirection());
+        assertNotEquals(payer.getValue().getJournalId(), reversal.getValue().getJournalId());
+    }
+
+    @Test
+    void transfer_creditPastItsDeadline_isLeftToTheOutboxRecovery() {
+        Account from = new Account("RAJ1000", "Raj", 1000);
+        from.setId("from-id");
+        Account to = new Account("RAV1001", "Ravi", 0);
+        to.setId("to-id");
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(from));
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAV1001")).thenReturn(Optional.of(to));
+        // the writer stalled past the deadline, but the receiver can still be paid, so the recovery pays it exactly once
+        when(accountRepository.creditBefore(eq("to-id"), eq(300L), any(Instant.class), any(OutboxEntry.class), any(Instant.class))).thenReturn(false);
+        when(accountRepository.canTakeCredits("to-id")).thenReturn(true);
+
+        service.transfer("RAJ1000", "RAV1001", 300);
+
+        verify(accountRepository, never()).adjustBalance(eq("to-id"), anyLong(), any(Instant.class), any(OutboxEntry.class));
+        verify(accountRepository, never()).adjustBalance(eq("from-id"), eq(300L), any(Instant.class), any(OutboxEntry.class));
+        assertEquals(700, from.getBalance());
+    }
+
+    @Test
+    void closeAccount_balanceChangedConcurrently_throws() {
+        Account acc = new Account("RAJ1000", "Raj", 0);
+        acc.setId("acc-id");
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(acc));
+        when(accountRepository.closeIfEmpty("acc-id")).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> service.closeAccount("RAJ1000"));
+        assertNotEquals("INACTIVE", acc.getStatus());
+    }
+
     // ---------- getTransactions tests ----------
 
     @Test
@@ -280,9 +539,9 @@ class AccountServiceImplTest {
                 new Transaction("acc-id", "DEPOSIT", 100, Instant.now(), "deposit")
         );
 
-        when(accountRepository.findByAccountNumber("RAJ1000"))
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000"))
                 .thenReturn(Optional.of(acc));
-        when(transactionRepository.findByAccountId("acc-id"))
+        when(transactionRepository.findByAccountIdOrderByIdAsc("acc-id"))
                 .thenReturn(txs);
 
         List<Transaction> result = service.getTransactions("RAJ1000");
@@ -290,4 +549,90 @@ class AccountServiceImplTest {
         assertEquals(1, result.size());
         assertEquals("DEPOSIT", result.get(0).getType());
     }
+
+    @Test
+    void createAccount_waitsForTheIndexes() {
+        doThrow(new IndexesNotReadyException("Account creation")).when(indexes).requireReady(anyString());
+
+        assertThrows(IndexesNotReadyException.class, () -> service.createAccount("Raj"));
+        verify(accountRepository, never()).save(any(Account.class));
+    }
+
+    @Test
+    void getTransactionsSince_queriesAfterGivenSequence() {
+        Account acc = new Account("RAJ1000", "Raj", 0);
+        acc.setId("acc-id");
+        List<Transaction> txs = List.of(new Transaction("acc-id", "DEPOSIT", 100, Instant.now(), "deposit"));
+
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(acc));
+        when(transactionRepository.findByAccountIdAndSeqGreaterThanOrderBySeqAsc("acc-id", 5L)).thenReturn(txs);
+
+        assertEquals(txs, service.getTransactionsSince("RAJ1000", 5L));
+    }
+
+    // ---------- searchByHolderPrefix tests ----------
+
+    @Test
+    void searchByHolderPrefix_returnsCursorWhenMoreRowsExist() {
+        when(accountRepository.searchByHolderNameKeyPrefix("raj k", null, null, 3))
+                .thenReturn(List.of(new AccountSummary("RAJ1000", "Raj Kumar", "Active"),
+                        new AccountSummary("RAJ1001", "raj kumari", "Active"),
+                        new AccountSummary("RAJ1002", "Raj Kapoor", "Active")));
+
+        AccountSearchPage page = service.searchByHolderPrefix("  RAJ   K", 2, null);
+
+        assertEquals(2, page.getItems().size());
+        assertNotNull(page.getNextAfter());
+
+        // I am feeding the cursor back so that the keyset position (key of the last row + its number) is checked.
+        when(accountRepository.searchByHolderNameKeyPrefix("raj k", "raj kumari", "RAJ1001", 3))
+                .thenReturn(List.of(new AccountSummary("RAJ1002", "Raj Kapoor", "Active")));
+        AccountSearchPage next = service.searchByHolderPrefix("raj k", 2, page.getNextAfter());
+
+        assertEquals(1, next.getItems().size());
+        assertNull(next.getNextAfter());
+    }
+
+    @Test
+    void searchByHolderPrefix_invalidArguments_throw() {
+        assertThrows(IllegalArgumentException.class, () -> service.searchByHolderPrefix(" ", 10, null));
+        assertThrows(IllegalArgumentException.class, () -> service.searchByHolderPrefix("raj", 0, null));
+        assertThrows(IllegalArgumentException.class, () -> service.searchByHolderPrefix("raj", 10, "not a cursor"));
+    }
+
+    // ---------- account number index ----------
+
+    @Test
+    void getByAccountNumber_unknownToTheIndex_isRejectedWithoutAQuery() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        when(mongo.stream(any(), eq(Account.class))).thenAnswer(inv -> java.util.stream.Stream.of(new Account("RAJ1000", "Raj", 0L)));
+        AccountNumberIndex index = new AccountNumberIndex(mongo, new SimpleMeterRegistry(), true, false, 1000, 0.01, 1000);
+        index.build();
+        AccountServiceImpl indexed = new AccountServiceImpl(accountRepository, transactionRepository, outbox, ownership, noLimits(), index, numbers, indexes);
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(new Account("RAJ1000", "Raj", 0L)));
+
+        UnknownAccountException ex = assertThrows(UnknownAccountException.class, () -> indexed.getByAccountNumber("NOPE1"));
+
+        assertEquals(0, ex.getStackTrace().length);
+        assertEquals("RAJ1000", indexed.getByAccountNumber("RAJ1000").getAccountNumber());
+        verify(accountRepository, never()).findWithoutOutboxByAccountNumber("NOPE1");
+    }
+
+    @Test
+    void createAccount_withReadyIndex_skipsTheCollisionProbeAndRecordsTheNumber() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        when(mongo.stream(any(), eq(Account.class))).thenAnswer(inv -> Stream.empty());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AccountNumberIndex index = new AccountNumberIndex(mongo, registry, true, false, 1000, 0.01, 1000);
+        index.build();
+        AccountServiceImpl indexed = new AccountServiceImpl(accountRepository, transactionRepository, outbox, ownership, noLimits(), index, numbers, indexes);
+        when(accountRepository.save(any(Account.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        Account created = indexed.createAccount("Raj Kumar");
+
+        verify(accountRepository, never()).existsByAccountNumber(anyString());
+        // I am checking the free number was not counted as a lookup rejected from memory so that the metric means what it says
+        assertEquals(0.0, registry.get("banking.account-index.rejections").counter().count());
+        assertTrue(index.mightContain(created.getAccountNumber()));
+    }
 }
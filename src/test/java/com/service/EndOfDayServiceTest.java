@@ -0,0 +1,168 @@
+package com.service;
+
+import com.config.MongoIndexInitializer;
+import com.model.Account;
+import com.model.EodCheckpoint;
+import com.model.EodRunLease;
+import com.model.OutboxEntry;
+import com.model.Transaction;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EndOfDayServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private SimpleMeterRegistry registry;
+    private EndOfDayService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        registry = new SimpleMeterRegistry();
+        // 3.65% a year so that 10_000_000 earns exactly 1_000 a day; fee 50 below 5_000; dormant after 30 days
+        service = new EndOfDayService(mongoTemplate, mock(MongoIndexInitializer.class), registry, 2, 4, 100, 365, 50, 5_000, 30, 60_000);
+    }
+
+    @Test
+    void start_refusesADateThatAnotherNodeIsRunning() {
+        // the lease for the date is held, so the upsert collides with it
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(EodRunLease.class)))
+                .thenThrow(new DuplicateKeyException("E11000"));
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> service.start(LocalDate.parse("2024-03-31")));
+
+        assertTrue(ex.getMessage().contains("another node"), ex.getMessage());
+        verify(mongoTemplate, never()).find(any(Query.class), eq(EodCheckpoint.class));
+        // the local guard is free again, so the next attempt asks for the lease again rather than reporting a local run
+        assertThrows(IllegalStateException.class, () -> service.start(LocalDate.parse("2024-03-31")));
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(EodRunLease.class));
+    }
+
+    private Account account(String id, long balance, Instant lastActivity) {
+        Account a = new Account("RAJ" + id, "Raj", balance);
+        a.setId(id);
+        a.setLastActivityAt(lastActivity);
+        return a;
+    }
+
+    @Test
+    void dailyInterest_isFlooredAndDoesNotOverflow() {
+        assertEquals(1_000, EndOfDayService.dailyInterest(10_000_000, 365));
+        assertEquals(0, EndOfDayService.dailyInterest(-5, 365));
+        assertTrue(EndOfDayService.dailyInterest(Long.MAX_VALUE, 10_000) > 0);
+    }
+
+    @Test
+    void plan_chargesFeeBelowMinimumAndFlagsDormant() {
+        LocalDate day = LocalDate.parse("2024-03-31");
+        EndOfDayService.Plan rich = service.plan(account("a", 10_000_000, Instant.parse("2024-03-30T10:00:00Z")), day);
+        EndOfDayService.Plan poor = service.plan(account("b", 20, Instant.parse("2024-01-01T10:00:00Z")), day);
+
+        assertEquals(1_000, rich.interest);
+        assertEquals(0, rich.fee);
+        assertFalse(rich.dormant);
+        // fee is capped at what the account holds
+        assertEquals(20, poor.fee);
+        assertTrue(poor.dormant);
+    }
+
+    @Test
+    void journalId_isDeterministicPerDateAccountAndType() {
+        String id = EndOfDayService.journalId("2024-03-31", "acc", "INTEREST");
+
+        assertEquals(24, id.length());
+        assertEquals(id, EndOfDayService.journalId("2024-03-31", "acc", "INTEREST"));
+        assertNotEquals(id, EndOfDayService.journalId("2024-03-31", "acc", "FEE"));
+        assertNotEquals(id, EndOfDayService.journalId("2024-04-01", "acc", "INTEREST"));
+    }
+
+    @Test
+    void legs_shareTheDeterministicJournalButGetFreshIds() {
+        Instant now = Instant.now();
+        List<Transaction> first = EndOfDayService.legs("2024-03-31", "acc", "INTEREST", 10, now, "interest");
+        List<Transaction> rerun = EndOfDayService.legs("2024-03-31", "acc", "INTEREST", 10, now, "interest");
+
+        assertEquals(first.get(0).getJournalId(), rerun.get(1).getJournalId());
+        assertNotEquals(first.get(0).getId(), rerun.get(0).getId());
+        // a leg id carrying the business date's midnight would sort before the day's own movements
+        assertFalse(new ObjectId(first.get(1).getId()).getDate().toInstant().isBefore(now.minusSeconds(1)));
+    }
+
+    @Test
+    void processPartition_appliesBulkUpdatesAndCheckpoints() {
+        Account active = account("a", 10_000_000, Instant.now());
+        Account alreadyDone = account("b", 10_000_000, Instant.now());
+        alreadyDone.setLastEodDate("2024-03-31");
+        Account closed = account("c", 0, Instant.now());
+        closed.setStatus("INACTIVE");
+        when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(List.of(active, alreadyDone, closed));
+        BulkOperations accountOps = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Account.class)).thenReturn(accountOps);
+        EodCheckpoint cp = new EodCheckpoint("2024-03-31", 0, null, null);
+        EndOfDayService.Progress progress = new EndOfDayService.Progress("2024-03-31");
+
+        service.processPartition("2024-03-31", cp, progress);
+
+        // only the active account that hasn't had this date yet gets an update, carrying its interest journal (two legs)
+        ArgumentCaptor<Query> filter = ArgumentCaptor.forClass(Query.class); ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(accountOps, times(1)).updateOne(filter.capture(), update.capture());
+        assertEquals(new Document("$ne", "INACTIVE"), filter.getValue().getQueryObject().get("status"));
+        Document credited = update.getValue().getUpdateObject();
+        assertEquals(new Document("balance", 1_000L), credited.get("$inc"));
+        OutboxEntry entry = (OutboxEntry) ((Document) credited.get("$push")).get("outbox");
+        assertEquals(List.of("SYSTEM:INTEREST", "a"), entry.getLegs().stream().map(Transaction::getAccountId).toList());
+        // interest reaches the ledger through the outbox like a fee does, never directly
+        verify(mongoTemplate, never()).bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class);
+        assertTrue(cp.isDone());
+        assertEquals("c", cp.getLastId());
+        assertEquals(3, cp.getAccountsProcessed());
+        assertEquals(1_000, progress.interest.get());
+        assertEquals(3.0, registry.counter("banking.eod.accounts.processed").count());
+    }
+
+    @Test
+    void processPartition_feeIsOnlyTakenWhileTheBalanceCoversIt() {
+        Account poor = account("a", 40, Instant.now());
+        when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(List.of(poor));
+        // the owner withdrew 30 after the page was read, so the planned fee of 40 no longer fits
+        Account fresh = account("a", 10, Instant.now());
+        when(mongoTemplate.findOne(any(Query.class), eq(Account.class))).thenReturn(fresh);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Account.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null), UpdateResult.acknowledged(1, 1L, null));
+        EndOfDayService.Progress progress = new EndOfDayService.Progress("2024-03-31");
+
+        service.processPartition("2024-03-31", new EodCheckpoint("2024-03-31", 0, null, null), progress);
+
+        ArgumentCaptor<Query> filters = ArgumentCaptor.forClass(Query.class); ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(filters.capture(), updates.capture(), eq(Account.class));
+        assertEquals(new Document("$gte", 40L), filters.getAllValues().get(0).getQueryObject().get("balance"));
+        assertEquals(new Document("$gte", 10L), filters.getAllValues().get(1).getQueryObject().get("balance"));
+        Document charged = updates.getAllValues().get(1).getUpdateObject();
+        assertEquals(new Document("balance", -10L), charged.get("$inc"));
+        // the fee's legs ride in the outbox with the balance change, and nothing is written to the ledger directly
+        OutboxEntry entry = (OutboxEntry) ((Document) charged.get("$push")).get("outbox");
+        assertEquals(10, entry.getLegs().get(0).getAmount());
+        assertEquals(EndOfDayService.journalId("2024-03-31", "a", "FEE"), entry.getJournalId());
+        verify(mongoTemplate, never()).bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class);
+        assertEquals(10, progress.fees.get());
+    }
+}
@@ -0,0 +1,86 @@
+package com.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.model.Account;
+import com.model.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ExportServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private ExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        exportService = new ExportService(mongoTemplate, new ObjectMapper().registerModule(new JavaTimeModule()));
+    }
+
+    private Account account(String id, String name) {
+        Account a = new Account("RAJ" + id, name, 100);
+        a.setId(id);
+        a.setCreatedAt(null);
+        return a;
+    }
+
+    @Test
+    void exportAccounts_csv_escapesValuesAndUsesRangeQuery() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(Account.class)))
+                .thenReturn(Stream.of(account("1", "Raj"), account("2", "Kumar, \"RK\"")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportAccounts(out, "csv", false, 500, "0", null);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("id,accountNumber,accountHolderName,status,balance,createdAt", lines[0]);
+        assertEquals("1,RAJ1,Raj,Active,100,", lines[1]);
+        assertEquals("2,RAJ2,\"Kumar, \"\"RK\"\"\",Active,100,", lines[2]);
+
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(q.capture(), eq(Account.class));
+        assertEquals(500, q.getValue().getMeta().getCursorBatchSize());
+        assertTrue(q.getValue().getQueryObject().toJson().contains("$gt"));
+    }
+
+    @Test
+    void exportTransactions_ndjsonGzip_writesOneObjectPerLine() throws Exception {
+        Transaction t1 = new Transaction("acc", "DEPOSIT", 10, Instant.parse("2024-01-01T00:00:00Z"), "deposit");
+        t1.setId("t1");
+        Transaction t2 = new Transaction("acc", "WITHDRAW", 5, Instant.parse("2024-01-02T00:00:00Z"), "withdraw");
+        t2.setId("t2");
+        when(mongoTemplate.stream(any(Query.class), eq(Transaction.class))).thenReturn(Stream.of(t1, t2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportTransactions(out, "ndjson", true, 100, null, null);
+
+        String text = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(), StandardCharsets.UTF_8);
+        String[] lines = text.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":\"t1\",\"accountId\":\"acc\",\"type\":\"DEPOSIT\",\"amount\":10"));
+        assertTrue(lines[1].startsWith("{\"id\":\"t2\""));
+    }
+
+    @Test
+    void validate_rejectsUnknownFormatAndBatchSize() {
+        assertThrows(IllegalArgumentException.class, () -> ExportService.validate("xml", 10));
+        assertThrows(IllegalArgumentException.class, () -> ExportService.validate("csv", 0));
+        assertDoesNotThrow(() -> ExportService.validate("NDJSON", ExportService.MAX_BATCH_SIZE));
+    }
+}
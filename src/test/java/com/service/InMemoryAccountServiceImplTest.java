@@ -0,0 +1,281 @@
+package com.service;
+
+import com.dto.AccountSearchPage;
+import com.dto.AccountSummary;
+import com.exception.AccountNotFoundException;
+import com.exception.InsufficientBalanceException;
+import com.exception.LimitExceededException;
+import com.model.Account;
+import com.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/*
+ I am running the same scenarios as AccountServiceImplTest against the in-memory engine,
+ plus a restart from the write-ahead log.
+*/
+class InMemoryAccountServiceImplTest {
+
+    private ApplicationEventPublisher events;
+    private InMemoryLedgerStore store;
+    private InMemoryAccountServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        events = mock(ApplicationEventPublisher.class);
+        store = new InMemoryLedgerStore(4, 4);
+        service = new InMemoryAccountServiceImpl(store, events, limits(store, 0));
+    }
+
+    static VelocityLimiter limits(InMemoryLedgerStore store, long withdrawAmountPerDay) {
+        return new VelocityLimiter((acc, types, since) -> store.debitsSince(store.slotOf(acc.getAccountNumber()), since),
+                new SimpleMeterRegistry(), withdrawAmountPerDay, 0, 0, 60, 1000);
+    }
+
+    @Test
+    void createAndGet_roundTrip() {
+        Account created = service.createAccount("  Raj   Kumar ");
+
+        assertTrue(created.getAccountNumber().startsWith("RAJ"));
+        Account found = service.getByAccountNumber(created.getAccountNumber());
+        assertEquals("Raj   Kumar", found.getAccountHolderName());
+        assertEquals(0, found.getBalance());
+        assertEquals("Active", found.getStatus());
+    }
+
+    @Test
+    void createAccount_blankName_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> service.createAccount(null));
+        assertThrows(IllegalArgumentException.class, () -> service.createAccount("   "));
+    }
+
+    @Test
+    void unknownAccount_throwsNotFound() {
+        assertThrows(AccountNotFoundException.class, () -> service.getByAccountNumber("NOPE"));
+        assertThrows(AccountNotFoundException.class, () -> service.getByAccountNumber("RAJ99999"));
+    }
+
+    @Test
+    void depositWithdrawTransfer_moveBalancesAndRecordHistory() {
+        String a = service.createAccount("Raj").getAccountNumber();
+        String b = service.createAccount("Ravi").getAccountNumber();
+
+        service.deposit(a, 1000);
+        service.withdraw(a, 200);
+        Transaction t = service.transfer(a, b, 300);
+
+        assertEquals(500, service.getByAccountNumber(a).getBalance());
+        assertEquals(300, service.getByAccountNumber(b).getBalance());
+        assertEquals("TRANSFER", t.getType());
+        assertEquals(b, t.getDestinationAccountNumber());
+        List<Transaction> history = service.getTransactions(a);
+        assertEquals(List.of("DEPOSIT", "WITHDRAW", "TRANSFER"), history.stream().map(Transaction::getType).toList());
+        assertEquals(List.of(t.getId()), service.getTransactionsSince(a, history.get(1).getSeq()).stream().map(Transaction::getId).toList());
+        // one event per customer leg: the deposit, the withdrawal and both sides of the transfer
+        verify(events, times(4)).publishEvent(any(TransactionCommittedEvent.class));
+    }
+
+    @Test
+    void depositAndWithdraw_writeCashCounterLeg() {
+        String a = service.createAccount("Raj").getAccountNumber();
+
+        Transaction credit = service.deposit(a, 100);
+        Transaction debit = service.withdraw(a, 40);
+
+        Transaction cashDebit = store.transaction(InMemoryLedgerStore.entryOf(credit.getJournalId()));
+        assertEquals(Journal.CASH, cashDebit.getAccountId());
+        assertEquals(Transaction.DEBIT, cashDebit.getDirection());
+        assertEquals(100, cashDebit.getAmount());
+        assertEquals("deposit to " + a, cashDebit.getNote());
+        assertEquals(Transaction.DEBIT, debit.getDirection());
+        assertEquals(debit.getId(), debit.getJournalId());
+        Transaction cashCredit = store.transaction(InMemoryLedgerStore.entryOf(debit.getId()) + 1);
+        assertEquals(Journal.CASH, cashCredit.getAccountId());
+        assertEquals(debit.getJournalId(), cashCredit.getJournalId());
+        // the cash side is not part of the customer's history
+        assertEquals(2, service.getTransactions(a).size());
+    }
+
+    @Test
+    void withdraw_overVelocityLimit_throwsAndSurvivesRebuild() {
+        InMemoryAccountServiceImpl limited = new InMemoryAccountServiceImpl(store, events, limits(store, 500));
+        String a = limited.createAccount("Raj").getAccountNumber();
+        limited.deposit(a, 1000);
+        limited.withdraw(a, 300);
+
+        assertThrows(LimitExceededException.class, () -> limited.withdraw(a, 300));
+        // a limiter that has never seen the account rebuilds its window from the ledger
+        InMemoryAccountServiceImpl restarted = new InMemoryAccountServiceImpl(store, events, limits(store, 500));
+        assertThrows(LimitExceededException.class, () -> restarted.withdraw(a, 300));
+        restarted.withdraw(a, 200);
+        assertEquals(500, restarted.getByAccountNumber(a).getBalance());
+    }
+
+    @Test
+    void transfer_receiverHistoryHoldsMatchingCreditLeg() {
+        String a = service.createAccount("Raj").getAccountNumber();
+        String b = service.createAccount("Ravi").getAccountNumber();
+        service.deposit(a, 1000);
+
+        Transaction debit = service.transfer(a, b, 300);
+
+        List<Transaction> received = service.getTransactions(b);
+        assertEquals(1, received.size());
+        Transaction credit = received.get(0);
+        assertEquals(Transaction.DEBIT, debit.getDirection());
+        assertEquals(Transaction.CREDIT, credit.getDirection());
+        assertEquals(debit.getJournalId(), credit.getJournalId());
+        assertEquals(300, credit.getAmount());
+        assertEquals("transfer from " + a, credit.getNote());
+    }
+
+    @Test
+    void withdrawAndTransfer_insufficientBalance_throw() {
+        String a = service.createAccount("Raj").getAccountNumber();
+        String b = service.createAccount("Ravi").getAccountNumber();
+        service.deposit(a, 100);
+
+        assertThrows(InsufficientBalanceException.class, () -> service.withdraw(a, 500));
+        assertThrows(InsufficientBalanceException.class, () -> service.transfer(a, b, 500));
+        assertThrows(IllegalArgumentException.class, () -> service.transfer(a, a, 5));
+        assertThrows(IllegalArgumentException.class, () -> service.deposit(a, 0));
+        assertEquals(100, service.getByAccountNumber(a).getBalance());
+    }
+
+    @Test
+    void close_requiresZeroBalance_andBlocksFurtherOperations() {
+        String a = service.createAccount("Raj").getAccountNumber();
+        service.deposit(a, 10);
+        assertThrows(IllegalStateException.class, () -> service.closeAccount(a));
+
+        service.withdraw(a, 10);
+        assertEquals("INACTIVE", service.closeAccount(a).getStatus());
+        assertThrows(IllegalStateException.class, () -> service.deposit(a, 5));
+    }
+
+    @Test
+    void delete_removesAccount() {
+        String a = service.createAccount("Raj").getAccountNumber();
+        service.deleteByAccountNumber(a);
+        assertThrows(AccountNotFoundException.class, () -> service.getByAccountNumber(a));
+    }
+
+    @Test
+    void writeAheadLog_restoresStateAfterRestart(@TempDir Path dir) {
+        Path wal = dir.resolve("ledger.wal");
+        String a, b, deleted;
+        try (InMemoryLedgerStore store = new InMemoryLedgerStore(4, 4, wal, 128, 256, false)) {
+            InMemoryAccountServiceImpl first = new InMemoryAccountServiceImpl(store, events, limits(store, 0));
+            a = first.createAccount("Raj").getAccountNumber();
+            b = first.createAccount("Ravi").getAccountNumber();
+            deleted = first.createAccount("Gone").getAccountNumber();
+            // enough records to grow the 128 byte mapping and to fill several 256 byte segments
+            for (int i = 0; i < 20; i++) { first.deposit(a, 10); }
+            first.transfer(a, b, 50);
+            first.deleteByAccountNumber(deleted);
+        }
+
+        try (InMemoryLedgerStore store = new InMemoryLedgerStore(4, 4, wal, 128, 256, false)) {
+            InMemoryAccountServiceImpl second = new InMemoryAccountServiceImpl(store, events, limits(store, 0));
+            assertEquals(150, second.getByAccountNumber(a).getBalance());
+            assertEquals(50, second.getByAccountNumber(b).getBalance());
+            assertEquals(21, second.getTransactions(a).size());
+            assertThrows(AccountNotFoundException.class, () -> second.getByAccountNumber(deleted));
+            assertTrue(Files.exists(dir.resolve("ledger.wal.2")));
+            // numbering continues after the replayed accounts
+            assertNotEquals(deleted, second.createAccount("Gone").getAccountNumber());
+        }
+    }
+
+    @Test
+    void writeAheadLog_recordWrittenOverATornOneEndsWhereItEnds(@TempDir Path dir) throws IOException {
+        Path wal = dir.resolve("ledger.wal");
+        try (LedgerWriteAheadLog log = new LedgerWriteAheadLog(wal, 128, 256, false)) {
+            log.appendCreate(0, 1L, "A", "B");
+        }
+        // a crash tore the next record: its type byte is still 0, but its body holds what looks like DELETE of slot 7
+        // right where a 5 byte record written at the same position ends
+        int end = 1 + 4 + 8 + 2 + 1 + 2 + 1;
+        try (FileChannel ch = FileChannel.open(wal, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(10).put((byte) 0).putInt(9).put(LedgerWriteAheadLog.DELETE).putInt(7).flip(), end);
+        }
+        List<Integer> deleted = new ArrayList<>();
+        LedgerWriteAheadLog.Replayer replayer = new LedgerWriteAheadLog.Replayer() {
+            public void create(int slot, long createdAt, String accountNumber, String holderName) { }
+            public void status(int slot, byte status) { }
+            public void entry(byte type, int account, int counterparty, long amount, long timestamp) { }
+            public void delete(int slot) { deleted.add(slot); }
+        };
+        try (LedgerWriteAheadLog log = new LedgerWriteAheadLog(wal, 128, 256, false)) {
+            log.replay(replayer);
+            log.appendDelete(0);
+        }
+
+        try (LedgerWriteAheadLog log = new LedgerWriteAheadLog(wal, 128, 256, false)) {
+            log.replay(replayer);
+        }
+        assertEquals(List.of(0), deleted);
+    }
+
+    @Test
+    void writeAheadLog_failedAppend_leavesStoreUnchanged(@TempDir Path dir) throws IOException {
+        Path wal = dir.resolve("ledger.wal");
+        try (InMemoryLedgerStore store = new InMemoryLedgerStore(4, 4, wal, 128, 128, false)) {
+            InMemoryAccountServiceImpl svc = new InMemoryAccountServiceImpl(store, events, limits(store, 0));
+            String a = svc.createAccount("Raj").getAccountNumber();
+            // the next segment can't be opened, so the deposit that needs it must fail before touching the balance
+            Files.createDirectory(dir.resolve("ledger.wal.1"));
+            long deposited = 0;
+            try {
+                for (int i = 0; i < 10; i++) { svc.deposit(a, 10); deposited += 10; }
+                fail("expected the log to run out of its first segment");
+            } catch (UncheckedIOException expected) {
+                assertEquals(deposited, svc.getByAccountNumber(a).getBalance());
+                assertEquals(deposited / 10, svc.getTransactions(a).size());
+            }
+        }
+    }
+
+    @Test
+    void searchByHolderPrefix_pagesThroughMatchesInKeyOrder() {
+        String b = service.createAccount("Ravi B").getAccountNumber();
+        String a = service.createAccount("ravi a").getAccountNumber();
+        service.createAccount("Raj");
+        String c = service.createAccount("RAVI  C").getAccountNumber();
+
+        AccountSearchPage first = service.searchByHolderPrefix("RaVi", 2, null);
+        AccountSearchPage second = service.searchByHolderPrefix("RaVi", 2, first.getNextAfter());
+
+        assertEquals(List.of(a, b), first.getItems().stream().map(AccountSummary::getAccountNumber).toList());
+        assertEquals(List.of(c), second.getItems().stream().map(AccountSummary::getAccountNumber).toList());
+        assertNull(second.getNextAfter());
+    }
+
+    @Test
+    void longIntHashMap_putGetRemove() {
+        LongIntHashMap map = new LongIntHashMap(2);
+        for (int i = 0; i < 1000; i++) { map.put(i * 31L, i); }
+        for (int i = 0; i < 1000; i += 2) { map.remove(i * 31L); }
+
+        assertEquals(500, map.size());
+        assertEquals(-1, map.get(0, -1));
+        assertEquals(999, map.get(999 * 31L, -1));
+    }
+}
@@ -0,0 +1,75 @@
+package com.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Operations per second through InMemoryAccountServiceImpl (the simulation engine), single-threaded and with more threads.
+ Each thread runs a 50/25/25 mix of deposits, withdrawals and transfers between random accounts for a fixed time.
+ Events go to an AccountEventBus with no subscribers, limits are off and there is no write-ahead log unless a path is given.
+
+   mvn -q test-compile exec:java -Dexec.mainClass=com.service.LedgerEngineBenchmark -Dexec.classpathScope=test [-Dexec.args="5 10000 /tmp/ledger.wal"]
+*/
+public final class LedgerEngineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        String wal = args.length > 2 ? args[2] : null;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-8s %14s %12s%n", "threads", "ops/s", "failed");
+        int last = 0;
+        for (int threads : new int[]{1, 2, 4, cores}) {
+            if (threads <= last || threads > cores) continue;
+            run(threads, seconds, accounts, wal);
+            last = threads;
+        }
+    }
+
+    private static void run(int threads, int seconds, int accounts, String wal) throws Exception {
+        Path walPath = wal == null ? null : Files.createTempFile(Path.of(wal).toAbsolutePath().getParent(), "bench", ".wal");
+        try (InMemoryLedgerStore store = new InMemoryLedgerStore(accounts, 16_000_000, walPath, 64L << 20, 1L << 30, false)) {
+            AccountEventBus bus = new AccountEventBus("local");
+            InMemoryAccountServiceImpl svc = new InMemoryAccountServiceImpl(store, e -> bus.onCommitted((TransactionCommittedEvent) e),
+                    new VelocityLimiter((acc, types, since) -> store.debitsSince(store.slotOf(acc.getAccountNumber()), since), new SimpleMeterRegistry(), 0, 0, 0, 60, 1000));
+            String[] numbers = new String[accounts];
+            for (int i = 0; i < accounts; i++) { numbers[i] = svc.createAccount("Bench " + i).getAccountNumber(); svc.deposit(numbers[i], 1_000_000); }
+
+            LongAdder ops = new LongAdder(), failed = new LongAdder();
+            CountDownLatch done = new CountDownLatch(threads);
+            long end = System.nanoTime() + seconds * 1_000_000_000L;
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                Thread worker = new Thread(() -> {
+                    SplittableRandom rnd = new SplittableRandom(seed);
+                    long n = 0, f = 0;
+                    while ((n & 1023) != 0 || System.nanoTime() < end) {
+                        int from = rnd.nextInt(accounts);
+                        String a = numbers[from];
+                        int op = rnd.nextInt(4);
+                        try {
+                            if (op < 2) svc.deposit(a, 1 + rnd.nextInt(100));
+                            else if (op == 2) svc.withdraw(a, 1 + rnd.nextInt(100));
+                            else svc.transfer(a, numbers[(from + 1 + rnd.nextInt(accounts - 1)) % accounts], 1 + rnd.nextInt(100));
+                        } catch (RuntimeException e) { f++; }
+                        n++;
+                    }
+                    ops.add(n - f); failed.add(f);
+                    done.countDown();
+                });
+                worker.start();
+            }
+            long start = System.nanoTime();
+            done.await();
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-8d %14.0f %12d%n", threads, ops.sum() / elapsed, failed.sum());
+        } finally {
+            if (walPath != null) Files.deleteIfExists(walPath);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.service;
+
+import com.config.MongoIndexInitializer;
+import com.dto.LedgerBalanceReport;
+import com.model.Account;
+import com.model.Transaction;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LedgerVerificationServiceTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void verify_reportsTotalsAndUnbalancedJournals() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        when(mongo.getCollectionName(Transaction.class)).thenReturn("transaction");
+        when(mongo.getCollection("transaction")).thenReturn(collection);
+        AggregateIterable<Document> totals = results(List.of(new Document("legs", 5).append("debits", 700L).append("credits", 600L).append("legacy", 1)));
+        AggregateIterable<Document> unbalanced = results(List.of(new Document("_id", "j-2").append("net", 100L).append("legs", 1)));
+        when(collection.aggregate(anyList())).thenReturn(totals, unbalanced);
+
+        LedgerBalanceReport report = new LedgerVerificationService(mongo, mock(MongoIndexInitializer.class)).verify();
+
+        assertEquals(5, report.getLegs());
+        assertEquals(700, report.getTotalDebits());
+        assertEquals(600, report.getTotalCredits());
+        assertEquals(1, report.getLegacyEntries());
+        assertEquals(List.of("j-2"), report.getUnbalancedJournals());
+        assertFalse(report.isBalanced());
+        // the journal check groups only legs that have a journal and stops after the reported maximum
+        ArgumentCaptor<List<Document>> pipelines = ArgumentCaptor.forClass(List.class);
+        verify(collection, times(2)).aggregate(pipelines.capture());
+        List<Document> journals = pipelines.getAllValues().get(1);
+        assertEquals(new Document("journalId", new Document("$exists", true)), journals.get(0).get("$match"));
+        assertEquals(LedgerVerificationService.MAX_REPORTED_JOURNALS, journals.get(3).get("$limit"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void verify_emptyLedgerIsBalanced() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        when(mongo.getCollectionName(Transaction.class)).thenReturn("transaction");
+        when(mongo.getCollection("transaction")).thenReturn(collection);
+        AggregateIterable<Document> none = results(List.of());
+        when(collection.aggregate(anyList())).thenReturn(none);
+
+        LedgerBalanceReport report = new LedgerVerificationService(mongo, mock(MongoIndexInitializer.class)).verify();
+
+        assertTrue(report.isBalanced());
+        assertEquals(0, report.getLegs());
+    }
+
+    @Test
+    void backfill_rerunAfterAnInterruptedPassWritesNoSecondCounterLeg() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        Transaction transfer = new Transaction("acc-a", "TRANSFER", 300, Instant.EPOCH, "transfer to B1", "A1", "B1");
+        transfer.setId("tx-1");
+        Transaction deposit = new Transaction("acc-a", "DEPOSIT", 10, Instant.EPOCH, "deposit");
+        deposit.setId("tx-2");
+        // the first pass died after writing the counter legs, so the second still sees both rows without a direction
+        when(mongo.stream(any(Query.class), eq(Transaction.class))).thenAnswer(inv -> List.of(transfer, deposit).stream());
+        Account receiver = new Account("B1", "Ravi", 0);
+        receiver.setId("acc-b");
+        when(mongo.find(any(Query.class), eq(Account.class))).thenReturn(List.of(receiver));
+        BulkOperations counters = mock(BulkOperations.class), owners = mock(BulkOperations.class);
+        when(mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class)).thenReturn(counters, owners, counters, owners);
+        BulkWriteResult marked = mock(BulkWriteResult.class), alreadyMarked = mock(BulkWriteResult.class);
+        when(marked.getModifiedCount()).thenReturn(2);
+        when(alreadyMarked.getModifiedCount()).thenReturn(0);
+        when(owners.execute()).thenReturn(marked, alreadyMarked);
+        LedgerVerificationService service = new LedgerVerificationService(mongo, mock(MongoIndexInitializer.class));
+
+        assertEquals(2, service.backfill());
+        assertEquals(0, service.backfill());
+
+        // counter legs are upserted by (journalId, direction) and only ever set on insert, so the re-run matches the first pass's legs
+        ArgumentCaptor<Query> keys = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> inserts = ArgumentCaptor.forClass(Update.class);
+        verify(counters, times(4)).upsert(keys.capture(), inserts.capture());
+        assertEquals(keys.getAllValues().subList(0, 2), keys.getAllValues().subList(2, 4));
+        assertEquals(new Document("journalId", "tx-1").append("direction", Transaction.CREDIT), keys.getAllValues().get(0).getQueryObject());
+        assertEquals(new Document("journalId", "tx-2").append("direction", Transaction.DEBIT), keys.getAllValues().get(1).getQueryObject());
+        for (Update u : inserts.getAllValues()) assertEquals(List.of("$setOnInsert"), List.copyOf(u.getUpdateObject().keySet()));
+        assertEquals("acc-b", ((Document) inserts.getAllValues().get(0).getUpdateObject().get("$setOnInsert")).get("accountId"));
+        assertEquals(Journal.CASH, ((Document) inserts.getAllValues().get(1).getUpdateObject().get("$setOnInsert")).get("accountId"));
+        // and a row is only marked while it still has no direction
+        ArgumentCaptor<Query> marks = ArgumentCaptor.forClass(Query.class);
+        verify(owners, times(4)).updateOne(marks.capture(), any(Update.class));
+        assertEquals(new Document("$exists", false), marks.getValue().getQueryObject().get("direction"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AggregateIterable<Document> results(List<Document> docs) {
+        AggregateIterable<Document> it = mock(AggregateIterable.class);
+        when(it.allowDiskUse(anyBoolean())).thenReturn(it);
+        when(it.first()).thenReturn(docs.isEmpty() ? null : docs.get(0));
+        when(it.iterator()).thenAnswer(inv -> {
+            Iterator<Document> source = docs.iterator();
+            MongoCursor<Document> cursor = mock(MongoCursor.class);
+            when(cursor.hasNext()).thenAnswer(i -> source.hasNext());
+            when(cursor.next()).thenAnswer(i -> source.next());
+            return cursor;
+        });
+        return it;
+    }
+
+    @Test
+    void counterLeg_legacyTransferCreditsTheReceiverUnderTheSameJournal() {
+        Transaction legacy = new Transaction("acc-a", "TRANSFER", 300, Instant.EPOCH, "transfer to B1", "A1", "B1");
+        legacy.setId("tx-1");
+
+        Transaction counter = LedgerVerificationService.counterLeg(legacy, "acc-b");
+
+        assertEquals("acc-b", counter.getAccountId());
+        assertEquals(Transaction.CREDIT, counter.getDirection());
+        assertEquals("tx-1", counter.getJournalId());
+        assertEquals("transfer from A1", counter.getNote());
+        assertEquals(300, counter.getAmount());
+    }
+
+    @Test
+    void counterLeg_unknownReceiverAndCashPostingsUseSystemAccounts() {
+        Transaction orphan = new Transaction("acc-a", "TRANSFER", 50, Instant.EPOCH, "transfer to GONE", "A1", "GONE");
+        Transaction deposit = new Transaction("acc-a", "DEPOSIT", 10, Instant.EPOCH, "deposit");
+
+        assertEquals(Journal.SUSPENSE, LedgerVerificationService.counterLeg(orphan, null).getAccountId());
+        Transaction cash = LedgerVerificationService.counterLeg(deposit, null);
+        assertEquals(Journal.CASH, cash.getAccountId());
+        assertEquals(Transaction.DEBIT, cash.getDirection());
+    }
+
+    @Test
+    void ownDirection_followsTheMovementOfMoney() {
+        assertEquals(Transaction.CREDIT, LedgerVerificationService.ownDirection("DEPOSIT"));
+        assertEquals(Transaction.CREDIT, LedgerVerificationService.ownDirection("INTEREST"));
+        assertEquals(Transaction.DEBIT, LedgerVerificationService.ownDirection("WITHDRAW"));
+        assertEquals(Transaction.DEBIT, LedgerVerificationService.ownDirection("TRANSFER"));
+        assertEquals(Transaction.DEBIT, LedgerVerificationService.ownDirection("FEE"));
+    }
+}
@@ -0,0 +1,250 @@
+package com.service;
+
+import com.config.MongoIndexInitializer;
+import com.model.Account;
+import com.model.OutboxEntry;
+import com.model.Transaction;
+import com.mongodb.bulk.BulkWriteError;
+import com.repository.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxDispatcherTest {
+
+    private MongoTemplate mongoTemplate;
+    private AccountRepository accountRepository;
+    private StatementService statements;
+    private ApplicationEventPublisher events;
+    private BulkOperations ledgerInsert;
+    private LedgerSequence sequence;
+    private MongoIndexInitializer indexes;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        accountRepository = mock(AccountRepository.class);
+        statements = mock(StatementService.class);
+        events = mock(ApplicationEventPublisher.class);
+        ledgerInsert = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class)).thenReturn(ledgerInsert);
+        when(ledgerInsert.insert(anyList())).thenReturn(ledgerInsert);
+        sequence = mock(LedgerSequence.class);
+        when(sequence.take(anyInt())).thenReturn(1L);
+        indexes = mock(MongoIndexInitializer.class);
+        when(indexes.isReady()).thenReturn(true);
+        PartitionOwnership ownership = new PartitionOwnership(mongoTemplate, new SimpleMeterRegistry(), false, 16, "node-a", "", 8080, 10_000, 3_000, 2_000);
+        dispatcher = new OutboxDispatcher(mongoTemplate, accountRepository, statements, events, ownership, sequence, indexes, new SimpleMeterRegistry(), 1, 50, 100, 2_000, 60_000);
+    }
+
+    @Test
+    void dispatch_writesLedgerRollupsAndEventsThenPullsTheEntry() {
+        List<Transaction> legs = Journal.legs("DEPOSIT", 100, Instant.now(), Journal.CASH, "deposit to RAJ1000", "acc-id", "deposit");
+        when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(List.of(withOutbox("acc-id", new OutboxEntry(legs, null, Instant.now()))));
+
+        assertEquals(1, dispatcher.dispatch(List.of("acc-id")));
+
+        verify(ledgerInsert).insert(legs);
+        // I am checking the SYSTEM:CASH leg reaches the ledger but not the account's references, rollups or event stream
+        verify(accountRepository).addTransactionRefs(List.of(legs.get(1)));
+        verify(statements).apply(List.of(legs.get(1)));
+        verify(events, times(1)).publishEvent(any(TransactionCommittedEvent.class));
+        verify(accountRepository).removeOutboxEntries(Map.of("acc-id", List.of(legs.get(0).getJournalId())));
+    }
+
+    @Test
+    void dispatch_waitsForTheIndexes() {
+        when(indexes.isReady()).thenReturn(false);
+
+        assertEquals(0, dispatcher.dispatch(List.of("acc-id")));
+
+        verifyNoInteractions(accountRepository, statements, events, sequence);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Account.class));
+    }
+
+    @Test
+    void dispatch_numbersLegsInTheOrderTheyAreWrittenNotCreated() {
+        // the older deposit's entry is dispatched after the newer one, as after a failed batch or a dropped hint
+        List<Transaction> older = Journal.legs("DEPOSIT", 100, Instant.now(), Journal.CASH, "deposit to RAJ1000", "acc-id", "deposit");
+        List<Transaction> newer = Journal.legs("DEPOSIT", 200, Instant.now(), Journal.CASH, "deposit to RAJ1000", "acc-id", "deposit");
+        when(sequence.take(2)).thenReturn(1L, 3L);
+        when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+                .thenReturn(List.of(withOutbox("acc-id", new OutboxEntry(newer, null, Instant.now()))))
+                .thenReturn(List.of(withOutbox("acc-id", new OutboxEntry(older, null, Instant.now()))));
+
+        dispatcher.dispatch(List.of("acc-id"));
+        dispatcher.dispatch(List.of("acc-id"));
+
+        assertTrue(older.get(1).getId().compareTo(newer.get(1).getId()) < 0);
+        assertEquals(2L, newer.get(1).getSeq());
+        assertEquals(4L, older.get(1).getSeq());
+        ArgumentCaptor<TransactionCommittedEvent> published = ArgumentCaptor.forClass(TransactionCommittedEvent.class);
+        verify(events, times(2)).publishEvent(published.capture());
+        assertEquals(List.of(2L, 4L), published.getAllValues().stream().map(e -> e.getTransaction().getSeq()).toList());
+    }
+
+    @Test
+    void dispatch_replayedLegKeepsTheSequenceItWasWrittenWith() {
+        List<Transaction> legs = Journal.legs("DEPOSIT", 100, Instant.now(), Journal.CASH, "deposit to RAJ1000", "acc-id", "deposit");
+        when(sequence.take(2)).thenReturn(9L);
+        when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(List.of(withOutbox("acc-id", new OutboxEntry(legs, null, Instant.now()))));
+        // an earlier pass wrote the customer leg as number 5 and failed before pulling the entry
+        BulkOperationException duplicate = mock(BulkOperationException.class);
+        when(duplicate.getErrors()).thenReturn(List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)));
+        when(ledgerInsert.execute()).thenThrow(duplicate);
+        Transaction stored = new Transaction();
+        stored.setId(legs.get(1).getId()); stored.setSeq(5L);
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class))).thenReturn(List.of(stored));
+
+        assertEquals(1, dispatcher.dispatch(List.of("acc-id")));
+
+        assertEquals(9L, legs.get(0).getSeq());
+        assertEquals(5L, legs.get(1).getSeq());
+    }
+
+    @Test
+    void dispatch_youngTransferWithoutReceiverSideIsLeftForLater() {
+        List<Transaction> legs = Journal.legs("TRANSFER", 300, Instant.now(), "from-id", "transfer to B", "to-id", "transfer from A");
+        when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+                .thenReturn(List.of(withOutbox("from-id", new OutboxEntry(List.of(legs.get(0)), legs.get(1), Instant.now()))))
+                .thenReturn(List.of());
+
+        assertEquals(0, dispatcher.dispatch(List.of("from-id")));
+
+        verify(accountRepository, never()).creditBefore(anyString(), anyLong(), any(Instant.class), any(OutboxEntry.class), any(Instant.class));
+        verify(events, never()).publishEvent(any());
+        verify(accountRepository).removeOutboxEntries(Map.of());
+    }
+
+    @Test
+    void dispatch_staleTransferWithoutReceiverSideCreditsTheReceiverUnderAClaim() {
+        Instant longAgo = Instant.now().minusSeconds(600), until = Instant.now().plusSeconds(30);
+        List<Transaction> legs = Journal.legs("TRANSFER", 300, longAgo, "from-id", "transfer to B", "to-id", "transfer from A");
+        when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+                .thenReturn(List.of(withOutbox("from-id", new OutboxEntry(List.of(legs.get(0)), legs.get(1), longAgo))))
+                .thenReturn(List.of());
+        when(accountRepository.claimCredit(eq(legs.get(0).getJournalId()), any(Instant.class), eq(30_000L))).thenReturn(until);
+        when(accountRepository.creditBefore(eq("to-id"), eq(300L), eq(longAgo), any(OutboxEntry.class), eq(until))).thenReturn(true);
+
+        assertEquals(1, dispatcher.dispatch(List.of("from-id")));
+
+        verify(accountRepository, times(1)).creditBefore(eq("to-id"), eq(300L), eq(longAgo), any(OutboxEntry.class), eq(until));
+        verify(accountRepository).removeOutboxEntries(Map.of("from-id", List.of(legs.get(0).getJournalId())));
+    }
+
+    @Test
+    void dispatch_staleTransferClaimedElsewhereIsLeftForLater() {
+        Instant longAgo = Instant.now().minusSeconds(600);
+        List<Transaction> legs = Journal.legs("TRANSFER", 300, longAgo, "from-id", "transfer to B", "to-id", "transfer from A");
+        when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+                .thenReturn(List.of(withOutbox("from-id", new OutboxEntry(List.of(legs.get(0)), legs.get(1), longAgo))))
+                .thenReturn(List.of());
+        when(accountRepository.claimCredit(anyString(), any(Instant.class), anyLong())).thenReturn(null);
+
+        assertEquals(0, dispatcher.dispatch(List.of("from-id")));
+
+        verify(accountRepository, never()).creditBefore(anyString(), anyLong(), any(Instant.class), any(OutboxEntry.class), any(Instant.class));
+        verify(accountRepository).removeOutboxEntries(Map.of());
+    }
+
+    @Test
+    void dispatch_creditThatLandedBeforeTheClaimIsNotPaidAgain() {
+        Instant longAgo = Instant.now().minusSeconds(600);
+        List<Transaction> legs = Journal.legs("TRANSFER", 300, longAgo, "from-id", "transfer to B", "to-id", "transfer from A");
+        when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+                .thenReturn(List.of(withOutbox("from-id", new OutboxEntry(List.of(legs.get(0)), legs.get(1), longAgo))))
+                .thenReturn(List.of());
+        when(accountRepository.claimCredit(anyString(), any(Instant.class), anyLong())).thenReturn(Instant.now().plusSeconds(30));
+        // the writer's credit reached the receiver between the first read and the claim
+        when(mongoTemplate.exists(any(Query.class), eq(Account.class))).thenReturn(true);
+
+        assertEquals(1, dispatcher.dispatch(List.of("from-id")));
+
+        verify(accountRepository, never()).creditBefore(anyString(), anyLong(), any(Instant.class), any(OutboxEntry.class), any(Instant.class));
+        verify(accountRepository).removeOutboxEntries(Map.of("from-id", List.of(legs.get(0).getJournalId())));
+    }
+
+    @Test
+    void dispatch_claimThatRanOutBeforeTheCreditIsRetried() {
+        Instant longAgo = Instant.now().minusSeconds(600);
+        List<Transaction> legs = Journal.legs("TRANSFER", 300, longAgo, "from-id", "transfer to B", "to-id", "transfer from A");
+        when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+                .thenReturn(List.of(withOutbox("from-id", new OutboxEntry(List.of(legs.get(0)), legs.get(1), longAgo))))
+                .thenReturn(List.of());
+        when(accountRepository.claimCredit(anyString(), any(Instant.class), anyLong())).thenReturn(Instant.now().plusSeconds(30));
+        when(accountRepository.creditBefore(anyString(), anyLong(), any(Instant.class), any(OutboxEntry.class), any(Instant.class))).thenReturn(false);
+        when(accountRepository.canTakeCredits("to-id")).thenReturn(true);
+
+        assertEquals(0, dispatcher.dispatch(List.of("from-id")));
+
+        verify(ledgerInsert, never()).insert(anyList());
+        verify(accountRepository).removeOutboxEntries(Map.of());
+    }
+
+    @Test
+    void dispatch_staleTransferToClosedReceiverPostsTheCreditToSuspense() {
+        Instant longAgo = Instant.now().minusSeconds(600);
+        List<Transaction> legs = Journal.legs("TRANSFER", 300, longAgo, "from-id", "transfer to B", "to-id", "transfer from A");
+        when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+                .thenReturn(List.of(withOutbox("from-id", new OutboxEntry(List.of(legs.get(0)), legs.get(1), longAgo))))
+                .thenReturn(List.of());
+        when(accountRepository.claimCredit(anyString(), any(Instant.class), anyLong())).thenReturn(Instant.now().plusSeconds(30));
+        when(accountRepository.creditBefore(anyString(), anyLong(), any(Instant.class), any(OutboxEntry.class), any(Instant.class))).thenReturn(false);
+
+        assertEquals(1, dispatcher.dispatch(List.of("from-id")));
+
+        @SuppressWarnings("unchecked") ArgumentCaptor<List<Transaction>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(ledgerInsert).insert(inserted.capture());
+        Transaction parked = inserted.getValue().get(1);
+        assertEquals(Journal.SUSPENSE, parked.getAccountId());
+        assertEquals(legs.get(1).getId(), parked.getId());
+        assertEquals(Transaction.CREDIT, parked.getDirection());
+        verify(accountRepository).removeOutboxEntries(Map.of("from-id", List.of(legs.get(0).getJournalId())));
+    }
+
+    @Test
+    void hintAndDispatch_leaveAccountsOfPartitionsOwnedElsewhereToTheirOwner() {
+        // clustered and without a heartbeat yet, so this node owns no partition
+        PartitionOwnership none = new PartitionOwnership(mongoTemplate, new SimpleMeterRegistry(), true, 16, "node-a", "", 8080, 10_000, 3_000, 2_000);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OutboxDispatcher elsewhere = new OutboxDispatcher(mongoTemplate, accountRepository, statements, events, none, sequence, indexes, registry, 1, 50, 100, 2_000, 60_000);
+        List<Transaction> legs = Journal.legs("DEPOSIT", 100, Instant.now(), Journal.CASH, "deposit to RAJ1000", "acc-id", "deposit");
+        when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(List.of(withOutbox("acc-id", new OutboxEntry(legs, null, Instant.now()))));
+
+        elsewhere.hint("acc-id", "RAJ1000");
+
+        assertEquals(0.0, registry.get("banking.outbox.queued").gauge().value());
+        assertEquals(0, elsewhere.dispatch(List.of("acc-id")));
+        verify(ledgerInsert, never()).execute();
+        verify(accountRepository, never()).removeOutboxEntries(any());
+    }
+
+    @Test
+    void creditDeadline_isHalfTheRecoveryDelayAfterTheJournal() {
+        assertEquals(Instant.EPOCH.plusSeconds(30), dispatcher.creditDeadline(Instant.EPOCH));
+    }
+
+    private static Account withOutbox(String id, OutboxEntry entry) {
+        Account a = new Account();
+        a.setId(id);
+        a.setAccountNumber("NUM-" + id);
+        a.setOutbox(List.of(entry));
+        return a;
+    }
+}
@@ -0,0 +1,165 @@
+package com.service;
+
+import com.exception.PartitionNotOwnedException;
+import com.model.ClusterMember;
+import com.model.PartitionLease;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PartitionOwnershipTest {
+
+    private MongoTemplate mongoTemplate;
+    private PartitionOwnership ownership;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        ownership = new PartitionOwnership(mongoTemplate, new SimpleMeterRegistry(), true, 8, "node-a", "http://a:8080", 8080, 10_000, 3_000, 2_000);
+        // every acquisition attempt wins unless a test says otherwise
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(PartitionLease.class)))
+                .thenAnswer(inv -> lease(-1, "node-a", "http://a:8080", Instant.now().plusSeconds(10)));
+    }
+
+    private static PartitionLease lease(int p, String owner, String url, Instant expiresAt) {
+        PartitionLease l = new PartitionLease();
+        l.setPartition(p); l.setOwner(owner); l.setOwnerUrl(url); l.setExpiresAt(expiresAt);
+        return l;
+    }
+
+    private String accountIn(int partition) {
+        for (int i = 1000; ; i++) if (ownership.partitionOf("RAJ" + i) == partition) return "RAJ" + i;
+    }
+
+    @Test
+    void disabled_ownsEverythingWithoutTouchingMongo() {
+        PartitionOwnership single = new PartitionOwnership(mongoTemplate, new SimpleMeterRegistry(), false, 8, "", "", 8080, 10_000, 3_000, 2_000);
+        single.heartbeat();
+        assertTrue(single.ownsAccount("RAJ1000"));
+        assertEquals(8, single.ownedCount());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void heartbeat_aloneTakesEveryFreePartition() {
+        when(mongoTemplate.count(any(Query.class), eq(ClusterMember.class))).thenReturn(1L);
+        when(mongoTemplate.findAll(PartitionLease.class)).thenReturn(List.of());
+
+        assertFalse(ownership.ownsAccount("RAJ1000"));
+        ownership.heartbeat();
+
+        assertEquals(8, ownership.ownedCount());
+        assertTrue(ownership.ownsAccount("RAJ1000"));
+    }
+
+    @Test
+    void heartbeat_takesOnlyFairShareAndRedirectsToOtherOwner() {
+        Instant live = Instant.now().plusSeconds(10);
+        List<PartitionLease> table = new ArrayList<>();
+        for (int p = 0; p < 4; p++) table.add(lease(p, "node-b", "http://b:8080", live));
+        when(mongoTemplate.count(any(Query.class), eq(ClusterMember.class))).thenReturn(2L);
+        when(mongoTemplate.findAll(PartitionLease.class)).thenReturn(table);
+
+        ownership.heartbeat();
+
+        assertEquals(4, ownership.ownedCount());
+        for (int p = 4; p < 8; p++) assertTrue(ownership.owns(p));
+        PartitionNotOwnedException ex = assertThrows(PartitionNotOwnedException.class, () -> ownership.execute(accountIn(1), () -> "x"));
+        assertEquals("http://b:8080", ex.getOwnerUrl());
+    }
+
+    @Test
+    void heartbeat_aboveFairShare_releasesSurplus() {
+        Instant live = Instant.now().plusSeconds(10);
+        List<PartitionLease> mine = new ArrayList<>();
+        for (int p = 0; p < 8; p++) mine.add(lease(p, "node-a", "http://a:8080", live));
+        when(mongoTemplate.count(any(Query.class), eq(ClusterMember.class))).thenReturn(1L, 2L);
+        when(mongoTemplate.findAll(PartitionLease.class)).thenReturn(mine);
+        ownership.heartbeat();
+        assertEquals(8, ownership.ownedCount());
+
+        // a second node has joined: keep half, give the rest back
+        ownership.heartbeat();
+
+        assertEquals(4, ownership.ownedCount());
+        verify(mongoTemplate, times(4)).updateFirst(any(Query.class), any(Update.class), eq(PartitionLease.class));
+    }
+
+    @Test
+    void heartbeat_lostRace_doesNotClaimPartition() {
+        when(mongoTemplate.count(any(Query.class), eq(ClusterMember.class))).thenReturn(1L);
+        when(mongoTemplate.findAll(PartitionLease.class)).thenReturn(List.of());
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(PartitionLease.class)))
+                .thenThrow(new DuplicateKeyException("held"));
+
+        ownership.heartbeat();
+
+        assertEquals(0, ownership.ownedCount());
+    }
+
+    @Test
+    void heartbeat_databaseDown_keepsRunningAndLeasesStillExpire() {
+        when(mongoTemplate.count(any(Query.class), eq(ClusterMember.class))).thenThrow(new IllegalStateException("no mongo"));
+        assertDoesNotThrow(() -> ownership.heartbeat());
+        assertEquals(0, ownership.ownedCount());
+    }
+
+    @Test
+    void start_beatsOnItsOwnThread() throws Exception {
+        CountDownLatch beat = new CountDownLatch(1);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        when(mongoTemplate.count(any(Query.class), eq(ClusterMember.class))).thenAnswer(inv -> {
+            threads.add(Thread.currentThread().getName()); beat.countDown(); return 1L;
+        });
+
+        ownership.start();
+        try {
+            assertTrue(beat.await(5, TimeUnit.SECONDS));
+        } finally {
+            ownership.shutdown();
+        }
+
+        assertEquals("partition-heartbeat", threads.get(0));
+    }
+
+    @Test
+    void execute_serialisesMutationsOfOneAccount() throws Exception {
+        PartitionOwnership single = new PartitionOwnership(mongoTemplate, new SimpleMeterRegistry(), false, 8, "", "", 8080, 10_000, 3_000, 2_000);
+        AtomicInteger inside = new AtomicInteger(); AtomicInteger maxInside = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < 200; i++) {
+            pool.submit(() -> {
+                start.await();
+                return single.execute("RAJ1000", () -> {
+                    maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                    Thread.onSpinWait();
+                    return inside.decrementAndGet();
+                });
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1, maxInside.get());
+    }
+}
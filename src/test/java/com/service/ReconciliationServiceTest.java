@@ -0,0 +1,213 @@
+package com.service;
+
+import com.dto.ReconciliationRunStatus;
+import com.model.Account;
+import com.model.ReconciliationDiscrepancy;
+import com.model.ReconciliationState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReconciliationServiceTest {
+
+    private MongoTemplate primary;
+    private MongoTemplate reader;
+    private SimpleMeterRegistry registry;
+    private ReconciliationService service;
+
+    @BeforeEach
+    void setUp() {
+        primary = mock(MongoTemplate.class);
+        reader = mock(MongoTemplate.class);
+        registry = new SimpleMeterRegistry();
+        service = spy(new ReconciliationService(primary, reader, registry, false, 2, 2, 100, 60));
+    }
+
+    private Account account(String id, long balance) {
+        Account a = new Account("RAJ" + id, "Raj", balance);
+        a.setId(id);
+        return a;
+    }
+
+    @Test
+    void checkPage_matchingAccounts_clearsOldDiscrepanciesOnly() {
+        List<Account> page = List.of(account("a1", 100), account("a2", 50));
+        doReturn(Map.of("a1", 100L, "a2", 50L)).when(service).ledgerBalances(reader, page);
+
+        assertEquals(0, service.checkPage(page, new HashSet<>()));
+
+        verify(primary, never()).save(any(ReconciliationDiscrepancy.class));
+        verify(primary).remove(any(Query.class), eq(ReconciliationDiscrepancy.class));
+        verify(primary, never()).find(any(Query.class), eq(Account.class));
+    }
+
+    @Test
+    void checkPage_mismatchConfirmedOnPrimary_recordsDiscrepancy() {
+        List<Account> page = List.of(account("a1", 100));
+        List<Account> fresh = List.of(account("a1", 100));
+        doReturn(Map.of("a1", 70L)).when(service).ledgerBalances(reader, page);
+        when(primary.find(any(Query.class), eq(Account.class))).thenReturn(fresh);
+        doReturn(Map.of("a1", 70L)).when(service).ledgerBalances(primary, fresh);
+
+        assertEquals(1, service.checkPage(page, new HashSet<>()));
+
+        ArgumentCaptor<ReconciliationDiscrepancy> captor = ArgumentCaptor.forClass(ReconciliationDiscrepancy.class);
+        verify(primary).save(captor.capture());
+        assertEquals("a1", captor.getValue().getAccountId());
+        assertEquals(30, captor.getValue().getDifference());
+    }
+
+    @Test
+    void checkPage_mismatchGoneOnRecheck_isTreatedAsInFlight() {
+        List<Account> page = List.of(account("a1", 100));
+        List<Account> fresh = List.of(account("a1", 130));
+        doReturn(Map.of("a1", 70L)).when(service).ledgerBalances(reader, page);
+        when(primary.find(any(Query.class), eq(Account.class))).thenReturn(fresh);
+        doReturn(Map.of("a1", 130L)).when(service).ledgerBalances(primary, fresh);
+
+        assertEquals(0, service.checkPage(page, new HashSet<>()));
+        verify(primary, never()).save(any(ReconciliationDiscrepancy.class));
+    }
+
+    @Test
+    void checkPage_pendingOutbox_isDeferredToTheNextPass() {
+        List<Account> page = List.of(account("a1", 100));
+        Account pending = account("a1", 100);
+        pending.setOutboxSince(Instant.now().minusSeconds(3600));
+        doReturn(Map.of("a1", 70L)).when(service).ledgerBalances(reader, page);
+        when(primary.find(any(Query.class), eq(Account.class))).thenReturn(List.of(pending));
+        doReturn(Map.of("a1", 70L)).when(service).ledgerBalances(primary, List.of(pending));
+        Set<String> deferred = new HashSet<>();
+
+        assertEquals(0, service.checkPage(page, deferred));
+
+        assertEquals(Set.of("a1"), deferred);
+        verify(primary, never()).save(any(ReconciliationDiscrepancy.class));
+        verify(primary, never()).remove(any(Query.class), eq(ReconciliationDiscrepancy.class));
+    }
+
+    @Test
+    void run_incremental_rechecksAccountsThePreviousPassDeferred() {
+        ReconciliationState state = new ReconciliationState();
+        state.setWatermark(Instant.now().minusSeconds(3600));
+        state.setDeferredIds(List.of("stuck"));
+        when(primary.findById(ReconciliationState.ID, ReconciliationState.class)).thenReturn(state);
+        when(reader.find(any(Query.class), eq(Account.class))).thenReturn(List.of());
+
+        assertEquals("COMPLETED", service.run(false).getState());
+
+        ArgumentCaptor<Query> touched = ArgumentCaptor.forClass(Query.class);
+        verify(reader).find(touched.capture(), eq(Account.class));
+        assertTrue(touched.getValue().getQueryObject().toString().contains("stuck"), touched.getValue().toString());
+        assertEquals(List.of(), state.getDeferredIds());
+    }
+
+    @Test
+    void run_withoutWatermark_doesFullPassAndStoresWatermark() {
+        when(primary.findById(ReconciliationState.ID, ReconciliationState.class)).thenReturn(null);
+        when(reader.aggregate(any(Aggregation.class), eq(Account.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+        when(reader.find(any(Query.class), eq(Account.class))).thenReturn(List.of());
+        when(primary.count(any(Query.class), eq(ReconciliationDiscrepancy.class))).thenReturn(0L);
+
+        Instant before = Instant.now();
+        ReconciliationRunStatus s = service.run(false);
+
+        assertEquals("FULL", s.getMode());
+        assertEquals("COMPLETED", s.getState(), s.getError());
+        ArgumentCaptor<ReconciliationState> captor = ArgumentCaptor.forClass(ReconciliationState.class);
+        verify(primary).save(captor.capture());
+        assertFalse(captor.getValue().getWatermark().isBefore(before));
+        assertNotNull(captor.getValue().getLastFullRunAt());
+    }
+
+    @Test
+    void run_withWatermark_isIncremental() {
+        ReconciliationState state = new ReconciliationState();
+        state.setWatermark(Instant.now().minusSeconds(3600));
+        when(primary.findById(ReconciliationState.ID, ReconciliationState.class)).thenReturn(state);
+        List<Account> touched = List.of(account("a1", 10));
+        when(reader.find(any(Query.class), eq(Account.class))).thenReturn(touched);
+        doReturn(Map.of("a1", 10L)).when(service).ledgerBalances(reader, touched);
+
+        ReconciliationRunStatus s = service.run(false);
+
+        assertEquals("INCREMENTAL", s.getMode());
+        assertEquals("COMPLETED", s.getState(), s.getError());
+        assertEquals(1, s.getAccountsChecked());
+        assertEquals(1.0, registry.get("banking.reconciliation.accounts.checked").counter().count());
+    }
+
+    @Test
+    void scheduled_handsThePassToTheTriggerThread() throws Exception {
+        ReconciliationService enabled = spy(new ReconciliationService(primary, reader, new SimpleMeterRegistry(), true, 2, 2, 100, 60));
+        CountDownLatch release = new CountDownLatch(1), done = new CountDownLatch(1);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> { threads.add(Thread.currentThread().getName()); release.await(5, TimeUnit.SECONDS); done.countDown(); return null; })
+                .when(enabled).run(false);
+
+        try {
+            // the pass is still blocked, yet the scheduling thread gets control back
+            enabled.scheduled();
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            enabled.shutdown();
+        }
+
+        assertEquals(List.of("reconciliation-trigger"), threads);
+    }
+
+    @Test
+    void legacyIncomingTransfers_onlyCountsRowsTheBackfillHasNotConverted() {
+        Document match = ReconciliationService.legacyIncomingTransfers(List.of("RAV1001")).get(0).get("$match", Document.class);
+
+        assertEquals("TRANSFER", match.get("type"));
+        assertEquals(new Document("$exists", false), match.get("direction"));
+        assertEquals(new Document("$in", List.of("RAV1001")), match.get("destinationAccountNumber"));
+    }
+
+    @Test
+    void run_incremental_checksTouchedPagesInParallel() throws Exception {
+        ReconciliationService small = spy(new ReconciliationService(primary, reader, new SimpleMeterRegistry(), false, 2, 2, 1, 60));
+        ReconciliationState state = new ReconciliationState();
+        state.setWatermark(Instant.now().minusSeconds(3600));
+        when(primary.findById(ReconciliationState.ID, ReconciliationState.class)).thenReturn(state);
+        List<Account> first = List.of(account("a1", 10)), second = List.of(account("a2", 20));
+        when(reader.find(any(Query.class), eq(Account.class))).thenReturn(first).thenReturn(second).thenReturn(List.of());
+        // each page waits for the other, which only returns in time if two workers check them side by side
+        CountDownLatch both = new CountDownLatch(2);
+        List<Boolean> overlapped = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> {
+            both.countDown();
+            overlapped.add(both.await(5, TimeUnit.SECONDS));
+            List<Account> page = inv.getArgument(1);
+            return Map.of(page.get(0).getId(), page.get(0).getBalance());
+        }).when(small).ledgerBalances(eq(reader), anyList());
+
+        ReconciliationRunStatus s = small.run(false);
+
+        assertEquals("COMPLETED", s.getState(), s.getError());
+        assertEquals(2, s.getAccountsChecked());
+        assertEquals(List.of(true, true), overlapped);
+    }
+}
@@ -0,0 +1,37 @@
+package com.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void addedKeysAreAlwaysFound() {
+        ScalableBloomFilter f = new ScalableBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 5_000; i++) f.add("RAJ" + i);
+        for (int i = 0; i < 5_000; i++) assertTrue(f.mightContain("RAJ" + i), "RAJ" + i);
+        // a key that was already a false positive is not added again, so the count can fall slightly short
+        assertTrue(f.count() > 4_900 && f.count() <= 5_000, "count " + f.count());
+    }
+
+    @Test
+    void growsPastItsCapacityAndKeepsTheFalsePositiveRateUnderTarget() {
+        ScalableBloomFilter f = new ScalableBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 20_000; i++) f.add("ACC" + i);
+
+        assertTrue(f.layerCount() > 1);
+        int hits = 0, probes = 100_000;
+        for (int i = 0; i < probes; i++) if (f.mightContain("MISS" + i)) hits++;
+        assertTrue(hits < probes * 0.01, "false positives: " + hits);
+        assertTrue(f.expectedFpp() < 0.01, "expected fpp " + f.expectedFpp());
+    }
+
+    @Test
+    void addingAKnownKeyAgainDoesNotCountIt() {
+        ScalableBloomFilter f = new ScalableBloomFilter(10, 0.01);
+        f.add("A1"); f.add("A1");
+        assertEquals(1, f.count());
+        assertFalse(f.mightContain("B1"));
+    }
+}
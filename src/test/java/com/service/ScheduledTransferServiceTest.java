@@ -0,0 +1,188 @@
+package com.service;
+
+import com.config.MongoIndexInitializer;
+import com.dto.ScheduledTransferRequest;
+import com.exception.InsufficientBalanceException;
+import com.model.ScheduledTransfer;
+import com.model.Transaction;
+import com.mongodb.client.result.UpdateResult;
+import com.repository.ScheduledTransferRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ScheduledTransferServiceTest {
+
+    private ScheduledTransferRepository repository;
+    private MongoTemplate mongoTemplate;
+    private AccountService accountService;
+    private ScheduledTransferService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ScheduledTransferRepository.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        accountService = mock(AccountService.class);
+        PartitionOwnership ownership = new PartitionOwnership(mock(MongoTemplate.class), new SimpleMeterRegistry(), false, 16, "node-a", "", 8080, 10_000, 3_000, 2_000);
+        MongoIndexInitializer indexes = mock(MongoIndexInitializer.class);
+        when(indexes.isReady()).thenReturn(true);
+        service = new ScheduledTransferService(repository, mongoTemplate, accountService, ownership, indexes, new SimpleMeterRegistry(),
+                true, 2, 3, 5, 60_000, 300_000, 100);
+        when(mongoTemplate.getCollectionName(ScheduledTransfer.class)).thenReturn("scheduled_transfer");
+    }
+
+    private ScheduledTransfer standingOrder(String recurrence, int runs) {
+        ScheduledTransfer st = new ScheduledTransfer();
+        st.setId("st-1"); st.setFromAccountNumber("RAJ1000"); st.setToAccountNumber("RAV1001"); st.setAmount(250);
+        st.setRecurrence(recurrence); st.setFirstRunAt(Instant.parse("2024-01-31T09:00:00Z")); st.setNextRunAt(st.getFirstRunAt());
+        st.setRuns(runs); st.setClaimToken("token"); st.setStatus("CLAIMED");
+        return st;
+    }
+
+    @Test
+    void nextOccurrence_monthlyKeepsDayOfMonthAfterShortMonth() {
+        Instant first = Instant.parse("2024-01-31T09:00:00Z");
+        assertEquals(Instant.parse("2024-02-29T09:00:00Z"), ScheduledTransferService.nextOccurrence("MONTHLY", first, 1));
+        assertEquals(Instant.parse("2024-03-31T09:00:00Z"), ScheduledTransferService.nextOccurrence("MONTHLY", first, 2));
+        assertEquals(Instant.parse("2024-02-14T09:00:00Z"), ScheduledTransferService.nextOccurrence("WEEKLY", first, 2));
+        assertNull(ScheduledTransferService.nextOccurrence("NONE", first, 1));
+    }
+
+    @Test
+    void afterRun_recurringSuccess_reschedules() {
+        Transaction tx = new Transaction("acc", "TRANSFER", 250, Instant.now(), "t");
+        tx.setId("tx-9");
+        Document set = ScheduledTransferService.afterRun(standingOrder("MONTHLY", 0), tx, null, Instant.parse("2024-01-31T09:00:05Z")).getUpdateObject().get("$set", Document.class);
+        assertEquals("PENDING", set.get("status"));
+        assertEquals(Instant.parse("2024-02-29T09:00:00Z"), set.get("nextRunAt"));
+        assertEquals("tx-9", set.get("lastTransactionId"));
+    }
+
+    @Test
+    void afterRun_oneOffDeclined_fails_andEndedOrderCompletes() {
+        Document oneOff = ScheduledTransferService.afterRun(standingOrder("NONE", 0), null, "Insufficient", Instant.parse("2024-01-31T09:00:05Z")).getUpdateObject().get("$set", Document.class);
+        assertEquals("FAILED", oneOff.get("status"));
+
+        ScheduledTransfer ending = standingOrder("DAILY", 0);
+        ending.setEndAt(Instant.parse("2024-01-31T12:00:00Z"));
+        Document ended = ScheduledTransferService.afterRun(ending, null, "Insufficient", Instant.parse("2024-01-31T09:00:05Z")).getUpdateObject().get("$set", Document.class);
+        assertEquals("COMPLETED", ended.get("status"));
+    }
+
+    @Test
+    void afterRun_orderTenDaysBehind_paysOnceAndSkipsToTheNextFutureOccurrence() {
+        Transaction tx = new Transaction("acc", "TRANSFER", 250, Instant.now(), "t");
+        tx.setId("tx-1");
+        // the 2024-01-31 occurrence only ran on 2024-02-10 at noon, after an outage
+        Update u = ScheduledTransferService.afterRun(standingOrder("DAILY", 0), tx, null, Instant.parse("2024-02-10T12:00:00Z"));
+
+        Document set = u.getUpdateObject().get("$set", Document.class), inc = u.getUpdateObject().get("$inc", Document.class);
+        assertEquals(Instant.parse("2024-02-11T09:00:00Z"), set.get("nextRunAt"));
+        assertEquals(10, inc.get("skipped"));
+        assertEquals(1, inc.get("runs"));
+
+        // the occurrence count includes the skipped ones, so the following run carries on from there
+        ScheduledTransfer resumed = standingOrder("DAILY", 1);
+        resumed.setSkipped(10);
+        Document next = ScheduledTransferService.afterRun(resumed, tx, null, Instant.parse("2024-02-11T09:00:01Z")).getUpdateObject().get("$set", Document.class);
+        assertEquals(Instant.parse("2024-02-12T09:00:00Z"), next.get("nextRunAt"));
+    }
+
+    @Test
+    void claimDue_beyondTheWheelsHorizon_givesTheClaimBack() {
+        Instant now = Instant.now();
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("scheduled_transfer"))).thenReturn(List.of(new Document("_id", "st-1")));
+        ScheduledTransfer st = standingOrder("NONE", 0);
+        st.setNextRunAt(now.plus(Duration.ofDays(365)));
+        when(mongoTemplate.find(any(Query.class), eq(ScheduledTransfer.class))).thenReturn(List.of(st));
+
+        assertEquals(0, service.claimDue(now));
+
+        assertEquals(0, service.inFlight());
+        ArgumentCaptor<Update> released = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), released.capture(), eq(ScheduledTransfer.class));
+        assertEquals("PENDING", released.getValue().getUpdateObject().get("$set", Document.class).get("status"));
+    }
+
+    @Test
+    void create_validatesAndStoresPendingInstruction() {
+        ScheduledTransferRequest req = new ScheduledTransferRequest();
+        req.setToAccountNumber("RAV1001"); req.setAmount(100); req.setFirstRunAt(Instant.parse("2030-01-01T00:00:00Z")); req.setRecurrence("weekly");
+        when(repository.save(any(ScheduledTransfer.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        ScheduledTransfer st = service.create("RAJ1000", req);
+
+        assertEquals("WEEKLY", st.getRecurrence());
+        assertEquals("PENDING", st.getStatus());
+        assertEquals(req.getFirstRunAt(), st.getNextRunAt());
+        verify(accountService).getByAccountNumber("RAV1001");
+
+        req.setToAccountNumber("RAJ1000");
+        assertThrows(IllegalArgumentException.class, () -> service.create("RAJ1000", req));
+    }
+
+    @Test
+    void claimDue_claimsInBatchesUpToMaxPending() {
+        Instant now = Instant.now();
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("scheduled_transfer")))
+                .thenReturn(List.of(new Document("_id", "a"), new Document("_id", "b"), new Document("_id", "c")))
+                .thenReturn(List.of(new Document("_id", "d"), new Document("_id", "e")));
+        ScheduledTransfer st = standingOrder("NONE", 0);
+        st.setNextRunAt(now.plusSeconds(30));
+        when(mongoTemplate.find(any(Query.class), eq(ScheduledTransfer.class))).thenReturn(List.of(st, st, st)).thenReturn(List.of(st, st));
+
+        assertEquals(5, service.claimDue(now));
+        assertEquals(5, service.inFlight());
+        // max-pending is 5, so a third query is never made
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(Document.class), eq("scheduled_transfer"));
+    }
+
+    @Test
+    void execute_runsTransferAndWritesNextState() {
+        ScheduledTransfer st = standingOrder("DAILY", 0);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ScheduledTransfer.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        Transaction tx = new Transaction("acc", "TRANSFER", 250, Instant.now(), "t");
+        when(accountService.transfer("RAJ1000", "RAV1001", 250)).thenReturn(tx);
+
+        service.execute(st);
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), updates.capture(), eq(ScheduledTransfer.class));
+        assertEquals("EXECUTING", updates.getAllValues().get(0).getUpdateObject().get("$set", Document.class).get("status"));
+        assertEquals("PENDING", updates.getAllValues().get(1).getUpdateObject().get("$set", Document.class).get("status"));
+    }
+
+    @Test
+    void execute_cancelledMeanwhile_doesNotTransfer() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ScheduledTransfer.class))).thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        service.execute(standingOrder("NONE", 0));
+        verifyNoInteractions(accountService);
+    }
+
+    @Test
+    void execute_declined_recordsFailure() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ScheduledTransfer.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(accountService.transfer(anyString(), anyString(), anyLong())).thenThrow(new InsufficientBalanceException("Insufficient"));
+
+        service.execute(standingOrder("NONE", 0));
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), updates.capture(), eq(ScheduledTransfer.class));
+        Document set = updates.getAllValues().get(1).getUpdateObject().get("$set", Document.class);
+        assertEquals("FAILED", set.get("status"));
+        assertEquals("Insufficient", set.get("lastError"));
+    }
+}
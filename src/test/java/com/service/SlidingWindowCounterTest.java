@@ -0,0 +1,55 @@
+package com.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowCounterTest {
+
+    @Test
+    void sum_dropsSlicesOnceTheyLeaveTheWindow() {
+        SlidingWindowCounter c = new SlidingWindowCounter(60_000, 60);   // one-second slices
+        c.add(1_000, 5);
+        c.add(30_500, 7);
+
+        assertEquals(12, c.sum(59_999));
+        assertEquals(12, c.sum(60_999));
+        assertEquals(7, c.sum(61_000));
+        assertEquals(0, c.sum(91_000));
+    }
+
+    @Test
+    void add_reusesASlotFromAnEarlierLapInsteadOfAddingToIt() {
+        SlidingWindowCounter c = new SlidingWindowCounter(10_000, 10);
+        c.add(2_000, 100);
+        c.add(12_000, 1);       // same slot, next lap
+
+        assertEquals(1, c.sum(12_000));
+    }
+
+    @Test
+    void millisUntilAtMost_waitsForTheOldestSlicesToExpire() {
+        SlidingWindowCounter c = new SlidingWindowCounter(60_000, 60);
+        c.add(10_000, 300);
+        c.add(40_000, 300);
+
+        assertEquals(0, c.millisUntilAtMost(50_000, 600));
+        assertEquals(20_000, c.millisUntilAtMost(50_000, 400));   // the 10s slice leaves the window at 70s
+        assertEquals(50_000, c.millisUntilAtMost(50_000, 0));
+    }
+
+    @Test
+    void add_isSafeFromManyThreads() throws Exception {
+        SlidingWindowCounter c = new SlidingWindowCounter(60_000, 60);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) pool.submit(() -> { for (int i = 0; i < 10_000; i++) c.add(5_000, 1); });
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(80_000, c.sum(5_000));
+    }
+}
@@ -0,0 +1,156 @@
+package com.service;
+
+import com.dto.Statement;
+import com.model.Account;
+import com.model.DailyRollup;
+import com.model.Transaction;
+import com.repository.AccountRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StatementServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private AccountRepository accountRepository;
+    private StatementService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        accountRepository = mock(AccountRepository.class);
+        service = new StatementService(mongoTemplate, accountRepository, 31);
+        Account acc = new Account("RAJ1000", "Raj", 0);
+        acc.setId("acc-id");
+        when(accountRepository.findWithoutOutboxByAccountNumber("RAJ1000")).thenReturn(Optional.of(acc));
+    }
+
+    @Test
+    void statement_readsOneRollupPerDayByIdRangeAndSumsThem() {
+        when(mongoTemplate.find(any(Query.class), eq(DailyRollup.class))).thenReturn(List.of(
+                rollup("2024-03-01", "DEPOSIT", 2, 500, 0), rollup("2024-03-04", "WITHDRAW", 1, 0, 120)));
+
+        Statement s = service.statement("RAJ1000", LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31));
+
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(q.capture(), eq(DailyRollup.class));
+        Document range = (Document) q.getValue().getQueryObject().get("_id");
+        assertEquals("acc-id:2024-03-01", range.get("$gte"));
+        assertEquals("acc-id:2024-03-31", range.get("$lte"));
+        assertEquals(500, s.getCredited());
+        assertEquals(120, s.getDebited());
+        assertEquals(380, s.getNet());
+        assertEquals(2, s.getByType().get("DEPOSIT").getCount());
+        assertEquals(2, s.getDays().size());
+    }
+
+    @Test
+    void statement_rejectsReversedOrTooLongRanges() {
+        assertThrows(IllegalArgumentException.class, () -> service.statement("RAJ1000", LocalDate.of(2024, 3, 2), LocalDate.of(2024, 3, 1)));
+        assertThrows(IllegalArgumentException.class, () -> service.statement("RAJ1000", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 1)));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void apply_upsertsTheUtcDayOfEachCustomerLegAndSkipsSystemLegs() {
+        BulkOperations ops = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyRollup.class)).thenReturn(ops);
+        List<Transaction> legs = Journal.legs("DEPOSIT", 250, Instant.parse("2024-03-01T23:30:00Z"), Journal.CASH, "deposit to RAJ1000", "acc-id", "deposit");
+
+        service.apply(legs);
+
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> u = ArgumentCaptor.forClass(Update.class);
+        verify(ops, times(1)).upsert(q.capture(), u.capture());
+        assertEquals("acc-id:2024-03-01", q.getValue().getQueryObject().get("_id"));
+        // I am checking the leg id guards the upsert so that a leg replayed by the outbox is counted once
+        assertEquals(new Document("$ne", legs.get(1).getId()), q.getValue().getQueryObject().get("appliedLegIds"));
+        Document inc = (Document) u.getValue().getUpdateObject().get("$inc");
+        assertEquals(250L, inc.get("credited"));
+        assertEquals(1, inc.get("types.DEPOSIT.count"));
+        assertEquals(250L, inc.get("types.DEPOSIT.credited"));
+        // the increments, then pulling the ids back out once the legs are marked
+        verify(ops, times(2)).execute();
+        verify(mongoTemplate).updateMulti(any(Query.class), eq(Update.update("rolledUp", true)), eq(Transaction.class));
+        verify(ops).updateOne(any(Query.class), eq(new Update().pullAll("appliedLegIds", new Object[]{legs.get(1).getId()})));
+    }
+
+    @Test
+    void apply_skipsLegsAlreadyRolledUpHoweverOldTheReplay() {
+        BulkOperations ops = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyRollup.class)).thenReturn(ops);
+        List<Transaction> older = Journal.legs("DEPOSIT", 100, Instant.parse("2024-03-01T09:00:00Z"), Journal.CASH, "deposit to RAJ1000", "acc-id", "deposit");
+        List<Transaction> newer = Journal.legs("DEPOSIT", 200, Instant.parse("2024-03-01T10:00:00Z"), Journal.CASH, "deposit to RAJ1000", "acc-id", "deposit");
+        // the older leg was counted by a pass that failed afterwards, any number of legs ago
+        Transaction counted = new Transaction();
+        counted.setId(older.get(1).getId());
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class))).thenReturn(List.of(counted));
+
+        service.apply(List.of(older.get(0), older.get(1), newer.get(0), newer.get(1)));
+
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        verify(ops, times(1)).upsert(q.capture(), any(Update.class));
+        assertEquals(new Document("$ne", newer.get(1).getId()), q.getValue().getQueryObject().get("appliedLegIds"));
+    }
+
+    @Test
+    void pipeline_groupsByAccountDayAndTypeAndMergesByIdKeepingAppliedLegIds() {
+        List<Document> legacy = StatementService.legacyIncoming("RAJ1000", "acc-id", null);
+        List<Document> p = StatementService.pipeline(new Document("accountId", "acc-id"), "transaction", legacy, "daily_rollup");
+
+        assertEquals("$match", p.get(0).keySet().iterator().next());
+        assertEquals(new Document("coll", "transaction").append("pipeline", legacy), p.get(2).get("$unionWith"));
+        Document merge = (Document) p.get(p.size() - 1).get("$merge");
+        assertEquals("_id", merge.get("on"));
+        // the totals are replaced, but appliedLegIds is not among the fields set, so it survives the merge
+        Document set = (Document) ((List<?>) merge.get("whenMatched")).get(0);
+        assertFalse(((Document) set.get("$set")).containsKey("appliedLegIds"));
+        assertEquals("$$new.credited", ((Document) set.get("$set")).get("credited"));
+    }
+
+    @Test
+    void legacyIncoming_creditsTheReceiverFromThePayersRow() {
+        List<Document> one = StatementService.legacyIncoming("RAJ1000", "acc-id", null);
+        List<Document> all = StatementService.legacyIncoming(null, null, "account");
+
+        assertEquals(new Document("type", "TRANSFER").append("direction", new Document("$exists", false)).append("destinationAccountNumber", "RAJ1000"),
+                one.get(0).get("$match"));
+        assertEquals(new Document("accountId", "acc-id"), one.get(1).get("$set"));
+        assertEquals("$amount", ((Document) one.get(one.size() - 1).get("$project")).get("signed"));
+        assertEquals("account", ((Document) all.get(1).get("$lookup")).get("from"));
+    }
+
+    @Test
+    void rebuild_refusesWhileTheOutboxHasEntries() {
+        when(mongoTemplate.exists(any(Query.class), eq(Account.class))).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> service.rebuild(null));
+
+        verify(mongoTemplate, never()).getCollection(anyString());
+    }
+
+    private static DailyRollup rollup(String day, String type, long count, long credited, long debited) {
+        DailyRollup r = new DailyRollup();
+        r.setId(DailyRollup.idOf("acc-id", day)); r.setAccountId("acc-id"); r.setDay(day);
+        r.setCredited(credited); r.setDebited(debited);
+        DailyRollup.TypeTotals t = new DailyRollup.TypeTotals();
+        t.setCount(count); t.setCredited(credited); t.setDebited(debited);
+        r.getTypes().put(type, t);
+        return r;
+    }
+}
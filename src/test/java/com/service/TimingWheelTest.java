@@ -0,0 +1,63 @@
+package com.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void firesEachItemOnceNeverEarlyAndWithinOneTick() {
+        long start = 1_000_003L, tick = 10;
+        TimingWheel<Integer> wheel = new TimingWheel<>(tick, 8, 3, start);
+        Random r = new Random(7);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            long deadline = start + r.nextInt((int) wheel.horizonMillis() - 100);
+            assertTrue(wheel.schedule(i, deadline));
+            deadlines.put(i, deadline);
+        }
+        assertEquals(5_000, wheel.size());
+
+        Map<Integer, Long> firedAt = new HashMap<>();
+        for (long now = start; now <= start + wheel.horizonMillis() + tick; now += 3) {
+            for (int item : wheel.advance(now)) assertNull(firedAt.put(item, now), "fired twice: " + item);
+        }
+        assertEquals(deadlines.keySet(), firedAt.keySet());
+        deadlines.forEach((item, deadline) -> {
+            long at = firedAt.get(item);
+            assertTrue(at >= deadline, "early: " + item);
+            assertTrue(at < deadline + tick + 3, "late: " + item + " " + (at - deadline));
+        });
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void scheduleWhileRunning_cascadesAcrossLevels() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 4, 3, 0);
+        wheel.advance(250);
+        assertTrue(wheel.schedule("soon", 420));
+        assertTrue(wheel.schedule("level1", 1_450));
+        assertTrue(wheel.schedule("level2", 5_990));
+        List<String> order = new ArrayList<>();
+        for (long now = 250; now <= 7_000; now += 50) {
+            for (String s : wheel.advance(now)) { order.add(s + "@" + now); }
+        }
+        assertEquals(List.of("soon@500", "level1@1500", "level2@6000"), order);
+    }
+
+    @Test
+    void pastDeadlineIsDueOnNextAdvance_andBeyondHorizonIsRefused() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 4, 2, 10_000);
+        assertTrue(wheel.schedule("late", 5_000));
+        assertFalse(wheel.schedule("far", 10_000 + wheel.horizonMillis() + 1_000));
+        assertEquals(List.of("late"), wheel.advance(10_000));
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,123 @@
+package com.service;
+
+import com.exception.LimitExceededException;
+import com.model.Account;
+import com.model.OutboxEntry;
+import com.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class VelocityLimiterTest {
+    private static final long NOW = 1_700_000_000_000L;
+    private MongoTemplate mongoTemplate;
+    private SimpleMeterRegistry registry;
+    private VelocityLimiter limiter;
+    private final Account acc = account();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        registry = new SimpleMeterRegistry();
+        PartitionOwnership ownership = new PartitionOwnership(mongoTemplate, registry, false, 16, "node-a", "", 8080, 10_000, 3_000, 2_000);
+        limiter = new VelocityLimiter(mongoTemplate, ownership, registry, List.of(
+                new VelocityLimiter.Rule("withdraw-amount-per-day", "WITHDRAW", VelocityLimiter.Measure.AMOUNT, 86_400_000L, 1_000),
+                new VelocityLimiter.Rule("transfer-count-per-minute", "TRANSFER", VelocityLimiter.Measure.COUNT, 60_000L, 2)), 60, 1000);
+    }
+
+    @Test
+    void check_rebuildsFromTheLedgerOnceAndThenAnswersFromMemory() {
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class))).thenReturn(List.of(
+                leg("WITHDRAW", 800, NOW - 3_600_000L),
+                leg("WITHDRAW", 900, NOW - 90_000_000L)));     // older than a day, ignored
+
+        limiter.check(acc, "WITHDRAW", 200, NOW);
+        LimitExceededException ex = assertThrows(LimitExceededException.class, () -> limiter.check(acc, "WITHDRAW", 201, NOW));
+
+        assertEquals("withdraw-amount-per-day", ex.getRule());
+        assertTrue(ex.getRetryAfterSeconds() > 0);
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Transaction.class));
+        assertEquals(1.0, registry.counter("banking.limits.rejected", "rule", "withdraw-amount-per-day").count());
+        assertEquals(1.0, registry.get("banking.limits.cached.accounts").gauge().value());
+    }
+
+    @Test
+    void check_rebuildCountsDebitsStillPendingInTheOutbox() {
+        Transaction dispatched = leg("WITHDRAW", 300, NOW - 60_000L), pending = leg("WITHDRAW", 500, NOW - 1_000L);
+        Account withOutbox = account();
+        // the first entry is already in the ledger but not pulled yet, the second only in the outbox
+        withOutbox.setOutbox(List.of(new OutboxEntry(List.of(dispatched, cash(dispatched)), null, Instant.ofEpochMilli(NOW - 60_000L)),
+                new OutboxEntry(List.of(pending, cash(pending)), null, Instant.ofEpochMilli(NOW - 1_000L))));
+        when(mongoTemplate.findOne(any(Query.class), eq(Account.class))).thenReturn(withOutbox);
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class))).thenReturn(List.of(dispatched));
+
+        limiter.check(acc, "WITHDRAW", 200, NOW);
+        assertThrows(LimitExceededException.class, () -> limiter.check(acc, "WITHDRAW", 201, NOW));
+    }
+
+    @Test
+    void check_rebuildLeavesOutTransfersThatWereReversed() {
+        Transaction kept = leg("TRANSFER", 10, NOW - 2_000L), undone = leg("TRANSFER", 10, NOW - 1_000L);
+        kept.setJournalId(kept.getId()); undone.setJournalId(undone.getId());
+        // the receiver was closed during the second transfer, so the payer got the money back
+        Transaction reversal = new Transaction(Journal.SUSPENSE, Journal.TRANSFER_REVERSAL, 10, Instant.ofEpochMilli(NOW - 1_000L), Journal.REVERSAL_OF + undone.getJournalId());
+        reversal.setId(new ObjectId().toHexString()); reversal.setDirection(Transaction.DEBIT);
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class))).thenReturn(List.of(kept, undone)).thenReturn(List.of(reversal));
+
+        limiter.check(acc, "TRANSFER", 10, NOW);
+        limiter.record(acc, "TRANSFER", 10, NOW);
+        assertThrows(LimitExceededException.class, () -> limiter.check(acc, "TRANSFER", 10, NOW));
+    }
+
+    @Test
+    void record_countsTransfersAgainstTheMinuteWindow() {
+        limiter.check(acc, "TRANSFER", 10, NOW); limiter.record(acc, "TRANSFER", 10, NOW);
+        limiter.check(acc, "TRANSFER", 10, NOW); limiter.record(acc, "TRANSFER", 10, NOW);
+
+        assertThrows(LimitExceededException.class, () -> limiter.check(acc, "TRANSFER", 10, NOW + 1_000));
+        limiter.check(acc, "TRANSFER", 10, NOW + 61_000);
+        // transfers don't count towards the withdrawal rule
+        limiter.check(acc, "WITHDRAW", 1_000, NOW);
+    }
+
+    @Test
+    void noRules_neverReadsTheLedger() {
+        // a registry of its own, so its gauge doesn't collide with the one `limiter` registered
+        VelocityLimiter off = new VelocityLimiter(mongoTemplate, mock(PartitionOwnership.class), new SimpleMeterRegistry(), List.of(), 60, 1000);
+
+        off.check(acc, "WITHDRAW", Long.MAX_VALUE, NOW);
+        off.record(acc, "WITHDRAW", 10, NOW);
+
+        verifyNoInteractions(mongoTemplate);
+        assertEquals(0, off.cachedAccounts());
+    }
+
+    private static Account account() {
+        Account a = new Account("RAJ1000", "Raj", 10_000);
+        a.setId("acc-id");
+        return a;
+    }
+
+    private static Transaction cash(Transaction debit) {
+        Transaction t = new Transaction(Journal.CASH, debit.getType(), debit.getAmount(), debit.getTimestamp(), "cash");
+        t.setId(new ObjectId().toHexString()); t.setDirection(Transaction.CREDIT);
+        return t;
+    }
+
+    private static Transaction leg(String type, long amount, long at) {
+        Transaction t = new Transaction("acc-id", type, amount, Instant.ofEpochMilli(at), type.toLowerCase());
+        t.setId(new ObjectId().toHexString()); t.setDirection(Transaction.DEBIT);
+        return t;
+    }
+}
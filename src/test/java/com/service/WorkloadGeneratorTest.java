@@ -0,0 +1,131 @@
+package com.service;
+
+import com.dto.WorkloadReport;
+import com.dto.WorkloadRequest;
+import com.model.Account;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ I am running short workloads against the in-memory engine so that the generator is exercised end to end without MongoDB.
+*/
+class WorkloadGeneratorTest {
+
+    private WorkloadGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryLedgerStore store = new InMemoryLedgerStore(64, 1024);
+        AccountService svc = new InMemoryAccountServiceImpl(store, mock(ApplicationEventPublisher.class), InMemoryAccountServiceImplTest.limits(store, 0));
+        generator = new WorkloadGenerator(svc);
+    }
+
+    private WorkloadRequest request(String mode) {
+        WorkloadRequest req = new WorkloadRequest();
+        req.setMode(mode); req.setAccounts(20); req.setInitialBalance(0);
+        req.setWarmupSeconds(0); req.setDurationSeconds(1); req.setConcurrency(2); req.setTargetRate(500);
+        return req;
+    }
+
+    @Test
+    void closedLoop_reportsThroughputLatencyAndErrors() {
+        WorkloadReport report = generator.run(request("CLOSED"));
+
+        assertEquals("CLOSED", report.getMode());
+        assertTrue(report.getOperations() > 0);
+        assertTrue(report.getThroughputPerSecond() > 0);
+        assertTrue(report.getLatency().containsKey("DEPOSIT"));
+        assertNotNull(report.getLatency().get("DEPOSIT").getHistogram());
+        // accounts start empty, so some withdrawals must have been rejected
+        assertTrue(report.getErrorBreakdown().containsKey("WITHDRAW:InsufficientBalanceException"));
+    }
+
+    @Test
+    void openLoop_releasesOperationsAtTargetRate() {
+        WorkloadRequest req = request("OPEN");
+        req.setPopularity("ZIPF"); req.setAmountDistribution("EXPONENTIAL"); req.setInitialBalance(1_000_000);
+
+        WorkloadReport report = generator.run(req);
+
+        assertEquals(500, report.getOperations(), 5);
+        assertEquals(0, report.getErrors());
+    }
+
+    @Test
+    void invalidRequest_isRejected() {
+        WorkloadRequest req = request("CLOSED");
+        req.setDepositWeight(0); req.setWithdrawWeight(0); req.setTransferWeight(0);
+
+        assertThrows(IllegalArgumentException.class, () -> generator.run(req));
+    }
+
+    @Test
+    void zipfPicker_favoursLowIndexes() {
+        WorkloadGenerator.ZipfPicker picker = new WorkloadGenerator.ZipfPicker(1000, 1.2);
+        SplittableRandom rnd = new SplittableRandom(1);
+        int hot = 0;
+        for (int i = 0; i < 10_000; i++) { if (picker.next(rnd) < 10) hot++; }
+
+        // the top 1% of accounts get far more than 1% of the picks
+        assertTrue(hot > 5_000);
+    }
+
+    @Test
+    void failures_areCountedApartFromThroughputAndLatency() {
+        WorkloadRequest req = request("CLOSED");
+        // accounts start empty and only withdraw, so every operation is rejected
+        req.setDepositWeight(0); req.setTransferWeight(0); req.setWithdrawWeight(1);
+
+        WorkloadReport report = generator.run(req);
+
+        assertTrue(report.getErrors() > 0);
+        assertEquals(0, report.getOperations());
+        assertEquals(0, report.getThroughputPerSecond());
+        assertTrue(report.getLatency().isEmpty());
+    }
+
+    @Test
+    void openLoop_thatFallsBehindIsMeasuredUntilItsBacklogDrains() {
+        AccountService slow = mock(AccountService.class);
+        AtomicInteger created = new AtomicInteger();
+        when(slow.createAccount(anyString())).thenAnswer(inv -> new Account("SIM" + created.incrementAndGet(), "Sim", 0));
+        // one worker at 4 ms an operation manages about 250/s against 500/s arriving
+        when(slow.deposit(anyString(), anyLong())).thenAnswer(inv -> { Thread.sleep(4); return null; });
+        WorkloadRequest req = request("OPEN");
+        req.setConcurrency(1); req.setDepositWeight(1); req.setWithdrawWeight(0); req.setTransferWeight(0);
+
+        WorkloadReport report = new WorkloadGenerator(slow).run(req);
+
+        assertEquals(500, report.getOperations(), 5);
+        assertTrue(report.getMeasuredMillis() > 1_500, "measured " + report.getMeasuredMillis());
+        assertTrue(report.getThroughputPerSecond() < 350, "throughput " + report.getThroughputPerSecond());
+    }
+
+    @Test
+    void openLoop_backlogLeftAfterTheDrainIsReportedAsNotStarted() {
+        AccountService slow = mock(AccountService.class);
+        AtomicInteger created = new AtomicInteger();
+        when(slow.createAccount(anyString())).thenAnswer(inv -> new Account("SIM" + created.incrementAndGet(), "Sim", 0));
+        // one worker at 10 ms an operation gets through about 200 of the 500 before the drain ends a second after the window
+        when(slow.deposit(anyString(), anyLong())).thenAnswer(inv -> { Thread.sleep(10); return null; });
+        WorkloadRequest req = request("OPEN");
+        req.setConcurrency(1); req.setDepositWeight(1); req.setWithdrawWeight(0); req.setTransferWeight(0);
+
+        WorkloadReport report = new WorkloadGenerator(slow, n -> true, 0).run(req);
+
+        long notStarted = report.getErrorBreakdown().getOrDefault("DEPOSIT:NotStarted", 0L);
+        assertTrue(notStarted > 100, "not started " + notStarted);
+        // everything released is accounted for, bar the one operation interrupted mid-flight
+        assertEquals(500, report.getOperations() + notStarted, 1);
+    }
+}